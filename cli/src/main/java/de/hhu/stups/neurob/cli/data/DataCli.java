@@ -3,18 +3,33 @@ package de.hhu.stups.neurob.cli.data;
 import de.hhu.stups.neurob.cli.BackendId;
 import de.hhu.stups.neurob.cli.CliModule;
 import de.hhu.stups.neurob.cli.formats.Formats;
+import de.hhu.stups.neurob.core.api.ProB2;
 import de.hhu.stups.neurob.core.api.backends.Backend;
 import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccessPool;
+import de.hhu.stups.neurob.core.api.bmethod.ParseCache;
 import de.hhu.stups.neurob.training.analysis.PredDbAnalysis;
 import de.hhu.stups.neurob.training.analysis.PredicateDbAnalyser;
+import de.hhu.stups.neurob.training.db.AdaptiveSampling;
+import de.hhu.stups.neurob.training.db.BackendCircuitBreaker;
+import de.hhu.stups.neurob.training.db.GenerationJournal;
 import de.hhu.stups.neurob.training.db.PredDbEntry;
 import de.hhu.stups.neurob.training.db.PredicateDbFormat;
+import de.hhu.stups.neurob.training.db.PredicateDeduplicator;
 import de.hhu.stups.neurob.training.db.SimplePredicateList;
+import de.hhu.stups.neurob.training.db.SolverResultCache;
 import de.hhu.stups.neurob.training.formats.TrainingDataFormat;
+import de.hhu.stups.neurob.training.generation.CorpusManifest;
+import de.hhu.stups.neurob.training.generation.MachineCostEstimator;
+import de.hhu.stups.neurob.training.generation.PredicateGenerationPipeline;
 import de.hhu.stups.neurob.training.generation.PredicateTrainingGenerator;
+import de.hhu.stups.neurob.training.generation.statistics.DataGenerationStats;
 import de.hhu.stups.neurob.training.generation.util.FormulaGenerator;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollection;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollection.Facet;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollectionCache;
 import de.hhu.stups.neurob.training.migration.PredicateDbMigration;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -24,6 +39,8 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionGroup;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -37,9 +54,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -47,6 +68,9 @@ public class DataCli implements CliModule {
 
     final Options options;
 
+    private static final Logger log =
+            LoggerFactory.getLogger(DataCli.class);
+
     public DataCli() {
         options = new Options();
         initOptions();
@@ -56,7 +80,7 @@ public class DataCli implements CliModule {
     public String getUsageInfo() {
         return
                 /*use:*/ "data -m SOURCE_DIR FORMAT -t TARGET_DIR TARGET_FORMAT TARGET_FEATURES TARGET_LABELS\n"
-                         + "       data -g SOURCE_DIR -t TARGET_DIR TARGET_FORMAT [OPTIONS] [-s SAMPLING_SIZE] [-[x][z]b BACKENDS | -n]\n"
+                         + "       data -g SOURCE_DIR -t TARGET_DIR TARGET_FORMAT [OPTIONS] [-s SAMPLING_SIZE] [-y CONFIDENCE REL_ERROR ABS_ERROR_MS] [-r CACHE_DIR] [-j JOURNAL_FILE] [-d MANIFEST_FILE] [-u] [-w] [-q HISTORY_FILE] [--probe-timeout MS] [--circuit-breaker THRESHOLD RETRY_INTERVAL] [-l] [-k STAGE_THREADS | [--parallel-predicates] [--parallel-backends]] [--workers N] [-[x][z]b BACKENDS | -n]\n"
                          + "       data -a SOURCE_DIR FORMAT [-c THREADS] [-[x]b BACKENDS] [-f FILE_NAME]\n"
                          + "       data -p SOURCE_DIR -o TARGET_PATH [-c THREADS]\n"
                          + "       data -e PREDICATE_SAMPLE [-f SOURCE_FILE] [-s SAMPLING_SIZE] [-[x]b BACKENDS]\n"
@@ -227,6 +251,146 @@ public class DataCli implements CliModule {
                 .longOpt("lazy")
                 .desc("Data is generated lazily, i.e. already existent data is ignored.").build();
 
+        Option resultCache = Option.builder("r")
+                .longOpt("result-cache")
+                .hasArg()
+                .argName("CACHE_DIR")
+                .desc("Directory of solver results from previous runs. Predicates already solved "
+                      + "for the same machine, backend, and ProB version are not solved again.")
+                .build();
+
+        Option journal = Option.builder("j")
+                .longOpt("journal")
+                .hasArg()
+                .argName("JOURNAL_FILE")
+                .desc("File to which each solver result is appended as soon as it is known. "
+                      + "If a previous run over the same journal was aborted, its results are "
+                      + "replayed and only the missing predicates are solved.")
+                .build();
+
+        Option manifest = Option.builder("d")
+                .longOpt("manifest")
+                .hasArg()
+                .argName("MANIFEST_FILE")
+                .desc("Manifest recording the hash of each generated machine and the generation "
+                      + "configuration. In lazy mode, only machines whose content or configuration "
+                      + "changed are generated anew, regardless of modification times.")
+                .build();
+
+        Option dedup = Option.builder("u")
+                .longOpt("dedup")
+                .desc("If set, each distinct predicate is solved only once per run. Duplicates, "
+                      + "also from other machines, reuse the results, but are still listed under "
+                      + "their own machine.")
+                .build();
+
+        Option streaming = Option.builder("w")
+                .longOpt("stream")
+                .desc("If set, the predicates of a machine are labelled as soon as they are "
+                      + "generated, instead of after all of them were generated and sorted.")
+                .build();
+
+        Option costHistory = Option.builder("q")
+                .longOpt("cost-history")
+                .hasArg()
+                .argName("HISTORY_FILE")
+                .desc("If set, machines are generated in order of their estimated cost, most "
+                      + "expensive first. Costs are estimated from the generation times of previous "
+                      + "runs stored in HISTORY_FILE, or from the file sizes.")
+                .build();
+
+        Option singleCli = Option.builder("l")
+                .longOpt("single-cli")
+                .desc("If set, all backends solve over a single ProB cli per machine, which "
+                      + "switches its preferences to the ones of the respective backend "
+                      + "instead of starting one cli per backend.")
+                .build();
+
+        Option pipeline = Option.builder("k")
+                .longOpt("pipeline")
+                .hasArg()
+                .argName("STAGE_THREADS")
+                .desc("If set, generates the data in a staged pipeline. STAGE_THREADS is a comma "
+                      + "separated list of the number of threads for predicate collection, AST cleanup, "
+                      + "feature generation, labelling, and writing, e.g. 1,1,2,8,1.")
+                .build();
+
+        Option parallelPredicates = Option.builder()
+                .longOpt("parallel-predicates")
+                .desc("If set, idle threads help labelling the predicates of large machines "
+                      + "instead of only working on machines of their own. Ignored with -k.")
+                .build();
+
+        Option parallelBackends = Option.builder()
+                .longOpt("parallel-backends")
+                .desc("If set, the backends label a predicate concurrently instead of one after "
+                      + "another. Ignored with -k.")
+                .build();
+
+        Option adaptive = Option.builder("y")
+                .longOpt("adaptive-sampling")
+                .numberOfArgs(3)
+                .argName("CONFIDENCE REL_ERROR ABS_ERROR_MS")
+                .desc("If set, sampling of a timing stops as soon as the t-distribution confidence "
+                      + "interval at CONFIDENCE (e.g. 0.95) around its mean is within REL_ERROR of "
+                      + "the mean (e.g. 0.05) or within ABS_ERROR_MS milliseconds. SAMPLING_SIZE "
+                      + "is the maximum number of samples then.")
+                .build();
+
+        Option probeTimeout = Option.builder()
+                .longOpt("probe-timeout")
+                .hasArg()
+                .argName("MS")
+                .desc("If set, labels in two phases: each predicate is first solved with a timeout "
+                      + "of MS milliseconds, and only predicates left undecided are solved again "
+                      + "with the full timeout. The phase of each answer is written to the data base.")
+                .build();
+
+        Option circuitBreaker = Option.builder()
+                .longOpt("circuit-breaker")
+                .numberOfArgs(2)
+                .argName("THRESHOLD RETRY_INTERVAL")
+                .desc("If set, a backend that errors on THRESHOLD consecutive predicates of a machine "
+                      + "is skipped for the remaining predicates of it, which are labelled SKIPPED. "
+                      + "Every RETRY_INTERVAL skipped predicates, one is solved to check whether the "
+                      + "backend recovered.")
+                .build();
+
+        Option workers = Option.builder()
+                .longOpt("workers")
+                .hasArg()
+                .argName("N")
+                .desc("If set, shards the machines across N worker JVMs. A machine whose worker "
+                      + "crashes is handed to another worker. Not supported together with a "
+                      + "journal, manifest, or cost history.")
+                .build();
+
+        Option collectionAccesses = Option.builder()
+                .longOpt("collection-accesses")
+                .hasArg()
+                .argName("K")
+                .desc("If set, splits the calculation of weakest preconditions, before/after "
+                      + "predicates, and primed predicates of each machine across K accesses "
+                      + "to it. Default: 1")
+                .build();
+
+        Option collectionCache = Option.builder()
+                .longOpt("collection-cache")
+                .hasArg()
+                .argName("CACHE_DIR")
+                .desc("If set, caches the predicates collected from each machine in the given "
+                      + "directory, keyed by the machine's hash and the ProB cli version. "
+                      + "Cached machines need no weakest precondition or priming calculations.")
+                .build();
+
+        Option worker = Option.builder()
+                .longOpt("worker")
+                .hasArg()
+                .argName("PORT:ID")
+                .desc("Used internally by --workers: runs as worker of the coordinator listening "
+                      + "on PORT.")
+                .build();
+
         Option probHome = Option.builder("h")
                 .longOpt("prob-home")
                 .hasArg()
@@ -247,6 +411,23 @@ public class DataCli implements CliModule {
         options.addOption(exclude);
         options.addOption(samplingSize);
         options.addOption(output);
+        options.addOption(resultCache);
+        options.addOption(journal);
+        options.addOption(manifest);
+        options.addOption(dedup);
+        options.addOption(streaming);
+        options.addOption(costHistory);
+        options.addOption(singleCli);
+        options.addOption(pipeline);
+        options.addOption(parallelPredicates);
+        options.addOption(parallelBackends);
+        options.addOption(adaptive);
+        options.addOption(probeTimeout);
+        options.addOption(circuitBreaker);
+        options.addOption(workers);
+        options.addOption(worker);
+        options.addOption(collectionAccesses);
+        options.addOption(collectionCache);
         options.addOption(probHome);
     }
 
@@ -333,10 +514,14 @@ public class DataCli implements CliModule {
                 PredDbEntry.Generator generator =
                         new PredDbEntry.Generator(samplingSize, backends.toArray(new Backend[0]));
 
-                final MachineAccess access = sourceMachine.spawnMachineAccess();
-                PredDbEntry result = generator.generate(pred, access);
-
-                access.close();
+                MachineAccessPool pool = MachineAccessPool.getInstance();
+                final MachineAccess access = pool.borrow(sourceMachine);
+                PredDbEntry result;
+                try {
+                    result = generator.generate(pred, access);
+                } finally {
+                    pool.release(access);
+                }
 
                 System.out.println(result.getPredicate());
                 System.out.println(result.getSource());
@@ -438,6 +623,7 @@ public class DataCli implements CliModule {
 
         setGenerationRules(generator);
         generator.setAstCleanup(true);
+        setCollectionCache(line, generator);
 
         int numThreads = parseCores(line);
 
@@ -459,16 +645,23 @@ public class DataCli implements CliModule {
         }
     }
 
+    private void setCollectionCache(CommandLine line, PredicateTrainingGenerator generator) {
+        if (line.hasOption("collection-cache")) {
+            generator.setCollectionCache(new PredicateCollectionCache(
+                    Paths.get(line.getOptionValue("collection-cache")), ProB2.api.getVersion()));
+        }
+    }
+
     private void setGenerationRules(PredicateTrainingGenerator generator) {
-        generator.setGenerationRules(
-                FormulaGenerator::assertions,
-                FormulaGenerator::enablingAnalysis,
-                FormulaGenerator::extendedPreconditionFormulae,
-                FormulaGenerator::invariantConstrains,
-                FormulaGenerator::invariantPreservationFormulae,
-                FormulaGenerator::multiPreconditionFormulae,
-                FormulaGenerator::weakestPreconditionFormulae
-        );
+        Map<String, Function<PredicateCollection, List<BPredicate>>> rules = new LinkedHashMap<>();
+        rules.put("assertions", FormulaGenerator::assertions);
+        rules.put("enablingAnalysis", FormulaGenerator::enablingAnalysis);
+        rules.put("extendedPreconditionFormulae", FormulaGenerator::extendedPreconditionFormulae);
+        rules.put("invariantConstrains", FormulaGenerator::invariantConstrains);
+        rules.put("invariantPreservationFormulae", FormulaGenerator::invariantPreservationFormulae);
+        rules.put("multiPreconditionFormulae", FormulaGenerator::multiPreconditionFormulae);
+        rules.put("weakestPreconditionFormulae", FormulaGenerator::weakestPreconditionFormulae);
+        generator.setGenerationRules(rules);
     }
 
     private void generate(CommandLine line, Path targetDir) throws IOException {
@@ -490,22 +683,92 @@ public class DataCli implements CliModule {
 
         PredicateDbFormat dbFormat = (PredicateDbFormat) format;
 
+        PredDbEntry.Generator labelGenerator =
+                new PredDbEntry.Generator(samplingSize, backends.toArray(new Backend[0]));
+        if (line.hasOption("r")) {
+            labelGenerator.setResultCache(
+                    new SolverResultCache(Paths.get(line.getOptionValue("r"))));
+        }
+        if (line.hasOption("j")) {
+            labelGenerator.setJournal(new GenerationJournal(Paths.get(line.getOptionValue("j"))));
+        }
+        if (line.hasOption("u")) {
+            // Waiting for an earlier occurrence should not take longer than solving it anew
+            long solvingMillis = 0L;
+            for (Backend backend : backends) {
+                solvingMillis += backend.getTimeOutUnit().toMillis(backend.getTimeOutValue());
+            }
+            labelGenerator.setDeduplicator(new PredicateDeduplicator(
+                    Math.max(1, samplingSize) * solvingMillis, TimeUnit.MILLISECONDS));
+        }
+        if (line.hasOption("y")) {
+            labelGenerator.setAdaptiveSampling(parseAdaptiveSampling(line.getOptionValues("y")));
+        }
+        if (line.hasOption("circuit-breaker")) {
+            String[] thresholds = line.getOptionValues("circuit-breaker");
+            labelGenerator.setCircuitBreaker(new BackendCircuitBreaker(
+                    Integer.parseInt(thresholds[0]), Integer.parseInt(thresholds[1])));
+        }
+        if (line.hasOption("probe-timeout")) {
+            labelGenerator.setProbeTimeout(
+                    Long.parseLong(line.getOptionValue("probe-timeout")), TimeUnit.MILLISECONDS);
+        }
+        labelGenerator.setPreferenceSwitching(line.hasOption("l"));
+
         PredicateTrainingGenerator generator = new PredicateTrainingGenerator(
                 (p, ss) -> p,
-                new PredDbEntry.Generator(samplingSize, backends.toArray(new Backend[0])),
+                labelGenerator,
                 samplingSize,
                 dbFormat);
 
         setGenerationRules(generator);
+        generator.setStreamingGeneration(line.hasOption("w"));
+        if (line.hasOption("collection-accesses")) {
+            generator.setCollectionParallelism(
+                    Integer.parseInt(line.getOptionValue("collection-accesses")));
+        }
+        setCollectionCache(line, generator);
+        if (line.hasOption("q")) {
+            generator.setCostEstimator(new MachineCostEstimator(Paths.get(line.getOptionValue("q"))));
+        }
+        if (line.hasOption("d")) {
+            generator.setManifest(new CorpusManifest(Paths.get(line.getOptionValue("d")),
+                    generator.describeConfiguration()));
+        }
 
         int numThreads = (line.hasOption("c"))
                 ? Integer.parseInt(line.getOptionValue("c"))
                 : Runtime.getRuntime().availableProcessors() - 1;
 
+        if (line.hasOption("k")) {
+            generator.setPipeline(parsePipeline(generator, line.getOptionValue("k")));
+        } else {
+            // Let idle threads steal predicates and backends of large machines
+            if (line.hasOption("parallel-predicates")) {
+                generator.setPredicateParallelism(numThreads);
+            }
+            labelGenerator.setParallelBackends(line.hasOption("parallel-backends"));
+        }
+
         Collection<Path> excludes = getExcludes(line);
 
+        if (line.hasOption("workers")) {
+            if (line.hasOption("j") || line.hasOption("d") || line.hasOption("q")) {
+                System.out.println("Journal, manifest, and cost history cannot be shared "
+                                   + "between workers.");
+                return;
+            }
+            coordinate(line, generator, dbFormat, sourceDir, targetDir, excludes);
+            return;
+        }
+
         ForkJoinPool threadPool = new ForkJoinPool(numThreads);
         try {
+            if (line.hasOption("worker")) {
+                ShardWorker worker = ShardWorker.fromArgument(line.getOptionValue("worker"));
+                threadPool.submit(() -> worker.run(sourceDir, generator)).get();
+                return;
+            }
             threadPool.submit(
                             () -> generator.generateTrainingData(
                                     sourceDir,
@@ -517,7 +780,181 @@ public class DataCli implements CliModule {
             e.printStackTrace();
         } finally {
             threadPool.shutdown();
+            if (labelGenerator.getJournal() != null) {
+                labelGenerator.getJournal().close();
+            }
+            if (labelGenerator.getResultCache() != null) {
+                labelGenerator.getResultCache().close();
+            }
+        }
+
+        logGenerationStats(generator, labelGenerator, samplingSize);
+    }
+
+    /**
+     * Logs the statistics of the optional generation features at info level
+     * and the ones of the generation internals at debug level.
+     */
+    private void logGenerationStats(PredicateTrainingGenerator generator,
+            PredDbEntry.Generator labelGenerator, int samplingSize) {
+        SolverResultCache cache = labelGenerator.getResultCache();
+        if (cache != null) {
+            log.info("Solver result cache: {} hits, {} misses",
+                    cache.getHitCount(), cache.getMissCount());
+        }
+        CorpusManifest manifest = generator.getManifest();
+        if (manifest != null) {
+            log.info("Manifest: {} machines up to date, {} generated anew, {} files hashed",
+                    manifest.getUpToDateCount(), manifest.getOutdatedCount(), manifest.getHashCount());
+        }
+        if (generator.getCostEstimator() != null) {
+            log.info("{}", generator.getCostEstimator().getReport());
+        }
+        PredicateDeduplicator deduplicator = labelGenerator.getDeduplicator();
+        if (deduplicator != null) {
+            log.info("Deduplication: {} of {} predicates reused, {} distinct",
+                    deduplicator.getReuseCount(), deduplicator.getLookupCount(),
+                    deduplicator.getDistinctCount());
+        }
+        AdaptiveSampling adaptiveSampling = labelGenerator.getAdaptiveSampling();
+        if (adaptiveSampling != null && adaptiveSampling.getSampledCount() > 0) {
+            log.info("Adaptive sampling: {} timings, {} samples on average, {} stopped before {} samples",
+                    adaptiveSampling.getSampledCount(),
+                    String.format("%.1f",
+                            adaptiveSampling.getMeasurementCount() / (double) adaptiveSampling.getSampledCount()),
+                    adaptiveSampling.getEarlyStopCount(), samplingSize);
+        }
+        BackendCircuitBreaker breaker = labelGenerator.getCircuitBreaker();
+        if (breaker != null) {
+            log.info("Circuit breaker: {} trips, {} predicates skipped, {} trials, {} recoveries",
+                    breaker.getTripCount(), breaker.getSkipCount(),
+                    breaker.getTrialCount(), breaker.getRecoveryCount());
+        }
+        if (labelGenerator.getProbeTimeout() != null) {
+            log.info("Two-phase labelling: {} timings probed, {} escalated to the full timeout, {} of them decided",
+                    labelGenerator.getProbedCount(), labelGenerator.getEscalatedCount(),
+                    labelGenerator.getEscalationDecidedCount());
+        }
+        GenerationJournal journal = labelGenerator.getJournal();
+        if (journal != null) {
+            log.info("Journal: {} results replayed, {} reused, {} recorded; {} syncs taking {} ms in total",
+                    journal.getReplayedCount(), journal.getHitCount(), journal.getRecordedCount(),
+                    journal.getSyncCount(), String.format("%.1f", journal.getJournalNanos() / 1e6));
+        }
+
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+        if (generator.getPipeline() != null) {
+            generator.getPipeline().getStageStats().values().forEach(
+                    stage -> log.debug("Pipeline stage {}", stage));
+        } else {
+            log.debug("Predicate tasks: {}, {} stolen by idle threads",
+                    generator.getScheduler().getTaskCount(), generator.getScheduler().getStolenCount());
+        }
+        if (labelGenerator.isPreferenceSwitching()) {
+            log.debug("Preference switches: {}", labelGenerator.getPreferenceSwitchCount());
+        }
+        PredicateCollectionCache collectionCache = generator.getCollectionCache();
+        if (collectionCache != null) {
+            log.debug("Predicate collection cache: {} hits, {} misses",
+                    collectionCache.getHitCount(), collectionCache.getMissCount());
+        }
+        if (generator.getCollectedMachineCount() > 0) {
+            log.debug("Predicate collection: {} machines with {} accesses each, {} ms on average",
+                    generator.getCollectedMachineCount(), generator.getCollectionParallelism(),
+                    String.format("%.1f",
+                            generator.getCollectionNanos() / 1e6 / generator.getCollectedMachineCount()));
+            log.debug("Materialised facets: {}", Arrays.stream(Facet.values())
+                    .map(facet -> facet + "=" + generator.getMaterialisedFacetCount(facet))
+                    .collect(Collectors.joining(", ")));
+        }
+        log.debug("Parse cache: {} lookups, {} % hits",
+                ParseCache.getTotalLookupCount(), String.format("%.1f", 100 * ParseCache.getTotalHitRate()));
+    }
+
+    private void coordinate(CommandLine line, PredicateTrainingGenerator generator,
+            TrainingDataFormat<?, ?> format, Path sourceDir, Path targetDir, Collection<Path> excludes)
+            throws IOException {
+        List<Path> files = generator.listSourceFiles(
+                sourceDir.toAbsolutePath(), targetDir, line.hasOption('z'), excludes);
+        ShardCoordinator coordinator = new ShardCoordinator(files, sourceDir, targetDir,
+                format, Integer.parseInt(line.getOptionValue("workers")),
+                getWorkerArgs(line));
+
+        DataGenerationStats stats;
+        try {
+            stats = coordinator.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for workers", e);
+        }
+        log.info("{}", stats);
+        log.info("Workers: {} launched, {} machines re-queued after crashes",
+                coordinator.getLaunchedCount(), coordinator.getRequeuedCount());
+    }
+
+    /**
+     * Rebuilds the arguments of the given command line for launching
+     * workers, i.e. without the <code>--workers</code> option.
+     *
+     * @param line Command line of the coordinator
+     *
+     * @return Arguments to {@link de.hhu.stups.neurob.cli.NeuroBCli}
+     */
+    List<String> getWorkerArgs(CommandLine line) {
+        List<String> args = new ArrayList<>();
+        args.add("data");
+        for (Option option : line.getOptions()) {
+            if ("workers".equals(option.getLongOpt())) {
+                continue;
+            }
+            args.add(option.getOpt() != null
+                    ? "-" + option.getOpt()
+                    : "--" + option.getLongOpt());
+            if (option.getValues() != null) {
+                args.addAll(Arrays.asList(option.getValues()));
+            }
+        }
+        return args;
+    }
+
+    /**
+     * Parses the stopping rule for adaptive sampling.
+     *
+     * @param args Confidence level, relative error, and absolute error in milliseconds
+     *
+     * @return Stopping rule
+     */
+    AdaptiveSampling parseAdaptiveSampling(String[] args) {
+        return new AdaptiveSampling(
+                Double.parseDouble(args[0]),
+                Double.parseDouble(args[1]),
+                TimeUnit.MILLISECONDS.toNanos(Long.parseLong(args[2])));
+    }
+
+    /**
+     * Parses the thread counts per stage, in order of
+     * {@link PredicateGenerationPipeline.Stage}.
+     *
+     * @param generator Generator the pipeline is for
+     * @param stageThreads Comma separated thread counts
+     *
+     * @return Configured pipeline
+     */
+    PredicateGenerationPipeline parsePipeline(PredicateTrainingGenerator generator, String stageThreads) {
+        PredicateGenerationPipeline pipeline = new PredicateGenerationPipeline(generator);
+        String[] counts = stageThreads.split(",");
+        PredicateGenerationPipeline.Stage[] stages = PredicateGenerationPipeline.Stage.values();
+        if (counts.length != stages.length) {
+            throw new IllegalArgumentException("Expected " + stages.length
+                                               + " thread counts for the pipeline stages, but got "
+                                               + stageThreads);
+        }
+        for (int i = 0; i < stages.length; i++) {
+            pipeline.setThreads(stages[i], Integer.parseInt(counts[i].trim()));
         }
+        return pipeline;
     }
 
     /**
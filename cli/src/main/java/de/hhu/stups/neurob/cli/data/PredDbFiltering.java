@@ -65,6 +65,7 @@ public class PredDbFiltering {
                     notAllError = true;
                     break;
                 case ERROR:
+                case SKIPPED:
                     // Just so we don't switch the notAllError flag
                     break;
                 default:
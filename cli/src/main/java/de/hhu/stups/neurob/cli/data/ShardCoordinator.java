@@ -0,0 +1,530 @@
+package de.hhu.stups.neurob.cli.data;
+
+import de.hhu.stups.neurob.cli.NeuroBCli;
+import de.hhu.stups.neurob.training.formats.TrainingDataFormat;
+import de.hhu.stups.neurob.training.generation.statistics.DataGenerationStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Shards the generation of training data across several worker JVMs on
+ * the local machine.
+ * <p>
+ * Native crashes of the ProB cli or exhausted heaps take down the whole
+ * JVM. With a coordinator, only the affected worker dies: its machine is
+ * handed to another worker, and a new worker is launched in its place.
+ * <p>
+ * The coordinator listens on a loopback socket to which the workers, see
+ * {@link ShardWorker}, connect. Workers request one machine at a time and
+ * write its data into their own staging directory below
+ * {@value #SHARD_DIR} in the target directory. Once a worker reports a
+ * machine as done, the coordinator moves the data into the target
+ * directory and merges the worker's statistics.
+ * <p>
+ * The protocol is line based:
+ * <ul>
+ *     <li>worker: <code>HELLO id</code>, coordinator: <code>DIR staging-dir</code></li>
+ *     <li>worker: <code>NEXT</code> or <code>DONE stats</code>,
+ *         coordinator: <code>MACHINE path</code> or <code>STOP</code></li>
+ * </ul>
+ * <p>
+ * A worker that does not answer within the machine timeout, configurable
+ * via the system property {@value #MACHINE_TIMEOUT_PROPERTY}, is
+ * considered hung: it is killed and its machine is handed out again.
+ */
+public class ShardCoordinator {
+
+    /** Number of times a machine is handed out before it is considered failed */
+    public static final int MAX_ATTEMPTS = 3;
+    /** Directory in the target directory holding the staging directories of the workers */
+    public static final String SHARD_DIR = ".shards";
+    /** System property to configure how many seconds a worker may take for a single machine. */
+    public static final String MACHINE_TIMEOUT_PROPERTY = "neurob.shard.machine.timeout";
+    /** Default time in seconds a worker may take for a single machine */
+    public static final long DEFAULT_MACHINE_TIMEOUT = 3600L;
+
+    private final List<Path> files;
+    private final Path sourceDir;
+    private final Path targetDir;
+    private final TrainingDataFormat<?, ?> format;
+    private final int workerCount;
+    private final WorkerLauncher launcher;
+    private final int machineTimeoutMillis;
+
+    private final BlockingDeque<Path> pending;
+    private final Map<Path, Integer> attempts;
+    private final Set<Integer> connected;
+    /** Exit futures of the live workers, by id */
+    private final Map<Integer, CompletableFuture<?>> workers;
+    private final DataGenerationStats stats;
+
+    /** Machines neither done nor failed; guarded by this */
+    private int remaining;
+    /** Workers launched and not exited yet; guarded by this */
+    private int liveWorkers;
+    /** Workers that exited without ever connecting; guarded by this */
+    private int startupFailures;
+    private int nextWorkerId;
+
+    private final AtomicInteger launched;
+    private final AtomicInteger requeued;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ShardCoordinator.class);
+
+    /**
+     * @param files Machine files to generate, as listed by the generator
+     * @param sourceDir Common source directory of the files
+     * @param targetDir Directory into which the data is placed
+     * @param format Format the workers write the data in
+     * @param workerCount Number of worker JVMs to run concurrently
+     * @param workerArgs Arguments to {@link NeuroBCli} with which the
+     *         workers are launched, e.g. <code>data -g ... -t ...</code>
+     */
+    public ShardCoordinator(List<Path> files, Path sourceDir, Path targetDir,
+            TrainingDataFormat<?, ?> format, int workerCount, List<String> workerArgs) {
+        this(files, sourceDir, targetDir, format, workerCount,
+                (port, id) -> launchJvm(workerArgs, port, id),
+                defaultMachineTimeout(), TimeUnit.SECONDS);
+    }
+
+    ShardCoordinator(List<Path> files, Path sourceDir, Path targetDir,
+            TrainingDataFormat<?, ?> format, int workerCount, WorkerLauncher launcher) {
+        this(files, sourceDir, targetDir, format, workerCount, launcher,
+                defaultMachineTimeout(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param launcher Launches the workers
+     * @param machineTimeout Time a worker may take for a single machine
+     *         before it is killed
+     * @param timeUnit Unit of the machine timeout
+     */
+    ShardCoordinator(List<Path> files, Path sourceDir, Path targetDir,
+            TrainingDataFormat<?, ?> format, int workerCount, WorkerLauncher launcher,
+            long machineTimeout, TimeUnit timeUnit) {
+        this.files = files;
+        this.sourceDir = sourceDir.toAbsolutePath();
+        this.targetDir = targetDir;
+        this.format = format;
+        this.workerCount = Math.max(1, workerCount);
+        this.launcher = launcher;
+        // A socket timeout of 0 would mean waiting forever
+        this.machineTimeoutMillis = (int) Math.max(1L,
+                Math.min(Integer.MAX_VALUE, timeUnit.toMillis(machineTimeout)));
+
+        this.pending = new LinkedBlockingDeque<>();
+        this.attempts = new ConcurrentHashMap<>();
+        this.connected = ConcurrentHashMap.newKeySet();
+        this.workers = new ConcurrentHashMap<>();
+        this.stats = new DataGenerationStats();
+        this.launched = new AtomicInteger(0);
+        this.requeued = new AtomicInteger(0);
+    }
+
+    /**
+     * Generates the data of all files over the workers and blocks until
+     * each file is either done or failed {@value #MAX_ATTEMPTS} times.
+     *
+     * @return Merged statistics of all workers
+     *
+     * @throws IOException if the coordinator socket could not be opened
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public DataGenerationStats run() throws IOException, InterruptedException {
+        files.forEach(file -> pending.add(file.toAbsolutePath()));
+        synchronized (this) {
+            remaining = pending.size();
+        }
+        if (pending.isEmpty()) {
+            return stats;
+        }
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            int port = server.getLocalPort();
+            Thread acceptor = new Thread(() -> accept(server), "neurob-shard-coordinator");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            log.info("Sharding {} machines across {} workers on port {}",
+                    remaining, workerCount, port);
+            for (int i = 0; i < Math.min(workerCount, remaining); i++) {
+                launch(port);
+            }
+
+            synchronized (this) {
+                while (remaining > 0) {
+                    if (liveWorkers == 0 && startupFailures >= MAX_ATTEMPTS) {
+                        log.error("Workers repeatedly failed to start; giving up on {} machines",
+                                remaining);
+                        failRemaining();
+                        break;
+                    }
+                    wait(1000);
+                }
+            }
+        }
+
+        deleteShardDir();
+        log.info("Coordinator done: {} workers launched, {} machines re-queued",
+                launched.get(), requeued.get());
+        return stats;
+    }
+
+    /**
+     * @return Number of workers launched, including replacements of crashed ones.
+     */
+    public int getLaunchedCount() {
+        return launched.get();
+    }
+
+    /**
+     * @return Number of machines handed out again after their worker crashed.
+     */
+    public int getRequeuedCount() {
+        return requeued.get();
+    }
+
+    private void accept(ServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread handler = new Thread(() -> serve(socket), "neurob-shard-handler");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    log.warn("Unable to accept worker connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Path current = null;
+        int id = -1;
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                     new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            // Bounds the time a worker may take for a machine, as each read waits for its answer
+            s.setSoTimeout(machineTimeoutMillis);
+
+            String hello = in.readLine();
+            if (hello == null || !hello.startsWith("HELLO ")) {
+                log.warn("Unexpected greeting from worker: {}", hello);
+                return;
+            }
+            id = Integer.parseInt(hello.substring("HELLO ".length()).trim());
+            connected.add(id);
+            Path staging = targetDir.toAbsolutePath().resolve(SHARD_DIR).resolve("worker-" + id);
+            out.println("DIR " + staging);
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("DONE ") && current != null) {
+                    // The worker is done with the machine, even if collecting its data fails
+                    Path finished = current;
+                    current = null;
+                    collect(finished, staging, line.substring("DONE ".length()));
+                } else if (!line.equals("NEXT")) {
+                    log.warn("Unexpected message from worker {}: {}", id, line);
+                    break;
+                }
+
+                current = nextMachine();
+                if (current == null) {
+                    out.println("STOP");
+                    break;
+                }
+                // If the worker died meanwhile, the next read fails and the machine is re-queued
+                out.println("MACHINE " + current);
+            }
+        } catch (SocketTimeoutException e) {
+            log.warn("Worker {} did not answer within {} ms while generating {}; killing it",
+                    id, machineTimeoutMillis, current);
+            kill(id);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Lost connection to worker", e);
+        } finally {
+            if (current != null) {
+                crashed(current);
+            }
+        }
+    }
+
+    /**
+     * Takes the next machine to hand out.
+     *
+     * @return Next machine, or null if all machines are done
+     */
+    private Path nextMachine() {
+        while (true) {
+            try {
+                Path file = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (file != null) {
+                    attempts.merge(file, 1, Integer::sum);
+                    return file;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            synchronized (this) {
+                // Machines in flight might still be re-queued by crashing workers
+                if (remaining == 0) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finishes the machine a worker reported as done. If its data or
+     * statistics cannot be taken over, the machine counts as failed;
+     * it is not handed out again, as the worker did not crash on it.
+     */
+    private void collect(Path file, Path staging, String encodedStats) {
+        try {
+            finish(file, staging, decodeStats(encodedStats));
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to collect the data of {} from {}", file, staging, e);
+            failed(file);
+        }
+    }
+
+    private void finish(Path file, Path staging, DataGenerationStats workerStats) throws IOException {
+        Path relative = sourceDir.equals(file) ? file.getFileName() : sourceDir.relativize(file);
+        Path staged = format.getTargetLocation(relative, staging);
+        if (Files.exists(staged)) {
+            Path target = format.getTargetLocation(relative, targetDir);
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        synchronized (stats) {
+            stats.mergeWith(workerStats);
+        }
+        log.debug("Worker finished {}", file);
+        done();
+    }
+
+    private void crashed(Path file) {
+        int tries = attempts.getOrDefault(file, 0);
+        if (tries >= MAX_ATTEMPTS) {
+            log.error("Giving up on {}: workers crashed on it {} times", file, tries);
+            failed(file);
+            return;
+        }
+        log.warn("Worker crashed on {}; re-queueing it", file);
+        requeued.incrementAndGet();
+        pending.addFirst(file);
+    }
+
+    private void failed(Path file) {
+        synchronized (stats) {
+            stats.increaseFilesSeen();
+            stats.increaseFilesWithErrors();
+        }
+        done();
+    }
+
+    private synchronized void done() {
+        remaining--;
+        notifyAll();
+    }
+
+    private synchronized void failRemaining() {
+        Path file;
+        while ((file = pending.poll()) != null) {
+            log.error("Could not generate {}: no worker available", file);
+            synchronized (stats) {
+                stats.increaseFilesSeen();
+                stats.increaseFilesWithErrors();
+            }
+            remaining--;
+        }
+        notifyAll();
+    }
+
+    private void launch(int port) throws IOException {
+        int id;
+        synchronized (this) {
+            id = nextWorkerId++;
+            liveWorkers++;
+        }
+        launched.incrementAndGet();
+        log.debug("Launching worker {}", id);
+        CompletableFuture<?> exit = launcher.launch(port, id);
+        workers.put(id, exit);
+        exit.whenComplete((result, error) -> exited(port, id));
+    }
+
+    /**
+     * Kills the given worker, if it is still alive.
+     */
+    private void kill(int id) {
+        CompletableFuture<?> exit = workers.get(id);
+        if (exit != null) {
+            exit.cancel(true);
+        }
+    }
+
+    private void exited(int port, int id) {
+        workers.remove(id);
+        boolean relaunch;
+        synchronized (this) {
+            liveWorkers--;
+            if (!connected.contains(id)) {
+                startupFailures++;
+            }
+            // Only replace workers if machines are waiting to be handed out;
+            // if none is left alive, the machine of a crashed worker might
+            // not be re-queued yet, so a replacement is launched either way
+            relaunch = remaining > 0 && (!pending.isEmpty() || liveWorkers == 0)
+                       && startupFailures < MAX_ATTEMPTS && liveWorkers < workerCount;
+            notifyAll();
+        }
+
+        if (relaunch) {
+            log.info("Worker {} exited while machines remain; launching a replacement", id);
+            try {
+                launch(port);
+            } catch (IOException e) {
+                log.error("Unable to launch replacement worker", e);
+                synchronized (this) {
+                    startupFailures++;
+                }
+            }
+        }
+    }
+
+    private void deleteShardDir() {
+        Path shardDir = targetDir.resolve(SHARD_DIR);
+        if (!Files.exists(shardDir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(shardDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    log.warn("Unable to delete {}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Unable to clean up {}", shardDir, e);
+        }
+    }
+
+    /**
+     * Launches a worker JVM running the data cli with the given arguments,
+     * connecting back to the coordinator.
+     *
+     * @return Future completing when the worker exits; cancelling it kills the worker
+     */
+    static CompletableFuture<?> launchJvm(List<String> workerArgs, int port, int id)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // Keep heap size, ProB home and the like of the coordinator
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(NeuroBCli.class.getName());
+        command.addAll(workerArgs);
+        command.add("--worker");
+        command.add(port + ":" + id);
+
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        CompletableFuture<Process> exit = process.onExit();
+        exit.whenComplete((p, error) -> {
+            if (error instanceof CancellationException) {
+                process.destroyForcibly();
+            }
+        });
+        return exit;
+    }
+
+    private static long defaultMachineTimeout() {
+        String configured = System.getProperty(MACHINE_TIMEOUT_PROPERTY);
+        if (configured == null) {
+            return DEFAULT_MACHINE_TIMEOUT;
+        }
+
+        try {
+            return Math.max(1L, Long.parseLong(configured.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Could not parse {}={}, giving workers up to {} seconds per machine",
+                    MACHINE_TIMEOUT_PROPERTY, configured, DEFAULT_MACHINE_TIMEOUT);
+            return DEFAULT_MACHINE_TIMEOUT;
+        }
+    }
+
+    static String encodeStats(DataGenerationStats stats) {
+        return stats.getFilesSeen() + " " + stats.getFilesCreated() + " "
+               + stats.getFilesWithErrors() + " " + stats.getSamplesWritten() + " "
+               + stats.getSamplesFailed();
+    }
+
+    static DataGenerationStats decodeStats(String encoded) {
+        String[] fields = encoded.trim().split(" ");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Malformed statistics: " + encoded);
+        }
+        return new DataGenerationStats(
+                Integer.parseInt(fields[0]),
+                Integer.parseInt(fields[1]),
+                Integer.parseInt(fields[2]),
+                Integer.parseInt(fields[3]),
+                Integer.parseInt(fields[4]));
+    }
+
+    /**
+     * Launches a worker process.
+     */
+    @FunctionalInterface
+    interface WorkerLauncher {
+        /**
+         * @param port Port the worker connects to
+         * @param id Id the worker greets the coordinator with
+         *
+         * @return Future completing when the worker exits;
+         *         cancelling it must kill the worker
+         */
+        CompletableFuture<?> launch(int port, int id) throws IOException;
+    }
+}
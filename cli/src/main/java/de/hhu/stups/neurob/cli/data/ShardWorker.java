@@ -0,0 +1,103 @@
+package de.hhu.stups.neurob.cli.data;
+
+import de.hhu.stups.neurob.training.generation.TrainingSetGenerator;
+import de.hhu.stups.neurob.training.generation.statistics.DataGenerationStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+/**
+ * Worker side of a {@link ShardCoordinator}.
+ * <p>
+ * Connects to the coordinator, then generates the machines handed to it
+ * one at a time into its staging directory, until the coordinator has no
+ * more machines or the connection is lost.
+ */
+public class ShardWorker {
+
+    private final int port;
+    private final int id;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ShardWorker.class);
+
+    /**
+     * @param port Port of the coordinator on the loopback interface
+     * @param id Id the coordinator launched this worker with
+     */
+    public ShardWorker(int port, int id) {
+        this.port = port;
+        this.id = id;
+    }
+
+    /**
+     * Parses the <code>PORT:ID</code> argument a worker is launched with.
+     *
+     * @param address Port and id of the worker, separated by a colon
+     *
+     * @return Worker for the given port and id
+     */
+    public static ShardWorker fromArgument(String address) {
+        int split = address.indexOf(':');
+        if (split < 0) {
+            throw new IllegalArgumentException("Expected PORT:ID, got " + address);
+        }
+        return new ShardWorker(
+                Integer.parseInt(address.substring(0, split)),
+                Integer.parseInt(address.substring(split + 1)));
+    }
+
+    /**
+     * Generates the machines handed out by the coordinator.
+     *
+     * @param sourceDir Common source directory of the machines
+     * @param generator Generator to generate the machines with
+     *
+     * @return Number of machines generated
+     *
+     * @throws IOException if the connection to the coordinator failed
+     */
+    public int run(Path sourceDir, TrainingSetGenerator generator) throws IOException {
+        Path source = sourceDir.toAbsolutePath();
+        int generated = 0;
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+
+            out.println("HELLO " + id);
+            String dir = in.readLine();
+            if (dir == null || !dir.startsWith("DIR ")) {
+                throw new IOException("Unexpected answer from coordinator: " + dir);
+            }
+            Path staging = Paths.get(dir.substring("DIR ".length()));
+            out.println("NEXT");
+
+            String line;
+            while ((line = in.readLine()) != null && line.startsWith("MACHINE ")) {
+                Path file = Paths.get(line.substring("MACHINE ".length()));
+                log.info("Worker {} generating {}", id, file);
+                DataGenerationStats stats = generator.generateTrainingData(
+                        Collections.singletonList(file), source, staging);
+                out.println("DONE " + ShardCoordinator.encodeStats(stats));
+                generated++;
+            }
+        }
+
+        log.info("Worker {} done after {} machines", id, generated);
+        return generated;
+    }
+}
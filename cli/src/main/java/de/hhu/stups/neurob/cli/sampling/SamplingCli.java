@@ -3,11 +3,14 @@ package de.hhu.stups.neurob.cli.sampling;
 import de.hhu.stups.neurob.cli.BackendId;
 import de.hhu.stups.neurob.cli.CliModule;
 import de.hhu.stups.neurob.core.api.MachineType;
+import de.hhu.stups.neurob.core.api.ProB2;
 import de.hhu.stups.neurob.core.api.backends.Answer;
 import de.hhu.stups.neurob.core.api.backends.Backend;
 import de.hhu.stups.neurob.core.api.backends.TimedAnswer;
+import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccessPool;
 import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
 import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
 import de.hhu.stups.neurob.training.data.TrainingSample;
@@ -15,6 +18,7 @@ import de.hhu.stups.neurob.training.db.PredDbEntry;
 import de.hhu.stups.neurob.training.db.SimplePredicateList;
 import de.hhu.stups.neurob.training.generation.util.FormulaGenerator;
 import de.hhu.stups.neurob.training.generation.util.PredicateCollection;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollectionCache;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -44,7 +48,7 @@ public class SamplingCli implements CliModule {
 
     @Override
     public String getUsageInfo() {
-        return "sampling -f MACHINE_FILE -a ALPHA -e ERROR -s SAMPLING_SIZE [-[x]b BACKENDS]\n"
+        return "sampling -f MACHINE_FILE -a ALPHA -e ERROR -s SAMPLING_SIZE [-[x]b BACKENDS] [-c CACHE_DIR]\n"
         + "       sampling -p PRED_LIST_FILE MCH_DIR -a ALPHA -e ERROR -s SAMPLING_SIZE [-[x]b BACKENDS]\n";
     }
 
@@ -120,6 +124,13 @@ public class SamplingCli implements CliModule {
                 .desc("Sets the maximum number of predicates to process. Defaults to 20.")
                 .build();
 
+        Option collectionCache = Option.builder("c")
+                .longOpt("collection-cache")
+                .hasArg()
+                .argName("CACHE_DIR")
+                .desc("If set, caches the predicates collected from the machine file in the given directory.")
+                .build();
+
         options.addOption(mchFile);
         options.addOption(lstFile);
         options.addOption(lstFile2);
@@ -130,6 +141,7 @@ public class SamplingCli implements CliModule {
         options.addOption(cross);
         options.addOption(probHome);
         options.addOption(maxPreds);
+        options.addOption(collectionCache);
     }
 
     @Override
@@ -163,8 +175,17 @@ public class SamplingCli implements CliModule {
             if (line.hasOption('f')) {
                 Path listFile = Paths.get(line.getOptionValue('f'));
 
-                MachineAccess mch = new MachineAccess(listFile);
-                PredicateCollection pc = new PredicateCollection(mch);
+                MachineAccess mch = MachineAccessPool.getInstance().borrow(new BMachine(listFile));
+                PredicateCollectionCache cache = line.hasOption('c')
+                        ? new PredicateCollectionCache(Paths.get(line.getOptionValue('c')),
+                                ProB2.api.getVersion())
+                        : null;
+                PredicateCollection pc = cache != null
+                        ? cache.lookup(listFile, mch, false)
+                        : null;
+                if (pc == null) {
+                    pc = new PredicateCollection(mch);
+                }
 
                 List<BPredicate> bpreds = new ArrayList<>();
 
@@ -175,6 +196,11 @@ public class SamplingCli implements CliModule {
                 bpreds.addAll(FormulaGenerator.invariantPreservationFormulae(pc));
                 bpreds.addAll(FormulaGenerator.multiPreconditionFormulae(pc));
                 bpreds.addAll(FormulaGenerator.weakestPreconditionFormulae(pc));
+                MachineAccessPool.getInstance().release(mch);
+                if (cache != null) {
+                    // Stores the facets the formulae needed
+                    cache.store(listFile, pc);
+                }
 
                 if (bpreds.size() > maxPreds) {
                     Collections.shuffle(bpreds, new Random(20231124L));
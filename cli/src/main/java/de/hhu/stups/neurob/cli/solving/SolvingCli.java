@@ -3,9 +3,11 @@ package de.hhu.stups.neurob.cli.solving;
 import de.hhu.stups.neurob.cli.BackendId;
 import de.hhu.stups.neurob.cli.CliModule;
 import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.backends.PortfolioAnswer;
+import de.hhu.stups.neurob.core.api.backends.PortfolioBackend;
 import de.hhu.stups.neurob.core.api.backends.TimedAnswer;
-import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.EmptyMachinePool;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
 import de.hhu.stups.neurob.training.db.PredDbEntry;
 import org.apache.commons.cli.*;
@@ -46,15 +48,22 @@ public class SolvingCli implements CliModule {
                 .optionalArg(true)
                 .build();
 
+        Option race = Option.builder("r")
+                .longOpt("race")
+                .desc("If set, races the given backends against each other "
+                      + "and reports the first one to decide the predicate.")
+                .build();
+
         options.addOption(predicate);
         options.addOption(backends);
         options.addOption(probHome);
+        options.addOption(race);
     }
 
     @Override
     public String getUsageInfo() {
         return
-                /*use:*/ "solving [-b BACKENDS] -p PREDICATE";
+                /*use:*/ "solving [-b BACKENDS] [-r] -p PREDICATE";
 
     }
 
@@ -95,10 +104,21 @@ public class SolvingCli implements CliModule {
             List<Backend> backends = parseBackends(line);
             BPredicate pred = BPredicate.of(line.getOptionValue('p'));
 
-            for (Backend b : backends) {
-                MachineAccess mch = BMachine.EMPTY.spawnMachineAccess();
+            if (line.hasOption('r')) {
+                race(pred, backends);
+                return;
+            }
 
-                TimedAnswer timedAnswer = b.solvePredicate(pred, mch);
+            EmptyMachinePool pool = EmptyMachinePool.getInstance();
+            for (Backend b : backends) {
+                MachineAccess mch = pool.checkOut(b.getPreferences());
+
+                TimedAnswer timedAnswer;
+                try {
+                    timedAnswer = b.solvePredicate(pred, mch);
+                } finally {
+                    pool.checkIn(mch);
+                }
                 System.out.println(b);
                 System.out.print("->  ");
                 System.out.print("predicate is ");
@@ -106,7 +126,6 @@ public class SolvingCli implements CliModule {
                 System.out.print(", solved in ");
                 System.out.print(timedAnswer.getTime(TimeUnit.MILLISECONDS));
                 System.out.println(" ms");
-                mch.close();
             }
 
 
@@ -115,6 +134,27 @@ public class SolvingCli implements CliModule {
         }
     }
 
+    void race(BPredicate pred, List<Backend> backends) throws Exception {
+        PortfolioBackend portfolio = new PortfolioBackend(backends.toArray(new Backend[0]));
+        EmptyMachinePool pool = EmptyMachinePool.getInstance();
+        MachineAccess mch = pool.checkOut();
+
+        PortfolioAnswer answer;
+        try {
+            answer = (PortfolioAnswer) portfolio.solvePredicate(pred, mch);
+        } finally {
+            pool.checkIn(mch);
+        }
+        System.out.println(portfolio);
+        System.out.print("->  ");
+        System.out.print("predicate is ");
+        System.out.print(answer.getAnswer());
+        System.out.print(", solved in ");
+        System.out.print(answer.getTime(TimeUnit.MILLISECONDS));
+        System.out.print(" ms by ");
+        System.out.println(answer.getBackend());
+    }
+
     static void setProBHomeFromOption(CommandLine line, String fromOption) {
         String probHome = line.getOptionValue(fromOption);
         System.setProperty("prob.home", probHome);
@@ -269,6 +269,15 @@ class DataCliTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void shouldDropWorkersOptionFromWorkerArgs() throws ParseException {
+        CommandLine line = parseCommandLine("-g src -t target jsondb -s 3 --workers 4");
+
+        List<String> args = new DataCli().getWorkerArgs(line);
+
+        assertEquals(Arrays.asList("data", "-g", "src", "-t", "target", "jsondb", "-s", "3"), args);
+    }
+
     private List<Backend> backendList(Backend... backends) {
         return Arrays.stream(backends).collect(Collectors.toList());
     }
@@ -0,0 +1,223 @@
+package de.hhu.stups.neurob.cli.data;
+
+import de.hhu.stups.neurob.training.db.JsonDbFormat;
+import de.hhu.stups.neurob.training.generation.TrainingSetGenerator;
+import de.hhu.stups.neurob.training.generation.statistics.DataGenerationStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardCoordinatorTest {
+
+    private final JsonDbFormat format = new JsonDbFormat();
+
+    private Path sourceDir;
+    private Path targetDir;
+    private List<Path> machines;
+    private TrainingSetGenerator generator;
+
+    @BeforeEach
+    public void setUpFiles() throws IOException {
+        sourceDir = Files.createTempDirectory("neurob-shards-source");
+        targetDir = Files.createTempDirectory("neurob-shards-target");
+        machines = Arrays.asList(
+                sourceDir.resolve("a.mch"),
+                sourceDir.resolve("b.mch"),
+                sourceDir.resolve("c.mch"));
+        for (Path machine : machines) {
+            Files.write(machine, "MACHINE m\nEND".getBytes());
+        }
+
+        // Writes an empty target per machine into the staging directory
+        generator = mock(TrainingSetGenerator.class);
+        when(generator.generateTrainingData(anyList(), any(Path.class), any(Path.class)))
+                .thenAnswer(invocation -> {
+                    Path file = invocation.<List<Path>>getArgument(0).get(0);
+                    Path source = invocation.getArgument(1);
+                    Path staging = invocation.getArgument(2);
+                    Path target = format.getTargetLocation(source.relativize(file), staging);
+                    Files.createDirectories(target.getParent());
+                    Files.write(target, "{}".getBytes());
+                    return new DataGenerationStats(1, 1, 0, 2, 0);
+                });
+    }
+
+    @Test
+    public void shouldGenerateAllMachinesAcrossWorkers() throws Exception {
+        ShardCoordinator coordinator = new ShardCoordinator(machines, sourceDir, targetDir,
+                format, 2, (port, id) -> inThread(() -> new ShardWorker(port, id).run(sourceDir, generator)));
+
+        DataGenerationStats stats = coordinator.run();
+
+        assertEquals(new DataGenerationStats(3, 3, 0, 6, 0), stats);
+        for (Path machine : machines) {
+            assertTrue(Files.exists(format.getTargetLocation(sourceDir.relativize(machine), targetDir)));
+        }
+        assertFalse(Files.exists(targetDir.resolve(ShardCoordinator.SHARD_DIR)));
+    }
+
+    @Test
+    public void shouldRequeueMachineOfCrashedWorker() throws Exception {
+        AtomicInteger launches = new AtomicInteger(0);
+        ShardCoordinator coordinator = new ShardCoordinator(machines, sourceDir, targetDir,
+                format, 1, (port, id) -> launches.getAndIncrement() == 0
+                        ? inThread(() -> crashOnFirstMachine(port, id))
+                        : inThread(() -> new ShardWorker(port, id).run(sourceDir, generator)));
+
+        DataGenerationStats stats = coordinator.run();
+
+        assertEquals(new DataGenerationStats(3, 3, 0, 6, 0), stats);
+        assertEquals(1, coordinator.getRequeuedCount());
+        assertEquals(2, coordinator.getLaunchedCount());
+    }
+
+    @Test
+    public void shouldGiveUpOnMachineCrashingEveryWorker() throws Exception {
+        ShardCoordinator coordinator = new ShardCoordinator(machines.subList(0, 1), sourceDir,
+                targetDir, format, 1, (port, id) -> inThread(() -> crashOnFirstMachine(port, id)));
+
+        DataGenerationStats stats = coordinator.run();
+
+        assertEquals(1, stats.getFilesSeen());
+        assertEquals(1, stats.getFilesWithErrors());
+        assertTrue(coordinator.getLaunchedCount() >= ShardCoordinator.MAX_ATTEMPTS);
+    }
+
+    @Test
+    public void shouldFailMachinesIfWorkersDoNotStart() throws Exception {
+        ShardCoordinator coordinator = new ShardCoordinator(machines, sourceDir, targetDir,
+                format, 2, (port, id) -> CompletableFuture.completedFuture(null));
+
+        DataGenerationStats stats = coordinator.run();
+
+        assertEquals(3, stats.getFilesWithErrors());
+    }
+
+    @Test
+    public void shouldNotRequeueMachineWhoseDataCannotBeCollected() throws Exception {
+        ShardCoordinator coordinator = new ShardCoordinator(machines.subList(0, 1), sourceDir,
+                targetDir, format, 1, (port, id) -> inThread(() -> reportMalformedStats(port, id)));
+
+        DataGenerationStats stats = coordinator.run();
+
+        assertEquals(1, stats.getFilesSeen());
+        assertEquals(1, stats.getFilesWithErrors());
+        assertEquals(0, coordinator.getRequeuedCount());
+        assertEquals(1, coordinator.getLaunchedCount());
+    }
+
+    @Test
+    public void shouldKillHungWorkerAndRequeueItsMachine() throws Exception {
+        AtomicInteger launches = new AtomicInteger(0);
+        ShardCoordinator coordinator = new ShardCoordinator(machines, sourceDir, targetDir,
+                format, 1, (port, id) -> launches.getAndIncrement() == 0
+                        ? inThread(() -> hangOnFirstMachine(port, id))
+                        : inThread(() -> new ShardWorker(port, id).run(sourceDir, generator)),
+                500L, TimeUnit.MILLISECONDS);
+
+        DataGenerationStats stats = coordinator.run();
+
+        assertEquals(new DataGenerationStats(3, 3, 0, 6, 0), stats);
+        assertEquals(1, coordinator.getRequeuedCount());
+        assertEquals(2, coordinator.getLaunchedCount());
+    }
+
+    @Test
+    public void shouldDecodeEncodedStats() {
+        DataGenerationStats stats = new DataGenerationStats(5, 4, 1, 300, 2);
+
+        assertEquals(stats, ShardCoordinator.decodeStats(ShardCoordinator.encodeStats(stats)));
+    }
+
+    /**
+     * Takes a machine and disconnects without reporting it as done.
+     */
+    private Object crashOnFirstMachine(int port, int id) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            out.println("HELLO " + id);
+            in.readLine();
+            out.println("NEXT");
+            return in.readLine();
+        }
+    }
+
+    /**
+     * Takes a machine and never reports back, until the connection is closed.
+     */
+    private Object hangOnFirstMachine(int port, int id) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            out.println("HELLO " + id);
+            in.readLine();
+            out.println("NEXT");
+            in.readLine();
+            return in.readLine();
+        }
+    }
+
+    /**
+     * Takes a machine and reports it as done with unreadable statistics.
+     */
+    private Object reportMalformedStats(int port, int id) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            out.println("HELLO " + id);
+            in.readLine();
+            out.println("NEXT");
+            in.readLine();
+            out.println("DONE malformed");
+            return in.readLine();
+        }
+    }
+
+    private CompletableFuture<?> inThread(Worker worker) {
+        CompletableFuture<Object> exit = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                exit.complete(worker.run());
+            } catch (Exception e) {
+                exit.completeExceptionally(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return exit;
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        Object run() throws Exception;
+    }
+
+}
@@ -0,0 +1,31 @@
+package de.hhu.stups.neurob.core.api;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads named after a common prefix and a running number,
+ * e.g. neurob-solver-1, neurob-solver-2, ...
+ * <p>
+ * Being daemons, the threads of shared executors do not keep the JVM alive.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger counter;
+
+    /**
+     * @param prefix Common prefix of the thread names
+     */
+    public DaemonThreadFactory(String prefix) {
+        this.prefix = prefix;
+        this.counter = new AtomicInteger(0);
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
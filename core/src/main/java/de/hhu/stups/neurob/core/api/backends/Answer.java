@@ -14,6 +14,8 @@ public enum Answer {
     TIMEOUT("TIMEOUT"),
     /** Predicate led to an error and thus was not solvable */
     ERROR("ERROR"),
+    /** Predicate was not solved, as the backend kept failing on the machine before */
+    SKIPPED("SKIPPED"),
     /** Predicate is either VALID or INVALID
      *
      * This entry is only for legacy purposes and should not be used if
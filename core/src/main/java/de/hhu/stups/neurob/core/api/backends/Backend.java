@@ -19,15 +19,19 @@ import de.prob.exception.ProBError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 public abstract class Backend {
 
@@ -39,6 +43,8 @@ public abstract class Backend {
     public static final long defaultTimeOut = 2500L;
     /** Unit of defaultTimeout */
     public static final TimeUnit defaultTimeUnit = TimeUnit.MILLISECONDS;
+    /** Default number of predicates sent to ProB in a single round trip by {@link #solvePredicates(List, MachineAccess)} */
+    public static final int DEFAULT_BATCH_SIZE = 16;
 
     private static final Logger log =
             LoggerFactory.getLogger(Backend.class);
@@ -158,6 +164,29 @@ public abstract class Backend {
         return preferences.without(without);
     }
 
+    /**
+     * @return All preferences set in an access when solving over it, i.e.
+     *         {@link #getPreferences()} including the implicit SMT and CLPFD defaults.
+     */
+    public BPreferences getSolvingPreferences() {
+        return preferences;
+    }
+
+    /**
+     * @param timeout Time until ProB shall time out
+     * @param timeUnit Unit of the time out
+     *
+     * @return {@link #getSolvingPreferences() Solving preferences} with the
+     *         TIME_OUT preference set to the given time out instead.
+     */
+    public BPreferences getSolvingPreferences(Long timeout, TimeUnit timeUnit) {
+        BPreference[] prefs = Stream.concat(
+                preferences.stream().filter(p -> !"TIME_OUT".equals(p.getName())),
+                Stream.of(BPreference.set("TIME_OUT", Long.toString(timeUnit.toMillis(timeout)))))
+                .toArray(BPreference[]::new);
+        return new BPreferences(prefs);
+    }
+
     /**
      * Checks if the predicate given is decidable or not by the given solver
      * with respect to the time out specified in the constructor.
@@ -269,19 +298,15 @@ public abstract class Backend {
     public Long measureEvalTime(BPredicate predicate, MachineAccess bMachine,
             Long timeOutValue, TimeUnit timeOutUnit)
             throws FormulaException {
-        // Set up thread for timeout check
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<Boolean> futureRes = executor.submit(
-                () -> decidePredicate(predicate, bMachine));
-
-        // Start thread and check for errors
-        Boolean isDecidable;
-        Long start, duration;
+        Long duration;
         try {
             log.trace("{}: Deciding predicate {}", this.toString(), predicate);
-            start = System.nanoTime(); // start measuring time
-            isDecidable = futureRes.get(timeOutValue, timeOutUnit);
-            duration = System.nanoTime() - start; // stop measuring
+            // Measured inside the call, so waiting for a free solver thread does not count
+            duration = SolveScheduler.getInstance().solve(() -> {
+                long start = System.nanoTime(); // start measuring time
+                boolean isDecidable = decidePredicate(predicate, bMachine);
+                return isDecidable ? System.nanoTime() - start : -1L;
+            }, bMachine, timeOutValue, timeOutUnit);
         } catch (IllegalStateException e) {
             bMachine.sendInterrupt();
             throw e;
@@ -290,7 +315,7 @@ public abstract class Backend {
             throw new FormulaException(
                     "ProBBackend encountered Problems with " + predicate, e);
         } catch (TimeoutException e) {
-            bMachine.sendInterrupt();
+            // The scheduler already interrupted the access
             log.warn("Timeout after {} {} for predicate {}",
                     getTimeOutValue(), getTimeOutUnit(), predicate);
             return -1L;
@@ -298,11 +323,9 @@ public abstract class Backend {
             bMachine.sendInterrupt();
             throw new FormulaException(
                     "Execution interrupted: " + e.getMessage(), e);
-        } finally {
-            executor.shutdown();
         }
 
-        return (isDecidable) ? duration : -1;
+        return duration;
     }
 
     /**
@@ -363,20 +386,17 @@ public abstract class Backend {
 
     public TimedAnswer solvePredicate(BPredicate predicate, MachineAccess access,
             Long timeout, TimeUnit timeUnit) throws FormulaException {
-        // Set up thread for timeout check
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<AnnotatedAnswer> futureRes = executor.submit(
-                () -> solvePredicateUntimed(predicate, access));
-
-        // Start thread and check for errors
+        // Start solving on the shared scheduler and check for errors
         AnnotatedAnswer answer;
-        Long start, duration;
+        long duration;
         log.trace("{}: Deciding predicate {}", this.toString(), predicate);
-        start = System.nanoTime(); // start measuring time
-        Boolean gotAnswer = false;
+        // Measured from when a solver thread picks up the call, so waiting
+        // for a free one does not count towards the runtime
+        AtomicLong start = new AtomicLong(-1L);
         try {
-            answer = futureRes.get(timeout, timeUnit);
-            gotAnswer = true;
+            return SolveScheduler.getInstance().solve(
+                    () -> solveTimed(predicate, access, timeout, timeUnit, start),
+                    access, timeout, timeUnit);
         } catch (IllegalStateException e) {
             access.sendInterrupt();
             // Forward the Illegal State, we really want to know when this happens.
@@ -385,9 +405,9 @@ public abstract class Backend {
             access.sendInterrupt();
             answer = new AnnotatedAnswer(Answer.ERROR, "ProBError: " + e);
         } catch (TimeoutException e) {
-            access.sendInterrupt();
+            // The scheduler already interrupted the access
             answer = new AnnotatedAnswer(Answer.TIMEOUT, "Timeout");
-            duration = System.nanoTime() - start;
+            duration = runtimeSince(start);
             log.warn("Timeout after {} {} (configured: {} {}) for predicate {}",
                     getTimeOutUnit().convert(duration, TimeUnit.NANOSECONDS), getTimeOutUnit(),
                     getTimeOutValue(), getTimeOutUnit(), predicate);
@@ -395,29 +415,337 @@ public abstract class Backend {
             access.sendInterrupt();
             String message = "Execution interrupted: " + e.getMessage();
             answer = new AnnotatedAnswer(Answer.ERROR, message);
-        } finally {
-            executor.shutdown();
         }
-        duration = System.nanoTime() - start; // stop measuring
+        duration = runtimeSince(start); // stop measuring
+        return answer.getTimedAnswer(duration);
+    }
+
+    /**
+     * Solves the given predicate on the current thread, measuring the
+     * runtime from now on.
+     * ProB itself times out after the given time out as well, so it does not
+     * keep on solving after the call was interrupted.
+     * The preferences are set before the measurement starts, so the
+     * commands setting them, e.g. when switching the preferences of a
+     * shared access, do not count towards the runtime.
+     *
+     * @param start Set to the time the solving started, in nano seconds
+     */
+    private TimedAnswer solveTimed(BPredicate predicate, MachineAccess access,
+            Long timeout, TimeUnit timeUnit, AtomicLong start) throws FormulaException {
+        BPreferences solvingPreferences = getSolvingPreferences(timeout, timeUnit);
+        access.setPreferences(solvingPreferences);
+        start.set(System.nanoTime()); // start measuring time
+        AnnotatedAnswer answer = solvePredicateUntimed(predicate, access, solvingPreferences);
+        return answer.getTimedAnswer(runtimeSince(start));
+    }
+
+    /**
+     * @param start Time a solver call started in nano seconds, or a negative
+     *         value if it never started
+     *
+     * @return Nano seconds passed since the call started, or 0 if it never started
+     */
+    private static long runtimeSince(AtomicLong start) {
+        long started = start.get();
+        return started < 0 ? 0L : System.nanoTime() - started;
+    }
+
+    /**
+     * Asynchronously solves the given predicate with respect to the time out
+     * specified in the constructor.
+     * <p>
+     * The returned future does not complete exceptionally on timeouts or
+     * solver errors; those are reported as {@link Answer#TIMEOUT} and
+     * {@link Answer#ERROR} respectively.
+     *
+     * @param predicate Predicate to solve
+     * @param access Access to the B machine the predicate gets decided over
+     *
+     * @return Future holding the timed answer
+     */
+    public CompletableFuture<TimedAnswer> solvePredicateAsync(BPredicate predicate, MachineAccess access) {
+        return solvePredicateAsync(predicate, access, getTimeOutValue(), getTimeOutUnit());
+    }
 
-        if (gotAnswer & answer.getUsedCommand() != null) {
-            CbcSolveCommand cmd = answer.getUsedCommand();
-            // Note: Conversion to Long and nano seconds should not be a problem.
-            // A long with 64 bits can store 584 years worth of nano seconds
-            duration = cmd.getMilliSeconds().longValue() * 1_000_000; // Translate nano seconds.
+    /**
+     * Asynchronously solves the given predicate with respect to the given time out.
+     * <p>
+     * The returned future does not complete exceptionally on timeouts or
+     * solver errors; those are reported as {@link Answer#TIMEOUT} and
+     * {@link Answer#ERROR} respectively.
+     *
+     * @param predicate Predicate to solve
+     * @param access Access to the B machine the predicate gets decided over
+     * @param timeout Time until the backend shall time out
+     * @param timeUnit Unit of the time out
+     *
+     * @return Future holding the timed answer
+     */
+    public CompletableFuture<TimedAnswer> solvePredicateAsync(BPredicate predicate, MachineAccess access,
+            Long timeout, TimeUnit timeUnit) {
+        log.trace("{}: Deciding predicate {} asynchronously", this.toString(), predicate);
+        AtomicLong start = new AtomicLong(-1L);
+        return SolveScheduler.getInstance()
+                .submit(() -> solveTimed(predicate, access, timeout, timeUnit, start),
+                        access, timeout, timeUnit)
+                .handle((answer, error) -> {
+                    if (error == null) {
+                        return answer;
+                    }
+                    long duration = runtimeSince(start);
+
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause()
+                            : error;
+                    if (cause instanceof TimeoutException) {
+                        log.warn("Timeout after {} {} (configured: {} {}) for predicate {}",
+                                timeUnit.convert(duration, TimeUnit.NANOSECONDS), timeUnit,
+                                timeout, timeUnit, predicate);
+                        return new TimedAnswer(Answer.TIMEOUT, duration, "Timeout");
+                    }
+
+                    if (access != null) {
+                        access.sendInterrupt();
+                    }
+                    String message = cause instanceof ProBError
+                            ? "ProBError: " + cause
+                            : "Execution interrupted: " + cause.getMessage();
+                    return new TimedAnswer(Answer.ERROR, duration, message);
+                });
+    }
+
+    /**
+     * Solves each of the given predicates with respect to the time out
+     * specified in the constructor.
+     * <p>
+     * The predicates are sent to ProB in batches of {@link #DEFAULT_BATCH_SIZE},
+     * each batch being executed in a single round trip.
+     *
+     * @param predicates Predicates to solve
+     * @param access Access to the B machine the predicates get decided over
+     *
+     * @return Answers in the same order as the predicates
+     *
+     * @throws FormulaException if the calling thread was interrupted while waiting
+     * @see #solvePredicatesAsync(List, MachineAccess, int)
+     */
+    public List<AnnotatedAnswer> solvePredicates(List<BPredicate> predicates, MachineAccess access)
+            throws FormulaException {
+        return solvePredicates(predicates, access, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Solves each of the given predicates with respect to the time out
+     * specified in the constructor.
+     * <p>
+     * The predicates are sent to ProB in batches of the given size,
+     * each batch being executed in a single round trip.
+     *
+     * @param predicates Predicates to solve
+     * @param access Access to the B machine the predicates get decided over
+     * @param batchSize Maximum number of predicates to send to ProB at once
+     *
+     * @return Answers in the same order as the predicates
+     *
+     * @throws FormulaException if the calling thread was interrupted while waiting
+     * @see #solvePredicatesAsync(List, MachineAccess, int)
+     */
+    public List<AnnotatedAnswer> solvePredicates(List<BPredicate> predicates, MachineAccess access,
+            int batchSize) throws FormulaException {
+        try {
+            return solvePredicatesAsync(predicates, access, batchSize).get();
+        } catch (InterruptedException | ExecutionException e) {
+            if (access != null) {
+                access.sendInterrupt();
+            }
+            throw new FormulaException(
+                    "Execution interrupted: " + e.getMessage(), e);
         }
-        return answer.getTimedAnswer(duration);
+    }
+
+    /**
+     * Asynchronously solves each of the given predicates with respect to the
+     * time out specified in the constructor.
+     * <p>
+     * The predicates are split into batches of the given size.
+     * All {@link CbcSolveCommand commands} of a batch are executed in a single
+     * round trip to ProB. As the TIME_OUT preference of this backend is set
+     * in the machine access, ProB enforces the timeout for each command itself;
+     * the batch as a whole is only interrupted if it exceeds the sum of the
+     * timeouts of its commands.
+     * If a batch fails or is interrupted, the predicates ProB did not answer
+     * are solved one by one instead, so a single faulty predicate does not
+     * affect the others.
+     * <p>
+     * The answers are untimed: only the runtime of the whole round trip
+     * can be measured, which says nothing about the single predicates.
+     * Use {@link #solvePredicate(BPredicate, MachineAccess)} where runtimes
+     * are needed, e.g. for labelling.
+     * <p>
+     * The batches are executed one after another, as the access can only
+     * process one command at a time.
+     *
+     * @param predicates Predicates to solve
+     * @param access Access to the B machine the predicates get decided over
+     * @param batchSize Maximum number of predicates to send to ProB at once
+     *
+     * @return Future holding the answers in the same order as the predicates
+     */
+    public CompletableFuture<List<AnnotatedAnswer>> solvePredicatesAsync(List<BPredicate> predicates,
+            MachineAccess access, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, but was " + batchSize);
+        }
+
+        CompletableFuture<List<AnnotatedAnswer>> answers =
+                CompletableFuture.completedFuture(new ArrayList<>());
+        for (int from = 0; from < predicates.size(); from += batchSize) {
+            List<BPredicate> batch = predicates.subList(from, Math.min(from + batchSize, predicates.size()));
+            answers = answers.thenCompose(collected -> solveBatchAsync(batch, access)
+                    .thenApply(batchAnswers -> {
+                        collected.addAll(batchAnswers);
+                        return collected;
+                    }));
+        }
+        return answers;
+    }
+
+    /**
+     * Executes the given predicates in a single round trip.
+     * Falls back to {@link #solvePredicateAsync(BPredicate, MachineAccess) one by one}
+     * solving for the predicates left unanswered if this fails.
+     */
+    private CompletableFuture<List<AnnotatedAnswer>> solveBatchAsync(List<BPredicate> batch,
+            MachineAccess access) {
+        if (batch.size() == 1) {
+            return solvePredicateAsync(batch.get(0), access)
+                    .thenApply(answer -> new ArrayList<>(Collections.singletonList(untimed(answer))));
+        }
+
+        // Create commands; predicates that cannot be translated are answered directly
+        AnnotatedAnswer[] answers = new AnnotatedAnswer[batch.size()];
+        CbcSolveCommand[] commands = new CbcSolveCommand[batch.size()];
+        List<CbcSolveCommand> executable = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                commands[i] = createCbcSolveCommand(batch.get(i), access);
+                executable.add(commands[i]);
+            } catch (FormulaException e) {
+                answers[i] = new AnnotatedAnswer(Answer.ERROR,
+                        "Execution interrupted: " + e.getMessage());
+            }
+        }
+
+        if (executable.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>(Arrays.asList(answers)));
+        }
+
+        long batchTimeout = getTimeOutUnit().toNanos(getTimeOutValue()) * executable.size();
+        log.trace("{}: Deciding batch of {} predicates", this.toString(), executable.size());
+        return SolveScheduler.getInstance()
+                .submit(() -> {
+                    access.setPreferences(preferences);
+                    access.execute(executable.toArray(new CbcSolveCommand[0]));
+                    return executable.size();
+                }, access, batchTimeout, TimeUnit.NANOSECONDS)
+                .handle((executed, error) -> {
+                    if (error != null) {
+                        log.debug("{}: Batch execution failed, solving unfinished predicates one by one",
+                                this.toString(), error);
+                    }
+                    // Commands of a failed batch that ProB already answered are kept
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (commands[i] != null && commands[i].getValue() != null) {
+                            answers[i] = toAnnotatedAnswer(commands[i]);
+                        }
+                    }
+                    return answers;
+                })
+                .thenCompose(batchAnswers -> solveUnansweredAsync(batch, batchAnswers, access));
+    }
+
+    /**
+     * Solves the predicates that have no answer yet one by one.
+     *
+     * @param predicates Predicates to answer
+     * @param answers Answers of the predicates so far; null entries get solved
+     */
+    private CompletableFuture<List<AnnotatedAnswer>> solveUnansweredAsync(List<BPredicate> predicates,
+            AnnotatedAnswer[] answers, MachineAccess access) {
+        CompletableFuture<List<AnnotatedAnswer>> collected =
+                CompletableFuture.completedFuture(new ArrayList<>());
+        for (int i = 0; i < predicates.size(); i++) {
+            BPredicate predicate = predicates.get(i);
+            AnnotatedAnswer known = answers[i];
+            collected = collected.thenCompose(list -> (known != null
+                    ? CompletableFuture.completedFuture(known)
+                    : solvePredicateAsync(predicate, access).thenApply(Backend::untimed))
+                    .thenApply(answer -> {
+                        list.add(answer);
+                        return list;
+                    }));
+        }
+        return collected;
+    }
+
+    /**
+     * Drops the runtime of an answer solved on its own, so it matches
+     * the answers of a batch.
+     */
+    static AnnotatedAnswer untimed(TimedAnswer answer) {
+        return new AnnotatedAnswer(answer.getAnswer(), answer.getMessage());
+    }
+
+    private AnnotatedAnswer toAnnotatedAnswer(CbcSolveCommand cmd) {
+        AnnotatedAnswer answer;
+        try {
+            answer = interpretResult(cmd);
+        } catch (IllegalStateException e) {
+            answer = new AnnotatedAnswer(Answer.ERROR, e.getMessage());
+        }
+        return new AnnotatedAnswer(answer.getAnswer(), answer.getMessage(), cmd);
     }
 
     public AnnotatedAnswer solvePredicateUntimed(BPredicate predicate, MachineAccess access)
             throws FormulaException {
+        return solvePredicateUntimed(predicate, access, preferences);
+    }
+
+    /**
+     * Solves the given predicate with the given preferences set in the access
+     * instead of the ones of this backend.
+     *
+     * @param predicate Predicate to solve
+     * @param access Access to the B machine the predicate gets decided over
+     * @param solvingPreferences Preferences to set, e.g. from
+     *         {@link #getSolvingPreferences(Long, TimeUnit)}
+     *
+     * @return Answer of the backend
+     *
+     * @throws FormulaException
+     */
+    public AnnotatedAnswer solvePredicateUntimed(BPredicate predicate, MachineAccess access,
+            BPreferences solvingPreferences) throws FormulaException {
         CbcSolveCommand cmd = createCbcSolveCommand(predicate, access);
 
         // set preferences
-        access.setPreferences(preferences);
+        access.setPreferences(solvingPreferences);
 
         access.execute(cmd); // FIXME: is it possible that access is null at training set generation?
 
+        return interpretResult(cmd);
+    }
+
+    /**
+     * Translates the outcome of an executed {@link CbcSolveCommand}
+     * into an {@link AnnotatedAnswer}.
+     *
+     * @param cmd Already executed command
+     *
+     * @return
+     */
+    private static AnnotatedAnswer interpretResult(CbcSolveCommand cmd) {
         // get value for result
         Answer res;
         String msg;
@@ -0,0 +1,32 @@
+package de.hhu.stups.neurob.core.api.backends;
+
+/**
+ * {@link TimedAnswer} of a {@link PortfolioBackend}, additionally stating
+ * which of the raced backends yielded the answer.
+ */
+public class PortfolioAnswer extends TimedAnswer {
+
+    private final Backend backend;
+
+    public PortfolioAnswer(TimedAnswer answer, Backend backend) {
+        super(answer.getAnswer(), answer.getNanoSeconds(), answer.getMessage());
+        this.backend = backend;
+    }
+
+    /**
+     * @return Backend that yielded this answer; {@code null} if no backend was raced.
+     */
+    public Backend getBackend() {
+        return backend;
+    }
+
+    @Override
+    public String toString() {
+        return "["
+               + "answer=" + answer + ", "
+               + "nanoSeconds=" + nanoSeconds + ", "
+               + "backend=" + backend
+               + (message != null ? ", message=" + message : "")
+               + "]";
+    }
+}
@@ -0,0 +1,328 @@
+package de.hhu.stups.neurob.core.api.backends;
+
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MultiMachineAccess;
+import de.hhu.stups.neurob.core.exceptions.FormulaException;
+import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
+import de.prob.animator.command.CbcSolveCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Backend that races several configured backends against each other.
+ * <p>
+ * Each raced backend solves the predicate concurrently over its own
+ * {@link MachineAccess}. The first {@link Answer#VALID VALID} or
+ * {@link Answer#INVALID INVALID} answer is returned and the remaining
+ * backends are interrupted.
+ * If no backend is able to decide the predicate, the most informative
+ * answer is returned, i.e. {@link Answer#UNKNOWN} before
+ * {@link Answer#TIMEOUT} before {@link Answer#ERROR}.
+ * <p>
+ * Which backends are raced, and in which order they are started,
+ * is decided by a {@link Selection}, which defaults to racing all backends
+ * in the order given on construction.
+ * The answers are {@link PortfolioAnswer PortfolioAnswers}, stating the
+ * backend that yielded them.
+ */
+public class PortfolioBackend extends Backend {
+
+    private final List<Backend> backends;
+    private final Selection selection;
+
+    /**
+     * Accesses for each raced backend, keyed by the access handed to this backend.
+     * They are closed once the handed access is released or closed.
+     */
+    private final Map<MachineAccess, MultiMachineAccess> accessMap;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(PortfolioBackend.class);
+
+    /**
+     * Hook deciding which backends to race over a given predicate.
+     */
+    @FunctionalInterface
+    public interface Selection {
+        /**
+         * Selects the backends to race over the given predicate.
+         * The order of the returned list dictates the order in which the
+         * backends are started; on ties, earlier backends are preferred.
+         *
+         * @param predicate Predicate to be solved
+         * @param access Access to the machine the predicate belongs to; might be {@code null}
+         * @param candidates All backends of the portfolio, in order of construction
+         *
+         * @return Non-empty subset of the candidates
+         */
+        List<Backend> select(BPredicate predicate, MachineAccess access, List<Backend> candidates);
+    }
+
+    /**
+     * Races all given backends in the given order.
+     * The timeout is set to the maximum timeout over the backends.
+     *
+     * @param backends Backends to race
+     */
+    public PortfolioBackend(Backend... backends) {
+        this((predicate, access, candidates) -> candidates, backends);
+    }
+
+    /**
+     * The timeout is set to the maximum timeout over the backends.
+     *
+     * @param selection Decides which backends to race for each predicate
+     * @param backends Backends to race
+     */
+    public PortfolioBackend(Selection selection, Backend... backends) {
+        super(maxTimeout(backends), TimeUnit.MILLISECONDS);
+        this.backends = Collections.unmodifiableList(Arrays.asList(backends));
+        this.selection = selection;
+        // Identity, as distinct accesses to the same machine must not share their raced accesses
+        this.accessMap = Collections.synchronizedMap(new IdentityHashMap<>());
+    }
+
+    private static long maxTimeout(Backend... backends) {
+        if (backends.length == 0) {
+            throw new IllegalArgumentException("A portfolio needs at least one backend");
+        }
+        return Arrays.stream(backends)
+                .mapToLong(b -> b.getTimeOutUnit().toMillis(b.getTimeOutValue()))
+                .max()
+                .getAsLong();
+    }
+
+    @Override
+    public String getName() {
+        return "Portfolio";
+    }
+
+    /**
+     * A portfolio does not map to a single solver of ProB; where a single
+     * solver is needed, the one of the first backend is used.
+     */
+    @Override
+    public CbcSolveCommand.Solvers toCbcEnum() {
+        return backends.get(0).toCbcEnum();
+    }
+
+    /**
+     * Creates the command of the backend that is started first over the
+     * given predicate. Solving with the portfolio itself races the backends
+     * instead of executing a single command.
+     */
+    @Override
+    public CbcSolveCommand createCbcSolveCommand(BPredicate predicate, MachineAccess access)
+            throws FormulaException {
+        List<Backend> raced = selection.select(predicate, access, backends);
+        Backend first = raced == null || raced.isEmpty() ? backends.get(0) : raced.get(0);
+        return first.createCbcSolveCommand(predicate, access);
+    }
+
+    /**
+     * Races the backends from the calling thread and measures the runtime
+     * of the winner.
+     *
+     * @return Time needed in nano seconds or -1 if no backend could decide
+     *         the predicate in time
+     */
+    @Override
+    public Long measureEvalTime(BPredicate predicate, MachineAccess bMachine,
+            Long timeOutValue, TimeUnit timeOutUnit) throws FormulaException {
+        TimedAnswer answer = solvePredicate(predicate, bMachine, timeOutValue, timeOutUnit);
+        return Answer.isSolvable(answer.getAnswer()) ? answer.getNanoSeconds() : -1L;
+    }
+
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    @Override
+    public TimedAnswer solvePredicate(BPredicate predicate, MachineAccess access,
+            Long timeout, TimeUnit timeUnit) throws FormulaException {
+        try {
+            return solvePredicateAsync(predicate, access, timeout, timeUnit).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new FormulaException(
+                    "Execution interrupted: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public AnnotatedAnswer solvePredicateUntimed(BPredicate predicate, MachineAccess access)
+            throws FormulaException {
+        TimedAnswer answer = solvePredicate(predicate, access);
+        return new AnnotatedAnswer(answer.getAnswer(), answer.getMessage());
+    }
+
+    @Override
+    public CompletableFuture<TimedAnswer> solvePredicateAsync(BPredicate predicate,
+            MachineAccess access, Long timeout, TimeUnit timeUnit) {
+        List<Backend> raced = selection.select(predicate, access, backends);
+        if (raced == null || raced.isEmpty()) {
+            return CompletableFuture.completedFuture(new PortfolioAnswer(
+                    new TimedAnswer(Answer.ERROR, 0L, "No backend selected for racing"), null));
+        }
+
+        Map<Backend, MachineAccess> accesses;
+        try {
+            accesses = getAccesses(access, raced);
+        } catch (MachineAccessException e) {
+            log.warn("Unable to set up accesses for racing over {}", access, e);
+            return CompletableFuture.completedFuture(new PortfolioAnswer(
+                    new TimedAnswer(Answer.ERROR, 0L, "Unable to access machine: " + e.getMessage()),
+                    null));
+        }
+
+        log.trace("{}: Racing {} over predicate {}", this, raced, predicate);
+        long timeoutNanos = timeUnit.toNanos(timeout);
+        CompletableFuture<TimedAnswer> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(raced.size());
+        Map<Backend, TimedAnswer> answers = new ConcurrentHashMap<>();
+        Map<Backend, CompletableFuture<TimedAnswer>> running = new HashMap<>();
+
+        for (Backend b : raced) {
+            if (winner.isDone()) {
+                // An earlier backend already decided the predicate
+                break;
+            }
+            // No racer runs longer than it would on its own
+            long racerTimeout = Math.min(timeoutNanos, b.getTimeOutUnit().toNanos(b.getTimeOutValue()));
+            CompletableFuture<TimedAnswer> race = b.solvePredicateAsync(
+                    predicate, accesses.get(b), racerTimeout, TimeUnit.NANOSECONDS);
+            running.put(b, race);
+            race.whenComplete((result, error) -> {
+                TimedAnswer answer = result != null
+                        ? result
+                        : new TimedAnswer(Answer.ERROR, 0L, "Execution interrupted: " + error);
+                answers.put(b, answer);
+                if (Answer.isSolvable(answer.getAnswer())) {
+                    winner.complete(new PortfolioAnswer(answer, b));
+                } else if (pending.decrementAndGet() == 0) {
+                    winner.complete(bestUndecided(raced, answers));
+                }
+            });
+        }
+
+        // Interrupt the losers
+        return winner.whenComplete((answer, error) -> running.forEach((b, race) -> {
+            if (!race.isDone()) {
+                log.trace("{}: Interrupting {}", this, b);
+                accesses.get(b).sendInterrupt();
+            }
+        }));
+    }
+
+    /**
+     * Races each predicate on its own; batching does not apply to portfolios.
+     */
+    @Override
+    public CompletableFuture<List<AnnotatedAnswer>> solvePredicatesAsync(List<BPredicate> predicates,
+            MachineAccess access, int batchSize) {
+        CompletableFuture<List<AnnotatedAnswer>> answers =
+                CompletableFuture.completedFuture(new ArrayList<>());
+        for (BPredicate predicate : predicates) {
+            answers = answers.thenCompose(collected -> solvePredicateAsync(predicate, access)
+                    .thenApply(answer -> {
+                        collected.add(untimed(answer));
+                        return collected;
+                    }));
+        }
+        return answers;
+    }
+
+    private PortfolioAnswer bestUndecided(List<Backend> raced, Map<Backend, TimedAnswer> answers) {
+        for (Answer preferred : new Answer[]{Answer.UNKNOWN, Answer.TIMEOUT, Answer.ERROR}) {
+            for (Backend b : raced) {
+                TimedAnswer answer = answers.get(b);
+                if (answer != null && preferred.equals(answer.getAnswer())) {
+                    return new PortfolioAnswer(answer, b);
+                }
+            }
+        }
+        // Fall back to the first backend's answer
+        Backend first = raced.get(0);
+        return new PortfolioAnswer(answers.get(first), first);
+    }
+
+    /**
+     * Returns one access per raced backend.
+     * <p>
+     * If the given access already is a {@link MultiMachineAccess} over the
+     * raced backends, its accesses are used. Otherwise, a multi access is
+     * created for the given access and closed as soon as the given access is
+     * {@link MachineAccess#onRelease released} to its pool or closed;
+     * the accesses of its backends are created concurrently on the first race.
+     */
+    Map<Backend, MachineAccess> getAccesses(MachineAccess access, List<Backend> raced)
+            throws MachineAccessException {
+        if (access == null) {
+            throw new MachineAccessException("Racing backends requires a machine access");
+        }
+        if (access instanceof MultiMachineAccess) {
+            MultiMachineAccess multiAccess = (MultiMachineAccess) access;
+            if (raced.stream().allMatch(b -> multiAccess.getAccess(b) != null)) {
+                return raced.stream().collect(Collectors.toMap(b -> b, multiAccess::getAccess));
+            }
+        }
+
+        MultiMachineAccess multiAccess = accessMap.get(access);
+        if (multiAccess == null) {
+            synchronized (accessMap) {
+                multiAccess = accessMap.get(access);
+                if (multiAccess == null) {
+                    multiAccess = new MultiMachineAccess(
+                            access.getSource(),
+                            access.getMachineType(),
+                            backends.toArray(new Backend[0]),
+                            access.isLoaded());
+                    accessMap.put(access, multiAccess);
+
+                    MultiMachineAccess created = multiAccess;
+                    access.onRelease(a -> {
+                        accessMap.remove(a);
+                        created.close();
+                    });
+                }
+            }
+        }
+
+        return multiAccess.getAccesses(raced);
+    }
+
+    @Override
+    public String getDescriptionString() {
+        return getName() + backends.stream()
+                .map(Backend::getDescriptionString)
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PortfolioBackend) {
+            PortfolioBackend other = (PortfolioBackend) o;
+            return this.backends.equals(other.backends);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return getDescriptionString().hashCode();
+    }
+}
@@ -0,0 +1,259 @@
+package de.hhu.stups.neurob.core.api.backends;
+
+import de.hhu.stups.neurob.core.api.DaemonThreadFactory;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared executor for solver calls that are subject to a timeout.
+ * <p>
+ * Instead of spawning a fresh thread for each predicate to solve,
+ * the {@link Backend backends} submit their solver calls to a bounded pool
+ * of worker threads. A single deadline thread keeps track of the timeouts
+ * and sends an interrupt to the respective {@link MachineAccess}
+ * as soon as a call exceeds its time budget.
+ * <p>
+ * The deadline of a call starts as soon as a worker picks it up,
+ * so time spent waiting for a free worker does not count towards the timeout.
+ * Calls submitted from within a running call, e.g. by a backend racing
+ * others, are run on the submitting worker instead of waiting for another one.
+ * <p>
+ * The number of worker threads of the {@link #getInstance() shared instance}
+ * can be set via the system property {@value #THREADS_PROPERTY}.
+ */
+public class SolveScheduler {
+
+    /** System property to configure the number of solver threads of the shared instance. */
+    public static final String THREADS_PROPERTY = "neurob.solver.threads";
+
+    private static final SolveScheduler instance = new SolveScheduler(defaultThreadCount());
+
+    private final ThreadPoolExecutor solveExecutor;
+    private final ScheduledThreadPoolExecutor deadlines;
+
+    /** Number of submitted calls that did not complete yet. */
+    private final AtomicInteger inFlight;
+    /** Number of calls that were interrupted due to their deadline. */
+    private final AtomicLong interrupted;
+
+    /** Scheduler whose call the current thread is running, if any */
+    private static final ThreadLocal<SolveScheduler> runningScheduler = new ThreadLocal<>();
+
+    private static final Logger log =
+            LoggerFactory.getLogger(SolveScheduler.class);
+
+    /**
+     * @param threads Maximum number of solver calls running concurrently
+     */
+    public SolveScheduler(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of solver threads must be positive, but was " + threads);
+        }
+
+        this.solveExecutor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new DaemonThreadFactory("neurob-solver"));
+        this.solveExecutor.allowCoreThreadTimeOut(true);
+
+        this.deadlines = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("neurob-solver-deadlines"));
+        this.deadlines.setRemoveOnCancelPolicy(true);
+
+        this.inFlight = new AtomicInteger(0);
+        this.interrupted = new AtomicLong(0L);
+    }
+
+    /**
+     * @return Scheduler shared by all backends.
+     */
+    public static SolveScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Submits the given solver call.
+     * <p>
+     * If the call does not finish within the given timeout, the returned
+     * future completes exceptionally with a {@link TimeoutException}
+     * and an interrupt is sent to the given access.
+     *
+     * @param task Solver call to execute
+     * @param access Machine access the task operates on; will be interrupted on timeout.
+     *         Might be {@code null}.
+     * @param timeout Time after which the call is interrupted
+     * @param unit Unit of the timeout
+     * @param <T> Result type of the task
+     *
+     * @return Future holding the result of the task.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, MachineAccess access,
+            long timeout, TimeUnit unit) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Guards that each call leaves the in-flight count exactly once
+        AtomicBoolean released = new AtomicBoolean(false);
+        inFlight.incrementAndGet();
+
+        if (runningScheduler.get() == this) {
+            // Nested call of a running solver call: waiting for another worker
+            // could deadlock once all workers wait, so it runs right here
+            run(task, result, released, access, timeout, unit);
+            return result;
+        }
+
+        try {
+            solveExecutor.execute(() -> {
+                if (result.isDone()) {
+                    // Cancelled while still waiting for a worker
+                    release(released);
+                    return;
+                }
+                run(task, result, released, access, timeout, unit);
+            });
+        } catch (RejectedExecutionException e) {
+            release(released);
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs the given call on the current thread, starting its deadline.
+     */
+    private <T> void run(Callable<T> task, CompletableFuture<T> result, AtomicBoolean released,
+            MachineAccess access, long timeout, TimeUnit unit) {
+        SolveScheduler outer = runningScheduler.get();
+        runningScheduler.set(this);
+        ScheduledFuture<?> deadline = deadlines.schedule(
+                () -> expire(result, released, access, timeout, unit),
+                timeout, unit);
+        try {
+            T value = task.call();
+            release(released);
+            result.complete(value);
+        } catch (Throwable t) {
+            release(released);
+            result.completeExceptionally(t);
+        } finally {
+            deadline.cancel(false);
+            runningScheduler.set(outer);
+        }
+    }
+
+    /**
+     * Executes the given solver call and blocks until it is finished
+     * or its timeout is reached.
+     *
+     * @param task Solver call to execute
+     * @param access Machine access the task operates on; will be interrupted on timeout.
+     *         Might be {@code null}.
+     * @param timeout Time after which the call is interrupted
+     * @param unit Unit of the timeout
+     * @param <T> Result type of the task
+     *
+     * @return Result of the task.
+     *
+     * @throws TimeoutException if the task did not finish in time
+     * @throws ExecutionException if the task threw an exception
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    public <T> T solve(Callable<T> task, MachineAccess access, long timeout, TimeUnit unit)
+            throws TimeoutException, ExecutionException, InterruptedException {
+        CompletableFuture<T> result = submit(task, access, timeout, unit);
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw (TimeoutException) e.getCause();
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            throw e;
+        }
+    }
+
+    private void expire(CompletableFuture<?> result, AtomicBoolean released,
+            MachineAccess access, long timeout, TimeUnit unit) {
+        if (result.isDone() || !release(released)) {
+            return;
+        }
+        result.completeExceptionally(
+                new TimeoutException("Solver call exceeded " + timeout + " " + unit));
+
+        interrupted.incrementAndGet();
+        if (access != null) {
+            try {
+                access.sendInterrupt();
+            } catch (Exception e) {
+                log.warn("Unable to interrupt {} after timeout", access, e);
+            }
+        }
+    }
+
+    /**
+     * Decreases the in-flight count if the call was not already released.
+     *
+     * @return Whether this invocation released the call.
+     */
+    private boolean release(AtomicBoolean released) {
+        if (released.compareAndSet(false, true)) {
+            inFlight.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Number of submitted solver calls that did not complete yet.
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return Number of solver calls that were interrupted due to reaching their deadline.
+     */
+    public long getInterruptedCount() {
+        return interrupted.get();
+    }
+
+    /**
+     * @return Maximum number of solver calls running concurrently.
+     */
+    public int getThreadCount() {
+        return solveExecutor.getMaximumPoolSize();
+    }
+
+    private static int defaultThreadCount() {
+        int fallback = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        String configured = System.getProperty(THREADS_PROPERTY);
+        if (configured == null) {
+            return fallback;
+        }
+
+        try {
+            return Math.max(1, Integer.parseInt(configured.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Could not parse {}={}, using {} solver threads",
+                    THREADS_PROPERTY, configured, fallback);
+            return fallback;
+        }
+    }
+}
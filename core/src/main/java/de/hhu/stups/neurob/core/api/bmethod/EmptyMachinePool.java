@@ -0,0 +1,328 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import de.hhu.stups.neurob.core.api.backends.SolveScheduler;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
+import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
+import de.prob.animator.command.CbcSolveCommand;
+import de.prob.animator.command.CbcSolveCommand.Solvers;
+import de.prob.animator.domainobjects.ClassicalB;
+import de.prob.animator.domainobjects.EvalResult;
+import de.prob.animator.domainobjects.FormulaExpand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Pool of loaded accesses to {@link BMachine#EMPTY}, which are used to parse
+ * and solve predicates without any machine context.
+ * <p>
+ * Instead of starting a new ProB cli for each such predicate, an access is
+ * {@link #checkOut(BPreferences) checked out} from the pool and
+ * {@link #checkIn(MachineAccess) checked in} again after use.
+ * A checked out access must not be used by anyone but the borrower
+ * and must not be closed by it.
+ * <p>
+ * The pool is partitioned by the preferences an access was checked out for,
+ * so that an access checked out for a given set of preferences already has
+ * them applied. Preferences the borrower sets in addition, e.g. the ones of
+ * a backend solving over the access, do not move it to another partition.
+ * Before handing out an access and on check-in, the access is subject to a
+ * health check; accesses failing it are closed and replaced.
+ * <p>
+ * The number of idle accesses kept per partition of the
+ * {@link #getInstance() shared instance} can be set via the system property
+ * {@value #MAX_IDLE_PROPERTY}.
+ */
+public class EmptyMachinePool {
+
+    /** System property to configure the number of idle accesses per partition of the shared instance. */
+    public static final String MAX_IDLE_PROPERTY = "neurob.empty.pool.size";
+
+    /** Seconds the default health check waits for ProB to answer its probe */
+    static final long PROBE_TIMEOUT = 5L;
+
+    private static EmptyMachinePool instance;
+
+    private final AccessFactory factory;
+    private final Predicate<MachineAccess> healthCheck;
+    private final int maxIdle;
+
+    /** Idle accesses, partitioned by their preferences */
+    private final Map<BPreferences, Deque<MachineAccess>> idle;
+    /** Preferences the checked out accesses were checked out for */
+    private final Map<MachineAccess, BPreferences> checkedOut;
+
+    private final AtomicLong created;
+    private final AtomicLong reused;
+    private final AtomicLong discarded;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(EmptyMachinePool.class);
+
+    /**
+     * Creates new accesses for the pool.
+     */
+    @FunctionalInterface
+    public interface AccessFactory {
+        MachineAccess create() throws MachineAccessException;
+    }
+
+    /**
+     * @param maxIdle Maximum number of idle accesses kept per partition;
+     *         further checked in accesses are closed.
+     */
+    public EmptyMachinePool(int maxIdle) {
+        this(maxIdle, () -> BMachine.EMPTY.spawnMachineAccess(), EmptyMachinePool::isResponsive);
+    }
+
+    /**
+     * @param maxIdle Maximum number of idle accesses kept per partition;
+     *         further checked in accesses are closed.
+     * @param factory Creates new accesses
+     * @param healthCheck Decides whether an access can still be used
+     */
+    public EmptyMachinePool(int maxIdle, AccessFactory factory, Predicate<MachineAccess> healthCheck) {
+        this.maxIdle = maxIdle;
+        this.factory = factory;
+        this.healthCheck = healthCheck;
+        this.idle = new ConcurrentHashMap<>();
+        this.checkedOut = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.created = new AtomicLong(0L);
+        this.reused = new AtomicLong(0L);
+        this.discarded = new AtomicLong(0L);
+    }
+
+    /**
+     * @return Pool shared by the whole process.
+     */
+    public static synchronized EmptyMachinePool getInstance() {
+        if (instance == null) {
+            instance = new EmptyMachinePool(defaultMaxIdle());
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::close));
+        }
+        return instance;
+    }
+
+    /**
+     * Checks out an access without any preferences set.
+     *
+     * @return Loaded access to the empty machine
+     *
+     * @throws MachineAccessException if no new access could be created
+     */
+    public MachineAccess checkOut() throws MachineAccessException {
+        return checkOut(new BPreferences());
+    }
+
+    /**
+     * Checks out an access in which the given preferences are set.
+     *
+     * @param preferences Preferences the access shall have
+     *
+     * @return Loaded access to the empty machine
+     *
+     * @throws MachineAccessException if no new access could be created
+     */
+    public MachineAccess checkOut(BPreferences preferences) throws MachineAccessException {
+        Deque<MachineAccess> partition = idle.get(preferences);
+        if (partition != null) {
+            MachineAccess access;
+            while ((access = partition.pollFirst()) != null) {
+                if (isHealthy(access)) {
+                    reused.incrementAndGet();
+                    checkedOut.put(access, preferences);
+                    return access;
+                }
+                discard(access);
+            }
+        }
+
+        MachineAccess access = factory.create();
+        access.setPreferences(preferences);
+        created.incrementAndGet();
+        log.debug("Created new access to empty machine for preferences {}", preferences);
+        checkedOut.put(access, preferences);
+        return access;
+    }
+
+    /**
+     * Returns a previously checked out access to the pool.
+     * The access is put into the partition of the preferences it has now;
+     * as preferences set on an access cannot be unset, an access whose
+     * borrower set further preferences is only handed out for those.
+     *
+     * @param access Access to return; null is ignored
+     */
+    public void checkIn(MachineAccess access) {
+        if (access == null) {
+            return;
+        }
+        checkedOut.remove(access);
+        BPreferences preferences = access.getPreferences();
+        if (!isHealthy(access)) {
+            discard(access);
+            return;
+        }
+
+        Deque<MachineAccess> partition =
+                idle.computeIfAbsent(preferences, p -> new ConcurrentLinkedDeque<>());
+        boolean pooled;
+        // Size check and insertion must not interleave with other check-ins
+        synchronized (partition) {
+            pooled = partition.size() < maxIdle && partition.offerFirst(access);
+        }
+        if (!pooled) {
+            discard(access);
+        }
+    }
+
+    /**
+     * Closes the given checked out access instead of returning it to the pool,
+     * e.g. after it stopped responding.
+     *
+     * @param access Access to discard
+     */
+    public void discard(MachineAccess access) {
+        checkedOut.remove(access);
+        discarded.incrementAndGet();
+        try {
+            access.close();
+        } catch (Exception e) {
+            log.warn("Unable to close pooled access {}", access, e);
+        }
+    }
+
+    /**
+     * Creates accesses for the given preferences until the respective
+     * partition holds the given number of idle accesses.
+     *
+     * @param count Number of idle accesses to provide
+     * @param preferences Preferences of the accesses
+     *
+     * @throws MachineAccessException if an access could not be created
+     */
+    public void warmUp(int count, BPreferences preferences) throws MachineAccessException {
+        List<MachineAccess> accesses = new ArrayList<>();
+        int missing = Math.min(count, maxIdle) - getIdleCount(preferences);
+        for (int i = 0; i < missing; i++) {
+            MachineAccess access = factory.create();
+            access.setPreferences(preferences);
+            created.incrementAndGet();
+            checkedOut.put(access, preferences);
+            accesses.add(access);
+        }
+        accesses.forEach(this::checkIn);
+    }
+
+    /**
+     * Closes all idle accesses.
+     */
+    public void close() {
+        idle.values().forEach(partition -> {
+            MachineAccess access;
+            while ((access = partition.pollFirst()) != null) {
+                access.close();
+            }
+        });
+        log.debug("Closed pool of empty machine accesses; {}", this);
+    }
+
+    public int getIdleCount(BPreferences preferences) {
+        Deque<MachineAccess> partition = idle.get(preferences);
+        return partition != null ? partition.size() : 0;
+    }
+
+    /**
+     * @return Number of accesses created by this pool.
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return Number of check-outs served by an idle access.
+     */
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    /**
+     * @return Number of accesses closed due to failed health checks or a full pool.
+     */
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    private boolean isHealthy(MachineAccess access) {
+        try {
+            return healthCheck.test(access);
+        } catch (Exception e) {
+            log.debug("Health check failed for {}", access, e);
+            return false;
+        }
+    }
+
+    /**
+     * Default health check: the access is still loaded and ProB answers
+     * a trivial predicate within {@value #PROBE_TIMEOUT} seconds.
+     * A hung or crashed ProB cli stays loaded, hence the probe.
+     */
+    static boolean isResponsive(MachineAccess access) {
+        if (!access.isLoaded() || access.getStateSpace() == null) {
+            return false;
+        }
+
+        CbcSolveCommand probe = new CbcSolveCommand(
+                new ClassicalB("1=1", FormulaExpand.EXPAND), Solvers.PROB);
+        try {
+            SolveScheduler.getInstance().solve(() -> {
+                access.execute(probe);
+                return probe;
+            }, access, PROBE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.debug("Access {} did not answer the health probe", access, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return EvalResult.TRUE.equals(probe.getValue());
+    }
+
+    private static int defaultMaxIdle() {
+        int fallback = Runtime.getRuntime().availableProcessors();
+        String configured = System.getProperty(MAX_IDLE_PROPERTY);
+        if (configured == null) {
+            return fallback;
+        }
+
+        try {
+            return Math.max(0, Integer.parseInt(configured.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Could not parse {}={}, keeping up to {} idle accesses",
+                    MAX_IDLE_PROPERTY, configured, fallback);
+            return fallback;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EmptyMachinePool{"
+               + "created=" + created + ", "
+               + "reused=" + reused + ", "
+               + "discarded=" + discarded + "}";
+    }
+}
@@ -28,9 +28,14 @@ public class MachineAccess {
     protected StateSpace stateSpace = null;
 
     protected List<Consumer<MachineAccess>> closeHandlers;
+    /** Handlers called once the current user is done with this access */
+    protected final List<Consumer<MachineAccess>> releaseHandlers;
 
     protected BPreferences preferences;
 
+    /** Parsed formulae of the currently loaded state space */
+    protected final ParseCache parseCache;
+
     private static final Logger log =
             LoggerFactory.getLogger(MachineAccess.class);
 
@@ -44,8 +49,10 @@ public class MachineAccess {
         this.source = source;
         this.machineType = machineType;
         this.closeHandlers = new ArrayList<>();
+        this.releaseHandlers = new ArrayList<>();
 
         this.preferences = new BPreferences(); // empty preferences
+        this.parseCache = new ParseCache();
 
         if (initialise) {
             load();
@@ -73,6 +80,7 @@ public class MachineAccess {
             stateSpace.kill();
             isLoaded = false;
         }
+        parseCache.invalidate();
 
         stateSpace = loadStateSpace(source);
         isLoaded = true;
@@ -99,6 +107,13 @@ public class MachineAccess {
         return isLoaded;
     }
 
+    /**
+     * @return Preferences currently set in this access.
+     */
+    public BPreferences getPreferences() {
+        return preferences;
+    }
+
     public void setPreferences(BPreferences preferences) {
         // Gather new preferences which were not previously present
         List<BPreference> newPrefs = preferences.stream()
@@ -168,10 +183,43 @@ public class MachineAccess {
 
     }
 
+    /**
+     * Parses the given formula in context of the loaded machine.
+     * <p>
+     * Parsed formulae are cached until the machine is reloaded or closed,
+     * so repeatedly parsing the same formula does not cause repeated
+     * round trips to ProB. The returned element is hence shared with other
+     * callers and its AST must not be modified; use
+     * {@link #parseMutableFormula(BPredicate)} to do so.
+     *
+     * @param formula Formula to parse
+     *
+     * @return Parsed formula
+     */
     public IEvalElement parseFormula(BPredicate formula) {
+        return parseCache.get(formula, machineType, this::parseMutableFormula);
+    }
+
+    /**
+     * Parses the given formula in context of the loaded machine,
+     * bypassing the cache. The caller owns the returned element and may
+     * modify its AST, e.g. to normalise identifiers.
+     *
+     * @param formula Formula to parse
+     *
+     * @return Freshly parsed formula
+     */
+    public IEvalElement parseMutableFormula(BPredicate formula) {
         return stateSpace.getModel().parseFormula(formula.toString(), FormulaExpand.EXPAND);
     }
 
+    /**
+     * @return Cache of the formulae parsed over this access, e.g. to inspect its hit rate.
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
     /**
      * Spawns another machine access, which accesses the same machine but
      * does not contain any {@link BPreference B preferences} yet.
@@ -187,12 +235,14 @@ public class MachineAccess {
      * Close connection to B machine.
      */
     public void close() {
-        log.debug("Closed access to {}", source);
+        log.debug("Closed access to {}; {}", source, parseCache);
         if (stateSpace != null) {
             stateSpace.kill();
         }
         isLoaded = false;
+        parseCache.invalidate();
 
+        notifyReleased();
         closeHandlers.forEach(h -> h.accept(this));
     }
 
@@ -243,4 +293,31 @@ public class MachineAccess {
     public void onClose(Consumer<MachineAccess> closeHandler) {
         closeHandlers.add(closeHandler);
     }
+
+    /**
+     * Calls the releaseHandler once the current user is done with this
+     * access, i.e. when it is {@link MachineAccessPool#release(MachineAccess)
+     * released} to a pool or closed, whichever happens first.
+     * Other than close handlers, release handlers are only called once,
+     * so pooled accesses do not accumulate them over several borrows.
+     *
+     * @param releaseHandler
+     */
+    public void onRelease(Consumer<MachineAccess> releaseHandler) {
+        synchronized (releaseHandlers) {
+            releaseHandlers.add(releaseHandler);
+        }
+    }
+
+    /**
+     * Calls and discards the release handlers registered so far.
+     */
+    protected void notifyReleased() {
+        List<Consumer<MachineAccess>> handlers;
+        synchronized (releaseHandlers) {
+            handlers = new ArrayList<>(releaseHandlers);
+            releaseHandlers.clear();
+        }
+        handlers.forEach(h -> h.accept(this));
+    }
 }
@@ -0,0 +1,422 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
+import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of loaded machine accesses, shared by all threads of the process.
+ * <p>
+ * Loading a machine starts a ProB cli, which is costly. Instead of
+ * spawning a new access for each use, an access is
+ * {@link #borrow(BMachine, BPreferences) borrowed} from the pool and
+ * {@link #release(MachineAccess) released} again after use.
+ * A borrowed access is exclusive to its borrower, who must not close it.
+ * Resources the borrower ties to the access can be freed by
+ * {@link MachineAccess#onRelease(java.util.function.Consumer) release handlers}.
+ * <p>
+ * Accesses are keyed by the machine's location, a sha512 hash over its
+ * contents and the files it depends on (see {@link MachineDependencies}),
+ * and the preferences set in the access; hence a machine that changed on
+ * disk, also in an included or seen machine, is loaded anew. An access is
+ * returned to the pool under the preferences it has on release, so
+ * preferences a borrower set in addition are never handed to a borrower
+ * that did not ask for them.
+ * <p>
+ * The number of live accesses, borrowed or idle, is bounded. If a new access
+ * is needed while the bound is reached, the least recently used idle access
+ * is closed. If all live accesses are borrowed, the borrower waits until one
+ * is released; if none is released within the borrow timeout, borrowing fails,
+ * so borrowers holding several accesses at once can not deadlock indefinitely.
+ * The bound and timeout of the {@link #getInstance() shared instance} can be
+ * set via the system properties {@value #MAX_LIVE_PROPERTY} and
+ * {@value #BORROW_TIMEOUT_PROPERTY}.
+ */
+public class MachineAccessPool {
+
+    /** System property to configure the maximum number of live accesses of the shared instance. */
+    public static final String MAX_LIVE_PROPERTY = "neurob.pool.max.live";
+    /** System property to configure how many seconds a borrower of the shared instance waits at most. */
+    public static final String BORROW_TIMEOUT_PROPERTY = "neurob.pool.borrow.timeout";
+    /** Default time in seconds a borrower waits for a live access to be released */
+    public static final long DEFAULT_BORROW_TIMEOUT = 600L;
+
+    private static MachineAccessPool instance;
+
+    private final int maxLive;
+    private final long borrowTimeoutNanos;
+
+    /** Idle accesses, least recently used first */
+    private final LinkedList<PooledAccess> idle;
+    /** Keys of the borrowed accesses; null for accesses that are not pooled */
+    private final Map<MachineAccess, Key> borrowed;
+    /** Number of accesses being loaded for a borrower */
+    private int loading;
+
+    private long created;
+    private long reused;
+    private long evicted;
+    private long waited;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(MachineAccessPool.class);
+
+    /**
+     * @param maxLive Maximum number of live accesses
+     */
+    public MachineAccessPool(int maxLive) {
+        this(maxLive, DEFAULT_BORROW_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maxLive Maximum number of live accesses; at least one
+     * @param borrowTimeout Time a borrower waits at most for a live access to be released
+     * @param timeUnit Unit of the borrow timeout
+     */
+    public MachineAccessPool(int maxLive, long borrowTimeout, TimeUnit timeUnit) {
+        this.maxLive = Math.max(1, maxLive);
+        this.borrowTimeoutNanos = timeUnit.toNanos(borrowTimeout);
+        this.idle = new LinkedList<>();
+        this.borrowed = new IdentityHashMap<>();
+    }
+
+    /**
+     * @return Pool shared by the whole process.
+     */
+    public static synchronized MachineAccessPool getInstance() {
+        if (instance == null) {
+            instance = new MachineAccessPool(defaultMaxLive(), defaultBorrowTimeout(), TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::close));
+        }
+        return instance;
+    }
+
+    /**
+     * Borrows an access to the given machine without any preferences set.
+     *
+     * @param machine Machine to access
+     *
+     * @return Loaded access to the machine
+     *
+     * @throws MachineAccessException if no new access could be loaded
+     */
+    public MachineAccess borrow(BMachine machine) throws MachineAccessException {
+        return borrow(machine, new BPreferences());
+    }
+
+    /**
+     * Borrows an access to the given machine in which the given preferences
+     * are set. The access needs to be {@link #release(MachineAccess) released}
+     * after use.
+     *
+     * @param machine Machine to access
+     * @param preferences Preferences the access shall have
+     *
+     * @return Loaded access to the machine
+     *
+     * @throws MachineAccessException if no new access could be loaded, or all
+     *         live accesses stayed borrowed for the whole borrow timeout
+     */
+    public MachineAccess borrow(BMachine machine, BPreferences preferences)
+            throws MachineAccessException {
+        Key key = createKey(machine.getLocation(), preferences);
+
+        MachineAccess evictee = null;
+        synchronized (this) {
+            long deadline = System.nanoTime() + borrowTimeoutNanos;
+            while (true) {
+                if (key != null) {
+                    Iterator<PooledAccess> candidates = idle.descendingIterator();
+                    while (candidates.hasNext()) {
+                        PooledAccess candidate = candidates.next();
+                        if (key.equals(candidate.key)) {
+                            candidates.remove();
+                            borrowed.put(candidate.access, key);
+                            reused++;
+                            return candidate.access;
+                        }
+                    }
+                }
+
+                if (getLiveCount() < maxLive) {
+                    break;
+                }
+                if (!idle.isEmpty()) {
+                    // Make room for the new access
+                    evictee = idle.removeFirst().access;
+                    evicted++;
+                    break;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new MachineAccessException("No access to " + machine + " available: all "
+                                                     + maxLive + " live accesses stayed borrowed");
+                }
+                waited++;
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MachineAccessException("Interrupted while waiting for an access to " + machine, e);
+                }
+            }
+            // Reserve the slot while loading outside of the lock
+            loading++;
+        }
+        if (evictee != null) {
+            closeAll(Collections.singletonList(evictee));
+        }
+
+        MachineAccess access = null;
+        try {
+            log.debug("Loading new pooled access to {}", machine);
+            access = machine.spawnMachineAccess();
+            try {
+                access.setPreferences(preferences);
+            } catch (RuntimeException e) {
+                access.close();
+                access = null;
+                throw e;
+            }
+        } finally {
+            synchronized (this) {
+                loading--;
+                if (access != null) {
+                    created++;
+                    borrowed.put(access, key);
+                }
+                notifyAll();
+            }
+        }
+        return access;
+    }
+
+    /**
+     * Returns a borrowed access to the pool.
+     * Accesses that are no longer loaded, were not borrowed from this pool,
+     * or exceed the maximum number of live accesses are closed instead.
+     *
+     * @param access Access to release; null is ignored
+     */
+    public void release(MachineAccess access) {
+        if (access == null) {
+            return;
+        }
+
+        access.notifyReleased();
+
+        boolean keep;
+        synchronized (this) {
+            Key key = borrowed.remove(access);
+            keep = key != null
+                   && access.isLoaded()
+                   && getLiveCount() < maxLive;
+            if (keep) {
+                // Keyed by the preferences it has now, including those the
+                // borrower, e.g. a backend solving over it, set further
+                idle.addLast(new PooledAccess(key.withPreferences(access.getPreferences()), access));
+            }
+            notifyAll();
+        }
+
+        if (!keep) {
+            access.close();
+        }
+    }
+
+    /**
+     * Closes all idle accesses. Borrowed accesses are closed on release.
+     */
+    public void close() {
+        List<MachineAccess> toClose = new ArrayList<>();
+        synchronized (this) {
+            idle.forEach(p -> toClose.add(p.access));
+            idle.clear();
+            notifyAll();
+        }
+        closeAll(toClose);
+        log.debug("Closed machine access pool; {}", this);
+    }
+
+    /**
+     * @return Number of borrowed, idle, and currently loading accesses.
+     */
+    public synchronized int getLiveCount() {
+        return idle.size() + borrowed.size() + loading;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getMaxLive() {
+        return maxLive;
+    }
+
+    /**
+     * @return Number of accesses loaded by this pool.
+     */
+    public synchronized long getCreatedCount() {
+        return created;
+    }
+
+    /**
+     * @return Number of borrows served by an idle access.
+     */
+    public synchronized long getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * @return Number of idle accesses closed to make room for new ones.
+     */
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    /**
+     * @return Number of times a borrower had to wait for an access to be released.
+     */
+    public synchronized long getWaitCount() {
+        return waited;
+    }
+
+    /**
+     * Creates the key for the given machine.
+     *
+     * @return Key, or null if the machine cannot be identified and
+     *         accesses to it must not be pooled.
+     */
+    private Key createKey(Path location, BPreferences preferences) {
+        if (location == null) {
+            return null;
+        }
+        String hash = getMachineHash(location);
+        if (hash == null) {
+            return null;
+        }
+        return new Key(location, hash, preferences);
+    }
+
+    /**
+     * Calculates the sha512 hash of the given machine file and the files
+     * it depends on. The files are only hashed again if the size or
+     * modification time of one of them changed (see {@link MachineHash}).
+     */
+    String getMachineHash(Path location) {
+        try {
+            return MachineHash.hash(location);
+        } catch (IOException e) {
+            log.warn("Unable to generate hash for {}; access will not be pooled", location, e);
+            return null;
+        }
+    }
+
+    private void closeAll(List<MachineAccess> accesses) {
+        for (MachineAccess access : accesses) {
+            log.debug("Closing pooled access {}", access);
+            try {
+                access.close();
+            } catch (Exception e) {
+                log.warn("Unable to close pooled access {}", access, e);
+            }
+        }
+    }
+
+    private static long defaultBorrowTimeout() {
+        String configured = System.getProperty(BORROW_TIMEOUT_PROPERTY);
+        if (configured == null) {
+            return DEFAULT_BORROW_TIMEOUT;
+        }
+
+        try {
+            return Math.max(0L, Long.parseLong(configured.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Could not parse {}={}, waiting up to {} seconds for an access",
+                    BORROW_TIMEOUT_PROPERTY, configured, DEFAULT_BORROW_TIMEOUT);
+            return DEFAULT_BORROW_TIMEOUT;
+        }
+    }
+
+    private static int defaultMaxLive() {
+        int fallback = 4 * Runtime.getRuntime().availableProcessors();
+        String configured = System.getProperty(MAX_LIVE_PROPERTY);
+        if (configured == null) {
+            return fallback;
+        }
+
+        try {
+            return Math.max(0, Integer.parseInt(configured.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Could not parse {}={}, keeping up to {} live accesses",
+                    MAX_LIVE_PROPERTY, configured, fallback);
+            return fallback;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MachineAccessPool{"
+               + "live=" + getLiveCount() + "/" + maxLive + ", "
+               + "created=" + created + ", "
+               + "reused=" + reused + ", "
+               + "evicted=" + evicted + ", "
+               + "waited=" + waited + "}";
+    }
+
+    private static class Key {
+        private final Path location;
+        private final String hash;
+        private final BPreferences preferences;
+
+        Key(Path location, String hash, BPreferences preferences) {
+            this.location = location;
+            this.hash = hash;
+            this.preferences = preferences;
+        }
+
+        Key withPreferences(BPreferences preferences) {
+            return new Key(location, hash, preferences);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Key) {
+                Key other = (Key) o;
+                return location.equals(other.location)
+                       && hash.equals(other.hash)
+                       && preferences.equals(other.preferences);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(location, hash, preferences);
+        }
+    }
+
+    private static class PooledAccess {
+        private final Key key;
+        private final MachineAccess access;
+
+        PooledAccess(Key key, MachineAccess access) {
+            this.key = key;
+            this.access = access;
+        }
+    }
+}
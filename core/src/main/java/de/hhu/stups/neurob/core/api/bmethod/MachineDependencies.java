@@ -0,0 +1,166 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the files a machine depends on, i.e. the machines it sees,
+ * includes, extends, imports, uses, or refines, and the definition files
+ * it references, transitively.
+ * <p>
+ * The files are found by scanning the machine's text rather than by
+ * loading it into ProB, so the dependencies are known before an access
+ * to the machine exists. Dependencies are looked up in the machine's
+ * directory; those not found there, e.g. the ProB standard library, are
+ * skipped.
+ */
+public class MachineDependencies {
+
+    private static final String[] CLASSICAL_B_EXTENSIONS = {".mch", ".ref", ".imp", ".sys"};
+    private static final String[] EVENT_B_EXTENSIONS = {".bum", ".buc", ".bcm", ".bcc"};
+
+    private static final Pattern COMMENT =
+            Pattern.compile("/\\*.*?\\*/|//[^\\n]*", Pattern.DOTALL);
+    /** Clause listing machine names, up to the next clause */
+    private static final Pattern DEPENDENCY_CLAUSE = Pattern.compile(
+            "\\b(?:SEES|INCLUDES|EXTENDS|IMPORTS|USES|REFINES)\\b(.*?)"
+            + "(?=\\b(?:MACHINE|REFINEMENT|IMPLEMENTATION|SYSTEM|MODEL|SEES|INCLUDES|EXTENDS|IMPORTS"
+            + "|USES|PROMOTES|REFINES|CONSTRAINTS|SETS|CONSTANTS|ABSTRACT_CONSTANTS|CONCRETE_CONSTANTS"
+            + "|PROPERTIES|VALUES|VARIABLES|ABSTRACT_VARIABLES|CONCRETE_VARIABLES|INVARIANT|ASSERTIONS"
+            + "|INITIALISATION|OPERATIONS|LOCAL_OPERATIONS|EVENTS|DEFINITIONS|END)\\b|$)",
+            Pattern.DOTALL);
+    private static final Pattern PARAMETERS = Pattern.compile("\\([^()]*\\)");
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z][A-Za-z0-9_]*");
+    private static final Pattern DEFINITIONS_FILE = Pattern.compile("\"([^\"]+\\.def)\"");
+    /** Refined machines, seen and extended contexts of Rodin files */
+    private static final Pattern EVENT_B_TARGET = Pattern.compile(
+            "org\\.eventb\\.core\\.(?:sc)?(?:refinesMachine|seesContext|extendsContext)"
+            + "[^>]*?org\\.eventb\\.core\\.(?:scT|t)arget=\"([^\"]+)\"");
+
+    private static final Logger log =
+            LoggerFactory.getLogger(MachineDependencies.class);
+
+    private MachineDependencies() {
+    }
+
+    /**
+     * Resolves the dependencies of the given machine, transitively.
+     *
+     * @param machine Source file of the machine
+     *
+     * @return Files the machine depends on, without the machine itself,
+     *         in the order they were found
+     *
+     * @throws IOException if the machine or one of its dependencies cannot be read
+     */
+    public static List<Path> resolve(Path machine) throws IOException {
+        Set<Path> visited = new LinkedHashSet<>();
+        Deque<Path> pending = new ArrayDeque<>();
+        Path start = machine.toAbsolutePath().normalize();
+        visited.add(start);
+        pending.add(start);
+
+        while (!pending.isEmpty()) {
+            Path file = pending.poll();
+            for (Path dependency : findDirectDependencies(file)) {
+                if (visited.add(dependency)) {
+                    pending.add(dependency);
+                }
+            }
+        }
+
+        visited.remove(start);
+        return new ArrayList<>(visited);
+    }
+
+    private static List<Path> findDirectDependencies(Path file) throws IOException {
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Path directory = file.getParent();
+        String fileName = file.getFileName().toString();
+
+        List<Path> dependencies = new ArrayList<>();
+        if (hasExtension(fileName, EVENT_B_EXTENSIONS)) {
+            Matcher targets = EVENT_B_TARGET.matcher(text);
+            while (targets.find()) {
+                String target = targets.group(1);
+                // Statically checked files refer to e.g. /project/M0.bcm|org.eventb.core.scMachineFile#M0
+                int separator = target.indexOf('|');
+                if (separator >= 0) {
+                    target = target.substring(0, separator);
+                }
+                target = target.substring(target.lastIndexOf('/') + 1);
+                addResolved(dependencies, directory, stripExtension(target), EVENT_B_EXTENSIONS);
+            }
+            return dependencies;
+        }
+
+        String code = COMMENT.matcher(text).replaceAll(" ");
+        Matcher clauses = DEPENDENCY_CLAUSE.matcher(code);
+        while (clauses.find()) {
+            String names = clauses.group(1);
+            // Drop machine parameters, innermost first
+            String stripped;
+            while (!(stripped = PARAMETERS.matcher(names).replaceAll("")).equals(names)) {
+                names = stripped;
+            }
+            for (String name : names.split(",")) {
+                name = name.trim();
+                // Renamed machines are prefixed, e.g. r.M
+                name = name.substring(name.lastIndexOf('.') + 1);
+                if (IDENTIFIER.matcher(name).matches()) {
+                    addResolved(dependencies, directory, name, CLASSICAL_B_EXTENSIONS);
+                }
+            }
+        }
+
+        Matcher definitions = DEFINITIONS_FILE.matcher(code);
+        while (definitions.find()) {
+            Path definitionFile = directory.resolve(definitions.group(1)).normalize();
+            if (Files.isRegularFile(definitionFile)) {
+                dependencies.add(definitionFile);
+            } else {
+                log.debug("Definitions file {} of {} not found; skipping", definitionFile, file);
+            }
+        }
+        return dependencies;
+    }
+
+    private static void addResolved(List<Path> dependencies, Path directory, String name,
+            String[] extensions) {
+        for (String extension : extensions) {
+            Path candidate = directory.resolve(name + extension).normalize();
+            if (Files.isRegularFile(candidate)) {
+                dependencies.add(candidate);
+                return;
+            }
+        }
+        log.debug("Dependency {} not found in {}; skipping", name, directory);
+    }
+
+    private static boolean hasExtension(String fileName, String[] extensions) {
+        for (String extension : extensions) {
+            if (fileName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+}
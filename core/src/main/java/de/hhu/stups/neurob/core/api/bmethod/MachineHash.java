@@ -0,0 +1,150 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * sha512 hash of a machine and the files it depends on
+ * (see {@link MachineDependencies}), along with the size and modification
+ * time, its stamp, each file had when it was hashed.
+ * <p>
+ * For a machine without dependencies, the hash is the hash of its file
+ * alone; otherwise it also covers the name and hash of each dependency,
+ * so it changes once e.g. a seen machine or a definitions file is edited.
+ * <p>
+ * Hashes are cached for the whole process: a machine is only hashed again
+ * if the stamp of one of its files changed.
+ */
+public class MachineHash {
+
+    /** Hashes of the visited machines, keyed by their normalised location */
+    private static final Map<Path, MachineHash> known = new ConcurrentHashMap<>();
+
+    private final Map<Path, String> stamps;
+    private final String hash;
+
+    MachineHash(Map<Path, String> stamps, String hash) {
+        this.stamps = Collections.unmodifiableMap(stamps);
+        this.hash = hash;
+    }
+
+    /**
+     * Returns the hash of the given machine and its dependencies.
+     * The files are only hashed again if one of their stamps changed.
+     *
+     * @param machine Source file of the machine
+     *
+     * @return Hash of the machine
+     *
+     * @throws IOException if the machine or one of its dependencies cannot be read
+     */
+    public static MachineHash of(Path machine) throws IOException {
+        Path location = machine.toAbsolutePath().normalize();
+        MachineHash cached = known.get(location);
+        if (cached != null && cached.isCurrent()) {
+            return cached;
+        }
+
+        MachineHash current = calculate(location);
+        known.put(location, current);
+        return current;
+    }
+
+    /**
+     * Shorthand for {@code MachineHash.of(machine).getHash()}.
+     *
+     * @param machine Source file of the machine
+     *
+     * @return sha512 hash over the machine and its dependencies
+     *
+     * @throws IOException if the machine or one of its dependencies cannot be read
+     */
+    public static String hash(Path machine) throws IOException {
+        return of(machine).getHash();
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return Stamps of the hashed files, the machine first, followed by
+     *         its dependencies in the order they were found.
+     */
+    public Map<Path, String> getStamps() {
+        return stamps;
+    }
+
+    /**
+     * @return Whether none of the hashed files changed in size or
+     *         modification time, or became inaccessible.
+     */
+    public boolean isCurrent() {
+        return areCurrent(stamps);
+    }
+
+    /**
+     * @param stamps Files mapped to the stamps they had
+     *
+     * @return Whether each of the files still has the given stamp
+     */
+    public static boolean areCurrent(Map<Path, String> stamps) {
+        try {
+            for (Map.Entry<Path, String> stamp : stamps.entrySet()) {
+                if (!stamp.getValue().equals(stamp(stamp.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param file File to stamp
+     *
+     * @return Size and modification time of the file
+     *
+     * @throws IOException if the file is not accessible
+     */
+    public static String stamp(Path file) throws IOException {
+        return Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+    }
+
+    private static MachineHash calculate(Path location) throws IOException {
+        // Stamped ahead of hashing, so an edit in between is noticed on the next check
+        Map<Path, String> stamps = new LinkedHashMap<>();
+        stamps.put(location, stamp(location));
+        List<Path> dependencies = MachineDependencies.resolve(location);
+        for (Path dependency : dependencies) {
+            stamps.put(dependency, stamp(dependency));
+        }
+
+        String hash = hashFile(location);
+        if (!dependencies.isEmpty()) {
+            StringBuilder combined = new StringBuilder(hash);
+            for (Path dependency : dependencies) {
+                combined.append('\n').append(dependency.getFileName())
+                        .append(':').append(hashFile(dependency));
+            }
+            hash = DigestUtils.sha512Hex(combined.toString());
+        }
+        return new MachineHash(stamps, hash);
+    }
+
+    private static String hashFile(Path file) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            return DigestUtils.sha512Hex(inputStream);
+        }
+    }
+}
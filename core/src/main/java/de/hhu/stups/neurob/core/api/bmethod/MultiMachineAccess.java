@@ -1,5 +1,6 @@
 package de.hhu.stups.neurob.core.api.bmethod;
 
+import de.hhu.stups.neurob.core.api.DaemonThreadFactory;
 import de.hhu.stups.neurob.core.api.MachineType;
 import de.hhu.stups.neurob.core.api.backends.Backend;
 import de.hhu.stups.neurob.core.api.backends.preferences.BPreference;
@@ -7,38 +8,91 @@ import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
 import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
 import de.prob.animator.command.AbstractCommand;
 import de.prob.statespace.StateSpace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Machine Access that serves as a single access point to the same machine
  * which is actually loaded for multiple backends (read: multiple preferences).
+ * <p>
+ * The access of a backend is only created on its first
+ * {@link #getAccess(Backend) request}, so backends which are never used for
+ * the machine do not load it at all. Loading, closing, and broadcasting
+ * commands to the accesses is done concurrently, by at most as many threads
+ * as there are processors.
  */
 public class MultiMachineAccess extends MachineAccess {
     protected final Set<Backend> backends;
-    /** Map containing all the different machine accesses */
+    /** Map containing the machine accesses created so far */
     protected Map<Backend, MachineAccess> accessMap;
 
+    /** Creates the accesses of backends on first request */
+    private final AccessFactory factory;
+    /** Guards the creation of each backend's access */
+    private final Map<Backend, Object> creationLocks;
+
+    /** Loads and broadcasts to the single accesses */
+    private static final ThreadPoolExecutor fanOutExecutor = createFanOutExecutor();
+
+    private static final Logger log =
+            LoggerFactory.getLogger(MultiMachineAccess.class);
+
+    /**
+     * Creates the access of a single backend.
+     */
+    @FunctionalInterface
+    interface AccessFactory {
+        /**
+         * @param backend Backend the access is created for
+         * @param load Whether the access shall load the machine right away
+         *
+         * @return Access to the machine with the backend's preferences set
+         *
+         * @throws MachineAccessException if the access could not be created
+         */
+        MachineAccess create(Backend backend, boolean load) throws MachineAccessException;
+    }
+
+    /**
+     * @param source Machine to access
+     * @param machineType Formalism of the machine
+     * @param backends Backends to create an access for
+     * @param initialise Whether the accesses shall load the machine as soon
+     *         as they are created
+     */
     public MultiMachineAccess(Path source, MachineType machineType, Backend[] backends,
             boolean initialise) throws MachineAccessException {
+        this(source, machineType, backends, initialise, null);
+    }
+
+    MultiMachineAccess(Path source, MachineType machineType, Backend[] backends,
+            boolean initialise, AccessFactory factory) throws MachineAccessException {
         super(source, machineType, false);
         this.backends = new HashSet<>();
         this.backends.addAll(Arrays.asList(backends));
-
-        // Establish the multi-accesses
-        this.accessMap = new HashMap<>();
-        for (Backend b : backends) {
-            MachineAccess access = new MachineAccess(source, machineType, initialise);
-            access.setPreferences(b.getPreferences());
-            accessMap.put(b, access);
-        }
-
+        this.accessMap = new ConcurrentHashMap<>();
+        this.creationLocks = new ConcurrentHashMap<>();
+        this.factory = factory != null ? factory : this::createAccess;
+        this.isLoaded = initialise;
     }
 
     public MultiMachineAccess(Path source, MachineType machineType,
@@ -47,33 +101,60 @@ public class MultiMachineAccess extends MachineAccess {
         super(source, machineType, false);
         this.backends = accessMap.keySet();
         this.accessMap = accessMap;
+        this.creationLocks = new ConcurrentHashMap<>();
+        this.factory = this::createAccess;
     }
 
+    /**
+     * (Re-)loads the accesses created so far concurrently.
+     * Accesses created afterwards load the machine right away.
+     *
+     * @return This access
+     *
+     * @throws MachineAccessException if any of the accesses failed to load
+     */
     @Override
     public MachineAccess load() throws MachineAccessException {
-        for (Backend b : backends) {
-            accessMap.get(b).load();
-        }
+        fanOut(getCreatedAccesses(), MachineAccess::load);
+        parseCache.invalidate();
         isLoaded = true;
         return this;
     }
 
     @Override
     public void close() {
-        backends.stream()
-                .map(accessMap::get)
-                .forEach(MachineAccess::close);
+        try {
+            fanOut(getCreatedAccesses(), MachineAccess::close);
+        } catch (MachineAccessException e) {
+            // close itself does not throw checked exceptions
+            log.warn("Unable to close all accesses of {}", getSource(), e);
+        }
         isLoaded = false;
+        parseCache.invalidate();
+        notifyReleased();
         closeHandlers.stream().forEach(c -> c.accept(this));
     }
 
+    /**
+     * Executes the given commands concurrently over the accesses
+     * created so far. Accesses not yet created are not created for this;
+     * only if there is none yet, the access of a single backend is created
+     * so that the commands are answered at all.
+     *
+     * @param commands Commands to execute
+     */
     @Override
     public void execute(AbstractCommand... commands) {
-        backends.stream()
-                .map(accessMap::get)
-                .forEach(
-                        access -> access.execute(commands)
-                );
+        try {
+            List<MachineAccess> accesses = new ArrayList<>(getCreatedAccesses());
+            if (accesses.isEmpty() && !backends.isEmpty()) {
+                accesses.add(establishAccess(backends.iterator().next()));
+            }
+            fanOut(accesses, a -> a.execute(commands));
+        } catch (MachineAccessException e) {
+            throw new IllegalStateException(
+                    "Unable to execute commands over all accesses of " + getSource(), e);
+        }
     }
 
     @Override
@@ -81,16 +162,117 @@ public class MultiMachineAccess extends MachineAccess {
         return super.getStateSpace();
     }
 
+    /**
+     * Returns the access of the given backend, creating it if this is the
+     * first request.
+     *
+     * @param b Backend
+     *
+     * @return Access of the backend, or null if the backend is not part of
+     *         this multi access or its access could not be created.
+     */
     public MachineAccess getAccess(Backend b) {
-        return accessMap.get(b);
+        if (!backends.contains(b)) {
+            return null;
+        }
+        try {
+            return establishAccess(b);
+        } catch (MachineAccessException e) {
+            log.warn("Unable to create access to {} for {}", getSource(), b, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the accesses of the given backends. Accesses not yet
+     * created are created concurrently.
+     *
+     * @param requested Backends of which the accesses are needed;
+     *         each must be part of this multi access
+     *
+     * @return Map from each requested backend to its access
+     *
+     * @throws MachineAccessException if a backend is not part of this
+     *         multi access or its access could not be created.
+     */
+    public Map<Backend, MachineAccess> getAccesses(Collection<Backend> requested)
+            throws MachineAccessException {
+        List<Backend> missing = new ArrayList<>();
+        for (Backend b : requested) {
+            if (!backends.contains(b)) {
+                throw new MachineAccessException(
+                        "Backend " + b + " is not part of the multi access to " + getSource());
+            }
+            if (!accessMap.containsKey(b)) {
+                missing.add(b);
+            }
+        }
+        fanOut(missing, this::establishAccess);
+
+        Map<Backend, MachineAccess> accesses = new LinkedHashMap<>();
+        for (Backend b : requested) {
+            accesses.put(b, accessMap.get(b));
+        }
+        return accesses;
+    }
+
+    /**
+     * @return Number of backend accesses created so far.
+     */
+    public int getCreatedAccessCount() {
+        return accessMap.size();
+    }
+
+    /**
+     * Returns the access of the given member backend, creating and, if this
+     * multi access is loaded, loading it if necessary.
+     */
+    private MachineAccess establishAccess(Backend b) throws MachineAccessException {
+        MachineAccess access = accessMap.get(b);
+        if (access != null) {
+            return access;
+        }
+
+        synchronized (creationLocks.computeIfAbsent(b, k -> new Object())) {
+            access = accessMap.get(b);
+            if (access == null) {
+                log.debug("Creating access to {} for {}", getSource(), b);
+                access = factory.create(b, isLoaded);
+                // Preferences set in this multi access so far
+                access.setPreferences(preferences);
+                accessMap.put(b, access);
+            }
+            return access;
+        }
     }
 
+    private MachineAccess createAccess(Backend b, boolean load) throws MachineAccessException {
+        MachineAccess access = new MachineAccess(getSource(), getMachineType(), load);
+        access.setPreferences(b.getPreferences());
+        return access;
+    }
+
+    private List<MachineAccess> getCreatedAccesses() {
+        return backends.stream()
+                .map(accessMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Sets the given preferences in all accesses created so far and
+     * remembers them for accesses created later on.
+     */
     @Override
     public void setPreferences(BPreferences preferences) {
+        BPreference[] fullPrefs = Stream.concat(
+                this.preferences.stream(),
+                preferences.stream().filter(p -> !this.preferences.contains(p)))
+                .toArray(BPreference[]::new);
+        this.preferences = new BPreferences(fullPrefs);
+
         // Set preferences for each access
-        backends.stream()
-                .map(accessMap::get)
-                .forEach(a -> a.setPreferences(preferences));
+        getCreatedAccesses().forEach(a -> a.setPreferences(preferences));
     }
 
     @Override
@@ -100,15 +282,78 @@ public class MultiMachineAccess extends MachineAccess {
 
     @Override
     public void sendInterrupt() {
-        backends.stream()
-                .map(accessMap::get)
-                .forEach(MachineAccess::sendInterrupt);
+        getCreatedAccesses().forEach(MachineAccess::sendInterrupt);
+    }
+
+    private static ThreadPoolExecutor createFanOutExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new DaemonThreadFactory("neurob-multi-access"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs the given task for each of the given items concurrently and
+     * waits for all of them to finish.
+     *
+     * @throws MachineAccessException the first exception thrown by any task;
+     *         further ones are added as suppressed
+     */
+    private static <T> void fanOut(Collection<T> items, AccessTask<T> task)
+            throws MachineAccessException {
+        if (items.size() <= 1) {
+            for (T item : items) {
+                task.run(item);
+            }
+            return;
+        }
+
+        List<CompletableFuture<Void>> futures = items.stream()
+                .map(item -> CompletableFuture.runAsync(() -> {
+                    try {
+                        task.run(item);
+                    } catch (MachineAccessException e) {
+                        throw new CompletionException(e);
+                    }
+                }, fanOutExecutor))
+                .collect(Collectors.toList());
+
+        Throwable failure = null;
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+
+        if (failure instanceof MachineAccessException) {
+            throw (MachineAccessException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new MachineAccessException("Concurrent access operation failed", failure);
+        }
+    }
+
+    @FunctionalInterface
+    private interface AccessTask<T> {
+        void run(T item) throws MachineAccessException;
     }
 
     @Override
     public String toString() {
-        String containedAccesses = backends.stream()
-                .map(accessMap::get)
+        String containedAccesses = getCreatedAccesses().stream()
                 .map(MachineAccess::toString)
                 .collect(Collectors.joining(", "));
         return getSource() + "{"
@@ -122,13 +367,14 @@ public class MultiMachineAccess extends MachineAccess {
         if (o instanceof MultiMachineAccess) {
             MultiMachineAccess other = (MultiMachineAccess) o;
 
-            return accessMap.equals(other.accessMap);
+            return Objects.equals(getSource(), other.getSource())
+                   && backends.equals(other.backends);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return accessMap.hashCode();
+        return Objects.hash(getSource(), backends);
     }
 }
@@ -0,0 +1,189 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import de.hhu.stups.neurob.core.api.MachineType;
+import de.prob.animator.domainobjects.IEvalElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of parsed formulae, evicting the least recently used entry
+ * once full.
+ * <p>
+ * Entries are keyed by the formula's text and formalism. As parsed formulae
+ * depend on the loaded machine, the owning {@link MachineAccess} invalidates
+ * the cache whenever its state space is (re)loaded or closed.
+ * Cached formulae are handed out to every caller, so their ASTs must not be
+ * modified.
+ * <p>
+ * The capacity of newly created caches can be set via the system property
+ * {@value #SIZE_PROPERTY}; a capacity of 0 disables caching.
+ */
+public class ParseCache {
+
+    /** System property to configure the number of formulae cached per machine access. */
+    public static final String SIZE_PROPERTY = "neurob.parse.cache.size";
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private final Map<String, IEvalElement> cache;
+
+    private long hits;
+    private long misses;
+    /** Hits and misses over all caches of this JVM */
+    private static final AtomicLong totalHits = new AtomicLong(0L);
+    private static final AtomicLong totalMisses = new AtomicLong(0L);
+    /** Increased on each invalidation, so parses started before are not cached */
+    private long generation;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(ParseCache.class);
+
+    public ParseCache() {
+        this(defaultCapacity());
+    }
+
+    /**
+     * @param capacity Maximum number of cached formulae
+     */
+    public ParseCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.cache = new LinkedHashMap<String, IEvalElement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IEvalElement> eldest) {
+                return size() > ParseCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached parse of the given formula, or parses
+     * and caches it if not present yet.
+     * <p>
+     * Parsing happens outside of the lock, so concurrent requests for
+     * the same missing formula might parse it more than once.
+     *
+     * @param formula Formula to parse
+     * @param machineType Formalism in which the formula is to be parsed
+     * @param parser Parses the formula on a cache miss
+     *
+     * @return Parsed formula
+     */
+    public IEvalElement get(BPredicate formula, MachineType machineType,
+            Function<BPredicate, IEvalElement> parser) {
+        String key = machineType + ":" + formula.getPredicate();
+
+        long parsedInGeneration;
+        synchronized (cache) {
+            IEvalElement cached = cache.get(key);
+            if (cached != null) {
+                hits++;
+                totalHits.incrementAndGet();
+                return cached;
+            }
+            misses++;
+            totalMisses.incrementAndGet();
+            parsedInGeneration = generation;
+        }
+
+        IEvalElement parsed = parser.apply(formula);
+
+        synchronized (cache) {
+            if (parsed != null && parsedInGeneration == generation) {
+                cache.put(key, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Removes all cached formulae. The hit and miss counts are retained.
+     */
+    public void invalidate() {
+        synchronized (cache) {
+            if (!cache.isEmpty()) {
+                log.trace("Invalidating {} parsed formulae", cache.size());
+            }
+            cache.clear();
+            generation++;
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    /**
+     * @return Ratio of lookups answered from the cache; 0 if nothing was looked up yet.
+     */
+    public double getHitRate() {
+        synchronized (cache) {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0. : (double) hits / lookups;
+        }
+    }
+
+    /**
+     * @return Ratio of lookups answered from any parse cache of this JVM;
+     *         0 if nothing was looked up yet.
+     */
+    public static double getTotalHitRate() {
+        long hits = totalHits.get();
+        long lookups = hits + totalMisses.get();
+        return lookups == 0 ? 0. : (double) hits / lookups;
+    }
+
+    /**
+     * @return Number of lookups over any parse cache of this JVM.
+     */
+    public static long getTotalLookupCount() {
+        return totalHits.get() + totalMisses.get();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (cache) {
+            return "ParseCache{"
+                   + "size=" + cache.size() + "/" + capacity + ", "
+                   + "hits=" + hits + ", "
+                   + "misses=" + misses + "}";
+        }
+    }
+
+    private static int defaultCapacity() {
+        String configured = System.getProperty(SIZE_PROPERTY);
+        if (configured == null) {
+            return DEFAULT_CAPACITY;
+        }
+
+        try {
+            return Math.max(0, Integer.parseInt(configured.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Could not parse {}={}, caching {} formulae",
+                    SIZE_PROPERTY, configured, DEFAULT_CAPACITY);
+            return DEFAULT_CAPACITY;
+        }
+    }
+}
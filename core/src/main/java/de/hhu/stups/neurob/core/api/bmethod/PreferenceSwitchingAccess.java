@@ -0,0 +1,310 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
+import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
+import de.prob.animator.command.AbstractCommand;
+import de.prob.animator.command.GetPreferenceCommand;
+import de.prob.animator.command.SetPreferenceCommand;
+import de.prob.animator.domainobjects.IEvalElement;
+import de.prob.statespace.StateSpace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves multiple backend configurations from a single loaded
+ * {@link MachineAccess}, i.e. a single ProB cli, as an alternative to
+ * the one-cli-per-backend approach of {@link MultiMachineAccess}.
+ * <p>
+ * Each backend {@link #getAccess(Backend) gets a view} on the shared access.
+ * Before a command is executed over a view, the preferences of the shared
+ * access are switched to those of the view: only preferences whose value
+ * actually differs from the currently active one are sent to ProB, and
+ * preferences no longer requested are reset to the value they had before
+ * the first switch. Commands over the shared access are hence serialised.
+ * Setting preferences on a view switches to them right away, so callers
+ * timing a command can do the switch ahead of their measurement.
+ * <p>
+ * Once done, {@link #restore()} resets the shared access to its own
+ * preferences so that it can be reused, e.g. by the {@link MachineAccessPool}.
+ */
+public class PreferenceSwitchingAccess {
+
+    private final MachineAccess shared;
+
+    /** Values of the preferences currently set in the shared access, as far as they were touched */
+    private final Map<String, String> active;
+    /** Values the switched preferences had before they were first switched */
+    private final Map<String, String> originals;
+    /** State space over which the tracked values are valid */
+    private StateSpace trackedStateSpace;
+
+    private final Map<Backend, MachineAccess> views;
+
+    private long switchCount;
+    private long preferenceCommandCount;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(PreferenceSwitchingAccess.class);
+
+    /**
+     * @param shared Loaded access which is shared by all views
+     */
+    public PreferenceSwitchingAccess(MachineAccess shared) {
+        this.shared = shared;
+        this.active = new HashMap<>();
+        this.originals = new HashMap<>();
+        this.views = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns a view on the shared access that behaves like an access in
+     * which the backend's preferences are set.
+     * <p>
+     * Closing the view does not close the shared access.
+     *
+     * @param backend Backend whose preferences are active for commands
+     *         executed over the view
+     *
+     * @return View on the shared access
+     */
+    public MachineAccess getAccess(Backend backend) {
+        return views.computeIfAbsent(backend, b -> createView(b.getPreferences()));
+    }
+
+    /**
+     * Executes the given commands over the shared access after switching
+     * to the given preferences. The preferences of the shared access itself
+     * are kept active unless overridden.
+     *
+     * @param preferences Preferences to be active during the execution
+     * @param commands Commands to execute
+     */
+    public synchronized void execute(BPreferences preferences, AbstractCommand... commands) {
+        switchTo(preferences);
+        shared.execute(commands);
+    }
+
+    /**
+     * Switches the shared access to the given preferences without executing
+     * a command, so that a following {@link #execute} with the same
+     * preferences does not need to send any preference commands.
+     *
+     * @param preferences Preferences to be active
+     */
+    public synchronized void prepare(BPreferences preferences) {
+        switchTo(preferences);
+    }
+
+    /**
+     * Resets all switched preferences, so that only the preferences of the
+     * shared access itself are active.
+     */
+    public synchronized void restore() {
+        switchTo(new BPreferences());
+    }
+
+    /**
+     * @return The access shared by all views.
+     */
+    public MachineAccess getSharedAccess() {
+        return shared;
+    }
+
+    /**
+     * @return Preferences that are currently active in the shared access
+     *         due to switching, mapped to their values.
+     */
+    public synchronized Map<String, String> getActivePreferences() {
+        return new HashMap<>(active);
+    }
+
+    /**
+     * @return Number of times the preferences were switched to a differing state.
+     */
+    public synchronized long getSwitchCount() {
+        return switchCount;
+    }
+
+    /**
+     * @return Number of preference commands sent to ProB for switching.
+     */
+    public synchronized long getPreferenceCommandCount() {
+        return preferenceCommandCount;
+    }
+
+    /**
+     * Sends the delta between the active preferences and the requested ones.
+     */
+    private void switchTo(BPreferences preferences) {
+        if (shared.getStateSpace() != trackedStateSpace) {
+            // Freshly (re-)loaded; only the access' own preferences are set
+            active.clear();
+            originals.clear();
+            shared.getPreferences().stream().forEach(p -> active.put(p.getName(), p.getValue()));
+            trackedStateSpace = shared.getStateSpace();
+        }
+
+        Map<String, String> requested = new HashMap<>();
+        shared.getPreferences().stream().forEach(p -> requested.put(p.getName(), p.getValue()));
+        preferences.stream().forEach(p -> requested.put(p.getName(), p.getValue()));
+
+        long commandsBefore = preferenceCommandCount;
+
+        // Reset preferences that are no longer requested
+        Iterator<Map.Entry<String, String>> activeIterator = active.entrySet().iterator();
+        while (activeIterator.hasNext()) {
+            Map.Entry<String, String> entry = activeIterator.next();
+            String name = entry.getKey();
+            if (!requested.containsKey(name) && originals.containsKey(name)) {
+                String original = originals.remove(name);
+                if (!Objects.equals(original, entry.getValue())) {
+                    preferenceCommandCount++;
+                    writePreference(name, original);
+                }
+                activeIterator.remove();
+            }
+        }
+
+        // Set preferences that differ from the active ones
+        for (Map.Entry<String, String> entry : requested.entrySet()) {
+            String name = entry.getKey();
+            String value = entry.getValue();
+            if (active.containsKey(name)) {
+                if (value.equals(active.get(name))) {
+                    continue;
+                }
+            } else {
+                String original = readPreference(name);
+                originals.put(name, original);
+                if (value.equals(original)) {
+                    active.put(name, value);
+                    continue;
+                }
+            }
+            preferenceCommandCount++;
+            writePreference(name, value);
+            active.put(name, value);
+        }
+
+        if (preferenceCommandCount > commandsBefore) {
+            switchCount++;
+            log.trace("Switched preferences of {} to {} with {} commands",
+                    shared.getSource(), requested, preferenceCommandCount - commandsBefore);
+        }
+    }
+
+    /**
+     * @return Value the preference has in the shared access.
+     */
+    String readPreference(String name) {
+        GetPreferenceCommand cmd = new GetPreferenceCommand(name);
+        shared.execute(cmd);
+        return cmd.getValue();
+    }
+
+    void writePreference(String name, String value) {
+        shared.execute(new SetPreferenceCommand(name, value));
+    }
+
+    private MachineAccess createView(BPreferences preferences) {
+        try {
+            return new View(preferences);
+        } catch (MachineAccessException e) {
+            // Views never load anything themselves
+            throw new IllegalStateException("Unable to create view on " + shared, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PreferenceSwitchingAccess{"
+               + "shared=" + shared + ", "
+               + "switches=" + switchCount + ", "
+               + "preference commands=" + preferenceCommandCount + "}";
+    }
+
+    /**
+     * Access that forwards to the shared access, with its own preferences
+     * switched on for each execution.
+     */
+    private class View extends MachineAccess {
+
+        View(BPreferences preferences) throws MachineAccessException {
+            // As the view itself is never loaded, setting preferences only
+            // remembers them until the next execution
+            super(shared.getSource(), shared.getMachineType(), false);
+            this.preferences = preferences;
+        }
+
+        @Override
+        public MachineAccess load() throws MachineAccessException {
+            if (!shared.isLoaded()) {
+                shared.load();
+            }
+            return this;
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return shared.isLoaded();
+        }
+
+        @Override
+        public StateSpace getStateSpace() {
+            return shared.getStateSpace();
+        }
+
+        /**
+         * Remembers the preferences for the next executions and switches
+         * the shared access to them right away, if it is loaded.
+         */
+        @Override
+        public void setPreferences(BPreferences preferences) {
+            super.setPreferences(preferences);
+            if (shared.isLoaded()) {
+                prepare(this.preferences);
+            }
+        }
+
+        @Override
+        public void execute(AbstractCommand... commands) {
+            PreferenceSwitchingAccess.this.execute(preferences, commands);
+        }
+
+        @Override
+        public IEvalElement parseFormula(BPredicate formula) {
+            return shared.parseFormula(formula);
+        }
+
+        @Override
+        public IEvalElement parseMutableFormula(BPredicate formula) {
+            return shared.parseMutableFormula(formula);
+        }
+
+        @Override
+        public ParseCache getParseCache() {
+            return shared.getParseCache();
+        }
+
+        @Override
+        public void sendInterrupt() {
+            shared.sendInterrupt();
+        }
+
+        /**
+         * Does not close the shared access but only notifies the close handlers.
+         */
+        @Override
+        public void close() {
+            notifyReleased();
+            closeHandlers.forEach(h -> h.accept(this));
+        }
+    }
+}
@@ -52,7 +52,7 @@ public class NormalisedPredicate extends PredicateFeatures {
             try {
                 // Try to parse directly over the state space, if given
                 if (bMachine != null) {
-                    ast = ((IBEvalElement) bMachine.parseFormula(pred)).getAst();
+                    ast = ((IBEvalElement) bMachine.parseMutableFormula(pred)).getAst();
                 } else {
                     BParser parser = new BParser();
                     String input = BParser.PREDICATE_PREFIX + pred;
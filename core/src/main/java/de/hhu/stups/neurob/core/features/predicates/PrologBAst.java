@@ -3,8 +3,8 @@ package de.hhu.stups.neurob.core.features.predicates;
 import de.be4.classicalb.core.parser.BParser;
 import de.be4.classicalb.core.parser.node.Node;
 import de.be4.classicalb.core.parser.util.PrettyPrinter;
-import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.EmptyMachinePool;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
 import de.hhu.stups.neurob.core.exceptions.FeatureCreationException;
 import de.hhu.stups.neurob.core.features.predicates.util.IdNormaliser;
@@ -45,21 +45,21 @@ public class PrologBAst extends PredicateFeatures {
         public PrologBAst generate(BPredicate pred, @Nullable MachineAccess bMachine) throws FeatureCreationException {
             IBEvalElement ast;
 
-            boolean closeEmptyAccess = false;
+            boolean returnEmptyAccess = false;
             try {
                 // Try to parse directly over the state space, if given
                 if (bMachine == null) {
-                    bMachine = BMachine.EMPTY.spawnMachineAccess();
-                    closeEmptyAccess = true;
+                    bMachine = EmptyMachinePool.getInstance().checkOut();
+                    returnEmptyAccess = true;
                 }
-                ast = ((IBEvalElement) bMachine.parseFormula(pred));
+                ast = ((IBEvalElement) bMachine.parseMutableFormula(pred));
 
             } catch (Exception e) {
                 throw new FeatureCreationException(
                         "Unable to parse predicate" + pred, e);
             } finally {
-                if (closeEmptyAccess) {
-                    bMachine.close();
+                if (returnEmptyAccess) {
+                    EmptyMachinePool.getInstance().checkIn(bMachine);
                 }
             }
 
@@ -19,7 +19,8 @@ public class TheoryFeatureCollector {
         Node ast;
 
         try {
-            // Try to parse directly over the state space, if given
+            // Try to parse directly over the state space, if given;
+            // the walker only reads the AST, so the cached parse can be shared
             if (bMachine != null) {
                 ast = ((IBEvalElement) bMachine.parseFormula(pred)).getAst();
             } else {
@@ -91,6 +91,10 @@ public class BackendClassification extends PredicateLabelling {
             }
 
             Answer answerValue = answer.getAnswer();
+            if (Answer.SKIPPED.equals(answerValue)) {
+                // Skipped backends were never run; their zero time must not win
+                continue;
+            }
             Long time = answer.getNanoSeconds();
             if (Answer.isSolvable(answerValue)
                 && (time < fastestTime || !Answer.isSolvable(fastestAnswer))) {
@@ -197,7 +201,8 @@ public class BackendClassification extends PredicateLabelling {
             Backend classification = classifyFastestBackend(backends, dbEntry.getResults());
 
             // If fastest is an error, we want to classify as index 0 (null backend).
-            classification = (Answer.isSolvable(dbEntry.getResult(classification).getAnswer()))
+            classification = (classification != null
+                              && Answer.isSolvable(dbEntry.getResult(classification).getAnswer()))
                     ? classification
                     : null;
             return new BackendClassification(predicate, backends, classification);
@@ -228,7 +233,8 @@ public class BackendClassification extends PredicateLabelling {
                 }
 
                 Answer a = timed.getAnswer();
-                if (a.equals(Answer.ERROR) || a.equals(Answer.TIMEOUT) || a.equals(Answer.UNKNOWN)) {
+                if (a.equals(Answer.ERROR) || a.equals(Answer.TIMEOUT) || a.equals(Answer.UNKNOWN)
+                    || a.equals(Answer.SKIPPED)) {
                     continue;
                 }
 
@@ -376,7 +376,8 @@ public class BaldusTimings extends PredicateLabelling {
             return nanoseconds;
         } else if (Answer.UNKNOWN.equals(response)
                    || Answer.ERROR.equals(response)
-                   || Answer.TIMEOUT.equals(response)) {
+                   || Answer.TIMEOUT.equals(response)
+                   || Answer.SKIPPED.equals(response)) {
             return nanoseconds + to;
         } else {
             return -1L; // TODO: -1 would serve as indicator something is missing. Keep it that way?
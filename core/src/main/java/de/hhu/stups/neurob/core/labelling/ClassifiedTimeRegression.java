@@ -25,7 +25,7 @@ import java.util.concurrent.TimeUnit;
  * The cost for a time t is:
  * <ul>
  *     <li>t for a solved response,</li>
- *     <li>t + timeout for unknown, error or timeout.</li>
+ *     <li>t + timeout for unknown, error, timeout or skipped.</li>
  * </ul>
  *
  * <p>
@@ -381,7 +381,8 @@ public class ClassifiedTimeRegression extends PredicateLabelling {
         if (Answer.VALID.equals(response) || Answer.INVALID.equals(response)
             || Answer.SOLVABLE.equals(response)) {
             return nanoseconds;
-        } else if (Answer.UNKNOWN.equals(response) || Answer.ERROR.equals(response) || Answer.TIMEOUT.equals(response)) {
+        } else if (Answer.UNKNOWN.equals(response) || Answer.ERROR.equals(response) || Answer.TIMEOUT.equals(response)
+                   || Answer.SKIPPED.equals(response)) {
             return nanoseconds + to;
         } else {
             return -1L; // TODO: -1 would serve as indicator something is missing. Keep it that way?
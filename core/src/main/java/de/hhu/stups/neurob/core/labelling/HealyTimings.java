@@ -365,7 +365,7 @@ public class HealyTimings extends PredicateLabelling {
      * <ul>
      *     <li>t for a solved response,</li>
      *     <li>t + timeout for unknown,</li>
-     *     <li>t + timeout*2 for error/timeout.</li>
+     *     <li>t + timeout*2 for error/timeout/skipped.</li>
      * </ul>
      *
      * @param response
@@ -391,7 +391,8 @@ public class HealyTimings extends PredicateLabelling {
             return nanoseconds;
         } else if (Answer.UNKNOWN.equals(response)) {
             return nanoseconds + to;
-        } else if (Answer.ERROR.equals(response) || Answer.TIMEOUT.equals(response)) {
+        } else if (Answer.ERROR.equals(response) || Answer.TIMEOUT.equals(response)
+                   || Answer.SKIPPED.equals(response)) {
             return nanoseconds + 2 * to;
         } else {
             return -1L; // TODO: -1 would serve as indicator something is missing. Keep it that way?
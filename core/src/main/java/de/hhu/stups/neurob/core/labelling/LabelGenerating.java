@@ -4,6 +4,7 @@ import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -44,4 +45,18 @@ public interface LabelGenerating<L extends Labelling, In> {
 
         return results;
     }
+
+    /**
+     * Whether labels of the given source file were taken from an earlier
+     * run, e.g. from a cache, instead of being generated. The time spent on
+     * such a file does not reflect its generation cost.
+     * By default, labels are never reused.
+     *
+     * @param sourceFile Source file the labelled data stems from
+     *
+     * @return Whether any label of the file was reused
+     */
+    default boolean hasReusedLabels(Path sourceFile) {
+        return false;
+    }
 }
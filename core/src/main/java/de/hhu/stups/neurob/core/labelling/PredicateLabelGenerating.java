@@ -2,6 +2,7 @@ package de.hhu.stups.neurob.core.labelling;
 
 import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.EmptyMachinePool;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
 import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
 import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
@@ -22,11 +23,17 @@ public interface PredicateLabelGenerating<L extends PredicateLabelling>
 
     @Override
     default L generate(BPredicate predicate) throws LabelCreationException {
+        MachineAccess access;
         try {
-            return generate(predicate, BMachine.EMPTY.spawnMachineAccess());
+            access = EmptyMachinePool.getInstance().checkOut();
         } catch (MachineAccessException e) {
             throw new LabelCreationException("Unable to access empty machine", e);
         }
+        try {
+            return generate(predicate, access);
+        } finally {
+            EmptyMachinePool.getInstance().checkIn(access);
+        }
     }
 
     default L generate(String predicate) throws LabelCreationException {
@@ -38,15 +45,15 @@ public interface PredicateLabelGenerating<L extends PredicateLabelling>
     }
 
     default L generate(BPredicate predicate, BMachine bMachine) throws LabelCreationException {
+        if (bMachine == null) {
+            return generate(predicate);
+        }
+
         L labelling;
         try {
-            MachineAccess access = (bMachine != null)
-                    ? bMachine.spawnMachineAccess()
-                    : BMachine.EMPTY.spawnMachineAccess();
+            MachineAccess access = bMachine.spawnMachineAccess();
             labelling = generate(predicate, access);
-            if (access != null) {
-                access.close();
-            }
+            access.close();
         } catch (MachineAccessException e) {
             throw new LabelCreationException("Could not create features for " + predicate, e);
         }
@@ -123,6 +130,17 @@ public interface PredicateLabelGenerating<L extends PredicateLabelling>
         return results;
     }
 
+    /**
+     * Describes the settings that influence the generated labels, so that
+     * labels generated under a different configuration can be told apart.
+     * By default, only the generating class is described.
+     *
+     * @return Description of the configuration
+     */
+    default String describeConfiguration() {
+        return getClass().getName();
+    }
+
     /**
      * Generate the labelling of the Predicate over the given
      * {@link MachineAccess}.
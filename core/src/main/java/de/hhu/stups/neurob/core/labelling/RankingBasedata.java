@@ -27,7 +27,7 @@ import java.util.concurrent.TimeUnit;
  *      2. invalid
  *      3. unknown
  *      4. timeout
- *      5. error
+ *      5. error (or skipped by the circuit breaker)
  */
 public class RankingBasedata extends PredicateLabelling {
 
@@ -82,6 +82,7 @@ public class RankingBasedata extends PredicateLabelling {
                     answerIndexValue = 4;
                     break;
                 case ERROR:
+                case SKIPPED:
                     answerIndexValue = 5;
                     break;
             }
@@ -141,6 +142,7 @@ public class RankingBasedata extends PredicateLabelling {
                         answerIndexValue = 4;
                         break;
                     case ERROR:
+                    case SKIPPED:
                         answerIndexValue = 5;
                         break;
                 }
@@ -100,7 +100,9 @@ public class SettingsMultiLabel extends PredicateLabelling {
         @Override
         public SettingsMultiLabel translate(PredDbEntry dbEntry) {
             Backend fastest = BackendClassification.classifyFastestBackend(backends, dbEntry.getResults());
-            Double[] labels = genSettingsArray(fastest.getPreferences(), prefs);
+            // All backends skipped: no setting was observed to be preferable
+            BPreferences used = (fastest != null) ? fastest.getPreferences() : new BPreferences();
+            Double[] labels = genSettingsArray(used, prefs);
             return new SettingsMultiLabel(dbEntry.getPredicate(), prefs, labels);
         }
 
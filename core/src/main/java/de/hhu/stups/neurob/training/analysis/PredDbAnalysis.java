@@ -122,7 +122,7 @@ public class PredDbAnalysis
         summary.append('\n');
         // Per Answer
         Answer[] answerOrder = {Answer.VALID, Answer.INVALID, Answer.SOLVABLE,
-                Answer.UNKNOWN, Answer.TIMEOUT, Answer.ERROR};
+                Answer.UNKNOWN, Answer.TIMEOUT, Answer.ERROR, Answer.SKIPPED};
         for (Answer a : answerOrder) {
             Long amount = answers.getCount(a);
             Double fraction = amount / (double) predCount;
@@ -390,7 +390,8 @@ public class PredDbAnalysis
         Collection<TimedAnswer> values = dbEntry.getResults().values();
 
         for (TimedAnswer timedAnswer : values) {
-            if (timedAnswer == null) {
+            // Skipped backends did not answer at all
+            if (timedAnswer == null || Answer.SKIPPED.equals(timedAnswer.getAnswer())) {
                 continue;
             }
             Answer answer = timedAnswer.getAnswer();
@@ -821,8 +822,9 @@ public class PredDbAnalysis
             }
             Answer answer = tAnswer.getAnswer();
 
-            // Skip errors and timeouts
-            if (Answer.TIMEOUT.equals(answer) || Answer.ERROR.equals(answer)) {
+            // Skip errors, timeouts, and skipped backends
+            if (Answer.TIMEOUT.equals(answer) || Answer.ERROR.equals(answer)
+                || Answer.SKIPPED.equals(answer)) {
                 continue;
             }
 
@@ -0,0 +1,112 @@
+package de.hhu.stups.neurob.training.db;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sequential stopping rule for sampling the timings of a predicate.
+ * <p>
+ * Instead of always measuring a fixed number of times, sampling stops as
+ * soon as the confidence interval around the mean timing is tight enough,
+ * i.e. its half-width is at most the absolute error or the relative error
+ * of the mean, whichever is larger. Stable predicates hence need only a
+ * few measurements; the maximum number of measurements is still bounded by
+ * the sampling size of the {@link PredDbEntry.Generator}.
+ * <p>
+ * The interval is based on the t-distribution over the measurements taken
+ * so far, as in the sampling size analysis of the sampling cli.
+ */
+public class AdaptiveSampling {
+
+    /** Default confidence level of the interval */
+    public static final double DEFAULT_CONFIDENCE = 0.95;
+    /** Measurements taken before the stopping rule is checked the first time */
+    public static final int MIN_SAMPLES = 3;
+
+    private final double confidence;
+    private final double relativeError;
+    private final long absoluteErrorNanos;
+
+    private final AtomicLong sampledCount;
+    private final AtomicLong measurementCount;
+    private final AtomicLong earlyStopCount;
+
+    /**
+     * @param confidence Confidence level of the interval, e.g. 0.95
+     * @param relativeError Accepted half-width of the interval relative to the mean, e.g. 0.05
+     * @param absoluteErrorNanos Accepted half-width of the interval in nanoseconds
+     */
+    public AdaptiveSampling(double confidence, double relativeError, long absoluteErrorNanos) {
+        if (confidence <= 0 || confidence >= 1) {
+            throw new IllegalArgumentException("Confidence must be in (0, 1), got " + confidence);
+        }
+        this.confidence = confidence;
+        this.relativeError = relativeError;
+        this.absoluteErrorNanos = absoluteErrorNanos;
+        this.sampledCount = new AtomicLong(0L);
+        this.measurementCount = new AtomicLong(0L);
+        this.earlyStopCount = new AtomicLong(0L);
+    }
+
+    /**
+     * Whether the given statistics are precise enough to stop sampling.
+     *
+     * @param stats Statistics over the measurements taken so far
+     *
+     * @return True if at least {@value #MIN_SAMPLES} measurements were
+     *         taken and their confidence interval is within the accepted error
+     */
+    public boolean isPrecise(SamplingStatistic stats) {
+        if (stats == null || stats.getSampleSize() < MIN_SAMPLES) {
+            return false;
+        }
+        double accepted = Math.max(absoluteErrorNanos, relativeError * Math.abs(stats.getMean()));
+        return stats.confidenceHalfWidth(confidence) <= accepted;
+    }
+
+    /**
+     * Records the outcome of sampling one predicate over one backend.
+     *
+     * @param measurements Number of measurements taken
+     * @param stoppedEarly Whether sampling stopped before the maximum number of measurements
+     */
+    void recordSampling(int measurements, boolean stoppedEarly) {
+        sampledCount.incrementAndGet();
+        measurementCount.addAndGet(measurements);
+        if (stoppedEarly) {
+            earlyStopCount.incrementAndGet();
+        }
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public double getRelativeError() {
+        return relativeError;
+    }
+
+    public long getAbsoluteErrorNanos() {
+        return absoluteErrorNanos;
+    }
+
+    /**
+     * @return Number of timings sampled adaptively, i.e. predicate and backend pairs.
+     */
+    public long getSampledCount() {
+        return sampledCount.get();
+    }
+
+    /**
+     * @return Number of measurements taken over all sampled timings.
+     */
+    public long getMeasurementCount() {
+        return measurementCount.get();
+    }
+
+    /**
+     * @return Number of timings whose sampling stopped before the maximum number of measurements.
+     */
+    public long getEarlyStopCount() {
+        return earlyStopCount.get();
+    }
+}
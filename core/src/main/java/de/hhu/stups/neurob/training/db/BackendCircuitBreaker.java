@@ -0,0 +1,219 @@
+package de.hhu.stups.neurob.training.db;
+
+import de.hhu.stups.neurob.core.api.backends.Answer;
+import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.backends.TimedAnswer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stops solving predicates of a machine with a backend that keeps
+ * failing on it.
+ * <p>
+ * If a backend errors on a number of consecutive predicates of a machine,
+ * it almost always errors on the remaining ones as well, each time
+ * costing a parse, a round trip to the ProB cli, or even a restart of it.
+ * Once the errors of a (machine, backend) pair reach the trip threshold,
+ * the circuit opens: further predicates are not solved but answered with
+ * {@link Answer#SKIPPED}. Every so many skipped predicates, a single one
+ * is let through as trial (half-open circuit). If the trial succeeds, the
+ * circuit closes again; if it errors, it stays open.
+ */
+public class BackendCircuitBreaker {
+
+    /** Default number of consecutive errors after which the circuit opens */
+    public static final int DEFAULT_TRIP_THRESHOLD = 5;
+    /** Default number of skipped predicates after which a trial is let through */
+    public static final int DEFAULT_RETRY_INTERVAL = 50;
+
+    private final int tripThreshold;
+    private final int retryInterval;
+
+    private final Map<String, Circuit> circuits;
+
+    private final AtomicLong trips;
+    private final AtomicLong skips;
+    private final AtomicLong trials;
+    private final AtomicLong recoveries;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(BackendCircuitBreaker.class);
+
+    public BackendCircuitBreaker() {
+        this(DEFAULT_TRIP_THRESHOLD, DEFAULT_RETRY_INTERVAL);
+    }
+
+    /**
+     * @param tripThreshold Number of consecutive errors of a backend on a
+     *         machine after which the circuit opens
+     * @param retryInterval Number of predicates skipped while open, after
+     *         which a single predicate is solved as trial
+     */
+    public BackendCircuitBreaker(int tripThreshold, int retryInterval) {
+        if (tripThreshold < 1 || retryInterval < 1) {
+            throw new IllegalArgumentException("Trip threshold and retry interval must be positive");
+        }
+        this.tripThreshold = tripThreshold;
+        this.retryInterval = retryInterval;
+        this.circuits = new ConcurrentHashMap<>();
+        this.trips = new AtomicLong(0L);
+        this.skips = new AtomicLong(0L);
+        this.trials = new AtomicLong(0L);
+        this.recoveries = new AtomicLong(0L);
+    }
+
+    /**
+     * Checks whether the next predicate of the machine is to be solved
+     * with the backend. Predicates not allowed are to be answered by
+     * {@link #skippedAnswer(Backend)}.
+     *
+     * @param machine Source of the machine
+     * @param backend Backend to solve with
+     *
+     * @return False if the circuit is open and no trial is due
+     */
+    public boolean allows(Path machine, Backend backend) {
+        Circuit circuit = circuits.get(key(machine, backend));
+        if (circuit == null) {
+            return true;
+        }
+
+        synchronized (circuit) {
+            if (!circuit.open) {
+                return true;
+            }
+            if (circuit.skippedSinceTrial >= retryInterval && !circuit.trialRunning) {
+                circuit.skippedSinceTrial = 0;
+                circuit.trialRunning = true;
+                trials.incrementAndGet();
+                return true;
+            }
+            circuit.skippedSinceTrial++;
+        }
+        skips.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records the answer of a predicate of the machine solved with the backend.
+     *
+     * @param machine Source of the machine
+     * @param backend Backend solved with
+     * @param answer Answer of the backend, or null if solving failed
+     */
+    public void record(Path machine, Backend backend, Answer answer) {
+        boolean failed = answer == null || answer.equals(Answer.ERROR);
+        String key = key(machine, backend);
+        Circuit circuit = failed
+                ? circuits.computeIfAbsent(key, k -> new Circuit())
+                : circuits.get(key);
+        if (circuit == null) {
+            return;
+        }
+
+        synchronized (circuit) {
+            circuit.trialRunning = false;
+            if (!failed) {
+                if (circuit.open) {
+                    log.info("Backend {} recovered on {}; closing circuit", backend, machine);
+                    recoveries.incrementAndGet();
+                }
+                circuit.open = false;
+                circuit.consecutiveErrors = 0;
+                return;
+            }
+
+            circuit.consecutiveErrors++;
+            if (!circuit.open && circuit.consecutiveErrors >= tripThreshold) {
+                log.warn("Backend {} failed on {} consecutive predicates of {}; skipping it",
+                        backend, circuit.consecutiveErrors, machine);
+                circuit.open = true;
+                circuit.skippedSinceTrial = 0;
+                trips.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @param backend Backend that was skipped
+     *
+     * @return Answer standing in for a predicate that was not solved as
+     *         the circuit was open
+     */
+    public SampledTimedAnswer skippedAnswer(Backend backend) {
+        return SampledTimedAnswer.from(new TimedAnswer(Answer.SKIPPED, 0L,
+                "Skipped: " + backend.getDescriptionString() + " failed on "
+                + tripThreshold + " consecutive predicates of the machine"));
+    }
+
+    /**
+     * @return Whether the circuit of the backend on the machine is open.
+     */
+    public boolean isOpen(Path machine, Backend backend) {
+        Circuit circuit = circuits.get(key(machine, backend));
+        if (circuit == null) {
+            return false;
+        }
+        synchronized (circuit) {
+            return circuit.open;
+        }
+    }
+
+    /**
+     * @return Number of consecutive failures after which a circuit opens.
+     */
+    public int getTripThreshold() {
+        return tripThreshold;
+    }
+
+    /**
+     * @return Number of skipped predicates after which an open circuit tries one.
+     */
+    public int getRetryInterval() {
+        return retryInterval;
+    }
+
+    /**
+     * @return Number of times a circuit opened.
+     */
+    public long getTripCount() {
+        return trips.get();
+    }
+
+    /**
+     * @return Number of predicates skipped due to an open circuit.
+     */
+    public long getSkipCount() {
+        return skips.get();
+    }
+
+    /**
+     * @return Number of predicates solved as trial of an open circuit.
+     */
+    public long getTrialCount() {
+        return trials.get();
+    }
+
+    /**
+     * @return Number of open circuits closed after a successful trial.
+     */
+    public long getRecoveryCount() {
+        return recoveries.get();
+    }
+
+    private static String key(Path machine, Backend backend) {
+        return machine.toAbsolutePath().normalize() + "\t" + backend.getDescriptionString();
+    }
+
+    private static class Circuit {
+        private int consecutiveErrors = 0;
+        private boolean open = false;
+        private boolean trialRunning = false;
+        private int skippedSinceTrial = 0;
+    }
+}
@@ -0,0 +1,344 @@
+package de.hhu.stups.neurob.training.db;
+
+import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineHash;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only journal of the results completed during a generation run.
+ * <p>
+ * Each sampled result is appended to the journal file as soon as it is
+ * known, keyed by the sha512 hash of the machine, the sha512 hash of the
+ * predicate, and the {@link Backend#getDescriptionString() description}
+ * of the backend. If a run aborts, a new run over the same journal file
+ * replays it and only solves the predicates that are still missing,
+ * instead of starting over with each machine whose data base file was
+ * not completely written.
+ * <p>
+ * Appended results are synced to disk in batches, i.e. once
+ * {@link #setSyncBatchSize(int) a number of results} is pending or
+ * {@link #setSyncInterval(long, TimeUnit) some time} has passed since the
+ * last sync. An abort hence loses at most the results of the last batch.
+ * A partially written last line is skipped on replay.
+ */
+public class GenerationJournal implements Closeable {
+
+    /** Default number of results after which the journal is synced */
+    public static final int DEFAULT_SYNC_BATCH_SIZE = 256;
+    /** Default time in milliseconds after which pending results are synced */
+    public static final long DEFAULT_SYNC_INTERVAL = 1000L;
+
+    private final Path journalFile;
+    private final FileChannel channel;
+    private final Writer writer;
+
+    /** Journaled results per machine hash, keyed by {@link #key} */
+    private final Map<String, Map<String, SampledTimedAnswer>> results;
+
+    private int syncBatchSize;
+    private long syncIntervalNanos;
+    /** Number of results appended since the last sync */
+    private int pending;
+    private long lastSyncNanos;
+
+    private final AtomicLong replayed;
+    private final AtomicLong recorded;
+    private final AtomicLong hits;
+    private final AtomicLong syncs;
+    /** Accumulated time spent writing and syncing the journal */
+    private final AtomicLong journalNanos;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(GenerationJournal.class);
+
+    /**
+     * Opens the given journal file, replaying the results it already holds.
+     * The file is created if not existent.
+     *
+     * @param journalFile File to append the results to
+     *
+     * @throws IOException if the journal file cannot be opened
+     */
+    public GenerationJournal(Path journalFile) throws IOException {
+        this.journalFile = journalFile;
+        this.results = new ConcurrentHashMap<>();
+        this.syncBatchSize = DEFAULT_SYNC_BATCH_SIZE;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SYNC_INTERVAL);
+        this.replayed = new AtomicLong(0L);
+        this.recorded = new AtomicLong(0L);
+        this.hits = new AtomicLong(0L);
+        this.syncs = new AtomicLong(0L);
+        this.journalNanos = new AtomicLong(0L);
+
+        Path parent = journalFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        replay();
+
+        // Opened for reading as well to check the last line; as READ and
+        // APPEND can not be combined, the results are appended by positioning at the end
+        this.channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        terminateLastLine();
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+        this.lastSyncNanos = System.nanoTime();
+    }
+
+    /**
+     * Looks up a result journaled by this or a previous run.
+     *
+     * @param machine Source file of the machine the predicate belongs to
+     * @param pred Predicate to look up
+     * @param backend Backend the predicate was solved with
+     *
+     * @return The journaled result, or null if there is none
+     *         or the machine file cannot be hashed.
+     */
+    public SampledTimedAnswer lookup(Path machine, BPredicate pred, Backend backend) {
+        String machineHash = getMachineHash(machine);
+        if (machineHash == null) {
+            return null;
+        }
+
+        Map<String, SampledTimedAnswer> machineResults = results.get(machineHash);
+        SampledTimedAnswer answer = machineResults != null
+                ? machineResults.get(key(pred, backend))
+                : null;
+        if (answer != null) {
+            hits.incrementAndGet();
+            log.trace("Journal hit for {} over {}", pred, backend);
+        }
+        return answer;
+    }
+
+    /**
+     * Appends the given result to the journal.
+     * The journal is synced to disk if enough results are pending.
+     *
+     * @param machine Source file of the machine the predicate belongs to
+     * @param pred Predicate that was solved
+     * @param backend Backend the predicate was solved with
+     * @param answer Sampled result
+     */
+    public void record(Path machine, BPredicate pred, Backend backend, SampledTimedAnswer answer) {
+        String machineHash = getMachineHash(machine);
+        if (machineHash == null || answer == null) {
+            return;
+        }
+
+        String key = key(pred, backend);
+        results.computeIfAbsent(machineHash, h -> new ConcurrentHashMap<>()).put(key, answer);
+
+        synchronized (this) {
+            long start = System.nanoTime();
+            try {
+                writer.write(SolverResultCache.translateToLine(machineHash + "\t" + key, answer));
+                writer.write('\n');
+                recorded.incrementAndGet();
+                pending++;
+                if (pending >= syncBatchSize || start - lastSyncNanos >= syncIntervalNanos) {
+                    syncPending();
+                }
+            } catch (IOException e) {
+                log.warn("Unable to journal result for {} to {}", pred, journalFile, e);
+            } finally {
+                journalNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Writes all pending results to disk.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void sync() throws IOException {
+        long start = System.nanoTime();
+        try {
+            syncPending();
+        } finally {
+            journalNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void syncPending() throws IOException {
+        if (pending == 0) {
+            return;
+        }
+        writer.flush();
+        channel.force(false);
+        syncs.incrementAndGet();
+        log.trace("Synced {} journaled results to {}", pending, journalFile);
+        pending = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    /**
+     * Syncs the pending results and closes the journal file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @param syncBatchSize Number of appended results after which the
+     *         journal is synced to disk; at least 1
+     */
+    public synchronized void setSyncBatchSize(int syncBatchSize) {
+        this.syncBatchSize = Math.max(1, syncBatchSize);
+    }
+
+    public synchronized int getSyncBatchSize() {
+        return syncBatchSize;
+    }
+
+    /**
+     * @param interval Time after which pending results are synced
+     *         with the next appended result, even if the batch is not full
+     * @param unit Unit of the interval
+     */
+    public synchronized void setSyncInterval(long interval, TimeUnit unit) {
+        this.syncIntervalNanos = unit.toNanos(interval);
+    }
+
+    public Path getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * @return Number of results replayed from previous runs.
+     */
+    public long getReplayedCount() {
+        return replayed.get();
+    }
+
+    /**
+     * @return Number of results appended in this run.
+     */
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    /**
+     * @return Number of lookups that were answered from the journal.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of times the journal was synced to disk.
+     */
+    public long getSyncCount() {
+        return syncs.get();
+    }
+
+    /**
+     * @return Accumulated time in nanoseconds spent on writing and syncing the journal.
+     */
+    public long getJournalNanos() {
+        return journalNanos.get();
+    }
+
+    private void replay() {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (!SolverResultCache.isWellFormed(fields)) {
+                    // Might be a partially written line from an aborted run
+                    log.warn("Skipping malformed entry in {}", journalFile);
+                    continue;
+                }
+                try {
+                    results.computeIfAbsent(fields[0], h -> new ConcurrentHashMap<>())
+                            .put(fields[1] + "\t" + fields[2], SolverResultCache.translateFromFields(fields));
+                    replayed.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    log.warn("Skipping malformed entry in {}", journalFile, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to replay journal {}", journalFile, e);
+        }
+        log.info("Replayed {} results from journal {}", replayed.get(), journalFile);
+    }
+
+    /**
+     * Ensures that new results do not continue a partially written line of an aborted run.
+     */
+    private void terminateLastLine() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        if (last.get(0) != '\n') {
+            channel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+        }
+    }
+
+    /**
+     * Calculates the sha512 hash of the given machine file and the files
+     * it depends on (see {@link MachineHash}), so journaled results are not
+     * replayed once e.g. a seen machine changed.
+     *
+     * @param machine Source file of the machine
+     *
+     * @return Hash of the file and its dependencies,
+     *         or null if one of the files is not accessible.
+     */
+    String getMachineHash(Path machine) {
+        if (machine == null) {
+            return null;
+        }
+
+        try {
+            return MachineHash.hash(machine);
+        } catch (IOException e) {
+            log.warn("Unable to generate hash for {}; results will not be journaled", machine, e);
+            return null;
+        }
+    }
+
+    String key(BPredicate pred, Backend backend) {
+        return DigestUtils.sha512Hex(pred.getPredicate())
+               + "\t" + StringEscapeUtils.escapeJava(backend.getDescriptionString());
+    }
+
+}
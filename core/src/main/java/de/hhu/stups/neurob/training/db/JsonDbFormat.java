@@ -330,8 +330,7 @@ public class JsonDbFormat implements PredicateDbFormat<PredDbEntry> {
         }
 
         try {
-            InputStream inputStream = new FileInputStream(sourceFile.toFile());
-            return DigestUtils.sha512Hex(inputStream);
+            return hashMachineFile(sourceFile);
         } catch (FileNotFoundException e) {
             log.warn("Unable to generate hash for {}", sourceFile, e);
             return "Hash error: File not found";
@@ -341,6 +340,23 @@ public class JsonDbFormat implements PredicateDbFormat<PredDbEntry> {
         }
     }
 
+    /**
+     * Calculates the sha512 hash of the contents of the given machine file,
+     * as used to identify the machine in the data base.
+     *
+     * @param sourceFile Source file of the machine
+     *
+     * @return Hash of the file
+     *
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException if the file is not accessible
+     */
+    public static String hashMachineFile(Path sourceFile) throws IOException {
+        try (InputStream inputStream = new FileInputStream(sourceFile.toFile())) {
+            return DigestUtils.sha512Hex(inputStream);
+        }
+    }
+
     public String translateSampleToJsonObject(TrainingSample<BPredicate, PredDbEntry> sample) {
         // Escape strings in predicate
         BPredicate predicate = sample.getData();
@@ -396,10 +412,19 @@ public class JsonDbFormat implements PredicateDbFormat<PredDbEntry> {
         Long timeout = backend.getTimeOutValue();
         Long timeoutNs = backend.getTimeOutUnit().toNanos(timeout);
 
+        // Mark the phase of two-phase labelling, if any
+        TimeoutPhase phase = result instanceof SampledTimedAnswer
+                ? ((SampledTimedAnswer) result).getPhase()
+                : null;
+        String phaseOptional = phase != null
+                ? ",\"phase\":\"" + phase.name() + "\""
+                : "";
+
         String answerData = "\"" + backend.getDescriptionString() + "\":{"
                             + "\"answer\":\"" + result.getAnswer().name() + "\","
                             + "\"time-in-ns\":" + result.getNanoSeconds() + ","
                             + "\"timeout-in-ns\":" + timeoutNs
+                            + phaseOptional
                             + "}";
         return answerData;
 
@@ -851,6 +876,7 @@ public class JsonDbFormat implements PredicateDbFormat<PredDbEntry> {
             Long time = null;
             Long timeout; // in ns
             Answer answer = null;
+            TimeoutPhase phase = null;
 
             while (!json.peek().equals(JsonToken.END_OBJECT)) {
                 String property = json.nextName();
@@ -861,6 +887,8 @@ public class JsonDbFormat implements PredicateDbFormat<PredDbEntry> {
                     timeout = json.nextLong();
                 } else if (property.equals("answer")) {
                     answer = Answer.valueOf(json.nextString());
+                } else if (property.equals("phase")) {
+                    phase = readTimeoutPhase(json);
                 } else { // unknown property
                     log.warn("Unknown property \"{}\" in results object; skipping value", property);
                     json.skipValue();
@@ -874,7 +902,27 @@ public class JsonDbFormat implements PredicateDbFormat<PredDbEntry> {
                 return null;
             }
 
-            return new TimedAnswer(answer, time);
+            return phase != null
+                    ? SampledTimedAnswer.from(new TimedAnswer(answer, time), phase)
+                    : new TimedAnswer(answer, time);
+        }
+
+        /**
+         * Reads the phase of two-phase labelling an answer stems from.
+         * Unknown phases are treated as single-phase labelling.
+         *
+         * @param json Reader positioned at the value of the "phase" attribute
+         *
+         * @return Phase of the answer, or null if unknown
+         */
+        TimeoutPhase readTimeoutPhase(JsonReader json) throws IOException {
+            String phase = json.nextString();
+            try {
+                return TimeoutPhase.valueOf(phase);
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown phase \"{}\" in results object; treating answer as single-phase", phase);
+                return null;
+            }
         }
 
         CliVersionNumber readProBVersion(JsonReader json) throws IOException {
@@ -12,7 +12,8 @@ import de.hhu.stups.neurob.core.api.backends.Z3Backend;
 import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
-import de.hhu.stups.neurob.core.api.bmethod.MultiMachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccessPool;
+import de.hhu.stups.neurob.core.api.bmethod.PreferenceSwitchingAccess;
 import de.hhu.stups.neurob.core.exceptions.FormulaException;
 import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
 import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
@@ -22,13 +23,18 @@ import de.prob.cli.CliVersionNumber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class PredDbEntry extends PredicateLabelling {
@@ -306,7 +312,33 @@ public class PredDbEntry extends PredicateLabelling {
         private final Backend[] backends;
         private final CliVersionNumber cliVersion;
 
-        private Map<MachineAccess, MultiMachineAccess> accessMap;
+        /** Optional cache of results from previous runs; null if not used */
+        private SolverResultCache resultCache;
+        /** Optional journal of the results of this and aborted runs; null if not used */
+        private GenerationJournal journal;
+        /** Machines for which results were taken from the journal or the cache */
+        private final Set<Path> reusingSources = ConcurrentHashMap.newKeySet();
+        /** Optional deduplicator sharing results across machines; null if not used */
+        private PredicateDeduplicator deduplicator;
+        /** Optional rule to stop sampling once the timings are precise; null if not used */
+        private AdaptiveSampling adaptiveSampling;
+
+        /** Optional breaker skipping backends that keep failing on a machine; null if not used */
+        private BackendCircuitBreaker circuitBreaker;
+
+        /** Short timeout to probe predicates with before the full one; null if not probing */
+        private Long probeTimeout;
+        private TimeUnit probeTimeUnit;
+        private final AtomicLong probedCount = new AtomicLong(0L);
+        private final AtomicLong escalatedCount = new AtomicLong(0L);
+        private final AtomicLong escalationDecidedCount = new AtomicLong(0L);
+
+        /** Whether all backends share a single access per machine */
+        private boolean preferenceSwitching = false;
+        private final AtomicLong preferenceSwitches = new AtomicLong(0L);
+
+        /** Whether the backends of a predicate are solved in tasks of their own */
+        private boolean parallelBackends = false;
 
         /**
          * @param samplingSize Number of measurements per backend,
@@ -334,8 +366,6 @@ public class PredDbEntry extends PredicateLabelling {
             this.timeUnit = timeUnit;
             this.backends = backends;
             this.cliVersion = cliVersion;
-
-            this.accessMap = new HashMap<>();
         }
 
         /**
@@ -360,63 +390,452 @@ public class PredDbEntry extends PredicateLabelling {
         @Override
         public PredDbEntry generate(BPredicate predicate, MachineAccess machineAccess)
                 throws LabelCreationException {
-            MultiMachineAccess multiAccess;
+            BMachine bMachine = machineAccess != null
+                    ? new BMachine(machineAccess.getSource())
+                    : null;
+
+            // Results of duplicates are shared, but the entry belongs to this machine
+            Map<Backend, TimedAnswer> results = deduplicator != null
+                    ? deduplicator.solve(predicate, machineAccess, () -> solveAll(predicate, bMachine))
+                    : solveAll(predicate, bMachine);
+
+            return new PredDbEntry(predicate, bMachine, backends, results, cliVersion);
+        }
+
+        /**
+         * Solves the predicate with each backend.
+         */
+        private Map<Backend, TimedAnswer> solveAll(BPredicate predicate, BMachine bMachine)
+                throws LabelCreationException {
+            if (bMachine != null && preferenceSwitching) {
+                return solveSwitched(predicate, bMachine);
+            }
+
+            // Gather results; each backend solves over its own access, borrowed from the shared pool.
+            // Within a fork/join pool, the backends are forked as tasks of their own for idle threads to steal
+            Map<Backend, TimedAnswer> results = new HashMap<>();
+            if (parallelBackends && backends.length > 1 && ForkJoinTask.inForkJoinPool()) {
+                List<ForkJoinTask<SampledTimedAnswer>> tasks = new ArrayList<>();
+                for (Backend b : backends) {
+                    tasks.add(ForkJoinTask.adapt(() -> solveOverPooledAccess(predicate, b, bMachine)).fork());
+                }
+
+                LabelCreationException failure = null;
+                for (int i = 0; i < backends.length; i++) {
+                    try {
+                        results.put(backends[i], tasks.get(i).join());
+                    } catch (RuntimeException e) {
+                        LabelCreationException cause = findLabelCreationException(e);
+                        if (cause == null) {
+                            throw e;
+                        }
+                        if (failure == null) {
+                            failure = cause;
+                        }
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            } else {
+                for (Backend b : backends) {
+                    results.put(b, solveOverPooledAccess(predicate, b, bMachine));
+                }
+            }
+
+            return results;
+        }
+
+        /**
+         * Solves the predicate with the given backend over an access borrowed from the pool.
+         *
+         * @return Sampled answer, or null if sampling failed
+         *
+         * @throws LabelCreationException if the machine could not be accessed
+         */
+        private SampledTimedAnswer solveOverPooledAccess(BPredicate predicate, Backend b, BMachine bMachine)
+                throws LabelCreationException {
+            // Only access the machine if the result is not cached already
+            Path source = bMachine != null ? bMachine.getLocation() : null;
+            SampledTimedAnswer answer = lookupCached(predicate, b, source);
+            if (answer != null) {
+                return answer;
+            }
+            if (!isAllowedByCircuitBreaker(source, b)) {
+                return circuitBreaker.skippedAnswer(b);
+            }
+
+            MachineAccessPool pool = MachineAccessPool.getInstance();
+            MachineAccess backendAccess = null;
             try {
-                multiAccess = getMultiAccess(machineAccess);
+                // Borrowed with the preferences solving sets, which the access is released with
+                backendAccess = bMachine != null
+                        ? pool.borrow(bMachine, b.getSolvingPreferences())
+                        : null;
+                answer = sampleAndCache(predicate, b, backendAccess, source);
             } catch (MachineAccessException e) {
-                throw new LabelCreationException("Could not load access to machine for each backend", e);
+                recordForCircuitBreaker(source, b, null);
+                throw new LabelCreationException("Could not load access to machine for backend " + b, e);
+            } catch (LabelCreationException e) {
+                log.error("Unable to sample {} with backend {}",
+                        predicate, b, e);
+            } finally {
+                pool.release(backendAccess);
+            }
+            recordForCircuitBreaker(source, b, answer);
+            return answer;
+        }
+
+        private boolean isAllowedByCircuitBreaker(Path source, Backend b) {
+            return circuitBreaker == null || source == null || circuitBreaker.allows(source, b);
+        }
+
+        private void recordForCircuitBreaker(Path source, Backend b, SampledTimedAnswer answer) {
+            if (circuitBreaker != null && source != null) {
+                circuitBreaker.record(source, b, answer != null ? answer.getAnswer() : null);
             }
+        }
 
-            // Gather results
+        /**
+         * Solves the predicate with all backends one after another over a
+         * single access, switching its preferences in between.
+         */
+        private Map<Backend, TimedAnswer> solveSwitched(BPredicate predicate, BMachine bMachine)
+                throws LabelCreationException {
+            MachineAccessPool pool = MachineAccessPool.getInstance();
+            Path source = bMachine.getLocation();
+            PreferenceSwitchingAccess switchingAccess = null;
             Map<Backend, TimedAnswer> results = new HashMap<>();
-            Arrays.stream(backends).forEach(b -> {
-                SampledTimedAnswer answer;
-                MachineAccess backendAccess = multiAccess != null
-                        ? multiAccess.getAccess(b)
-                        : null;
-                try {
-                    answer = samplePredicate(predicate, b, backendAccess);
-                } catch (LabelCreationException e) {
-                    log.error("Unable to sample {} with backend {}",
-                            predicate, b, e);
-                    answer = null;
+            try {
+                for (Backend b : backends) {
+                    // Only access the machine if the result is not cached already
+                    SampledTimedAnswer answer = lookupCached(predicate, b, source);
+                    if (answer == null && !isAllowedByCircuitBreaker(source, b)) {
+                        answer = circuitBreaker.skippedAnswer(b);
+                    } else if (answer == null) {
+                        if (switchingAccess == null) {
+                            switchingAccess = new PreferenceSwitchingAccess(pool.borrow(bMachine));
+                        }
+                        try {
+                            answer = sampleAndCache(predicate, b, switchingAccess.getAccess(b), source);
+                        } catch (LabelCreationException e) {
+                            log.error("Unable to sample {} with backend {}",
+                                    predicate, b, e);
+                        }
+                        recordForCircuitBreaker(source, b, answer);
+                    }
+                    results.put(b, answer);
+                }
+            } catch (MachineAccessException e) {
+                throw new LabelCreationException("Could not load shared access to machine " + bMachine, e);
+            } finally {
+                if (switchingAccess != null) {
+                    releaseSwitched(pool, switchingAccess);
                 }
+            }
 
-                results.put(b, answer);
-            });
+            return results;
+        }
 
-            BMachine bMachine = machineAccess != null
-                    ? new BMachine(machineAccess.getSource())
-                    : null;
+        private static LabelCreationException findLabelCreationException(Throwable t) {
+            while (t != null) {
+                if (t instanceof LabelCreationException) {
+                    return (LabelCreationException) t;
+                }
+                t = t.getCause();
+            }
+            return null;
+        }
 
-            return new PredDbEntry(predicate, bMachine, backends, results, cliVersion);
+        /**
+         * Enables solving the backends of a predicate as separate fork/join
+         * tasks, if generation runs within a {@link java.util.concurrent.ForkJoinPool}.
+         * Has no effect if {@link #setPreferenceSwitching(boolean) preference switching}
+         * is enabled, as all backends then share a single access.
+         *
+         * @param parallelBackends Whether to fork a task per backend
+         */
+        public void setParallelBackends(boolean parallelBackends) {
+            this.parallelBackends = parallelBackends;
         }
 
-        MultiMachineAccess getMultiAccess(MachineAccess baseAccess) throws MachineAccessException {
-            if (baseAccess == null) {
-                return null;
-            } else if (accessMap.containsKey(baseAccess)) {
-                return accessMap.get(baseAccess);
+        /**
+         * Resets the preferences of the shared access and returns it to the pool.
+         * An access whose preferences could not be reset is closed instead.
+         */
+        private void releaseSwitched(MachineAccessPool pool, PreferenceSwitchingAccess switchingAccess) {
+            MachineAccess shared = switchingAccess.getSharedAccess();
+            try {
+                switchingAccess.restore();
+            } catch (RuntimeException e) {
+                log.warn("Unable to restore preferences of {}; closing it", shared, e);
+                shared.close();
             }
+            preferenceSwitches.addAndGet(switchingAccess.getSwitchCount());
+            pool.release(shared);
+        }
+
+        /**
+         * Enables solving the predicates of all backends over a single access
+         * to the machine, switching the preferences of the access to those of
+         * the respective backend before each solve.
+         * <p>
+         * This keeps only one ProB cli per machine alive instead of one per
+         * backend, at the cost of sending the differing preferences to ProB
+         * whenever the backend changes.
+         *
+         * @param preferenceSwitching Whether to share one access among all backends
+         */
+        public void setPreferenceSwitching(boolean preferenceSwitching) {
+            this.preferenceSwitching = preferenceSwitching;
+        }
+
+        public boolean isPreferenceSwitching() {
+            return preferenceSwitching;
+        }
+
+        /**
+         * @return Number of times the preferences of a shared access were switched
+         *         to the ones of another backend.
+         */
+        public long getPreferenceSwitchCount() {
+            return preferenceSwitches.get();
+        }
+
+        /**
+         * Sets a cache that is consulted before solving a predicate
+         * and filled with the sampled results afterwards.
+         *
+         * @param resultCache Cache to use, or null to always solve the predicates.
+         */
+        public void setResultCache(SolverResultCache resultCache) {
+            this.resultCache = resultCache;
+        }
+
+        public SolverResultCache getResultCache() {
+            return resultCache;
+        }
+
+        /**
+         * Sets a journal to which each sampled result is appended.
+         * Results already in the journal, e.g. from an aborted run,
+         * are not sampled again.
+         *
+         * @param journal Journal to use, or null to not journal the results.
+         */
+        public void setJournal(GenerationJournal journal) {
+            this.journal = journal;
+        }
+
+        public GenerationJournal getJournal() {
+            return journal;
+        }
+
+        /**
+         * Sets a deduplicator to solve each distinct predicate only once per run.
+         * Duplicates, also from other machines, reuse the results of the first
+         * occurrence, but are still labelled as entries of their own machine.
+         *
+         * @param deduplicator Deduplicator to use, or null to solve each occurrence.
+         */
+        public void setDeduplicator(PredicateDeduplicator deduplicator) {
+            this.deduplicator = deduplicator;
+        }
 
-            // Access not yet mapped to a multi access; translate it, put in map, add closeHandler
+        public PredicateDeduplicator getDeduplicator() {
+            return deduplicator;
+        }
 
-            MultiMachineAccess ma = new MultiMachineAccess(
-                    baseAccess.getSource(),
-                    baseAccess.getMachineType(),
-                    backends,
-                    baseAccess.isLoaded());
+        /**
+         * Sets a rule to stop sampling a timing as soon as its confidence
+         * interval is tight enough. The sampling size then is the maximum
+         * number of measurements rather than a fixed one.
+         *
+         * @param adaptiveSampling Stopping rule, or null to always take
+         *         the full sampling size.
+         */
+        public void setAdaptiveSampling(AdaptiveSampling adaptiveSampling) {
+            this.adaptiveSampling = adaptiveSampling;
+        }
 
-            accessMap.put(baseAccess, ma);
+        public AdaptiveSampling getAdaptiveSampling() {
+            return adaptiveSampling;
+        }
 
-            baseAccess.onClose(a -> ma.close());
-            baseAccess.onClose(a -> accessMap.remove(baseAccess));
+        /**
+         * Sets a circuit breaker that stops solving predicates of a machine
+         * with a backend after it failed on too many consecutive ones. Skipped
+         * predicates are answered with {@link Answer#SKIPPED} and are neither
+         * cached nor journaled.
+         *
+         * @param circuitBreaker Breaker to use, or null to always solve with all backends.
+         */
+        public void setCircuitBreaker(BackendCircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+        }
 
-            return ma;
+        public BackendCircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        /**
+         * Enables two-phase labelling: each predicate is first solved with
+         * the given short timeout. Only predicates left undecided, i.e. with
+         * {@link Answer#TIMEOUT} or {@link Answer#UNKNOWN}, are solved again
+         * with the full timeout of the backend. Each answer is marked with the
+         * {@link TimeoutPhase} it came from.
+         * <p>
+         * The probing solve replaces the first, discarded measurement of the
+         * sampling, hence predicates decided within the probing timeout take
+         * no additional solve.
+         *
+         * @param probeTimeout Timeout for probing, or null to solve with the full timeout only
+         * @param probeTimeUnit Unit of the probing timeout
+         */
+        public void setProbeTimeout(Long probeTimeout, TimeUnit probeTimeUnit) {
+            this.probeTimeout = probeTimeout;
+            this.probeTimeUnit = probeTimeUnit;
+        }
+
+        public Long getProbeTimeout() {
+            return probeTimeout;
+        }
+
+        public TimeUnit getProbeTimeUnit() {
+            return probeTimeUnit;
+        }
+
+        /**
+         * @return Number of timings probed with the short timeout.
+         */
+        public long getProbedCount() {
+            return probedCount.get();
+        }
+
+        /**
+         * @return Number of probed timings that were undecided and solved again with the full timeout.
+         */
+        public long getEscalatedCount() {
+            return escalatedCount.get();
+        }
+
+        /**
+         * @return Number of escalated timings that were decided with the full timeout.
+         */
+        public long getEscalationDecidedCount() {
+            return escalationDecidedCount.get();
+        }
+
+        /**
+         * Describes the backends, sampling, two-phase labelling, and circuit
+         * breaker settings, i.e. everything that influences the generated
+         * labels.
+         */
+        @Override
+        public String describeConfiguration() {
+            StringBuilder description = new StringBuilder();
+            description.append("samples=").append(samplingSize)
+                    .append(";backends=").append(Arrays.stream(backends)
+                            .map(Backend::getDescriptionString)
+                            .collect(Collectors.joining(",")));
+            if (adaptiveSampling != null) {
+                description.append(";adaptive=").append(adaptiveSampling.getConfidence())
+                        .append(',').append(adaptiveSampling.getRelativeError())
+                        .append(',').append(adaptiveSampling.getAbsoluteErrorNanos());
+            }
+            if (probeTimeout != null) {
+                description.append(";probe=").append(probeTimeUnit.toNanos(probeTimeout));
+            }
+            if (circuitBreaker != null) {
+                description.append(";breaker=").append(circuitBreaker.getTripThreshold())
+                        .append(',').append(circuitBreaker.getRetryInterval());
+            }
+            return description.toString();
         }
 
         public SampledTimedAnswer samplePredicate(BPredicate pred, Backend backend, MachineAccess bMachine)
                 throws LabelCreationException {
+            Path source = bMachine != null ? bMachine.getSource() : null;
+            SampledTimedAnswer cached = lookupCached(pred, backend, source);
+            if (cached != null) {
+                return cached;
+            }
+            return sampleAndCache(pred, backend, bMachine, source);
+        }
+
+        /**
+         * @return Sufficiently sampled result from the {@link #setJournal(GenerationJournal) journal}
+         *         or the {@link #setResultCache(SolverResultCache) cache}, or null if there is none.
+         */
+        private SampledTimedAnswer lookupCached(BPredicate pred, Backend backend, Path source) {
+            if (source == null || samplingSize <= 0) {
+                return null;
+            }
+            if (journal != null) {
+                SampledTimedAnswer journaled = journal.lookup(source, pred, backend);
+                if (journaled != null && isSufficientlySampled(journaled)) {
+                    reusingSources.add(source.toAbsolutePath().normalize());
+                    return journaled;
+                }
+            }
+            if (resultCache == null) {
+                return null;
+            }
+            SampledTimedAnswer cached = resultCache.lookup(source, pred, backend, cliVersion);
+            if (cached == null || !isSufficientlySampled(cached)) {
+                return null;
+            }
+            reusingSources.add(source.toAbsolutePath().normalize());
+            return cached;
+        }
+
+        /**
+         * Whether results of the given machine were taken from the
+         * {@link #setJournal(GenerationJournal) journal} or the
+         * {@link #setResultCache(SolverResultCache) cache} instead of being solved.
+         */
+        @Override
+        public boolean hasReusedLabels(Path sourceFile) {
+            return sourceFile != null
+                   && reusingSources.contains(sourceFile.toAbsolutePath().normalize());
+        }
+
+        private SampledTimedAnswer sampleAndCache(BPredicate pred, Backend backend,
+                MachineAccess bMachine, Path source) throws LabelCreationException {
+            SampledTimedAnswer answer = sampleUncached(pred, backend, bMachine);
+
+            if (journal != null && source != null && answer != null) {
+                journal.record(source, pred, backend, answer);
+            }
+            if (resultCache != null && source != null && answer != null) {
+                resultCache.store(source, pred, backend, cliVersion, answer);
+            }
+            return answer;
+        }
+
+        /**
+         * Whether a cached answer can stand in for sampling anew, i.e. it
+         * either was measured at least as often as requested, is precise
+         * enough for the {@link #setAdaptiveSampling(AdaptiveSampling) adaptive sampling},
+         * or its sampling was stopped early due to an error or timeout.
+         * An error or timeout from the probing phase of a
+         * {@link #setProbeTimeout(Long, TimeUnit) two-phase labelling} only
+         * counts while probing, as the full timeout was never tried.
+         */
+        private boolean isSufficientlySampled(SampledTimedAnswer cached) {
+            Answer answer = cached.getAnswer();
+            if (answer.equals(Answer.ERROR) || answer.equals(Answer.TIMEOUT)) {
+                return cached.getPhase() != TimeoutPhase.PROBE || probeTimeout != null;
+            }
+            if (adaptiveSampling != null && adaptiveSampling.isPrecise(cached.getStats())) {
+                return true;
+            }
+            return cached.getStats() != null
+                   && cached.getStats().getSampleSize() >= samplingSize;
+        }
+
+        private SampledTimedAnswer sampleUncached(BPredicate pred, Backend backend, MachineAccess bMachine)
+                throws LabelCreationException {
             log.trace("Sampling timings over backend {}; {} times",
                     backend, samplingSize);
 
@@ -426,14 +845,35 @@ public class PredDbEntry extends PredicateLabelling {
 
             List<Long> measurements = new ArrayList<>();
             TimedAnswer lastAnswer = null;
-            for (int i = 0; i <= samplingSize; i++) {
+            TimeoutPhase phase = null;
+            int first = 0;
+            if (probeTimeout != null) {
+                TimedAnswer probe = probe(pred, backend, bMachine);
+                Answer answer = probe.getAnswer();
+                if (answer.equals(Answer.TIMEOUT) || answer.equals(Answer.UNKNOWN)) {
+                    log.trace("Predicate undecided by {} within probing timeout; escalating", backend);
+                    escalatedCount.incrementAndGet();
+                    phase = TimeoutPhase.FULL;
+                } else if (answer.equals(Answer.ERROR)) {
+                    return SampledTimedAnswer.from(probe, TimeoutPhase.PROBE);
+                } else {
+                    phase = TimeoutPhase.PROBE;
+                }
+                // The probe stands in for the discarded first measurement
+                first = 1;
+            }
+
+            for (int i = first; i <= samplingSize; i++) {
                 try {
                     TimedAnswer timing = backend.solvePredicate(pred, bMachine,
                             backend.getTimeOutValue(), backend.getTimeOutUnit());
+                    if (i == first && phase == TimeoutPhase.FULL && Answer.isSolvable(timing.getAnswer())) {
+                        escalationDecidedCount.incrementAndGet();
+                    }
                     // stop if already error or timeout
                     Answer answer = timing.getAnswer();
                     if (answer.equals(Answer.ERROR) || answer.equals(Answer.TIMEOUT)) {
-                        return SampledTimedAnswer.from(timing);
+                        return SampledTimedAnswer.from(timing, phase);
                     }
 
                     // NOTE: There seems to be a sampling inconsistency where the first sampling increases
@@ -447,6 +887,12 @@ public class PredDbEntry extends PredicateLabelling {
                     measurements.add(timing.getNanoSeconds());
                     log.debug("Sampling no. {} over {} took {} ns", i + 1, backend, timing.getNanoSeconds());
                     lastAnswer = timing;
+
+                    if (adaptiveSampling != null && i < samplingSize
+                        && adaptiveSampling.isPrecise(toStatistic(measurements))) {
+                        log.trace("Timings over {} precise after {} samples", backend, i);
+                        break;
+                    }
                 } catch (FormulaException e) {
                     throw new LabelCreationException(
                             "Could not create timing sample #" + i
@@ -457,15 +903,44 @@ public class PredDbEntry extends PredicateLabelling {
             }
 
             // generate statistics
-            long mean = measurements.stream().reduce(0L, Long::sum) / samplingSize;
-            SamplingStatistic stats = new SamplingStatistic(
-                    measurements.stream()
-                            .map(Long::doubleValue)
-                            .collect(Collectors.toList()),
-                    false);
+            long mean = measurements.stream().reduce(0L, Long::sum) / measurements.size();
+            SamplingStatistic stats;
+            if (adaptiveSampling != null) {
+                stats = new SamplingStatistic(toMeasures(measurements), false,
+                        adaptiveSampling.getConfidence());
+                adaptiveSampling.recordSampling(measurements.size(), measurements.size() < samplingSize);
+            } else {
+                stats = new SamplingStatistic(toMeasures(measurements), false);
+            }
 
             return new SampledTimedAnswer(
-                    lastAnswer.getAnswer(), mean, stats, lastAnswer.getMessage());
+                    lastAnswer.getAnswer(), mean, stats, lastAnswer.getMessage(), phase);
+        }
+
+        /**
+         * Solves the predicate with the probing timeout.
+         * The backend sets it as TIME_OUT preference for the probe, so ProB
+         * gives up after the probing timeout as well.
+         */
+        private TimedAnswer probe(BPredicate pred, Backend backend, MachineAccess bMachine)
+                throws LabelCreationException {
+            probedCount.incrementAndGet();
+            try {
+                return backend.solvePredicate(pred, bMachine, probeTimeout, probeTimeUnit);
+            } catch (FormulaException e) {
+                throw new LabelCreationException(
+                        "Could not probe " + backend.toString() + " over predicate " + pred.toString(), e);
+            }
+        }
+
+        private SamplingStatistic toStatistic(List<Long> measurements) {
+            return new SamplingStatistic(toMeasures(measurements), false);
+        }
+
+        private List<Double> toMeasures(List<Long> measurements) {
+            return measurements.stream()
+                    .map(Long::doubleValue)
+                    .collect(Collectors.toList());
         }
     }
 }
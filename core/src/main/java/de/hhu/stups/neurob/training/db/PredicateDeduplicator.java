@@ -0,0 +1,223 @@
+package de.hhu.stups.neurob.training.db;
+
+import de.hhu.stups.neurob.core.api.backends.Answer;
+import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.backends.TimedAnswer;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineHash;
+import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares the solver results of predicates across all machines of a
+ * generation run.
+ * <p>
+ * Many machines of a corpus share the same invariants or properties, hence
+ * the same predicates are generated for each of them. With a deduplicator,
+ * each distinct predicate is solved only once per run; later occurrences,
+ * in the same or another machine, reuse the results. If a predicate is
+ * being solved while it occurs again, the second occurrence waits for the
+ * results instead of solving it concurrently, but only for a bounded time;
+ * after that, it solves the predicate itself.
+ * <p>
+ * The results of a predicate depend on the machine's context, e.g. on its
+ * deferred sets, the properties of its constants, its definitions, or the
+ * machines it sees or includes. Predicates are hence identified by the
+ * sha512 hash of the machine and all files it depends on (see
+ * {@link MachineHash}) together with the sha512 hash of the predicate;
+ * results are only shared between machines with identical sources, e.g.
+ * copies of the same machine across a corpus. Predicates without machine
+ * are context-free and shared among each other.
+ */
+public class PredicateDeduplicator {
+
+    /** Default time in seconds an occurrence waits for the results of an earlier one */
+    public static final long DEFAULT_WAIT_TIMEOUT = 60L;
+
+    private final Map<String, CompletableFuture<Map<Backend, TimedAnswer>>> results;
+    private final long waitTimeoutNanos;
+
+    private final AtomicLong lookups;
+    private final AtomicLong reused;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(PredicateDeduplicator.class);
+
+    public PredicateDeduplicator() {
+        this(DEFAULT_WAIT_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param waitTimeout Time an occurrence waits at most for the results
+     *         of an earlier occurrence still being solved, before solving
+     *         the predicate itself
+     * @param timeUnit Unit of the wait timeout
+     */
+    public PredicateDeduplicator(long waitTimeout, TimeUnit timeUnit) {
+        this.results = new ConcurrentHashMap<>();
+        this.waitTimeoutNanos = timeUnit.toNanos(waitTimeout);
+        this.lookups = new AtomicLong(0L);
+        this.reused = new AtomicLong(0L);
+    }
+
+    /**
+     * Returns the results of an earlier occurrence of the predicate in a
+     * machine of the same context, or solves it with the given solver and
+     * shares the results with later occurrences.
+     * <p>
+     * If the solver fails or yields incomplete results, i.e. a backend
+     * without answer or a skipped one, the results are not shared;
+     * occurrences waiting for them solve the predicate themselves, as do
+     * occurrences that waited longer than the wait timeout.
+     * If the context of the machine cannot be determined, the predicate is
+     * solved without sharing its results.
+     *
+     * @param pred Predicate to solve
+     * @param access Access to the machine the predicate belongs to;
+     *         may be null for predicates without machine
+     * @param solver Solves the predicate over all backends
+     *
+     * @return Results of the predicate per backend
+     *
+     * @throws LabelCreationException if the solver fails
+     */
+    public Map<Backend, TimedAnswer> solve(BPredicate pred, @Nullable MachineAccess access, Solver solver)
+            throws LabelCreationException {
+        String context = access != null ? getContextHash(access) : "";
+        if (context == null) {
+            lookups.incrementAndGet();
+            return solver.solve();
+        }
+        return solve(pred, context, solver);
+    }
+
+    /**
+     * @param pred Predicate to solve
+     * @param context Hash of the context of the machine the predicate belongs to
+     * @param solver Solves the predicate over all backends
+     *
+     * @return Results of the predicate per backend
+     *
+     * @throws LabelCreationException if the solver fails
+     */
+    Map<Backend, TimedAnswer> solve(BPredicate pred, String context, Solver solver)
+            throws LabelCreationException {
+        lookups.incrementAndGet();
+        String key = context + ":" + DigestUtils.sha512Hex(pred.getPredicate());
+
+        while (true) {
+            CompletableFuture<Map<Backend, TimedAnswer>> own = new CompletableFuture<>();
+            CompletableFuture<Map<Backend, TimedAnswer>> earlier = results.putIfAbsent(key, own);
+
+            if (earlier == null) {
+                return solveShared(key, pred, solver, own);
+            }
+
+            try {
+                Map<Backend, TimedAnswer> shared = earlier.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+                reused.incrementAndGet();
+                log.trace("Reusing results of {}", pred);
+                return shared;
+            } catch (ExecutionException e) {
+                // Earlier occurrence failed and was removed; try to solve it ourselves
+                log.trace("Earlier occurrence of {} failed; solving it anew", pred);
+            } catch (TimeoutException e) {
+                // Earlier occurrence might hang; do not block this worker any longer
+                log.debug("Timed out waiting for earlier occurrence of {}; solving it without sharing", pred);
+                return solver.solve();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LabelCreationException("Interrupted while waiting for results of " + pred, e);
+            }
+        }
+    }
+
+    /**
+     * Calculates the sha512 hash over the given machine's file and all
+     * files it depends on, i.e. the machines it sees, includes, extends,
+     * or refines, and its definition files.
+     *
+     * @param access Access to the machine
+     *
+     * @return Hash of the machine's context, or null if it could not be determined
+     */
+    String getContextHash(MachineAccess access) {
+        Path source = access.getSource();
+        if (source == null) {
+            return null;
+        }
+
+        try {
+            return MachineHash.hash(source);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not determine context of {}; not sharing its results", source, e);
+            return null;
+        }
+    }
+
+    private Map<Backend, TimedAnswer> solveShared(String hash, BPredicate pred, Solver solver,
+            CompletableFuture<Map<Backend, TimedAnswer>> own) throws LabelCreationException {
+        Map<Backend, TimedAnswer> solved;
+        try {
+            solved = solver.solve();
+        } catch (LabelCreationException | RuntimeException e) {
+            results.remove(hash, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+
+        // Skipped backends depend on the machine's earlier predicates, hence are not shared either
+        if (solved.values().stream().anyMatch(a -> a == null || Answer.SKIPPED.equals(a.getAnswer()))) {
+            results.remove(hash, own);
+            own.completeExceptionally(new LabelCreationException("Incomplete results for " + pred));
+            return solved;
+        }
+
+        own.complete(Collections.unmodifiableMap(solved));
+        return solved;
+    }
+
+    /**
+     * @return Number of predicates looked up.
+     */
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    /**
+     * @return Number of predicates whose results were reused from an earlier occurrence.
+     */
+    public long getReuseCount() {
+        return reused.get();
+    }
+
+    /**
+     * @return Number of distinct predicates with shared results.
+     */
+    public int getDistinctCount() {
+        return results.size();
+    }
+
+    /**
+     * Solves a predicate over all backends.
+     */
+    @FunctionalInterface
+    public interface Solver {
+        Map<Backend, TimedAnswer> solve() throws LabelCreationException;
+    }
+}
@@ -10,6 +10,8 @@ import java.util.Optional;
 public class SampledTimedAnswer extends TimedAnswer {
 
     protected SamplingStatistic stats;
+    /** Phase of a two-phase labelling the answer came from; null if labelled in a single phase */
+    protected TimeoutPhase phase;
 
     public SampledTimedAnswer(Answer answer, Long nanoseconds, SamplingStatistic stats) {
         super(answer, nanoseconds);
@@ -21,10 +23,30 @@ public class SampledTimedAnswer extends TimedAnswer {
         this.stats = stats;
     }
 
+    public SampledTimedAnswer(Answer answer, Long nanoseconds, SamplingStatistic stats, String message,
+            TimeoutPhase phase) {
+        this(answer, nanoseconds, stats, message);
+        this.phase = phase;
+    }
+
     public SamplingStatistic getStats() {
         return stats;
     }
 
+    /**
+     * @return Phase of a two-phase labelling the answer came from,
+     *         or null if it was labelled in a single phase.
+     */
+    public TimeoutPhase getPhase() {
+        return phase;
+    }
+
+    public static SampledTimedAnswer from(TimedAnswer answer, TimeoutPhase phase) {
+        SampledTimedAnswer sampled = from(answer);
+        sampled.phase = phase;
+        return sampled;
+    }
+
     public static SampledTimedAnswer from(TimedAnswer answer) {
         // As #getNanoSeconds returns a long but can be Null, we need an
         // optional. Otherwise, we will get null pointer exceptions due to
@@ -1,8 +1,12 @@
 package de.hhu.stups.neurob.training.db;
 
+import org.apache.commons.math3.distribution.TDistribution;
+
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class SamplingStatistic {
@@ -10,12 +14,32 @@ public class SamplingStatistic {
     public final double stdev;
     public final double sem;
     public final int sampleSize;
+    /** Confidence level of {@link #ciHalfWidth}, or NaN if no interval was recorded */
+    public final double confidence;
+    /** Half-width of the t-distribution confidence interval around the mean */
+    public final double ciHalfWidth;
+
+    /** Two-sided t quantiles, keyed by confidence level and degrees of freedom */
+    private static final Map<String, Double> quantiles = new ConcurrentHashMap<>();
 
     public SamplingStatistic(int sampleSize, double mean, double stdev, double sem) {
+        this(sampleSize, mean, stdev, sem, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Restores previously calculated statistics.
+     *
+     * @param confidence Confidence level of the interval, or NaN if no interval was recorded
+     * @param ciHalfWidth Half-width of the confidence interval around the mean
+     */
+    public SamplingStatistic(int sampleSize, double mean, double stdev, double sem,
+            double confidence, double ciHalfWidth) {
         this.mean = mean;
         this.stdev = stdev;
         this.sem = sem;
         this.sampleSize = sampleSize;
+        this.confidence = confidence;
+        this.ciHalfWidth = ciHalfWidth;
     }
 
     public SamplingStatistic(boolean isPopulation, Double... measures) {
@@ -23,6 +47,20 @@ public class SamplingStatistic {
     }
 
     public SamplingStatistic(List<Double> measurements, boolean isPopulation) {
+        this(measurements, isPopulation, Double.NaN);
+    }
+
+    /**
+     * Calculates the statistics over the given measurements and records the
+     * confidence interval around the mean at the given confidence level.
+     *
+     * @param measurements Measured values
+     * @param isPopulation Whether the measurements are the whole population
+     *         rather than a sample of it
+     * @param confidence Confidence level of the interval, e.g. 0.95,
+     *         or NaN to record no interval
+     */
+    public SamplingStatistic(List<Double> measurements, boolean isPopulation, double confidence) {
         if (measurements.size() == 0) {
             throw new IllegalArgumentException("List of measurements cannot be empty");
         } else if (measurements.size() == 1) {
@@ -45,6 +83,32 @@ public class SamplingStatistic {
             this.stdev = Math.sqrt(variance);
             this.sem = stdev / Math.sqrt(sampleSize);
         }
+        this.confidence = confidence;
+        this.ciHalfWidth = Double.isNaN(confidence)
+                ? Double.NaN
+                : confidenceHalfWidth(confidence);
+    }
+
+    /**
+     * Half-width of the two-sided confidence interval around the mean,
+     * based on the t-distribution with <code>sampleSize - 1</code> degrees
+     * of freedom.
+     *
+     * @param confidence Confidence level, e.g. 0.95
+     *
+     * @return Half-width of the interval; infinite for a single measurement
+     */
+    public double confidenceHalfWidth(double confidence) {
+        if (sampleSize < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return tQuantile(confidence, sampleSize - 1) * sem;
+    }
+
+    private static double tQuantile(double confidence, int degreesOfFreedom) {
+        return quantiles.computeIfAbsent(confidence + "/" + degreesOfFreedom,
+                key -> new TDistribution(degreesOfFreedom)
+                        .inverseCumulativeProbability(1 - (1 - confidence) / 2.));
     }
 
     public double getMean() {
@@ -63,17 +127,26 @@ public class SamplingStatistic {
         return sampleSize;
     }
 
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public double getCiHalfWidth() {
+        return ciHalfWidth;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         SamplingStatistic that = (SamplingStatistic) o;
-        return Double.compare(that.mean, mean) == 0 && Double.compare(that.stdev, stdev) == 0 && Double.compare(that.sem, sem) == 0 && sampleSize == that.sampleSize;
+        return Double.compare(that.mean, mean) == 0 && Double.compare(that.stdev, stdev) == 0 && Double.compare(that.sem, sem) == 0 && sampleSize == that.sampleSize
+               && Double.compare(that.confidence, confidence) == 0 && Double.compare(that.ciHalfWidth, ciHalfWidth) == 0;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(mean, stdev, sem, sampleSize);
+        return Objects.hash(mean, stdev, sem, sampleSize, confidence, ciHalfWidth);
     }
 
     @Override
@@ -83,6 +156,7 @@ public class SamplingStatistic {
                ", stdev=" + stdev +
                ", sem=" + sem +
                ", sampleSize=" + sampleSize +
+               (Double.isNaN(confidence) ? "" : ", ciHalfWidth=" + ciHalfWidth + " at " + confidence) +
                '}';
     }
 }
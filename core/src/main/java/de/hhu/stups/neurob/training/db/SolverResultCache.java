@@ -0,0 +1,334 @@
+package de.hhu.stups.neurob.training.db;
+
+import de.hhu.stups.neurob.core.api.backends.Answer;
+import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineHash;
+import de.prob.cli.CliVersionNumber;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache of sampled solver results.
+ * <p>
+ * Results are keyed by the sha512 hash of the machine, the sha512 hash of
+ * the predicate, the {@link Backend#getDescriptionString() description} of
+ * the backend, and the version of the ProB cli.
+ * As long as neither of those changes, a predicate does not need to be
+ * solved again when regenerating a data base.
+ * <p>
+ * The cache directory holds one tab separated file per machine hash,
+ * to which new results are appended. A file is only read once
+ * its machine is first looked up. The files of the most recently stored
+ * machines are kept open for appending until the cache is {@link #close() closed}.
+ * <p>
+ * {@link Answer#ERROR Errors} are not cached, as they might stem from a
+ * crashed or misconfigured ProB cli rather than from the predicate.
+ */
+public class SolverResultCache implements Closeable {
+
+    private final Path cacheDirectory;
+
+    /** Cached results per machine hash, keyed by {@link #key} */
+    private final Map<String, Map<String, SampledTimedAnswer>> results;
+
+    /** Open cache files per machine hash, least recently written first */
+    private final LinkedHashMap<String, BufferedWriter> writers;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    private static final String FILE_EXTENSION = ".results";
+    /** Number of cache files kept open for appending */
+    static final int MAX_OPEN_WRITERS = 64;
+
+    /** Number of fields in a line: three key fields followed by the answer */
+    static final int FIELD_COUNT = 13;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(SolverResultCache.class);
+
+    /**
+     * @param cacheDirectory Directory in which the cached results are stored.
+     *         Is created if not existent.
+     */
+    public SolverResultCache(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        this.results = new ConcurrentHashMap<>();
+        this.writers = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new AtomicLong(0L);
+        this.misses = new AtomicLong(0L);
+    }
+
+    /**
+     * Looks up a previously stored result.
+     *
+     * @param machine Source file of the machine the predicate belongs to
+     * @param pred Predicate to look up
+     * @param backend Backend the predicate was solved with
+     * @param cliVersion Version of the ProB cli that solved the predicate
+     *
+     * @return The cached result, or null if no result is stored
+     *         or the machine file cannot be hashed.
+     */
+    public SampledTimedAnswer lookup(Path machine, BPredicate pred, Backend backend,
+            CliVersionNumber cliVersion) {
+        String machineHash = getMachineHash(machine);
+        if (machineHash == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        SampledTimedAnswer answer = getResults(machineHash)
+                .get(key(pred, backend, cliVersion));
+        if (answer == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            log.trace("Cache hit for {} over {}", pred, backend);
+        }
+        return answer;
+    }
+
+    /**
+     * Stores the given result and appends it to the machine's cache file.
+     * Errors are ignored.
+     *
+     * @param machine Source file of the machine the predicate belongs to
+     * @param pred Predicate that was solved
+     * @param backend Backend the predicate was solved with
+     * @param cliVersion Version of the ProB cli that solved the predicate
+     * @param answer Sampled result
+     */
+    public void store(Path machine, BPredicate pred, Backend backend,
+            CliVersionNumber cliVersion, SampledTimedAnswer answer) {
+        String machineHash = getMachineHash(machine);
+        if (machineHash == null || answer == null || Answer.ERROR.equals(answer.getAnswer())) {
+            return;
+        }
+
+        String key = key(pred, backend, cliVersion);
+        getResults(machineHash).put(key, answer);
+
+        synchronized (writers) {
+            Path cacheFile = getCacheFile(machineHash);
+            try {
+                BufferedWriter writer = getWriter(machineHash);
+                writer.write(translateToLine(key, answer));
+                writer.newLine();
+                // Flushed per line, so concurrent runs over the same cache only append whole lines
+                writer.flush();
+            } catch (IOException e) {
+                log.warn("Unable to persist result for {} to {}", pred, cacheFile, e);
+            }
+        }
+    }
+
+    /**
+     * Closes all cache files kept open for appending.
+     */
+    @Override
+    public void close() {
+        synchronized (writers) {
+            writers.values().forEach(this::closeWriter);
+            writers.clear();
+        }
+    }
+
+    /**
+     * Returns the open writer to the cache file of the given machine,
+     * opening it if necessary. If too many files are open, the least
+     * recently written one is closed.
+     * Must be called while holding the lock on {@link #writers}.
+     */
+    private BufferedWriter getWriter(String machineHash) throws IOException {
+        BufferedWriter writer = writers.get(machineHash);
+        if (writer != null) {
+            return writer;
+        }
+
+        if (writers.size() >= MAX_OPEN_WRITERS) {
+            Iterator<BufferedWriter> eldest = writers.values().iterator();
+            closeWriter(eldest.next());
+            eldest.remove();
+        }
+
+        Files.createDirectories(cacheDirectory);
+        writer = Files.newBufferedWriter(getCacheFile(machineHash),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        writers.put(machineHash, writer);
+        return writer;
+    }
+
+    private void closeWriter(BufferedWriter writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Unable to close cache file in {}", cacheDirectory, e);
+        }
+    }
+
+    /**
+     * @return Number of lookups that were answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of lookups that were not answered from the cache.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Calculates the sha512 hash of the given machine file and the files
+     * it depends on (see {@link MachineHash}), so results are not reused
+     * once e.g. a seen machine changed.
+     *
+     * @param machine Source file of the machine
+     *
+     * @return Hash of the file and its dependencies,
+     *         or null if one of the files is not accessible.
+     */
+    String getMachineHash(Path machine) {
+        if (machine == null) {
+            return null;
+        }
+
+        try {
+            return MachineHash.hash(machine);
+        } catch (IOException e) {
+            log.warn("Unable to generate hash for {}; results will not be cached", machine, e);
+            return null;
+        }
+    }
+
+    private Map<String, SampledTimedAnswer> getResults(String machineHash) {
+        return results.computeIfAbsent(machineHash, this::loadResults);
+    }
+
+    private Map<String, SampledTimedAnswer> loadResults(String machineHash) {
+        Map<String, SampledTimedAnswer> machineResults = new ConcurrentHashMap<>();
+
+        Path cacheFile = getCacheFile(machineHash);
+        if (!Files.exists(cacheFile)) {
+            return machineResults;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (!isWellFormed(fields)) {
+                    // Might be a partially written line from an aborted run
+                    log.warn("Skipping malformed entry in {}", cacheFile);
+                    continue;
+                }
+                SampledTimedAnswer answer = translateFromFields(fields);
+                if (Answer.ERROR.equals(answer.getAnswer())) {
+                    // Stored by earlier versions; solved anew instead
+                    continue;
+                }
+                String key = fields[0] + "\t" + fields[1] + "\t" + fields[2];
+                machineResults.put(key, answer);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Unable to read cached results from {}", cacheFile, e);
+        }
+        log.debug("Loaded {} cached results from {}", machineResults.size(), cacheFile);
+
+        return machineResults;
+    }
+
+    private Path getCacheFile(String machineHash) {
+        return cacheDirectory.resolve(machineHash + FILE_EXTENSION);
+    }
+
+    String key(BPredicate pred, Backend backend, CliVersionNumber cliVersion) {
+        return DigestUtils.sha512Hex(pred.getPredicate())
+               + "\t" + translateVersion(cliVersion)
+               + "\t" + StringEscapeUtils.escapeJava(backend.getDescriptionString());
+    }
+
+    private String translateVersion(CliVersionNumber cliVersion) {
+        if (cliVersion == null) {
+            return "unknown";
+        }
+        return cliVersion.major + "." + cliVersion.minor + "." + cliVersion.service
+               + "-" + cliVersion.qualifier + "-" + cliVersion.revision;
+    }
+
+    /**
+     * Translates the answer into a tab separated line, prefixed by the given key.
+     */
+    static String translateToLine(String key, SampledTimedAnswer answer) {
+        SamplingStatistic stats = answer.getStats();
+        String message = answer.getMessage() != null
+                ? StringEscapeUtils.escapeJava(answer.getMessage())
+                : "";
+        return key
+               + "\t" + answer.getAnswer().name()
+               + "\t" + answer.getNanoSeconds()
+               + "\t" + (stats != null ? stats.getSampleSize() : 0)
+               + "\t" + (stats != null ? stats.getMean() : Double.NaN)
+               + "\t" + (stats != null ? stats.getStdev() : Double.NaN)
+               + "\t" + (stats != null ? stats.getSem() : Double.NaN)
+               + "\t" + (stats != null ? stats.getConfidence() : Double.NaN)
+               + "\t" + (stats != null ? stats.getCiHalfWidth() : Double.NaN)
+               + "\t" + (answer.getPhase() != null ? answer.getPhase().name() : "")
+               + "\t" + message;
+    }
+
+    /**
+     * @return Whether the fields of a line hold a key and an answer.
+     */
+    static boolean isWellFormed(String[] fields) {
+        return fields.length == FIELD_COUNT;
+    }
+
+    /**
+     * Translates the fields of a line back into an answer.
+     * The first three fields hold the key and are ignored.
+     */
+    static SampledTimedAnswer translateFromFields(String[] fields) {
+        Answer answer = Answer.valueOf(fields[3]);
+        Long nanos = "null".equals(fields[4]) ? null : Long.parseLong(fields[4]);
+        SamplingStatistic stats = new SamplingStatistic(
+                Integer.parseInt(fields[5]),
+                Double.parseDouble(fields[6]),
+                Double.parseDouble(fields[7]),
+                Double.parseDouble(fields[8]),
+                Double.parseDouble(fields[9]),
+                Double.parseDouble(fields[10]));
+        TimeoutPhase phase = fields[11].isEmpty()
+                ? null
+                : TimeoutPhase.valueOf(fields[11]);
+        String message = fields[12].isEmpty()
+                ? null
+                : StringEscapeUtils.unescapeJava(fields[12]);
+
+        return new SampledTimedAnswer(answer, nanos, stats, message, phase);
+    }
+
+}
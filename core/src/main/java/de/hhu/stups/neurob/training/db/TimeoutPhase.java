@@ -0,0 +1,14 @@
+package de.hhu.stups.neurob.training.db;
+
+/**
+ * Phase of a two-phase labelling in which a {@link SampledTimedAnswer} was
+ * determined.
+ *
+ * @see PredDbEntry.Generator#setProbeTimeout(Long, java.util.concurrent.TimeUnit)
+ */
+public enum TimeoutPhase {
+    /** Decided within the short probing timeout */
+    PROBE,
+    /** Undecided after probing, hence solved again with the full timeout */
+    FULL
+}
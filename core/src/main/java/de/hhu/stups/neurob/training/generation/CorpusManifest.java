@@ -0,0 +1,304 @@
+package de.hhu.stups.neurob.training.generation;
+
+import de.hhu.stups.neurob.core.api.bmethod.MachineDependencies;
+import de.hhu.stups.neurob.core.api.bmethod.MachineHash;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent manifest of the machines of a corpus for which training data
+ * was generated.
+ * <p>
+ * For each source file, the manifest records the sha512 hash over it and
+ * the files it depends on (see {@link MachineHash}), a hash of
+ * the generation configuration (e.g. the generation rules and backends in
+ * use), and the location the data was written to. In lazy generation, a
+ * machine is only generated anew if its content, one of its dependencies,
+ * or the configuration changed, or its data is missing; other than comparing modification
+ * times, this survives e.g. a fresh checkout of the corpus, and it does
+ * not need to parse the already generated data.
+ * <p>
+ * Along with the hash, the manifest records the size and modification time
+ * of the source file and each of its dependencies (see
+ * {@link MachineDependencies}); a machine is only hashed again if one of
+ * them differs. New entries are appended to the manifest file right away;
+ * {@link #save()} compacts it.
+ */
+public class CorpusManifest {
+
+    private final Path manifestFile;
+    private final String configurationHash;
+
+    /** Entries keyed by the absolute, normalised source path */
+    private final Map<Path, Entry> entries;
+
+    private Writer appender;
+
+    private final AtomicLong upToDate;
+    private final AtomicLong outdated;
+    private final AtomicLong hashed;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(CorpusManifest.class);
+
+    /**
+     * Loads the given manifest file, if it exists.
+     *
+     * @param manifestFile File the manifest is stored in
+     * @param configuration Description of the generation configuration;
+     *         machines recorded under a different configuration are
+     *         considered outdated
+     */
+    public CorpusManifest(Path manifestFile, String configuration) {
+        this.manifestFile = manifestFile;
+        this.configurationHash = DigestUtils.sha512Hex(configuration);
+        this.entries = new ConcurrentHashMap<>();
+        this.upToDate = new AtomicLong(0L);
+        this.outdated = new AtomicLong(0L);
+        this.hashed = new AtomicLong(0L);
+
+        load();
+    }
+
+    /**
+     * Checks whether the data at the target location was generated from
+     * the current content of the source file under the current configuration.
+     *
+     * @param sourceFile Machine file
+     * @param targetLocation Location the machine's data would be written to
+     *
+     * @return Whether the machine does not need to be generated again
+     */
+    public boolean isUpToDate(Path sourceFile, Path targetLocation) {
+        Path source = normalise(sourceFile);
+        Entry entry = entries.get(source);
+        boolean current = entry != null
+                          && configurationHash.equals(entry.configurationHash)
+                          && normalise(targetLocation).equals(entry.target)
+                          && Files.exists(targetLocation)
+                          && hasContent(source, entry);
+
+        if (current) {
+            upToDate.incrementAndGet();
+        } else {
+            outdated.incrementAndGet();
+        }
+        return current;
+    }
+
+    /**
+     * Records that the data of the source file was written to the target location
+     * under the current configuration.
+     *
+     * @param sourceFile Machine file
+     * @param targetLocation Location the machine's data was written to
+     */
+    public void record(Path sourceFile, Path targetLocation) {
+        Path source = normalise(sourceFile);
+        try {
+            hashed.incrementAndGet();
+            MachineHash hash = MachineHash.of(source);
+            Entry entry = new Entry(source, hash.getHash(), configurationHash,
+                    normalise(targetLocation), hash.getStamps());
+            entries.put(source, entry);
+            append(entry);
+        } catch (IOException e) {
+            log.warn("Unable to record {} in manifest {}", sourceFile, manifestFile, e);
+        }
+    }
+
+    /**
+     * Writes the manifest anew, containing only the latest entry of each machine.
+     *
+     * @throws IOException if the manifest could not be written
+     */
+    public synchronized void save() throws IOException {
+        closeAppender();
+
+        Path parent = manifestFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries.values()) {
+                writer.write(entry.toLine());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, manifestFile,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Saved {} entries to manifest {}", entries.size(), manifestFile);
+    }
+
+    /**
+     * @return Number of machines found to be up to date.
+     */
+    public long getUpToDateCount() {
+        return upToDate.get();
+    }
+
+    /**
+     * @return Number of machines found to be outdated or not recorded.
+     */
+    public long getOutdatedCount() {
+        return outdated.get();
+    }
+
+    /**
+     * @return Number of machines that needed to be hashed.
+     */
+    public long getHashCount() {
+        return hashed.get();
+    }
+
+    public Path getManifestFile() {
+        return manifestFile;
+    }
+
+    /**
+     * Whether the source file and its dependencies still have the content
+     * recorded in the entry. They are only hashed if one of their stamps
+     * changed; the entry's stamps are refreshed if only those changed.
+     */
+    private boolean hasContent(Path source, Entry entry) {
+        if (MachineHash.areCurrent(entry.stamps)) {
+            return true;
+        }
+
+        try {
+            hashed.incrementAndGet();
+            MachineHash hash = MachineHash.of(source);
+            if (!hash.getHash().equals(entry.hash)) {
+                return false;
+            }
+            Entry touched = new Entry(source, entry.hash, entry.configurationHash,
+                    entry.target, hash.getStamps());
+            entries.put(source, touched);
+            append(touched);
+            return true;
+        } catch (IOException e) {
+            log.warn("Unable to check content of {}; treating it as changed", source, e);
+            return false;
+        }
+    }
+
+    private synchronized void append(Entry entry) throws IOException {
+        if (appender == null) {
+            Path parent = manifestFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            appender = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        appender.write(entry.toLine());
+        appender.write('\n');
+        appender.flush();
+    }
+
+    private void closeAppender() throws IOException {
+        if (appender != null) {
+            appender.close();
+            appender = null;
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(manifestFile)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Later entries of the same machine overwrite earlier ones
+                Entry entry = Entry.fromLine(line);
+                if (entry == null) {
+                    log.warn("Skipping malformed entry in {}", manifestFile);
+                    continue;
+                }
+                entries.put(entry.source, entry);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read manifest {}; generating all data anew", manifestFile, e);
+            entries.clear();
+        }
+        log.debug("Loaded {} entries from manifest {}", entries.size(), manifestFile);
+    }
+
+    private static Path normalise(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static class Entry {
+        private final Path source;
+        private final String hash;
+        private final String configurationHash;
+        private final Path target;
+        /** Source file and dependencies, mapped to their size and modification time */
+        private final Map<Path, String> stamps;
+
+        Entry(Path source, String hash, String configurationHash, Path target,
+                Map<Path, String> stamps) {
+            this.source = source;
+            this.hash = hash;
+            this.configurationHash = configurationHash;
+            this.target = target;
+            this.stamps = stamps;
+        }
+
+        String toLine() {
+            StringBuilder line = new StringBuilder()
+                    .append(StringEscapeUtils.escapeJava(source.toString()))
+                    .append('\t').append(hash)
+                    .append('\t').append(configurationHash)
+                    .append('\t').append(StringEscapeUtils.escapeJava(target.toString()));
+            for (Map.Entry<Path, String> stamp : stamps.entrySet()) {
+                line.append('\t').append(StringEscapeUtils.escapeJava(stamp.getKey().toString()))
+                        .append('\t').append(stamp.getValue());
+            }
+            return line.toString();
+        }
+
+        static Entry fromLine(String line) {
+            String[] fields = line.split("\t", -1);
+            // Four fields, followed by at least the source file and its stamp
+            if (fields.length < 6 || fields.length % 2 != 0) {
+                // Might be a partially written line from an aborted run
+                return null;
+            }
+            try {
+                Map<Path, String> stamps = new LinkedHashMap<>();
+                for (int i = 4; i < fields.length; i += 2) {
+                    stamps.put(Paths.get(StringEscapeUtils.unescapeJava(fields[i])), fields[i + 1]);
+                }
+                return new Entry(
+                        Paths.get(StringEscapeUtils.unescapeJava(fields[0])),
+                        fields[1],
+                        fields[2],
+                        Paths.get(StringEscapeUtils.unescapeJava(fields[3])),
+                        stamps);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
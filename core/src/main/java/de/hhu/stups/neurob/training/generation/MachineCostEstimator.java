@@ -0,0 +1,261 @@
+package de.hhu.stups.neurob.training.generation;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates the generation cost of machine files, such that the most
+ * expensive machines can be generated first.
+ * <p>
+ * If the machines are generated in arbitrary order, a single large machine
+ * that starts late can keep the run going long after all other threads
+ * became idle. Starting with the most expensive machines lets the cheap
+ * ones fill the gaps at the end.
+ * <p>
+ * The cost of a machine is estimated from its generation time in a
+ * previous run, stored in a history file, scaled by how much the file size
+ * changed since. For machines without history, the cost is estimated from
+ * the file size, scaled by the average time per byte over the history.
+ * The actual costs of the current run are recorded, to be compared with
+ * the estimates in {@link #getReport()} and to become the history of the
+ * next run via {@link #save()}.
+ */
+public class MachineCostEstimator {
+
+    /** Time per byte assumed if there is no history */
+    private static final double DEFAULT_NANOS_PER_BYTE = 1.0;
+
+    private final Path historyFile;
+
+    /** Costs of previous runs, keyed by the absolute, normalised source path */
+    private final Map<Path, Cost> history;
+    /** Estimates of the current run */
+    private final Map<Path, Long> estimates;
+    /** Costs measured in the current run */
+    private final Map<Path, Cost> actuals;
+
+    private final double nanosPerByte;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(MachineCostEstimator.class);
+
+    /**
+     * @param historyFile File holding the costs of previous runs, to which
+     *         the costs of this run are {@link #save() saved}; may not exist yet
+     */
+    public MachineCostEstimator(Path historyFile) {
+        this.historyFile = historyFile;
+        this.history = new ConcurrentHashMap<>();
+        this.estimates = new ConcurrentHashMap<>();
+        this.actuals = new ConcurrentHashMap<>();
+
+        load();
+        this.nanosPerByte = averageNanosPerByte();
+    }
+
+    /**
+     * Estimates the generation cost of the given machine file.
+     *
+     * @param file Machine file
+     *
+     * @return Estimated cost in nanoseconds
+     */
+    public long estimate(Path file) {
+        Path source = normalise(file);
+        long size = sizeOf(source);
+        Cost previous = history.get(source);
+
+        long estimate;
+        if (previous != null && previous.size > 0 && size > 0) {
+            estimate = (long) (previous.nanos * ((double) size / previous.size));
+        } else if (previous != null) {
+            estimate = previous.nanos;
+        } else {
+            estimate = (long) (size * nanosPerByte);
+        }
+        estimates.put(source, estimate);
+        return estimate;
+    }
+
+    /**
+     * Orders the given files by their estimated cost, most expensive first.
+     *
+     * @param files Machine files
+     *
+     * @return New list of the files, ordered by descending estimated cost
+     */
+    public List<Path> order(List<Path> files) {
+        Map<Path, Long> fileEstimates = new ConcurrentHashMap<>();
+        files.forEach(file -> fileEstimates.put(file, estimate(file)));
+
+        List<Path> ordered = new ArrayList<>(files);
+        ordered.sort(Comparator.comparing(fileEstimates::get, Comparator.reverseOrder()));
+        return ordered;
+    }
+
+    /**
+     * Records the actual cost of generating the given machine file in this run.
+     *
+     * @param file Machine file
+     * @param nanos Time it took to generate the file's training data
+     */
+    public void recordActual(Path file, long nanos) {
+        Path source = normalise(file);
+        actuals.put(source, new Cost(sizeOf(source), nanos));
+    }
+
+    /**
+     * Writes the history, updated by the actual costs of this run.
+     *
+     * @throws IOException if the history file could not be written
+     */
+    public void save() throws IOException {
+        Map<Path, Cost> updated = new ConcurrentHashMap<>(history);
+        updated.putAll(actuals);
+
+        Path parent = historyFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = historyFile.resolveSibling(historyFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<Path, Cost> entry : updated.entrySet()) {
+                writer.write(StringEscapeUtils.escapeJava(entry.getKey().toString())
+                             + "\t" + entry.getValue().size
+                             + "\t" + entry.getValue().nanos);
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, historyFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return Number of machines with a cost from a previous run.
+     */
+    public int getHistorySize() {
+        return history.size();
+    }
+
+    /**
+     * @return Estimated cost of the machine in this run, or null if not estimated
+     */
+    public Long getEstimate(Path file) {
+        return estimates.get(normalise(file));
+    }
+
+    /**
+     * @return Actual cost of the machine in this run, or null if not recorded
+     */
+    public Long getActual(Path file) {
+        Cost actual = actuals.get(normalise(file));
+        return actual != null ? actual.nanos : null;
+    }
+
+    /**
+     * Compares the estimated and actual costs of the machines generated in this run.
+     *
+     * @return Report listing the machines in order of their estimated cost
+     */
+    public String getReport() {
+        List<Path> generated = new ArrayList<>(actuals.keySet());
+        generated.removeIf(file -> !estimates.containsKey(file));
+        generated.sort(Comparator.comparing(estimates::get, Comparator.reverseOrder()));
+
+        StringBuilder report = new StringBuilder();
+        report.append("Machine costs, most expensive estimate first (")
+                .append(history.size()).append(" machines with history):\n");
+
+        long totalEstimate = 0L;
+        long totalActual = 0L;
+        double relativeErrors = 0.0;
+        for (Path file : generated) {
+            long estimate = estimates.get(file);
+            long actual = actuals.get(file).nanos;
+            totalEstimate += estimate;
+            totalActual += actual;
+            relativeErrors += actual > 0 ? Math.abs(estimate - actual) / (double) actual : 0.0;
+            report.append(String.format("  %s: estimated %.3f s, actual %.3f s%n",
+                    file, estimate / 1e9, actual / 1e9));
+        }
+        report.append(String.format("Total: estimated %.3f s, actual %.3f s; mean relative error %.1f %%",
+                totalEstimate / 1e9, totalActual / 1e9,
+                generated.isEmpty() ? 0.0 : 100 * relativeErrors / generated.size()));
+
+        return report.toString();
+    }
+
+    private double averageNanosPerByte() {
+        long bytes = 0L;
+        long nanos = 0L;
+        for (Cost cost : history.values()) {
+            if (cost.size > 0) {
+                bytes += cost.size;
+                nanos += cost.nanos;
+            }
+        }
+        return bytes > 0 ? (double) nanos / bytes : DEFAULT_NANOS_PER_BYTE;
+    }
+
+    private void load() {
+        if (!Files.exists(historyFile)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(historyFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 3) {
+                    log.warn("Skipping malformed entry in {}", historyFile);
+                    continue;
+                }
+                try {
+                    history.put(Paths.get(StringEscapeUtils.unescapeJava(fields[0])),
+                            new Cost(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Skipping malformed entry in {}", historyFile, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read cost history {}; estimating from file sizes only", historyFile, e);
+        }
+        log.debug("Loaded costs of {} machines from {}", history.size(), historyFile);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static Path normalise(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private static class Cost {
+        private final long size;
+        private final long nanos;
+
+        Cost(long size, long nanos) {
+            this.size = size;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package de.hhu.stups.neurob.training.generation;
+
+import de.hhu.stups.neurob.core.api.DaemonThreadFactory;
+import de.hhu.stups.neurob.core.api.bmethod.BMachine;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccessPool;
+import de.hhu.stups.neurob.core.exceptions.FeatureCreationException;
+import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
+import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
+import de.hhu.stups.neurob.core.labelling.Labelling;
+import de.hhu.stups.neurob.training.data.TrainingData;
+import de.hhu.stups.neurob.training.data.TrainingSample;
+import de.hhu.stups.neurob.training.generation.statistics.DataGenerationStats;
+import de.hhu.stups.neurob.training.generation.statistics.StageStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Generates the training data of a {@link PredicateTrainingGenerator} in
+ * explicit stages, connected by bounded queues:
+ * <ol>
+ * <li>{@link Stage#COLLECTION}: Collects the predicates of a machine by
+ * the generator's generation rules</li>
+ * <li>{@link Stage#CLEANUP}: Cleans up the ASTs of the predicates in batches, if the
+ * generator has {@link PredicateTrainingGenerator#setAstCleanup(boolean) AST cleanup} enabled</li>
+ * <li>{@link Stage#FEATURES}: Generates the features of each predicate</li>
+ * <li>{@link Stage#LABELLING}: Generates the labellings of each predicate</li>
+ * <li>{@link Stage#WRITING}: Writes the samples of a machine via the
+ * generator's {@link de.hhu.stups.neurob.training.formats.TrainingDataFormat format}</li>
+ * </ol>
+ * Each stage runs on its own {@link #setThreads(Stage, int) number of threads},
+ * so that e.g. CPU-bound feature generation and writing overlap with the
+ * ProB-bound labelling.
+ * <p>
+ * A stage blocks when the queue to its successor is full, propagating
+ * backpressure to the predicate collection. Additionally, at most
+ * {@link #setQueueCapacity(int) queue capacity} predicates per machine are
+ * in the pipeline at once, and only as many machines as there are writing
+ * threads are processed concurrently. The samples of each machine are written
+ * in the order of its predicates, regardless of the order in which the
+ * predicates leave the labelling stage.
+ */
+public class PredicateGenerationPipeline {
+
+    /**
+     * Stages of the pipeline, in order.
+     */
+    public enum Stage {
+        COLLECTION,
+        CLEANUP,
+        FEATURES,
+        LABELLING,
+        WRITING
+    }
+
+    /** Default capacity of the queues between stages */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final PredicateTrainingGenerator generator;
+    private final Map<Stage, Integer> threads;
+    private int queueCapacity;
+
+    /** Statistics of the current or last run */
+    private Map<Stage, StageStats> stats;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(PredicateGenerationPipeline.class);
+
+    /** Marks the end of the input of a predicate stage */
+    private static final Item END = new Item(null, -1, null);
+    /** Marks the end of the input of a machine stage */
+    private static final MachineJob END_JOB = new MachineJob(null, null, 1);
+
+    /**
+     * Sets up a pipeline with one thread per stage, except for the labelling
+     * stage, which gets one thread per available processor.
+     *
+     * @param generator Generator whose rules, feature and label generators,
+     *         and format are used
+     */
+    public PredicateGenerationPipeline(PredicateTrainingGenerator generator) {
+        this.generator = generator;
+        this.threads = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            threads.put(stage, 1);
+        }
+        threads.put(Stage.LABELLING, Runtime.getRuntime().availableProcessors());
+        this.queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        this.stats = new EnumMap<>(Stage.class);
+    }
+
+    /**
+     * @param stage Stage to configure
+     * @param count Number of threads working in the stage; at least 1
+     */
+    public void setThreads(Stage stage, int count) {
+        threads.put(stage, Math.max(1, count));
+    }
+
+    public int getThreads(Stage stage) {
+        return threads.get(stage);
+    }
+
+    /**
+     * @param queueCapacity Capacity of the queues between the stages,
+     *         which is also the maximum number of predicates per machine
+     *         in the pipeline at once
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return Statistics of each stage in the current or last run
+     */
+    public Map<Stage, StageStats> getStageStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Generates and writes the training data of the given files.
+     * Blocks until all files are written.
+     *
+     * @param files Machine files to generate training data from
+     * @param relativise Maps each file to the path relative to the common
+     *         source directory, as used for the target location
+     * @param targetDir Directory to write the training data to
+     *
+     * @return Statistics over the written data
+     */
+    public DataGenerationStats run(List<Path> files, Function<Path, Path> relativise, Path targetDir) {
+        BlockingQueue<MachineJob> machines = new LinkedBlockingQueue<>();
+        BlockingQueue<Item> toCleanup = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> toFeatures = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> toLabelling = new ArrayBlockingQueue<>(queueCapacity);
+        // Bounded by the machine slots
+        BlockingQueue<MachineJob> toWriting = new LinkedBlockingQueue<>();
+        Semaphore machineSlots = new Semaphore(threads.get(Stage.WRITING));
+
+        Map<Stage, StageStats> runStats = new EnumMap<>(Stage.class);
+        runStats.put(Stage.COLLECTION, new StageStats("collection", threads.get(Stage.COLLECTION), machines::size));
+        runStats.put(Stage.CLEANUP, new StageStats("cleanup", threads.get(Stage.CLEANUP), toCleanup::size));
+        runStats.put(Stage.FEATURES, new StageStats("features", threads.get(Stage.FEATURES), toFeatures::size));
+        runStats.put(Stage.LABELLING, new StageStats("labelling", threads.get(Stage.LABELLING), toLabelling::size));
+        runStats.put(Stage.WRITING, new StageStats("writing", threads.get(Stage.WRITING), toWriting::size));
+        this.stats = runStats;
+
+        for (Path file : files) {
+            machines.add(new MachineJob(relativise.apply(file), file, queueCapacity));
+        }
+        runStats.get(Stage.COLLECTION).sampleQueueDepth();
+        for (int i = 0; i < threads.get(Stage.COLLECTION); i++) {
+            machines.add(END_JOB);
+        }
+
+        DataGenerationStats generationStats = new DataGenerationStats();
+
+        runStats.values().forEach(StageStats::start);
+        ExecutorService collection = startStage(Stage.COLLECTION,
+                () -> collect(machines, toCleanup, toWriting, machineSlots));
+        ExecutorService cleanup = startStage(Stage.CLEANUP,
+                () -> cleanup(toCleanup, toFeatures));
+        ExecutorService features = startStage(Stage.FEATURES,
+                () -> process(Stage.FEATURES, toFeatures, toLabelling, this::generateFeatures));
+        ExecutorService labelling = startStage(Stage.LABELLING,
+                () -> process(Stage.LABELLING, toLabelling, null, this::generateLabels));
+        ExecutorService writing = startStage(Stage.WRITING,
+                () -> write(toWriting, machineSlots, targetDir, generationStats));
+
+        try {
+            // Shut down stage by stage; all machines are queued for writing once the collection is done
+            awaitStage(Stage.COLLECTION, collection);
+            endInput(toWriting, END_JOB, threads.get(Stage.WRITING));
+            endInput(toCleanup, END, threads.get(Stage.CLEANUP));
+            awaitStage(Stage.CLEANUP, cleanup);
+            endInput(toFeatures, END, threads.get(Stage.FEATURES));
+            awaitStage(Stage.FEATURES, features);
+            endInput(toLabelling, END, threads.get(Stage.LABELLING));
+            awaitStage(Stage.LABELLING, labelling);
+            awaitStage(Stage.WRITING, writing);
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for the generation pipeline; aborting");
+            Thread.currentThread().interrupt();
+            collection.shutdownNow();
+            cleanup.shutdownNow();
+            features.shutdownNow();
+            labelling.shutdownNow();
+            writing.shutdownNow();
+        }
+
+        runStats.values().forEach(s -> log.info("Pipeline stage {}", s));
+        return generationStats;
+    }
+
+    /**
+     * Collection stage: queues each machine for writing and its predicates for cleanup.
+     */
+    private void collect(BlockingQueue<MachineJob> machines, BlockingQueue<Item> output,
+            BlockingQueue<MachineJob> toWriting, Semaphore machineSlots) {
+        StageStats stageStats = stats.get(Stage.COLLECTION);
+        try {
+            MachineJob job;
+            while ((job = machines.take()) != END_JOB) {
+                machineSlots.acquire();
+                job.startNanos = System.nanoTime();
+                toWriting.put(job);
+                stats.get(Stage.WRITING).sampleQueueDepth();
+
+                long start = System.nanoTime();
+                boolean successful = true;
+                int count = 0;
+                try (Stream<BPredicate> predicates =
+                             generator.streamPredicatesFromFile(new BMachine(job.file))) {
+                    Iterator<BPredicate> iterator = predicates.iterator();
+                    while (iterator.hasNext()) {
+                        BPredicate predicate = iterator.next();
+                        // Time spent waiting for downstream stages is not counted as busy time
+                        long waited = System.nanoTime();
+                        job.awaitSlot();
+                        output.put(new Item(job, count++, predicate));
+                        stats.get(Stage.CLEANUP).sampleQueueDepth();
+                        start += System.nanoTime() - waited;
+                    }
+                } catch (MachineAccessException | RuntimeException e) {
+                    log.warn("Unable to collect all predicates of {}", job.file, e);
+                    successful = false;
+                } finally {
+                    job.setTotal(count);
+                }
+                stageStats.recordItem(System.nanoTime() - start, successful);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Predicate stage: applies the given step to each item of the input
+     * and passes it on to the output.
+     */
+    private void process(Stage stage, BlockingQueue<Item> input, BlockingQueue<Item> output,
+            PipelineStep step) {
+        StageStats stageStats = stats.get(stage);
+        Stage next = stage.ordinal() + 1 < Stage.values().length
+                ? Stage.values()[stage.ordinal() + 1]
+                : null;
+        try {
+            Item item;
+            while ((item = input.take()) != END) {
+                long start = System.nanoTime();
+                boolean failedBefore = item.failed;
+                if (!failedBefore) {
+                    try {
+                        step.apply(item);
+                    } catch (Exception e) {
+                        log.warn("Pipeline stage {} failed for {}", stage, item.predicate, e);
+                        item.failed = true;
+                    }
+                }
+                // Only count failures of this stage
+                stageStats.recordItem(System.nanoTime() - start, failedBefore || !item.failed);
+
+                if (output != null) {
+                    output.put(item);
+                    stats.get(next).sampleQueueDepth();
+                } else {
+                    item.job.complete(item.index, item.failed ? Collections.emptyList() : item.samples);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writing stage: writes the samples of each machine in order of its predicates.
+     */
+    private void write(BlockingQueue<MachineJob> input, Semaphore machineSlots,
+            Path targetDir, DataGenerationStats generationStats) {
+        StageStats stageStats = stats.get(Stage.WRITING);
+        try {
+            MachineJob job;
+            while ((job = input.take()) != END_JOB) {
+                long start = System.nanoTime();
+                boolean successful = true;
+                Stream<TrainingSample> samples = job.streamSamples();
+                try {
+                    DataGenerationStats writeStats = generator.format.writeSamples(
+                            new TrainingData(job.relativePath, job.file, samples), targetDir);
+                    synchronized (generationStats) {
+                        generationStats.increaseFilesSeen();
+                        generationStats.mergeWith(writeStats);
+                    }
+                    generator.recordWritten(job.relativePath, job.file, targetDir);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not write all samples for {}", job.file, e);
+                    successful = false;
+                    synchronized (generationStats) {
+                        generationStats.increaseFilesSeen();
+                        generationStats.increaseFilesWithErrors();
+                    }
+                } finally {
+                    samples.close();
+                    job.abandon();
+                    machineSlots.release();
+                    generator.recordCost(job.file, System.nanoTime() - job.startNanos);
+                }
+                stageStats.recordItem(System.nanoTime() - start, successful);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cleanup stage: cleans up the ASTs of the predicates in batches of up
+     * to {@link PredicateTrainingGenerator#CLEANUP_BATCH_SIZE} predicates
+     * of the same machine, each batch over one access, and passes them on
+     * to the output. A batch holds the predicates already queued; the stage
+     * does not wait for a batch to fill up.
+     */
+    private void cleanup(BlockingQueue<Item> input, BlockingQueue<Item> output) {
+        StageStats stageStats = stats.get(Stage.CLEANUP);
+        try {
+            boolean ended = false;
+            while (!ended) {
+                List<Item> batch = new ArrayList<>();
+                Item item = input.take();
+                while (item != null && item != END) {
+                    batch.add(item);
+                    item = batch.size() < PredicateTrainingGenerator.CLEANUP_BATCH_SIZE
+                            ? input.poll()
+                            : null;
+                }
+                ended = item == END;
+
+                // Batches are only sent over an access to the machine of their predicates
+                Map<MachineJob, List<Item>> batchesByJob = new LinkedHashMap<>();
+                for (Item queued : batch) {
+                    batchesByJob.computeIfAbsent(queued.job, job -> new ArrayList<>()).add(queued);
+                }
+                for (List<Item> items : batchesByJob.values()) {
+                    long start = System.nanoTime();
+                    List<Item> pending = items.stream()
+                            .filter(i -> !i.failed)
+                            .collect(Collectors.toList());
+                    if (generator.isAstCleanup() && !pending.isEmpty()) {
+                        cleanupBatch(pending);
+                    }
+                    long nanosPerItem = (System.nanoTime() - start) / items.size();
+                    for (Item cleaned : items) {
+                        // Only count failures of this stage
+                        stageStats.recordItem(nanosPerItem,
+                                !pending.contains(cleaned) || !cleaned.failed);
+                        output.put(cleaned);
+                        stats.get(Stage.FEATURES).sampleQueueDepth();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void cleanupBatch(List<Item> items) {
+        List<BPredicate> predicates = items.stream()
+                .map(item -> item.predicate)
+                .collect(Collectors.toList());
+        try {
+            withAccess(items.get(0), access -> {
+                Map<BPredicate, BPredicate> cleaned = generator.cleanupAsts(predicates, access);
+                for (Item item : items) {
+                    BPredicate cleanedPredicate = cleaned.get(item.predicate);
+                    if (cleanedPredicate != null) {
+                        item.predicate = cleanedPredicate;
+                    } else {
+                        log.warn("Could not cleanup predicate {}", item.predicate);
+                        item.failed = true;
+                    }
+                }
+            });
+        } catch (MachineAccessException | RuntimeException e) {
+            log.warn("Pipeline stage {} failed for {} predicates of {}",
+                    Stage.CLEANUP, items.size(), items.get(0).job.file, e);
+            items.forEach(item -> item.failed = true);
+        }
+    }
+
+    private void generateFeatures(Item item) throws MachineAccessException {
+        withAccess(item, access -> {
+            try {
+                item.features = generator.getPredicateFeatureGenerator()
+                        .generate(item.predicate, access);
+            } catch (FeatureCreationException e) {
+                log.warn("Could not create features from {}", item.predicate, e);
+                item.failed = true;
+            }
+        });
+    }
+
+    private void generateLabels(Item item) throws MachineAccessException {
+        withAccess(item, access -> {
+            try {
+                List<? extends Labelling> labellings = generator.getPredicateLabelGenerator()
+                        .generateSamples(item.predicate, access, generator.getLabellingSamples());
+                List<TrainingSample> samples = new ArrayList<>();
+                for (Labelling labelling : labellings) {
+                    samples.add(new TrainingSample<>(item.features, labelling, item.job.file));
+                }
+                item.samples = samples;
+            } catch (LabelCreationException e) {
+                log.warn("Could not create labelling for {}", item.predicate, e);
+                item.failed = true;
+            }
+        });
+    }
+
+    /**
+     * Runs the given step with an access to the item's machine, borrowed from the pool.
+     */
+    private void withAccess(Item item, AccessStep step) throws MachineAccessException {
+        MachineAccess access = borrowAccess(item.job.file);
+        try {
+            step.apply(access);
+        } finally {
+            releaseAccess(access);
+        }
+    }
+
+    MachineAccess borrowAccess(Path file) throws MachineAccessException {
+        return MachineAccessPool.getInstance().borrow(new BMachine(file));
+    }
+
+    void releaseAccess(MachineAccess access) {
+        MachineAccessPool.getInstance().release(access);
+    }
+
+    private ExecutorService startStage(Stage stage, Runnable worker) {
+        int count = threads.get(stage);
+        ExecutorService executor = Executors.newFixedThreadPool(count,
+                new DaemonThreadFactory("neurob-" + stage.name().toLowerCase()));
+        for (int i = 0; i < count; i++) {
+            executor.execute(worker);
+        }
+        executor.shutdown();
+        return executor;
+    }
+
+    private void awaitStage(Stage stage, ExecutorService executor) throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.debug("Waiting for pipeline stage {}; {}", stage, stats.get(stage));
+        }
+        stats.get(stage).stop();
+    }
+
+    private static <T> void endInput(BlockingQueue<T> queue, T end, int workers)
+            throws InterruptedException {
+        for (int i = 0; i < workers; i++) {
+            queue.put(end);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PipelineStep {
+        void apply(Item item) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface AccessStep {
+        void apply(MachineAccess access);
+    }
+
+    /**
+     * A predicate travelling through the stages.
+     */
+    private static class Item {
+        private final MachineJob job;
+        private final int index;
+        private BPredicate predicate;
+        private Object features;
+        private List<TrainingSample> samples;
+        private boolean failed = false;
+
+        Item(MachineJob job, int index, BPredicate predicate) {
+            this.job = job;
+            this.index = index;
+            this.predicate = predicate;
+        }
+    }
+
+    /**
+     * A machine file whose predicates are in the pipeline.
+     * Reorders the finished predicates by their index for writing.
+     */
+    private static class MachineJob {
+        private final Path relativePath;
+        private final Path file;
+        private final int maxInFlight;
+
+        /** Predicates collected, but not yet written */
+        private int inFlight = 0;
+        /** Number of predicates collected in total; -1 while collecting */
+        private int total = -1;
+        private final Map<Integer, List<TrainingSample>> finished = new HashMap<>();
+        /** Set once writing is over; later results are dropped */
+        private boolean abandoned = false;
+        /** Time the collection of the machine started */
+        private long startNanos;
+
+        MachineJob(Path relativePath, Path file, int maxInFlight) {
+            this.relativePath = relativePath;
+            this.file = file;
+            this.maxInFlight = maxInFlight;
+        }
+
+        synchronized void awaitSlot() throws InterruptedException {
+            while (!abandoned && inFlight >= maxInFlight) {
+                wait();
+            }
+            inFlight++;
+        }
+
+        synchronized void complete(int index, List<TrainingSample> samples) {
+            if (abandoned) {
+                inFlight--;
+            } else {
+                finished.put(index, samples);
+            }
+            notifyAll();
+        }
+
+        synchronized void setTotal(int total) {
+            this.total = total;
+            notifyAll();
+        }
+
+        /**
+         * @return Samples of the predicate with the given index, waiting for
+         *         it if necessary, or null if there is no such predicate.
+         */
+        synchronized List<TrainingSample> take(int index) throws InterruptedException {
+            while (!finished.containsKey(index) && (total < 0 || index < total)) {
+                wait();
+            }
+            List<TrainingSample> samples = finished.remove(index);
+            if (samples != null) {
+                inFlight--;
+                notifyAll();
+            }
+            return samples;
+        }
+
+        synchronized void abandon() {
+            abandoned = true;
+            inFlight -= finished.size();
+            finished.clear();
+            notifyAll();
+        }
+
+        Stream<TrainingSample> streamSamples() {
+            Iterator<List<TrainingSample>> ordered = new Iterator<List<TrainingSample>>() {
+                private int index = 0;
+                private List<TrainingSample> next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null) {
+                        try {
+                            next = take(index);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return false;
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public List<TrainingSample> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    List<TrainingSample> current = next;
+                    next = null;
+                    index++;
+                    return current;
+                }
+            };
+            return StreamSupport.stream(
+                            Spliterators.spliteratorUnknownSize(ordered, Spliterator.ORDERED),
+                            false)
+                    .flatMap(List::stream);
+        }
+    }
+}
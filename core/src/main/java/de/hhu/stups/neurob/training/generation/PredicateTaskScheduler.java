@@ -0,0 +1,145 @@
+package de.hhu.stups.neurob.training.generation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splits the processing of a stream into tasks which are load-balanced
+ * by work stealing.
+ * <p>
+ * Each element of the input stream becomes a {@link ForkJoinTask} which is
+ * forked onto the current {@link ForkJoinPool} (or the common pool, if not
+ * called from within one). Idle workers of the pool, e.g. those that already
+ * finished their own machine files, steal these tasks; hence a single large
+ * machine no longer keeps the whole generation alive on a single thread.
+ * <p>
+ * At most {@code window} tasks are forked ahead of the consumer, which bounds
+ * both the memory for results and the number of machine accesses in use.
+ * Results are handed out in the order of the input stream, so the output
+ * stays deterministic regardless of which worker processed a task.
+ */
+public class PredicateTaskScheduler {
+
+    private final int window;
+
+    private final AtomicLong taskCount;
+    private final AtomicLong stolenCount;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(PredicateTaskScheduler.class);
+
+    /**
+     * @param window Maximum number of tasks forked ahead of the consumer;
+     *         1 processes the elements one after another.
+     */
+    public PredicateTaskScheduler(int window) {
+        this.window = Math.max(1, window);
+        this.taskCount = new AtomicLong(0L);
+        this.stolenCount = new AtomicLong(0L);
+    }
+
+    /**
+     * Applies the given task to each element of the input stream.
+     * The returned stream is lazy; tasks are forked as it is consumed.
+     * Closing it closes the input stream and cancels pending tasks.
+     *
+     * @param input Elements to process
+     * @param task Task to apply to each element; should not throw
+     * @param <T> Type of the input elements
+     * @param <R> Type of the results
+     *
+     * @return Stream of the results, in the order of the input
+     */
+    public <T, R> Stream<R> mapOrdered(Stream<T> input, Function<T, R> task) {
+        if (window == 1) {
+            return input.map(task);
+        }
+
+        Iterator<T> source = input.iterator();
+        Deque<ForkJoinTask<R>> pending = new ArrayDeque<>();
+
+        Iterator<R> results = new Iterator<R>() {
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public R next() {
+                fill();
+                if (pending.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                return pending.removeFirst().join();
+            }
+
+            private void fill() {
+                while (pending.size() < window && source.hasNext()) {
+                    pending.addLast(fork(source.next(), task));
+                }
+            }
+        };
+
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED),
+                        false)
+                .onClose(() -> {
+                    pending.forEach(t -> t.cancel(false));
+                    pending.clear();
+                    input.close();
+                });
+    }
+
+    private <T, R> ForkJoinTask<R> fork(T element, Function<T, R> task) {
+        Thread forkingThread = Thread.currentThread();
+        taskCount.incrementAndGet();
+        return ForkJoinTask.adapt(() -> {
+            if (Thread.currentThread() != forkingThread) {
+                stolenCount.incrementAndGet();
+                log.trace("Task for {} stolen by {}", element, Thread.currentThread());
+            }
+            return task.apply(element);
+        }).fork();
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return Number of tasks forked so far.
+     */
+    public long getTaskCount() {
+        return taskCount.get();
+    }
+
+    /**
+     * @return Number of tasks that were executed by another thread
+     *         than the one which forked them.
+     */
+    public long getStolenCount() {
+        return stolenCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PredicateTaskScheduler{"
+               + "window=" + window + ", "
+               + "tasks=" + taskCount + ", "
+               + "stolen=" + stolenCount + "}";
+    }
+}
@@ -1,10 +1,10 @@
 package de.hhu.stups.neurob.training.generation;
 
-import de.hhu.stups.neurob.core.api.ProB2;
 import de.hhu.stups.neurob.core.api.backends.Backend;
 import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccessPool;
 import de.hhu.stups.neurob.core.exceptions.FormulaException;
 import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
 import de.hhu.stups.neurob.core.exceptions.FeatureCreationException;
@@ -16,8 +16,12 @@ import de.hhu.stups.neurob.core.labelling.PredicateLabelling;
 import de.hhu.stups.neurob.training.data.TrainingSample;
 import de.hhu.stups.neurob.training.db.JsonDbFormat;
 import de.hhu.stups.neurob.training.formats.TrainingDataFormat;
+import de.hhu.stups.neurob.training.generation.statistics.DataGenerationStats;
 import de.hhu.stups.neurob.training.generation.util.FormulaGenerator;
 import de.hhu.stups.neurob.training.generation.util.PredicateCollection;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollection.Facet;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollectionCache;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,10 +33,21 @@ import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class PredicateTrainingGenerator
         extends TrainingSetGenerator {
@@ -40,10 +55,38 @@ public class PredicateTrainingGenerator
     private static Logger log =
             LoggerFactory.getLogger(PredicateFeatureGenerating.class);
     private final int labellingSamples;
+    /** Feature generator typed for predicates; the same as {@link #featureGenerator} */
+    private final PredicateFeatureGenerating<?> predicateFeatureGenerator;
+    /** Label generator typed for predicates; the same as {@link #labelGenerator} */
+    private final PredicateLabelGenerating<? extends PredicateLabelling> predicateLabelGenerator;
 
     protected List<Function<PredicateCollection, List<BPredicate>>> generationRules;
+    /** Names of the generation rules, in order; null if the rules were set without names */
+    private List<String> generationRuleNames;
 
     private boolean isAstCleanup = false;
+    /** Number of generated predicates whose ASTs are cleaned up together */
+    public static final int CLEANUP_BATCH_SIZE = PredicateCollection.COMMAND_BATCH_SIZE;
+    /** Number of accesses reloaded after a failed cleanup */
+    private final AtomicLong accessRestartCount = new AtomicLong(0L);
+
+    /** Whether predicates are emitted as generated instead of sorted */
+    private boolean streamingGeneration = false;
+
+    /** Distributes the predicates of a machine to tasks */
+    private PredicateTaskScheduler scheduler = new PredicateTaskScheduler(1);
+
+    /** Number of accesses sharing the collection of the predicates of a machine */
+    private int collectionParallelism = 1;
+    private final AtomicLong collectedMachineCount = new AtomicLong(0L);
+    private final AtomicLong collectionNanos = new AtomicLong(0L);
+    /** Number of machines for which each facet of the predicate collection was materialised */
+    private final Map<Facet, AtomicLong> materialisedFacetCounts = new EnumMap<>(Facet.class);
+    /** Optional on-disk cache of collected predicates; null if they are always collected anew */
+    private PredicateCollectionCache collectionCache;
+
+    /** Optional staged pipeline; null if each machine is handled by a single thread */
+    private PredicateGenerationPipeline pipeline;
 
     /**
      * Sets up a training set generator. The training set consists of the features generated by
@@ -93,18 +136,24 @@ public class PredicateTrainingGenerator
             int labellingSamples,
             TrainingDataFormat<? super F, ? super L> format) {
         super(featureGenerator, labelGenerator, format);
+        this.predicateFeatureGenerator = featureGenerator;
+        this.predicateLabelGenerator = labelGenerator;
         this.labellingSamples = labellingSamples;
 
-        generationRules = new ArrayList<>();
-        generationRules.add(FormulaGenerator::assertions);
-        generationRules.add(FormulaGenerator::enablingAnalysis);
-        generationRules.add(FormulaGenerator::invariantConstrains);
-        generationRules.add(FormulaGenerator::invariantPreservationFormulae);
-        generationRules.add(FormulaGenerator::preconditionConstraints);
-        generationRules.add(FormulaGenerator::weakestPreconditionFormulae);
-        generationRules.add(FormulaGenerator::multiPreconditionFormulae);
-        generationRules.add(FormulaGenerator::extendedPreconditionFormulae);
-
+        Map<String, Function<PredicateCollection, List<BPredicate>>> defaultRules = new LinkedHashMap<>();
+        defaultRules.put("assertions", FormulaGenerator::assertions);
+        defaultRules.put("enablingAnalysis", FormulaGenerator::enablingAnalysis);
+        defaultRules.put("invariantConstrains", FormulaGenerator::invariantConstrains);
+        defaultRules.put("invariantPreservationFormulae", FormulaGenerator::invariantPreservationFormulae);
+        defaultRules.put("preconditionConstraints", FormulaGenerator::preconditionConstraints);
+        defaultRules.put("weakestPreconditionFormulae", FormulaGenerator::weakestPreconditionFormulae);
+        defaultRules.put("multiPreconditionFormulae", FormulaGenerator::multiPreconditionFormulae);
+        defaultRules.put("extendedPreconditionFormulae", FormulaGenerator::extendedPreconditionFormulae);
+        setGenerationRules(defaultRules);
+
+        for (Facet facet : Facet.values()) {
+            materialisedFacetCounts.put(facet, new AtomicLong(0L));
+        }
     }
 
     /**
@@ -140,34 +189,19 @@ public class PredicateTrainingGenerator
     }
 
     public Stream<TrainingSample> streamSamplesFromFile(BMachine bMachine) {
+        if (scheduler.getWindow() > 1) {
+            return streamScheduledSamplesFromFile(bMachine);
+        }
+
         try {
             log.info("Accessing B machine {}", bMachine);
-            MachineAccess access = bMachine.spawnMachineAccess();
-            Stream<BPredicate> predicates = streamPredicatesFromFile(bMachine);
+            MachineAccess access = MachineAccessPool.getInstance().borrow(bMachine);
+            Stream<BPredicate> predicates = streamCleanedPredicatesFromFile(bMachine);
 
             // Stream training samples
             Stream<TrainingSample> samples = predicates.flatMap(
-                    predicate -> {
-                        try {
-                            log.trace("Generating sample for {}", predicate);
-                            BPredicate p = predicate;
-                            if (isAstCleanup) {
-                                p = FormulaGenerator.cleanupAst(access, predicate);
-                            }
-                            return generateSamples(p, access);
-                        } catch (FeatureCreationException e) {
-                            log.warn("Could not create features from {}", predicate, e);
-                        } catch (LabelCreationException e) {
-                            log.warn("Could not create labelling for {}", predicate, e);
-                        } catch (FormulaException e) {
-                            log.warn("Could not cleanup predicate {}", predicate, e);
-                            log.info("Reloading ProB2 API in case ProB Cli shut down.", predicate, e);
-                            ProB2.reloadApi();
-                        }
-                        // If any exceptions occur, return nothing
-                        return Stream.empty();
-                    })
-                    .onClose(access::close);
+                    predicate -> sampleOver(predicate, access))
+                    .onClose(() -> MachineAccessPool.getInstance().release(access));
 
             return samples.filter(Objects::nonNull)
                     // add source file information
@@ -182,6 +216,167 @@ public class PredicateTrainingGenerator
         }
     }
 
+    /**
+     * Streams the samples of the given machine, with each predicate being
+     * processed as a separate task by the {@link #setPredicateParallelism(int) scheduler}.
+     * Each task borrows its own access from the {@link MachineAccessPool}.
+     * The samples are streamed in the order of the predicates.
+     */
+    private Stream<TrainingSample> streamScheduledSamplesFromFile(BMachine bMachine) {
+        Stream<BPredicate> predicates;
+        try {
+            predicates = streamCleanedPredicatesFromFile(bMachine);
+        } catch (MachineAccessException e) {
+            log.warn("Unable to access {}", bMachine, e);
+            return Stream.empty();
+        }
+
+        Function<BPredicate, List<TrainingSample>> task = predicate -> {
+            MachineAccessPool pool = MachineAccessPool.getInstance();
+            MachineAccess access = null;
+            try {
+                access = pool.borrow(bMachine);
+                try (Stream<TrainingSample> samples = sampleOver(predicate, access)) {
+                    return samples.collect(Collectors.toList());
+                }
+            } catch (MachineAccessException e) {
+                log.warn("Unable to access {} for {}", bMachine, predicate, e);
+                return Collections.emptyList();
+            } finally {
+                pool.release(access);
+            }
+        };
+
+        return scheduler.mapOrdered(predicates, task)
+                .flatMap(List::stream)
+                .filter(Objects::nonNull)
+                // add source file information
+                .map(sample -> new TrainingSample<>(
+                        sample.getData(),
+                        sample.getLabelling(),
+                        bMachine.getLocation()));
+    }
+
+    /**
+     * Generates the samples of the given predicate over the given access.
+     * Problems are logged and yield no samples.
+     */
+    private Stream<TrainingSample> sampleOver(BPredicate predicate, MachineAccess access) {
+        try {
+            log.trace("Generating sample for {}", predicate);
+            return generateSamples(predicate, access);
+        } catch (FeatureCreationException e) {
+            log.warn("Could not create features from {}", predicate, e);
+        } catch (LabelCreationException e) {
+            log.warn("Could not create labelling for {}", predicate, e);
+        }
+        // If any exceptions occur, return nothing
+        return Stream.empty();
+    }
+
+    /**
+     * Streams the predicates of the given machine to generate samples over.
+     * With {@link #setAstCleanup(boolean) AST cleanup} enabled, their ASTs are
+     * cleaned up in batches of {@value #CLEANUP_BATCH_SIZE} predicates over
+     * the access the predicates are collected with.
+     * <p>
+     * The stream needs to be closed after use.
+     */
+    private Stream<BPredicate> streamCleanedPredicatesFromFile(BMachine bMachine)
+            throws MachineAccessException {
+        if (!isAstCleanup) {
+            return streamPredicatesFromFile(bMachine);
+        }
+
+        MachineAccess access = MachineAccessPool.getInstance().borrow(bMachine);
+        log.info("Collecting predicate stream from {}", bMachine);
+        Stream<BPredicate> collected = streamCollectedPredicates(bMachine, access, false)
+                .onClose(() -> MachineAccessPool.getInstance().release(access));
+        Iterator<BPredicate> predicates = collected.iterator();
+
+        Iterator<List<BPredicate>> batches = new Iterator<List<BPredicate>>() {
+            @Override
+            public boolean hasNext() {
+                return predicates.hasNext();
+            }
+
+            @Override
+            public List<BPredicate> next() {
+                List<BPredicate> batch = new ArrayList<>();
+                while (batch.size() < CLEANUP_BATCH_SIZE && predicates.hasNext()) {
+                    batch.add(predicates.next());
+                }
+                return batch;
+            }
+        };
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                .flatMap(batch -> cleanupBatch(batch, access).stream())
+                .onClose(collected::close);
+    }
+
+    /**
+     * Cleans up the ASTs of the given predicates of the machine of the given access.
+     *
+     * @return The cleaned up predicates in order; predicates that could not
+     *         be cleaned up are left out
+     */
+    private List<BPredicate> cleanupBatch(List<BPredicate> batch, MachineAccess access) {
+        Map<BPredicate, BPredicate> cleaned = cleanupAsts(batch, access);
+        return batch.stream()
+                .filter(cleaned::containsKey)
+                .map(cleaned::get)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Cleans up the ASTs of the given predicates of the machine of the given
+     * access, as one batch of commands.
+     * If the access seems broken, it is {@link #restartAccess(MachineAccess) restarted}
+     * and the batch is tried once more.
+     *
+     * @param batch Predicates to clean up, at most {@value #CLEANUP_BATCH_SIZE}
+     * @param access Access to the machine the predicates belong to
+     *
+     * @return Map of the predicates to their cleaned up versions;
+     *         predicates that could not be cleaned up are missing
+     */
+    Map<BPredicate, BPredicate> cleanupAsts(List<BPredicate> batch, MachineAccess access) {
+        try {
+            return FormulaGenerator.cleanupAsts(access, batch);
+        } catch (FormulaException e) {
+            log.warn("Could not cleanup {} predicates of {}", batch.size(), access.getSource(), e);
+            restartAccess(access);
+            try {
+                return FormulaGenerator.cleanupAsts(access, batch);
+            } catch (FormulaException retryException) {
+                log.warn("Could not cleanup {} predicates of {} after restart; skipping them",
+                        batch.size(), access.getSource(), retryException);
+                return Collections.emptyMap();
+            }
+        }
+    }
+
+    /**
+     * Reloads the given access in case its ProB cli shut down.
+     * Only this access is affected; other accesses, even to the same
+     * machine, and the ProB2 API they share keep running.
+     * If reloading fails, the access is left unloaded and hence closed
+     * once it is released to the {@link MachineAccessPool}.
+     *
+     * @param access Access to reload
+     */
+    void restartAccess(MachineAccess access) {
+        log.info("Reloading access to {} in case its ProB cli shut down", access.getSource());
+        accessRestartCount.incrementAndGet();
+        try {
+            access.load();
+        } catch (MachineAccessException e) {
+            log.warn("Could not reload access to {}", access.getSource(), e);
+        }
+    }
+
     /**
      * Takes a predicate and generates a pair of Features and Labelling out of
      * it,
@@ -218,12 +413,11 @@ public class PredicateTrainingGenerator
             throws FeatureCreationException, LabelCreationException {
         log.info("Generating features for {}", predicate);
 
-        Object features = ((PredicateFeatureGenerating) featureGenerator)
-                .generate(predicate, access);
+        Object features = predicateFeatureGenerator.generate(predicate, access);
 
         log.info("Generating labelling for {}", predicate);
-        List<Labelling> labellings = ((PredicateLabelGenerating) labelGenerator)
-                .generateSamples(predicate, access, labellingSamples);
+        List<? extends Labelling> labellings =
+                predicateLabelGenerator.generateSamples(predicate, access, labellingSamples);
 
         return labellings.stream().map(label -> new TrainingSample<>(features, label));
     }
@@ -272,17 +466,15 @@ public class PredicateTrainingGenerator
      * @return Stream of generated predicates.
      */
     public Stream<BPredicate> streamPredicatesFromFile(Path file) {
-        PredicateCollection pc;
         MachineAccess bMachine;
         try {
-            bMachine = new MachineAccess(file);
-            pc = new PredicateCollection(bMachine, isAstCleanup);
+            bMachine = MachineAccessPool.getInstance().borrow(new BMachine(file));
         } catch (MachineAccessException e) {
             log.warn("Could not load {}; no predicates generated", file, e);
             return Stream.empty();
         }
-
-        return streamPredicatesFromCollection(pc).onClose(bMachine::close);
+        return streamCollectedPredicates(new BMachine(file), bMachine, isAstCleanup)
+                .onClose(() -> MachineAccessPool.getInstance().release(bMachine));
     }
 
     /**
@@ -304,15 +496,120 @@ public class PredicateTrainingGenerator
      * @return Stream of generated predicates.
      */
     public Stream<BPredicate> streamPredicatesFromFile(BMachine bMachine) throws MachineAccessException {
-        MachineAccess access = bMachine.spawnMachineAccess();
+        MachineAccess access = MachineAccessPool.getInstance().borrow(bMachine);
         log.info("Collecting predicate stream from {}", bMachine);
-        PredicateCollection pc = new PredicateCollection(access);
+        return streamCollectedPredicates(bMachine, access, false)
+                .onClose(() -> MachineAccessPool.getInstance().release(access));
+    }
+
+    /**
+     * Collects the predicates of the given machine over the given access to it
+     * and streams the predicates generated from them.
+     * If the {@link #setCollectionParallelism(int) collection parallelism}
+     * is above 1, further accesses are borrowed from the {@link MachineAccessPool}
+     * to share the calculations of the facets with; they are released once
+     * the stream is closed.
+     * If a {@link #setCollectionCache(PredicateCollectionCache) cache} is set,
+     * it is asked first; the collection is stored once the stream is closed,
+     * with all facets the generation rules materialised.
+     */
+    private Stream<BPredicate> streamCollectedPredicates(BMachine machine, MachineAccess access,
+            boolean cleanAst) {
+        PredicateCollection cached = collectionCache != null
+                ? collectionCache.lookup(machine.getLocation(), access, cleanAst)
+                : null;
+        if (cached != null) {
+            log.info("Loaded predicates of {} from cache, with {} materialised",
+                    machine, cached.getMaterialisedFacets());
+            Set<Facet> cachedFacets = cached.getMaterialisedFacets();
+            return streamPredicatesFromCollection(cached)
+                    .onClose(() -> finishCollection(machine, cached, cachedFacets));
+        }
+
+        MachineAccessPool pool = MachineAccessPool.getInstance();
+        List<MachineAccess> helpers = new ArrayList<>();
+        for (int i = 1; i < collectionParallelism; i++) {
+            try {
+                helpers.add(pool.borrow(machine));
+            } catch (MachineAccessException e) {
+                log.warn("Unable to load further access to {}; collecting predicates "
+                         + "with {} accesses", machine, helpers.size() + 1, e);
+                break;
+            }
+        }
+
+        PredicateCollection pc;
+        try {
+            pc = new PredicateCollection(access, cleanAst, helpers);
+        } catch (RuntimeException e) {
+            helpers.forEach(pool::release);
+            throw e;
+        }
         return streamPredicatesFromCollection(pc)
-                .onClose(access::close);
+                .onClose(() -> {
+                    pc.detachHelperAccesses();
+                    helpers.forEach(pool::release);
+                    finishCollection(machine, pc, null);
+                });
+    }
+
+    /**
+     * Records the statistics of the given collection once no more facets
+     * are materialised, and stores it in the cache if it gained facets.
+     *
+     * @param cachedFacets Facets the collection was loaded with from the
+     *         cache, or null if it was not loaded from the cache
+     */
+    private void finishCollection(BMachine machine, PredicateCollection pc, Set<Facet> cachedFacets) {
+        Set<Facet> facets = pc.getMaterialisedFacets();
+        collectedMachineCount.incrementAndGet();
+        collectionNanos.addAndGet(pc.getCollectionNanos());
+        facets.forEach(facet -> materialisedFacetCounts.get(facet).incrementAndGet());
+        log.info("Collected predicates of {} in {} ms, materialising {}",
+                machine, pc.getCollectionNanos() / 1_000_000, facets);
+
+        if (collectionCache != null
+            && (cachedFacets == null || !cachedFacets.containsAll(facets))) {
+            collectionCache.store(machine.getLocation(), pc);
+        }
     }
 
     public void setGenerationRules(Function<PredicateCollection, List<BPredicate>>... rules) {
         this.generationRules = Arrays.asList(rules);
+        this.generationRuleNames = null;
+    }
+
+    /**
+     * Sets the generation rules along with names identifying them in the
+     * {@link #describeConfiguration() description of the configuration}.
+     *
+     * @param namedRules Rules by their names, in the order they shall be applied
+     */
+    public void setGenerationRules(Map<String, Function<PredicateCollection, List<BPredicate>>> namedRules) {
+        this.generationRules = new ArrayList<>(namedRules.values());
+        this.generationRuleNames = new ArrayList<>(namedRules.keySet());
+    }
+
+    /**
+     * Describes the settings that influence the generated data, i.e. the
+     * generation rules, how the predicates are emitted, the number of
+     * labelling samples, and the configuration of the label generator.
+     * Data generated under a differing description, e.g. as recorded by a
+     * {@link CorpusManifest}, is outdated.
+     * <p>
+     * Rules set without names are only described by their number.
+     *
+     * @return Description of the configuration
+     */
+    public String describeConfiguration() {
+        String rules = generationRuleNames != null
+                ? String.join(",", generationRuleNames)
+                : generationRules.size() + " unnamed";
+        return "rules=" + rules + ";"
+               + "streaming=" + streamingGeneration + ";"
+               + "astCleanup=" + isAstCleanup + ";"
+               + "labellingSamples=" + labellingSamples + ";"
+               + "labels={" + predicateLabelGenerator.describeConfiguration() + "}";
     }
 
     /**
@@ -328,6 +625,12 @@ public class PredicateTrainingGenerator
      * </ul>
      *
      * To alter the generation procedure use {@link #setGenerationRules(Function[])}.
+     * <p>
+     * By default, the predicates are sorted, which requires all of them to be
+     * generated before the first one is emitted. In
+     * {@link #setStreamingGeneration(boolean) streaming generation}, the predicates
+     * are emitted in order of the generation rules as soon as the respective
+     * rule yielded them, skipping duplicates.
      *
      * @param collection
      *
@@ -335,14 +638,160 @@ public class PredicateTrainingGenerator
      */
     public Stream<BPredicate> streamPredicatesFromCollection(
             PredicateCollection collection) {
-        return generationRules.stream()
-                .flatMap(gen -> gen.apply(collection).stream())
-                .sorted()
-                .distinct();
+        Stream<BPredicate> predicates = generationRules.stream()
+                .flatMap(gen -> gen.apply(collection).stream());
+        if (!streamingGeneration) {
+            return predicates.sorted().distinct();
+        }
+
+        // Deduplicate on the fly; the rules are only applied as the stream is consumed
+        Set<String> seen = new HashSet<>();
+        return predicates.filter(pred -> seen.add(DigestUtils.sha512Hex(pred.getPredicate())));
+    }
+
+    /**
+     * Enables emitting the predicates of a machine as soon as they are
+     * generated, instead of sorting all of them first. Labelling of a machine
+     * hence starts after the first generation rule was applied, rather than
+     * after all of them. The predicates are still free of duplicates, but
+     * no longer sorted.
+     *
+     * @param streamingGeneration Whether to emit the predicates unsorted as they are generated
+     */
+    public void setStreamingGeneration(boolean streamingGeneration) {
+        this.streamingGeneration = streamingGeneration;
+    }
+
+    public boolean isStreamingGeneration() {
+        return streamingGeneration;
     }
 
     public void setAstCleanup(boolean cleanupActive) {
         this.isAstCleanup = cleanupActive;
     }
+
+    public boolean isAstCleanup() {
+        return isAstCleanup;
+    }
+
+    int getLabellingSamples() {
+        return labellingSamples;
+    }
+
+    PredicateFeatureGenerating<?> getPredicateFeatureGenerator() {
+        return predicateFeatureGenerator;
+    }
+
+    PredicateLabelGenerating<? extends PredicateLabelling> getPredicateLabelGenerator() {
+        return predicateLabelGenerator;
+    }
+
+    /**
+     * Sets a pipeline that generates the training data in separate stages,
+     * instead of generating the samples of each machine on a single thread.
+     *
+     * @param pipeline Pipeline to use, or null to generate the samples of
+     *         each machine on a single thread
+     *
+     * @see PredicateGenerationPipeline
+     */
+    public void setPipeline(PredicateGenerationPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public PredicateGenerationPipeline getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    protected DataGenerationStats writeTrainingData(List<Path> files, Path source, Path targetDir) {
+        if (pipeline == null) {
+            return super.writeTrainingData(files, source, targetDir);
+        }
+        return pipeline.run(files, file -> stripCommonSourceDir(file, source), targetDir);
+    }
+
+    /**
+     * Sets how many predicates of a machine may be processed concurrently.
+     * <p>
+     * With a parallelism above 1, each predicate becomes a task of its own
+     * which idle threads of the surrounding {@link java.util.concurrent.ForkJoinPool}
+     * can steal; the samples of a machine are still written in the order
+     * of its predicates.
+     *
+     * @param parallelism Maximum number of predicate tasks per machine in
+     *         flight at once; 1 processes the predicates one after another.
+     */
+    public void setPredicateParallelism(int parallelism) {
+        this.scheduler = new PredicateTaskScheduler(parallelism);
+    }
+
+    public PredicateTaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Sets how many accesses to a machine share the calculation of its
+     * weakest preconditions, before/after predicates, and primed predicates.
+     * The further accesses are borrowed from the {@link MachineAccessPool}
+     * for the collection only. The collected predicates do not depend on
+     * the parallelism.
+     *
+     * @param parallelism Number of accesses per machine; 1 collects over a
+     *         single access.
+     */
+    public void setCollectionParallelism(int parallelism) {
+        this.collectionParallelism = Math.max(1, parallelism);
+    }
+
+    public int getCollectionParallelism() {
+        return collectionParallelism;
+    }
+
+    /**
+     * Sets an on-disk cache of collected predicates. Machines found in the
+     * cache need no calculations by ProB to collect their predicates.
+     *
+     * @param collectionCache Cache to use, or null to always collect the predicates anew
+     */
+    public void setCollectionCache(PredicateCollectionCache collectionCache) {
+        this.collectionCache = collectionCache;
+    }
+
+    public PredicateCollectionCache getCollectionCache() {
+        return collectionCache;
+    }
+
+    /**
+     * @return Number of machines whose predicates were collected or loaded from the cache.
+     */
+    public long getCollectedMachineCount() {
+        return collectedMachineCount.get();
+    }
+
+    /**
+     * @param facet Facet of the predicate collection
+     *
+     * @return Number of machines for which the facet was materialised,
+     *         i.e. needed by the generation rules.
+     */
+    public long getMaterialisedFacetCount(Facet facet) {
+        return materialisedFacetCounts.get(facet).get();
+    }
+
+    /**
+     * @return Time taken to collect the predicates of all machines, in nanoseconds.
+     */
+    public long getCollectionNanos() {
+        return collectionNanos.get();
+    }
+
+    /**
+     * @return Number of machine accesses reloaded as the cleanup of predicates
+     *         failed over them.
+     */
+    public long getAccessRestartCount() {
+        return accessRestartCount.get();
+    }
 }
 
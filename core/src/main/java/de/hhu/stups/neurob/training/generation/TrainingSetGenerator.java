@@ -15,9 +15,14 @@ import java.io.IOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -27,6 +32,11 @@ public abstract class TrainingSetGenerator {
     protected final FeatureGenerating featureGenerator;
     protected final LabelGenerating labelGenerator;
 
+    /** Optional manifest of already generated machines; null if not used */
+    protected CorpusManifest manifest;
+    /** Optional estimator to generate the most expensive machines first; null if not used */
+    protected MachineCostEstimator costEstimator;
+
     protected static final Logger log =
             LoggerFactory.getLogger(TrainingSetGenerator.class);
 
@@ -98,13 +108,30 @@ public abstract class TrainingSetGenerator {
             Path source, Path targetDir, boolean lazy, Collection<Path> excluded)
             throws IOException {
 
-        final Path fullTargetDir = targetDir;
         log.info("Generating training data from {}, storing in {}",
-                source, fullTargetDir);
+                source, targetDir);
 
-        DataGenerationStats stats = new DataGenerationStats();
+        List<Path> files = listSourceFiles(source, targetDir, lazy, excluded);
+        return generateTrainingData(files, source, targetDir);
+    }
+
+    /**
+     * Lists the source files in <code>source</code> for which training data
+     * is to be generated.
+     *
+     * @param source path to single file or directory
+     * @param targetDir path to target directory
+     * @param lazy whether source files with already existing training data
+     *         should be skipped
+     * @param excluded Collection of excluded paths (either files or directories) relative
+     *         to source
+     *
+     * @return Source files to generate training data from
+     */
+    public List<Path> listSourceFiles(Path source, Path targetDir, boolean lazy, Collection<Path> excluded)
+            throws IOException {
         try (Stream<Path> sourceFiles = Files.walk(source, FileVisitOption.FOLLOW_LINKS)) {
-            sourceFiles.collect(Collectors.toList())
+            return sourceFiles.collect(Collectors.toList())
                     .parallelStream()
                     .filter(file -> file.toString().endsWith(".mch")
 //                                    || file.toString().endsWith(".imp")
@@ -115,32 +142,42 @@ public abstract class TrainingSetGenerator {
                             ex -> stripCommonSourceDir(path, source).startsWith(ex)))
                     // Only create if non-lazy or non-existent
                     .filter(file -> {
-                        boolean nonexistent = !lazy || !dataAlreadyExists(file,
+                        boolean nonexistent = !lazy || !isUpToDate(file,
                                 format.getTargetLocation(
                                         stripCommonSourceDir(file, source),
-                                        fullTargetDir));
+                                        targetDir));
                         if (!nonexistent) {
                             log.info("Skipping {}: Data already present", file);
                         }
                         return nonexistent;
                     })
-                    .map(file -> new TrainingData(
-                            stripCommonSourceDir(file, source),
-                            file,
-                            streamSamplesFromFile(file)))
-                    .forEach(samples ->
-                    {
-                        try {
-                            stats.increaseFilesSeen();
-                            DataGenerationStats writeStats = format.writeSamples(samples, fullTargetDir);
-                            samples.getSamples().close();
-                            stats.mergeWith(writeStats);
-                        } catch (IOException e) {
-                            log.warn("Could not write all samples for {}",
-                                    samples.getSourceFile());
-                            stats.increaseFilesWithErrors();
-                        }
-                    });
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Creates the training data of the given source files and writes them
+     * to <code>targetDir</code>.
+     *
+     * @param files Source files to generate training data from
+     * @param source Common source directory of the files
+     * @param targetDir path to target directory
+     *
+     * @return Statistics over the written data
+     */
+    public DataGenerationStats generateTrainingData(List<Path> files, Path source, Path targetDir)
+            throws IOException {
+        if (costEstimator != null) {
+            files = costEstimator.order(files);
+        }
+
+        DataGenerationStats stats = writeTrainingData(files, source, targetDir);
+        if (manifest != null) {
+            manifest.save();
+        }
+        if (costEstimator != null) {
+            log.info(costEstimator.getReport());
+            costEstimator.save();
         }
 
         log.info("Generation of training data: done");
@@ -148,7 +185,146 @@ public abstract class TrainingSetGenerator {
         return stats;
     }
 
-    private Path stripCommonSourceDir(Path sourceFile, Path commonSourceDir) {
+    /**
+     * Generates and writes the training data of each of the given files.
+     *
+     * @param files Source files to generate training data from
+     * @param source Common source directory of the files
+     * @param targetDir Directory to write the training data to
+     *
+     * @return Statistics over the written data
+     */
+    protected DataGenerationStats writeTrainingData(List<Path> files, Path source, Path targetDir) {
+        DataGenerationStats stats = new DataGenerationStats();
+        if (costEstimator == null) {
+            files.parallelStream().forEach(file -> writeTrainingData(file, source, targetDir, stats));
+            return stats;
+        }
+
+        // Files are ordered by cost; each worker takes the next most expensive file once done.
+        // A parallel stream would instead split the list into chunks in advance.
+        Queue<Path> queue = new ConcurrentLinkedQueue<>(files);
+        ForkJoinPool pool = ForkJoinTask.inForkJoinPool()
+                ? ForkJoinTask.getPool()
+                : ForkJoinPool.commonPool();
+        int workers = Math.min(pool.getParallelism(), files.size());
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            tasks.add(ForkJoinTask.adapt(() -> {
+                Path file;
+                while ((file = queue.poll()) != null) {
+                    writeTrainingData(file, source, targetDir, stats);
+                }
+            }).fork());
+        }
+        tasks.forEach(ForkJoinTask::join);
+        return stats;
+    }
+
+    private void writeTrainingData(Path file, Path source, Path targetDir, DataGenerationStats stats) {
+        long start = System.nanoTime();
+        TrainingData samples = new TrainingData(
+                stripCommonSourceDir(file, source),
+                file,
+                streamSamplesFromFile(file));
+        try {
+            DataGenerationStats writeStats = format.writeSamples(samples, targetDir);
+            samples.getSamples().close();
+            synchronized (stats) {
+                stats.increaseFilesSeen();
+                stats.mergeWith(writeStats);
+            }
+            recordWritten(samples.getSourceFile(), samples.getAbsoluteSourcePath(), targetDir);
+        } catch (IOException e) {
+            log.warn("Could not write all samples for {}",
+                    samples.getSourceFile());
+            synchronized (stats) {
+                stats.increaseFilesSeen();
+                stats.increaseFilesWithErrors();
+            }
+        }
+        recordCost(file, System.nanoTime() - start);
+    }
+
+    /**
+     * Records the time it took to generate the training data of a source file
+     * in the {@link #setCostEstimator(MachineCostEstimator) cost estimator}, if set.
+     * Nothing is recorded if labels of the file were reused from an earlier
+     * run, as the time then does not reflect the generation cost and would
+     * replace the cost known from the history.
+     *
+     * @param sourceFile Source file
+     * @param nanos Time it took to generate and write the training data
+     */
+    void recordCost(Path sourceFile, long nanos) {
+        if (costEstimator == null) {
+            return;
+        }
+        if (labelGenerator.hasReusedLabels(sourceFile)) {
+            log.debug("Not recording cost of {}: labels were reused from an earlier run", sourceFile);
+            return;
+        }
+        costEstimator.recordActual(sourceFile, nanos);
+    }
+
+    /**
+     * Sets an estimator by which the machines are ordered, most expensive first,
+     * to avoid a single expensive machine being generated last.
+     * The actual cost of each machine is recorded in the estimator.
+     *
+     * @param costEstimator Estimator to use, or null to generate the machines
+     *         in arbitrary order
+     */
+    public void setCostEstimator(MachineCostEstimator costEstimator) {
+        this.costEstimator = costEstimator;
+    }
+
+    public MachineCostEstimator getCostEstimator() {
+        return costEstimator;
+    }
+
+    /**
+     * Whether the training data at the target location need not be generated
+     * again. Consults the {@link #setManifest(CorpusManifest) manifest} if set,
+     * and {@link #dataAlreadyExists(Path, Path)} otherwise.
+     */
+    private boolean isUpToDate(Path sourceFile, Path targetLocation) {
+        return manifest != null
+                ? manifest.isUpToDate(sourceFile, targetLocation)
+                : dataAlreadyExists(sourceFile, targetLocation);
+    }
+
+    /**
+     * Records the written training data of a source file in the
+     * {@link #setManifest(CorpusManifest) manifest}, if set.
+     *
+     * @param relativeSource Source file relative to the common source directory
+     * @param sourceFile Source file
+     * @param targetDir Directory the training data was written to
+     */
+    void recordWritten(Path relativeSource, Path sourceFile, Path targetDir) {
+        if (manifest != null) {
+            manifest.record(sourceFile, format.getTargetLocation(relativeSource, targetDir));
+        }
+    }
+
+    /**
+     * Sets a manifest to decide which machines are already generated in lazy
+     * generation, replacing the comparison of modification times in
+     * {@link #dataAlreadyExists(Path, Path)}. Each written machine is
+     * recorded in the manifest.
+     *
+     * @param manifest Manifest to use, or null to compare modification times
+     */
+    public void setManifest(CorpusManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    public CorpusManifest getManifest() {
+        return manifest;
+    }
+
+    protected Path stripCommonSourceDir(Path sourceFile, Path commonSourceDir) {
         if (commonSourceDir.equals(sourceFile)) {
             return sourceFile.getFileName();
         }
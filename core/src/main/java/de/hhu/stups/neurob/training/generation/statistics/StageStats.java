@@ -0,0 +1,152 @@
+package de.hhu.stups.neurob.training.generation.statistics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Statistics over a single stage of a staged generation pipeline,
+ * e.g. how many items it processed per second and how many items
+ * were waiting for it.
+ */
+public class StageStats {
+    /** Name of the stage */
+    private final String name;
+    /** Number of threads working in this stage */
+    private final int threads;
+    /** Current number of items waiting in the stage's input queue */
+    private final IntSupplier queueDepth;
+
+    /** Number of items processed by this stage */
+    private final AtomicLong processed;
+    /** Number of items that failed in this stage */
+    private final AtomicLong failed;
+    /** Accumulated time the threads of this stage were working on items */
+    private final AtomicLong busyNanos;
+    /** Highest number of items observed in the stage's input queue */
+    private final AtomicInteger maxQueueDepth;
+
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * @param name Name of the stage
+     * @param threads Number of threads working in the stage
+     * @param queueDepth Yields the current number of items waiting in
+     *         the stage's input queue
+     */
+    public StageStats(String name, int threads, IntSupplier queueDepth) {
+        this.name = name;
+        this.threads = threads;
+        this.queueDepth = queueDepth;
+        this.processed = new AtomicLong(0L);
+        this.failed = new AtomicLong(0L);
+        this.busyNanos = new AtomicLong(0L);
+        this.maxQueueDepth = new AtomicInteger(0);
+    }
+
+    /**
+     * Marks the begin of the stage's work.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        endNanos = 0L;
+    }
+
+    /**
+     * Marks the end of the stage's work.
+     */
+    public void stop() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Records a processed item.
+     *
+     * @param nanos Time it took to process the item
+     * @param successful Whether the item was processed without errors
+     */
+    public void recordItem(long nanos, boolean successful) {
+        processed.incrementAndGet();
+        busyNanos.addAndGet(nanos);
+        if (!successful) {
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records the current depth of the input queue, e.g. after an item was
+     * put into it.
+     */
+    public void sampleQueueDepth() {
+        maxQueueDepth.accumulateAndGet(queueDepth.getAsInt(), Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return Time since the stage started, or its total run time if it already stopped.
+     */
+    public long getElapsedNanos() {
+        if (startNanos == 0L) {
+            return 0L;
+        }
+        long end = endNanos != 0L ? endNanos : System.nanoTime();
+        return end - startNanos;
+    }
+
+    /**
+     * @return Processed items per second of wall time.
+     */
+    public double getThroughput() {
+        long elapsed = getElapsedNanos();
+        return elapsed > 0 ? processed.get() / (elapsed / 1e9) : 0.0;
+    }
+
+    /**
+     * @return Share of the available thread time the stage spent working
+     *         on items, between 0 and 1. Low values indicate the stage was
+     *         starved by its predecessor or blocked by its successor.
+     */
+    public double getUtilisation() {
+        long elapsed = getElapsedNanos();
+        return elapsed > 0 && threads > 0
+                ? (double) busyNanos.get() / ((double) elapsed * threads)
+                : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d threads; %d items processed (%d failed); "
+                             + "%.2f items/s; %.1f %% utilised; queue depth %d (max %d)",
+                name, threads, getProcessed(), getFailed(),
+                getThroughput(), 100 * getUtilisation(),
+                getQueueDepth(), getMaxQueueDepth());
+    }
+}
@@ -0,0 +1,139 @@
+package de.hhu.stups.neurob.training.generation.util;
+
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of predicates with cleaned up AST, evicting the least
+ * recently used entry once full.
+ * <p>
+ * Entries are keyed by the formalism and location of the machine the
+ * predicate was cleaned up in and the sha512 hash of the predicate.
+ * Other than parsed formulae, cleaned up predicates are plain text and
+ * stay valid after the access to the machine is reloaded or closed; hence
+ * they are cached across accesses.
+ * <p>
+ * The capacity of newly created caches can be set via the system property
+ * {@value #SIZE_PROPERTY}; a capacity of 0 disables caching.
+ */
+public class AstCleanupCache {
+
+    /** System property to configure the number of cleaned up predicates cached. */
+    public static final String SIZE_PROPERTY = "neurob.cleanup.cache.size";
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final Map<String, BPredicate> cache;
+
+    private long hits;
+    private long misses;
+
+    private static final Logger log =
+            LoggerFactory.getLogger(AstCleanupCache.class);
+
+    public AstCleanupCache() {
+        this(defaultCapacity());
+    }
+
+    /**
+     * @param capacity Maximum number of cached predicates
+     */
+    public AstCleanupCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.cache = new LinkedHashMap<String, BPredicate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BPredicate> eldest) {
+                return size() > AstCleanupCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param access Access to the machine the predicate belongs to
+     * @param predicate Predicate to look up
+     *
+     * @return The cleaned up predicate, or null if it is not cached
+     */
+    public BPredicate get(MachineAccess access, BPredicate predicate) {
+        String key = key(access, predicate);
+        synchronized (cache) {
+            BPredicate cleaned = cache.get(key);
+            if (cleaned != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+            return cleaned;
+        }
+    }
+
+    /**
+     * @param access Access to the machine the predicate belongs to
+     * @param predicate Predicate as it was given
+     * @param cleaned Predicate with cleaned up AST
+     */
+    public void put(MachineAccess access, BPredicate predicate, BPredicate cleaned) {
+        String key = key(access, predicate);
+        synchronized (cache) {
+            cache.put(key, cleaned);
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (cache) {
+            return "AstCleanupCache{"
+                   + "size=" + cache.size() + "/" + capacity + ", "
+                   + "hits=" + hits + ", "
+                   + "misses=" + misses + "}";
+        }
+    }
+
+    private static String key(MachineAccess access, BPredicate predicate) {
+        return access.getMachineType() + ":" + access.getSource() + ":"
+               + DigestUtils.sha512Hex(predicate.getPredicate());
+    }
+
+    private static int defaultCapacity() {
+        String configured = System.getProperty(SIZE_PROPERTY);
+        if (configured == null) {
+            return DEFAULT_CAPACITY;
+        }
+
+        try {
+            return Math.max(0, Integer.parseInt(configured.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Could not parse {}={}, caching {} predicates",
+                    SIZE_PROPERTY, configured, DEFAULT_CAPACITY);
+            return DEFAULT_CAPACITY;
+        }
+    }
+}
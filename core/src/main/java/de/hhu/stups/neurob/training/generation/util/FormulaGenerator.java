@@ -2,8 +2,10 @@ package de.hhu.stups.neurob.training.generation.util;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -19,6 +21,7 @@ import de.hhu.stups.neurob.core.api.backends.Backend;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
 import de.hhu.stups.neurob.core.exceptions.FormulaException;
+import de.prob.animator.command.AbstractCommand;
 import de.prob.animator.command.EnsureWdCommand;
 import de.prob.animator.command.NQPrimePredicateCommand;
 import de.prob.animator.command.PrettyPrintFormulaCommand;
@@ -42,6 +45,9 @@ public class FormulaGenerator {
     private static final Logger log =
             LoggerFactory.getLogger(FormulaGenerator.class);
 
+    /** Predicates cleaned up so far, shared across machine accesses */
+    private static final AstCleanupCache astCleanupCache = new AstCleanupCache();
+
     /**
      * Takes a given predicate and primes the identifiers.
      * <p>
@@ -112,9 +118,133 @@ public class FormulaGenerator {
     }
 
 
+    /**
+     * Cleans up the AST of the given predicate.
+     * The result is taken from the {@link #getAstCleanupCache() cache}
+     * if the predicate was cleaned up before.
+     *
+     * @param bMachine Access to the B machine the predicate belongs to
+     * @param predicate Predicate to clean up
+     *
+     * @return Predicate with cleaned up AST
+     *
+     * @throws FormulaException
+     * @see #cleanupAsts(MachineAccess, Collection)
+     */
     public static BPredicate cleanupAst(MachineAccess bMachine,
             BPredicate predicate) throws FormulaException {
-        return cleanupAst(bMachine, Backend.generateBFormula(predicate, bMachine));
+        BPredicate cleaned = cleanupAsts(bMachine, Collections.singletonList(predicate))
+                .get(predicate);
+        if (cleaned == null) {
+            throw new FormulaException("Could not create cleaned up AST from " + predicate);
+        }
+        return cleaned;
+    }
+
+    /**
+     * Cleans up the ASTs of the given predicates of the same machine.
+     * <p>
+     * Instead of two round trips to ProB per predicate, the well-definedness
+     * commands of all predicates are executed in batches, followed by the
+     * pretty printing commands of all predicates. Predicates that were
+     * cleaned up before are taken from the {@link #getAstCleanupCache() cache}.
+     * <p>
+     * Predicates that can not be cleaned up are missing in the returned map.
+     * If no predicate could be cleaned up as every command of a batch of
+     * more than one command failed, the access itself is likely broken,
+     * e.g. as its ProB cli shut down; a {@link FormulaException} is thrown
+     * instead, upon which the access should be reloaded. A single failing
+     * command is more likely due to its predicate and only leaves that
+     * predicate out.
+     *
+     * @param bMachine Access to the B machine the predicates belong to
+     * @param predicates Predicates to clean up
+     *
+     * @return Map of the given predicates to their cleaned up versions
+     *
+     * @throws FormulaException if all of more than one command sent to ProB failed
+     */
+    public static Map<BPredicate, BPredicate> cleanupAsts(MachineAccess bMachine,
+            Collection<BPredicate> predicates) throws FormulaException {
+        Map<BPredicate, BPredicate> cleaned = new HashMap<>();
+
+        Map<BPredicate, EnsureWdCommand> wdCommands = new LinkedHashMap<>();
+        for (BPredicate predicate : predicates) {
+            if (cleaned.containsKey(predicate) || wdCommands.containsKey(predicate)) {
+                continue;
+            }
+            BPredicate cached = astCleanupCache.get(bMachine, predicate);
+            if (cached != null) {
+                cleaned.put(predicate, cached);
+                continue;
+            }
+            try {
+                wdCommands.put(predicate,
+                        new EnsureWdCommand(Backend.generateBFormula(predicate, bMachine)));
+            } catch (Exception e) {
+                log.warn("Could not create cleaned up AST from {}", predicate, e);
+            }
+        }
+        if (wdCommands.isEmpty()) {
+            return cleaned;
+        }
+
+        Map<AbstractCommand, Exception> wdFailures = PredicateCollection.executeBatched(
+                bMachine, new ArrayList<>(wdCommands.values()));
+        throwIfAllFailed(bMachine, wdCommands.size(), wdFailures);
+
+        // NOTE: The PrettyPrintFormulaCommand sometimes returns comments as well.
+        // We pretty print again to get rid of them.
+        Map<BPredicate, PrettyPrintFormulaCommand> printCommands = new LinkedHashMap<>();
+        for (Entry<BPredicate, EnsureWdCommand> wd : wdCommands.entrySet()) {
+            try {
+                if (wdFailures.containsKey(wd.getValue())) {
+                    throw wdFailures.get(wd.getValue());
+                }
+                BPredicate wdPred = BPredicate.of(wd.getValue().getWdPred());
+                PrettyPrintFormulaCommand cleanup = new PrettyPrintFormulaCommand(
+                        bMachine.parseFormula(wdPred), PrettyPrintFormulaCommand.Mode.ASCII);
+                cleanup.setOptimize(true);
+                printCommands.put(wd.getKey(), cleanup);
+            } catch (Exception e) {
+                log.warn("Could not create cleaned up AST from {}", wd.getKey(), e);
+            }
+        }
+
+        Map<AbstractCommand, Exception> printFailures = PredicateCollection.executeBatched(
+                bMachine, new ArrayList<>(printCommands.values()));
+        throwIfAllFailed(bMachine, printCommands.size(), printFailures);
+
+        for (Entry<BPredicate, PrettyPrintFormulaCommand> print : printCommands.entrySet()) {
+            if (printFailures.containsKey(print.getValue())) {
+                log.warn("Could not create cleaned up AST from {}", print.getKey(),
+                        printFailures.get(print.getValue()));
+                continue;
+            }
+            BPredicate result = BPredicate.of(print.getValue().getPrettyPrint());
+            astCleanupCache.put(bMachine, print.getKey(), result);
+            cleaned.put(print.getKey(), result);
+        }
+
+        return cleaned;
+    }
+
+    private static void throwIfAllFailed(MachineAccess bMachine, int commandCount,
+            Map<AbstractCommand, Exception> failures) throws FormulaException {
+        // A single failed command does not tell a broken access from a broken predicate
+        if (commandCount > 1 && failures.size() == commandCount) {
+            throw new FormulaException("All " + commandCount + " commands to clean up ASTs "
+                                       + "failed for " + bMachine.getSource(),
+                    failures.values().iterator().next());
+        }
+    }
+
+    /**
+     * @return Cache of the predicates cleaned up by
+     *         {@link #cleanupAsts(MachineAccess, Collection)}, shared by the whole process.
+     */
+    public static AstCleanupCache getAstCleanupCache() {
+        return astCleanupCache;
     }
 
     public static BPredicate cleanupAst(MachineAccess bMachine,
@@ -2,10 +2,21 @@ package de.hhu.stups.neurob.training.generation.util;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import de.hhu.stups.neurob.core.api.DaemonThreadFactory;
 import de.hhu.stups.neurob.core.api.MachineType;
 import de.hhu.stups.neurob.core.api.backends.Backend;
 import de.hhu.stups.neurob.core.api.bmethod.BMachine;
@@ -19,7 +30,9 @@ import de.prob.statespace.OperationInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.prob.animator.command.AbstractCommand;
 import de.prob.animator.command.BeforeAfterPredicateCommand;
+import de.prob.animator.command.NQPrimePredicateCommand;
 import de.prob.animator.command.WeakestPreconditionCommand;
 import de.prob.animator.domainobjects.IBEvalElement;
 import de.prob.model.classicalb.Assertion;
@@ -33,8 +46,30 @@ import de.prob.model.representation.Invariant;
 /**
  * Collection of invariants, properties, preconditions, etc. found in a
  * B machine.
+ * <p>
+ * Weakest preconditions, before/after predicates, and primed predicates
+ * are calculated by ProB. Each of these {@link Facet facets} is only
+ * calculated on first access and memoised, so generation rules not using
+ * a facet do not cost its calculation. Given additional loaded accesses to
+ * the same machine, the calculations are split by operation across all
+ * accesses and run concurrently; the collected results do not depend on
+ * the number of accesses.
  */
 public class PredicateCollection {
+    /** Maximum number of commands sent to ProB in a single round trip */
+    public static final int COMMAND_BATCH_SIZE = 64;
+
+    /**
+     * Parts of the collection calculated by ProB on first access.
+     */
+    public enum Facet {
+        WEAKEST_PRECONDITIONS,
+        WEAKEST_FULL_PRECONDITIONS,
+        BEFORE_AFTER_PREDICATES,
+        PRIMED_INVARIANTS,
+        PRIMED_PRECONDITIONS
+    }
+
     private List<BPredicate> invariants;
     private List<String> operations;
     private Map<String, List<BPredicate>> preconditions;
@@ -47,9 +82,25 @@ public class PredicateCollection {
     private Map<String, List<BPredicate>> primedPreconditions;
 
     private MachineAccess bMachine;
+    /** Further accesses to the same machine to share the calculations with */
+    private List<MachineAccess> helperAccesses;
+
+    /** Facets calculated so far */
+    private final Set<Facet> materialised;
+    /** Invariants set up for weakest precondition calculation and priming; null until needed */
+    private Map<BPredicate, IBEvalElement> invCmds;
+    /** Conjunction of the invariants, if more than one */
+    private IBEvalElement fullInvCmd;
 
     private final boolean cleanAst;
 
+    /** Time taken to collect the predicates and calculate the facets, in nanoseconds */
+    private long collectionNanos;
+
+    /** Runs the calculations of the helper accesses */
+    private static final ExecutorService helperExecutor =
+            Executors.newCachedThreadPool(new DaemonThreadFactory("neurob-predicate-collection"));
+
     private static final Logger log =
             LoggerFactory.getLogger(PredicateCollection.class);
 
@@ -58,7 +109,29 @@ public class PredicateCollection {
     }
 
     public PredicateCollection(MachineAccess bMachine, boolean cleanAst) {
+        this(bMachine, cleanAst, Collections.emptyList());
+    }
+
+    /**
+     * Collects the predicates of the machine, sharing the calculations of
+     * weakest preconditions, before/after predicates, and primed predicates
+     * with the given helper accesses.
+     *
+     * @param bMachine Access to the machine
+     * @param cleanAst Whether to clean up the AST of invariants and assertions
+     * @param helperAccesses Further loaded accesses to the same machine;
+     *         used to calculate facets until {@link #detachHelperAccesses() detached}
+     */
+    public PredicateCollection(MachineAccess bMachine, boolean cleanAst,
+            List<MachineAccess> helperAccesses) {
+        this(bMachine, cleanAst, helperAccesses, true);
+    }
+
+    private PredicateCollection(MachineAccess bMachine, boolean cleanAst,
+            List<MachineAccess> helperAccesses, boolean collect) {
+        long start = System.nanoTime();
         this.bMachine = bMachine;
+        this.helperAccesses = helperAccesses;
 
         this.cleanAst = cleanAst;
 
@@ -72,6 +145,11 @@ public class PredicateCollection {
         weakestFullPreconditions = new HashMap<>();
         primedInvariants = new HashMap<>();
         primedPreconditions = new HashMap<>();
+        materialised = EnumSet.noneOf(Facet.class);
+
+        if (!collect) {
+            return;
+        }
 
         collectFromMachine(bMachine);
 
@@ -86,6 +164,20 @@ public class PredicateCollection {
             }
         }
 
+        collectionNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Creates an empty collection for the given machine, to be filled by
+     * the {@link PredicateCollectionCache} instead of by ProB.
+     *
+     * @param bMachine Access to the machine
+     * @param cleanAst Whether the cached predicates had their AST cleaned up
+     *
+     * @return Empty collection
+     */
+    static PredicateCollection createEmpty(MachineAccess bMachine, boolean cleanAst) {
+        return new PredicateCollection(bMachine, cleanAst, Collections.emptyList(), false);
     }
 
     private void collectFromMachine(MachineAccess bMachine) {
@@ -106,16 +198,6 @@ public class PredicateCollection {
         }
         invariants = cleanUpPredicates(bMachine, invariants);
 
-        // Conjunct invariants if more than one
-        BPredicate invariantConcat = null;
-        if (invariants.size() > 1) {
-            invariantConcat =
-                    FormulaGenerator.getPredicateConjunction(invariants);
-//            invariants.add(invariantConcat);
-        }
-
-        BPredicate fullInv = FormulaGenerator.getPredicateConjunction(invariants);
-
         log.trace("Collecting assertions from {}", bMachine.getSource());
         for (Assertion x : comp.getChildrenOfType(Assertion.class)) {
             assertions.add(BPredicate.of(x.getFormula().getCode()));
@@ -137,130 +219,200 @@ public class PredicateCollection {
             if (!event.isEmpty())
                 preconditions.put(x.getName(), event);
         }
+    }
 
-        // set up invariants as commands for below
-        Map<BPredicate, IBEvalElement> invCmds = new HashMap<>();
-        for (BPredicate inv : invariants) {
-            try {
-                IBEvalElement cmd = Backend.generateBFormula(inv, bMachine);
-                invCmds.put(inv, cmd);
-            } catch (FormulaException e) {
-                log.warn("Could not set up EvalElement from {} in {} for "
-                         + "weakest precondition calculation or priming",
-                        inv, bMachine.getSource(), e);
+    /**
+     * Calculates the given facets, unless already done. All commands for the
+     * missing facets are executed together, in batches and split across the
+     * helper accesses.
+     *
+     * @param facets Facets to calculate
+     */
+    public synchronized void materialise(Facet... facets) {
+        Set<Facet> missing = EnumSet.noneOf(Facet.class);
+        for (Facet facet : facets) {
+            if (!materialised.contains(facet)) {
+                missing.add(facet);
             }
         }
-        IBEvalElement fullInvCmd = null;
-        if (invariantConcat != null) {
-            try {
-                fullInvCmd = Backend.generateBFormula(invariantConcat, bMachine);
-            } catch (FormulaException e) {
-                log.warn("Could not set up EvalElement from invariant concatenation for "
-                         + "weakest precondition calculation or priming in {}",
-                        bMachine.getSource(), e);
-            }
+        if (missing.isEmpty()) {
+            return;
         }
+        long start = System.nanoTime();
+        log.debug("Materialising {} for {}", missing, bMachine.getSource());
+
+        // Set up all commands first, so they can be sent to ProB in batches
+        // instead of one round trip each; grouped by operation to be split
+        // across the helper accesses. The results are read after execution.
+        Map<String, List<AbstractCommand>> commandGroups = new LinkedHashMap<>();
+        for (String operation : operations) {
+            commandGroups.put(operation, new ArrayList<>());
+        }
+        List<AbstractCommand> primedInvGroup = new ArrayList<>();
+        List<Consumer<Map<AbstractCommand, Exception>>> readers = new ArrayList<>();
 
-        // weakest preconditions for each invariant
-        log.trace("Building weakest preconditions for {}", bMachine.getSource());
-        for (BEvent x : comp.getChildrenOfType(BEvent.class)) {
-            if (x.getName().equals("INITIALISATION"))
-                continue; // None for initialisation
+        if (missing.contains(Facet.WEAKEST_PRECONDITIONS)) {
+            setUpWeakestPreconditions(commandGroups, readers);
+        }
+        if (missing.contains(Facet.WEAKEST_FULL_PRECONDITIONS)) {
+            setUpWeakestFullPreconditions(commandGroups, readers);
+        }
+        if (missing.contains(Facet.BEFORE_AFTER_PREDICATES)) {
+            setUpBeforeAfterPredicates(commandGroups, readers);
+        }
+        if (missing.contains(Facet.PRIMED_PRECONDITIONS)) {
+            setUpPrimedPreconditions(commandGroups, readers);
+        }
+        if (missing.contains(Facet.PRIMED_INVARIANTS)) {
+            setUpPrimedInvariants(primedInvGroup, readers);
+        }
+
+        List<List<AbstractCommand>> groups = new ArrayList<>(commandGroups.values());
+        groups.add(primedInvGroup);
+        Map<AbstractCommand, Exception> failures = executeDistributed(groups);
+        readers.forEach(reader -> reader.accept(failures));
 
-            Map<BPredicate, BPredicate> wpcs = new HashMap<>();
+        materialised.addAll(missing);
+        collectionNanos += System.nanoTime() - start;
+    }
+
+    private void setUpWeakestPreconditions(Map<String, List<AbstractCommand>> commandGroups,
+            List<Consumer<Map<AbstractCommand, Exception>>> readers) {
+        Map<BPredicate, IBEvalElement> invCmds = getInvariantCommands();
+        for (String operation : operations) {
+            Map<BPredicate, WeakestPreconditionCommand> wpccs = new HashMap<>();
             for (BPredicate inv : invCmds.keySet()) {
-                IBEvalElement invCmd = invCmds.get(inv);
+                WeakestPreconditionCommand wpcc =
+                        new WeakestPreconditionCommand(operation, invCmds.get(inv));
+                wpccs.put(inv, wpcc);
+                commandGroups.get(operation).add(wpcc);
+            }
 
+            readers.add(failures -> {
+                log.trace("Building weakest preconditions for {} in {}",
+                        operation, bMachine.getSource());
+                Map<BPredicate, BPredicate> wpcs = new HashMap<>();
+                for (BPredicate inv : wpccs.keySet()) {
+                    try {
+                        wpcs.put(inv, readWeakestPrecondition(wpccs.get(inv), failures));
+                    } catch (Exception e) {
+                        log.warn("Could not build weakest precondition "
+                                 + "for {} by operation {} in {}.",
+                                inv, operation, bMachine.getSource(), e);
+                    }
+                }
+                weakestPreconditions.put(operation, wpcs);
+            });
+        }
+    }
+
+    private void setUpWeakestFullPreconditions(Map<String, List<AbstractCommand>> commandGroups,
+            List<Consumer<Map<AbstractCommand, Exception>>> readers) {
+        getInvariantCommands();
+        if (fullInvCmd == null) {
+            return;
+        }
+        for (String operation : operations) {
+            WeakestPreconditionCommand wpcc =
+                    new WeakestPreconditionCommand(operation, fullInvCmd);
+            commandGroups.get(operation).add(wpcc);
+
+            readers.add(failures -> {
                 try {
-                    WeakestPreconditionCommand wpcc =
-                            new WeakestPreconditionCommand(x.getName(), invCmd);
-                    bMachine.execute(wpcc);
-                    // FIXME: Erase comment, probably should not be returned by ProB to begin with
-                    String code = wpcc.getWeakestPrecondition().getCode()
-                            .replaceAll("/\\*.*\\*/ *", "");
-                    wpcs.put(inv, BPredicate.of(code));
+                    weakestFullPreconditions.put(operation,
+                            readWeakestPrecondition(wpcc, failures));
                 } catch (Exception e) {
                     log.warn("Could not build weakest precondition "
-                             + "for {} by operation {} in {}.",
-                            invCmd.getCode(), x.getName(), bMachine.getSource(), e);
+                             + "for full invariant {} by operation {} in {}.",
+                            fullInvCmd.getCode(), operation, bMachine.getSource(), e);
                 }
+            });
+        }
+    }
 
-            }
-            weakestPreconditions.put(x.getName(), wpcs);
+    private void setUpBeforeAfterPredicates(Map<String, List<AbstractCommand>> commandGroups,
+            List<Consumer<Map<AbstractCommand, Exception>>> readers) {
+        OperationInfo.Type operationType = bMachine.getMachineType() == MachineType.CLASSICALB
+                ? OperationInfo.Type.CLASSICAL_B
+                : OperationInfo.Type.EVENTB;
+        for (String operation : operations) {
+            BeforeAfterPredicateCommand bapc =
+                    new BeforeAfterPredicateCommand(operation, operationType);
+            commandGroups.get(operation).add(bapc);
 
-            // Full precondition
-            if (fullInvCmd != null) {
+            readers.add(failures -> {
                 try {
-                    WeakestPreconditionCommand wpcc =
-                            new WeakestPreconditionCommand(x.getName(), fullInvCmd);
-                    bMachine.execute(wpcc);
+                    throwIfFailed(bapc, failures);
                     // FIXME: Erase comment, probably should not be returned by ProB to begin with
-                    String code = wpcc.getWeakestPrecondition().getCode()
+                    String code = bapc.getBeforeAfterPredicate().getCode()
                             .replaceAll("/\\*.*\\*/ *", "");
-                    weakestFullPreconditions.put(x.getName(), BPredicate.of(code));
+                    beforeAfterPredicates.put(operation, BPredicate.of(code));
                 } catch (Exception e) {
-                    log.warn("Could not build weakest precondition"
-                             + "for full invariant {} by operation {} in {}.",
-                            fullInv, x.getName(), bMachine.getSource(), e);
+                    log.warn("Could not build Before After Predicate for event {} in {}",
+                            operation, bMachine.getSource(), e);
                 }
-            }
-
+            });
         }
+    }
 
-        // Before/After predicates
-        OperationInfo.Type operationType = bMachine.getMachineType() == MachineType.CLASSICALB
-                ? OperationInfo.Type.CLASSICAL_B
-                : OperationInfo.Type.EVENTB;
-        log.trace("Building before/after predicates");
-        for (BEvent x : comp.getChildrenOfType(BEvent.class)) {
-            if (x.getName().equals("INITIALISATION"))
-                continue; // None for initialisation
-            try {
-                BeforeAfterPredicateCommand bapc =
-                        new BeforeAfterPredicateCommand(x.getName(), operationType);
-                bMachine.execute(bapc);
-                // FIXME: Erase comment, probably should not be returned by ProB to begin with
-                String code = bapc.getBeforeAfterPredicate().getCode()
-                        .replaceAll("/\\*.*\\*/ *", "");
-                beforeAfterPredicates.put(x.getName(), BPredicate.of(code));
-            } catch (Exception e) {
-                log.warn("Could not build Before After Predicate for event {} in {}",
-                        x.getName(), bMachine.getSource(), e);
+    private void setUpPrimedPreconditions(Map<String, List<AbstractCommand>> commandGroups,
+            List<Consumer<Map<AbstractCommand, Exception>>> readers) {
+        for (String operation : operations) {
+            List<NQPrimePredicateCommand> ppcs = new ArrayList<>();
+            List<BPredicate> precs =
+                    preconditions.getOrDefault(operation, Collections.emptyList());
+            for (BPredicate prec : precs) {
+                try {
+                    NQPrimePredicateCommand ppc =
+                            new NQPrimePredicateCommand(Backend.generateBFormula(prec, bMachine));
+                    ppcs.add(ppc);
+                    commandGroups.get(operation).add(ppc);
+                } catch (Exception e) {
+                    log.warn("Could not prime precondition for event {} in {}",
+                            operation, bMachine.getSource(), e);
+                }
             }
-        }
 
-        log.trace("Priming preconditions");
-        for (BEvent x : comp.getChildrenOfType(BEvent.class)) {
-            if (x.getName().equals("INITIALISATION"))
-                continue; // None for initialisation
-            List<BPredicate> primedPrecs = new ArrayList<>();
-            if (preconditions.containsKey(x.getName())) {
-                for (BPredicate prec : preconditions.get(x.getName())) {
+            readers.add(failures -> {
+                List<BPredicate> primedPrecs = new ArrayList<>();
+                for (NQPrimePredicateCommand ppc : ppcs) {
                     try {
-                        IBEvalElement cmd = Backend.generateBFormula(prec, bMachine);
-                        BPredicate code = FormulaGenerator.generatePrimedPredicate(bMachine, cmd);
-                        primedPrecs.add(code);
+                        throwIfFailed(ppc, failures);
+                        primedPrecs.add(BPredicate.of(ppc.getPrimedPredicate()));
                     } catch (Exception e) {
                         log.warn("Could not prime precondition for event {} in {}",
-                                x.getName(), bMachine.getSource(), e);
+                                operation, bMachine.getSource(), e);
                     }
                 }
-            }
-            primedPreconditions.put(x.getName(), primedPrecs);
+                primedPreconditions.put(operation, primedPrecs);
+            });
         }
+    }
 
-        // primed invariants
-        log.trace("Building primed invariants for {}", bMachine.getMachineType());
+    private void setUpPrimedInvariants(List<AbstractCommand> commandGroup,
+            List<Consumer<Map<AbstractCommand, Exception>>> readers) {
+        Map<BPredicate, IBEvalElement> invCmds = getInvariantCommands();
+        Map<BPredicate, NQPrimePredicateCommand> primedInvCmds = new HashMap<>();
         for (BPredicate inv : invCmds.keySet()) {
-            IBEvalElement invCmd = invCmds.get(inv);
-            try {
-                BPredicate primedInv = FormulaGenerator.generatePrimedPredicate(bMachine, invCmd);
-                primedInvariants.put(inv, primedInv);
-            } catch (Exception e) {
-                log.warn("Could not build primed invariant for {} from {}", inv, bMachine.getSource(), e);
-            }
+            NQPrimePredicateCommand ppc = new NQPrimePredicateCommand(invCmds.get(inv));
+            primedInvCmds.put(inv, ppc);
+            commandGroup.add(ppc);
         }
 
+        readers.add(failures -> {
+            log.trace("Building primed invariants for {}", bMachine.getSource());
+            for (BPredicate inv : primedInvCmds.keySet()) {
+                NQPrimePredicateCommand ppc = primedInvCmds.get(inv);
+                try {
+                    throwIfFailed(ppc, failures);
+                    primedInvariants.put(inv, BPredicate.of(ppc.getPrimedPredicate()));
+                } catch (Exception e) {
+                    log.warn("Could not build primed invariant for {} from {}",
+                            inv, bMachine.getSource(), e);
+                }
+            }
+        });
+
 //        // One fully primed invariant, please
 //        try {
 //            BPredicate primedInv = FormulaGenerator.generatePrimedPredicate(bMachine, fullInvCmd);
@@ -268,7 +420,44 @@ public class PredicateCollection {
 //        } catch (Exception e) {
 //            log.warn("Could not build primed invariant from {}", fullInv, e);
 //        }
+    }
 
+    /**
+     * Sets up the invariants, and their conjunction if more than one, for
+     * weakest precondition calculation and priming. Only done once.
+     *
+     * @return Map of the invariants to their respective EvalElement
+     */
+    private Map<BPredicate, IBEvalElement> getInvariantCommands() {
+        if (invCmds != null) {
+            return invCmds;
+        }
+
+        invCmds = new HashMap<>();
+        for (BPredicate inv : invariants) {
+            try {
+                IBEvalElement cmd = Backend.generateBFormula(inv, bMachine);
+                invCmds.put(inv, cmd);
+            } catch (FormulaException e) {
+                log.warn("Could not set up EvalElement from {} in {} for "
+                         + "weakest precondition calculation or priming",
+                        inv, bMachine.getSource(), e);
+            }
+        }
+
+        // Conjunct invariants if more than one
+        if (invariants.size() > 1) {
+            BPredicate invariantConcat =
+                    FormulaGenerator.getPredicateConjunction(invariants);
+            try {
+                fullInvCmd = Backend.generateBFormula(invariantConcat, bMachine);
+            } catch (FormulaException e) {
+                log.warn("Could not set up EvalElement from invariant concatenation for "
+                         + "weakest precondition calculation or priming in {}",
+                        bMachine.getSource(), e);
+            }
+        }
+        return invCmds;
     }
 
     private void collectFromContext(Context bcc) {
@@ -280,6 +469,115 @@ public class PredicateCollection {
 
     }
 
+    /**
+     * Executes the given groups of commands, split across the access to the
+     * machine and the helper accesses. The groups are kept together and
+     * assigned to the access with the fewest commands so far, largest
+     * groups first.
+     *
+     * @param groups Groups of commands to execute
+     *
+     * @return Map of the commands that failed to the respective exception
+     */
+    private Map<AbstractCommand, Exception> executeDistributed(List<List<AbstractCommand>> groups) {
+        List<MachineAccess> accesses = new ArrayList<>();
+        accesses.add(bMachine);
+        accesses.addAll(helperAccesses);
+
+        List<List<AbstractCommand>> shares = new ArrayList<>();
+        for (int i = 0; i < accesses.size(); i++) {
+            shares.add(new ArrayList<>());
+        }
+        List<List<AbstractCommand>> largestFirst = new ArrayList<>(groups);
+        largestFirst.sort(
+                Comparator.comparingInt((List<AbstractCommand> group) -> -group.size()));
+        for (List<AbstractCommand> group : largestFirst) {
+            shares.stream()
+                    .min(Comparator.comparingInt((List<AbstractCommand> share) -> share.size()))
+                    .ifPresent(share -> share.addAll(group));
+        }
+
+        log.trace("Executing {} commands in batches of {} over {} accesses to {}",
+                shares.stream().mapToInt(List::size).sum(), COMMAND_BATCH_SIZE,
+                accesses.size(), bMachine.getSource());
+
+        List<CompletableFuture<Map<AbstractCommand, Exception>>> helperFailures = new ArrayList<>();
+        for (int i = 1; i < accesses.size(); i++) {
+            MachineAccess access = accesses.get(i);
+            List<AbstractCommand> share = shares.get(i);
+            helperFailures.add(CompletableFuture.supplyAsync(
+                    () -> executeBatched(access, share), helperExecutor));
+        }
+        Map<AbstractCommand, Exception> failures = executeBatched(bMachine, shares.get(0));
+        for (int i = 0; i < helperFailures.size(); i++) {
+            try {
+                failures.putAll(helperFailures.get(i).join());
+            } catch (CompletionException e) {
+                log.warn("Helper access failed on {}", bMachine.getSource(), e);
+                for (AbstractCommand command : shares.get(i + 1)) {
+                    failures.put(command, e);
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Executes the given commands in batches of {@value #COMMAND_BATCH_SIZE}
+     * commands, each batch in a single round trip to ProB.
+     * <p>
+     * If a batch fails, it is split in halves which are executed on their
+     * own, until the failing commands are isolated. A failing command hence
+     * does not prevent the results of the others in its batch.
+     *
+     * @param access Access to execute the commands with
+     * @param commands Commands to execute
+     *
+     * @return Map of the commands that failed to the respective exception
+     */
+    static Map<AbstractCommand, Exception> executeBatched(MachineAccess access,
+            List<AbstractCommand> commands) {
+        Map<AbstractCommand, Exception> failures = new IdentityHashMap<>();
+        for (int from = 0; from < commands.size(); from += COMMAND_BATCH_SIZE) {
+            int to = Math.min(from + COMMAND_BATCH_SIZE, commands.size());
+            executeIsolatingFailures(access, commands.subList(from, to), failures);
+        }
+        return failures;
+    }
+
+    private static void executeIsolatingFailures(MachineAccess access, List<AbstractCommand> batch,
+            Map<AbstractCommand, Exception> failures) {
+        try {
+            access.execute(batch.toArray(new AbstractCommand[0]));
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                failures.put(batch.get(0), e);
+                return;
+            }
+            log.debug("Batch of {} commands failed for {}; splitting it",
+                    batch.size(), access.getSource(), e);
+            int half = batch.size() / 2;
+            executeIsolatingFailures(access, batch.subList(0, half), failures);
+            executeIsolatingFailures(access, batch.subList(half, batch.size()), failures);
+        }
+    }
+
+    private void throwIfFailed(AbstractCommand command,
+            Map<AbstractCommand, Exception> failures) throws Exception {
+        if (failures.containsKey(command)) {
+            throw failures.get(command);
+        }
+    }
+
+    private BPredicate readWeakestPrecondition(WeakestPreconditionCommand wpcc,
+            Map<AbstractCommand, Exception> failures) throws Exception {
+        throwIfFailed(wpcc, failures);
+        // FIXME: Erase comment, probably should not be returned by ProB to begin with
+        String code = wpcc.getWeakestPrecondition().getCode()
+                .replaceAll("/\\*.*\\*/ *", "");
+        return BPredicate.of(code);
+    }
+
     /**
      * Cleans the AST of the given Predicates.
      *
@@ -293,13 +591,18 @@ public class PredicateCollection {
             return predicates;
         }
 
-        List<BPredicate> cleaned = new ArrayList<>();
+        Map<BPredicate, BPredicate> cleanedAsts;
+        try {
+            cleanedAsts = FormulaGenerator.cleanupAsts(bMachine, predicates);
+        } catch (FormulaException e) {
+            log.warn("Unable to cleanup ast of {} predicates", predicates.size(), e);
+            return new ArrayList<>();
+        }
 
+        List<BPredicate> cleaned = new ArrayList<>();
         for (BPredicate p : predicates) {
-            try {
-                cleaned.add(FormulaGenerator.cleanupAst(bMachine, p));
-            } catch (FormulaException e) {
-                log.warn("Unable to cleanup ast of {}", p, e);
+            if (cleanedAsts.containsKey(p)) {
+                cleaned.add(cleanedAsts.get(p));
             }
         }
 
@@ -335,6 +638,7 @@ public class PredicateCollection {
      *         predicate.
      */
     public Map<String, BPredicate> getBeforeAfterPredicates() {
+        materialise(Facet.BEFORE_AFTER_PREDICATES);
         return beforeAfterPredicates;
     }
 
@@ -350,6 +654,7 @@ public class PredicateCollection {
      *         precondition.
      */
     public Map<String, Map<BPredicate, BPredicate>> getWeakestPreConditions() {
+        materialise(Facet.WEAKEST_PRECONDITIONS);
         return weakestPreconditions;
     }
 
@@ -357,6 +662,7 @@ public class PredicateCollection {
      * @return A map of invariants to their primed version
      */
     public Map<BPredicate, BPredicate> getPrimedInvariants() {
+        materialise(Facet.PRIMED_INVARIANTS);
         return primedInvariants;
     }
 
@@ -374,10 +680,58 @@ public class PredicateCollection {
     }
 
     public Map<String, List<BPredicate>> getPrimedPreconditions() {
+        materialise(Facet.PRIMED_PRECONDITIONS);
         return primedPreconditions;
     }
 
     public Map<String, BPredicate> getWeakestFullPreconditions() {
+        materialise(Facet.WEAKEST_FULL_PRECONDITIONS);
         return weakestFullPreconditions;
     }
+
+    /**
+     * @return Time taken to collect the predicates of the machine and to
+     *         calculate the facets materialised so far, in nanoseconds.
+     */
+    public synchronized long getCollectionNanos() {
+        return collectionNanos;
+    }
+
+    synchronized void setCollectionNanos(long collectionNanos) {
+        this.collectionNanos = collectionNanos;
+    }
+
+    /**
+     * @return The facets calculated so far.
+     */
+    public synchronized Set<Facet> getMaterialisedFacets() {
+        return EnumSet.copyOf(materialised);
+    }
+
+    public synchronized boolean isMaterialised(Facet facet) {
+        return materialised.contains(facet);
+    }
+
+    /**
+     * Marks the given facet as calculated, e.g. as it was loaded from the
+     * {@link PredicateCollectionCache}.
+     */
+    synchronized void markMaterialised(Facet facet) {
+        materialised.add(facet);
+    }
+
+    /**
+     * Stops using the helper accesses, e.g. before returning them to a pool.
+     * Facets calculated afterwards only use the access to the machine.
+     */
+    public synchronized void detachHelperAccesses() {
+        helperAccesses = Collections.emptyList();
+    }
+
+    /**
+     * @return Whether the AST of invariants and assertions was cleaned up.
+     */
+    public boolean isCleanAst() {
+        return cleanAst;
+    }
 }
@@ -0,0 +1,335 @@
+package de.hhu.stups.neurob.training.generation.util;
+
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineHash;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollection.Facet;
+import de.prob.cli.CliVersionNumber;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache of {@link PredicateCollection}s.
+ * <p>
+ * Collecting the predicates of a machine requires ProB to calculate the
+ * weakest preconditions, before/after predicates, and primed predicates,
+ * which is repeated each time the machine is processed. The cache stores
+ * the collected predicates instead, keyed by the sha512 hash of the machine
+ * and the machines it depends on, the version of the ProB cli, and whether
+ * the AST was cleaned up.
+ * Only the {@link PredicateCollection.Facet facets} materialised so far
+ * are stored; facets missing from a cached collection are calculated on
+ * first access as usual. On a hit, no command is sent to ProB for the
+ * stored facets.
+ * <p>
+ * The cache directory holds one tab separated file per machine hash.
+ * The first line holds the rest of the key; a file with a different key
+ * is a miss and replaced by the next store.
+ */
+public class PredicateCollectionCache {
+
+    private final Path cacheDirectory;
+    private final String cliVersion;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    private static final String FILE_EXTENSION = ".collection";
+
+    /** Kinds of entries belonging to a facet */
+    private static final Map<String, Facet> FACET_ENTRIES = new HashMap<>();
+
+    static {
+        FACET_ENTRIES.put("BEFORE_AFTER", Facet.BEFORE_AFTER_PREDICATES);
+        FACET_ENTRIES.put("WEAKEST_PRE", Facet.WEAKEST_PRECONDITIONS);
+        FACET_ENTRIES.put("WEAKEST_FULL_PRE", Facet.WEAKEST_FULL_PRECONDITIONS);
+        FACET_ENTRIES.put("PRIMED_INVARIANT", Facet.PRIMED_INVARIANTS);
+        FACET_ENTRIES.put("PRIMED_PRECONDITION", Facet.PRIMED_PRECONDITIONS);
+    }
+
+    private static final Logger log =
+            LoggerFactory.getLogger(PredicateCollectionCache.class);
+
+    /**
+     * @param cacheDirectory Directory in which the collections are stored.
+     *         Is created if not existent.
+     * @param cliVersion Version of the ProB cli collecting the predicates
+     */
+    public PredicateCollectionCache(Path cacheDirectory, CliVersionNumber cliVersion) {
+        this.cacheDirectory = cacheDirectory;
+        this.cliVersion = translateVersion(cliVersion);
+        this.hits = new AtomicLong(0L);
+        this.misses = new AtomicLong(0L);
+    }
+
+    /**
+     * Looks up the collection of the given machine.
+     *
+     * @param machine Source file of the machine
+     * @param access Access to the machine, returned by
+     *         {@link PredicateCollection#getBMachine()} of the cached collection
+     * @param cleanAst Whether the AST of invariants and assertions is to be cleaned up
+     *
+     * @return The cached collection, or null if none is stored
+     *         or the machine file cannot be hashed.
+     */
+    public PredicateCollection lookup(Path machine, MachineAccess access, boolean cleanAst) {
+        long start = System.nanoTime();
+        String machineHash = getMachineHash(machine);
+        Path cacheFile = machineHash != null ? getCacheFile(machineHash) : null;
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        PredicateCollection pc;
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            pc = translateFromLines(reader, header(cleanAst), access, cleanAst);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read cached predicate collection from {}", cacheFile, e);
+            pc = null;
+        }
+
+        if (pc == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        pc.setCollectionNanos(System.nanoTime() - start);
+        hits.incrementAndGet();
+        log.debug("Loaded predicate collection of {} from {}", machine, cacheFile);
+        return pc;
+    }
+
+    /**
+     * Stores the given collection, replacing any collection stored for the machine.
+     *
+     * @param machine Source file of the machine the predicates were collected from
+     * @param pc Collection to store
+     */
+    public void store(Path machine, PredicateCollection pc) {
+        String machineHash = getMachineHash(machine);
+        if (machineHash == null || pc == null) {
+            return;
+        }
+
+        Path cacheFile = getCacheFile(machineHash);
+        try {
+            Files.createDirectories(cacheDirectory);
+            Path tmp = Files.createTempFile(cacheDirectory, machineHash, ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(header(pc.isCleanAst()));
+                writer.newLine();
+                for (String line : translateToLines(pc)) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, cacheFile,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to persist predicate collection of {} to {}", machine, cacheFile, e);
+        }
+    }
+
+    /**
+     * @return Number of lookups that were answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of lookups that were not answered from the cache.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Calculates the sha512 hash of the given machine file and, if it
+     * depends on other files, i.e. sees, includes, or refines other
+     * machines, theirs (see {@link MachineHash}), so a collection is not
+     * reused once a dependency changed.
+     *
+     * @param machine Source file of the machine
+     *
+     * @return Hash of the file and its dependencies,
+     *         or null if one of the files is not accessible.
+     */
+    String getMachineHash(Path machine) {
+        if (machine == null) {
+            return null;
+        }
+
+        try {
+            return MachineHash.hash(machine);
+        } catch (IOException e) {
+            log.warn("Unable to generate hash for {}; predicates will not be cached", machine, e);
+            return null;
+        }
+    }
+
+    private Path getCacheFile(String machineHash) {
+        return cacheDirectory.resolve(machineHash + FILE_EXTENSION);
+    }
+
+    private String header(boolean cleanAst) {
+        return "VERSION\t" + cliVersion + "\t" + (cleanAst ? "clean" : "raw");
+    }
+
+    private static String translateVersion(CliVersionNumber cliVersion) {
+        if (cliVersion == null) {
+            return "unknown";
+        }
+        return cliVersion.major + "." + cliVersion.minor + "." + cliVersion.service
+               + "-" + cliVersion.qualifier + "-" + cliVersion.revision;
+    }
+
+    /**
+     * Translates the collection into tab separated lines, each starting
+     * with the kind of the entry. Each materialised facet is announced by
+     * a FACET line ahead of its entries.
+     */
+    static List<String> translateToLines(PredicateCollection pc) {
+        List<String> lines = new ArrayList<>();
+        pc.getOperationNames().forEach(op -> lines.add(line("OPERATION", op)));
+        pc.getInvariants().forEach(inv -> lines.add(line("INVARIANT", inv)));
+        pc.getProperties().forEach(prop -> lines.add(line("PROPERTY", prop)));
+        pc.getAssertions().forEach(assertion -> lines.add(line("ASSERTION", assertion)));
+        pc.getPreconditions().forEach((op, precs) -> precs.forEach(
+                prec -> lines.add(line("PRECONDITION", op, prec))));
+
+        Set<Facet> facets = pc.getMaterialisedFacets();
+        facets.forEach(facet -> lines.add(line("FACET", facet.name())));
+        if (facets.contains(Facet.BEFORE_AFTER_PREDICATES)) {
+            pc.getBeforeAfterPredicates().forEach(
+                    (op, bap) -> lines.add(line("BEFORE_AFTER", op, bap)));
+        }
+        if (facets.contains(Facet.WEAKEST_PRECONDITIONS)) {
+            pc.getWeakestPreConditions().forEach((op, wpcs) -> wpcs.forEach(
+                    (inv, wpc) -> lines.add(line("WEAKEST_PRE", op, inv, wpc))));
+        }
+        if (facets.contains(Facet.WEAKEST_FULL_PRECONDITIONS)) {
+            pc.getWeakestFullPreconditions().forEach(
+                    (op, wpc) -> lines.add(line("WEAKEST_FULL_PRE", op, wpc)));
+        }
+        if (facets.contains(Facet.PRIMED_INVARIANTS)) {
+            pc.getPrimedInvariants().forEach(
+                    (inv, primed) -> lines.add(line("PRIMED_INVARIANT", inv, primed)));
+        }
+        if (facets.contains(Facet.PRIMED_PRECONDITIONS)) {
+            pc.getPrimedPreconditions().forEach((op, primedPrecs) -> primedPrecs.forEach(
+                    primed -> lines.add(line("PRIMED_PRECONDITION", op, primed))));
+        }
+        return lines;
+    }
+
+    /**
+     * Reads a collection from the given lines.
+     *
+     * @return The collection, or null if the header does not match the expected one
+     */
+    static PredicateCollection translateFromLines(BufferedReader reader, String expectedHeader,
+            MachineAccess access, boolean cleanAst) throws IOException {
+        String header = reader.readLine();
+        if (!expectedHeader.equals(header)) {
+            log.debug("Cached predicate collection does not match {}", expectedHeader);
+            return null;
+        }
+
+        PredicateCollection pc = PredicateCollection.createEmpty(access, cleanAst);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t", -1);
+            for (int i = 1; i < fields.length; i++) {
+                fields[i] = StringEscapeUtils.unescapeJava(fields[i]);
+            }
+            Facet facet = FACET_ENTRIES.get(fields[0]);
+            if (facet != null && !pc.isMaterialised(facet)) {
+                // Entries of facets not announced are not trusted to be complete
+                continue;
+            }
+            switch (fields[0]) {
+                case "OPERATION":
+                    pc.getOperationNames().add(fields[1]);
+                    break;
+                case "FACET":
+                    pc.markMaterialised(Facet.valueOf(fields[1]));
+                    break;
+                case "INVARIANT":
+                    pc.getInvariants().add(BPredicate.of(fields[1]));
+                    break;
+                case "PROPERTY":
+                    pc.getProperties().add(BPredicate.of(fields[1]));
+                    break;
+                case "ASSERTION":
+                    pc.getAssertions().add(BPredicate.of(fields[1]));
+                    break;
+                case "PRECONDITION":
+                    pc.getPreconditions().computeIfAbsent(fields[1], op -> new ArrayList<>())
+                            .add(BPredicate.of(fields[2]));
+                    break;
+                case "BEFORE_AFTER":
+                    pc.getBeforeAfterPredicates().put(fields[1], BPredicate.of(fields[2]));
+                    break;
+                case "WEAKEST_PRE":
+                    pc.getWeakestPreConditions().computeIfAbsent(fields[1], op -> new HashMap<>())
+                            .put(BPredicate.of(fields[2]), BPredicate.of(fields[3]));
+                    break;
+                case "WEAKEST_FULL_PRE":
+                    pc.getWeakestFullPreconditions().put(fields[1], BPredicate.of(fields[2]));
+                    break;
+                case "PRIMED_INVARIANT":
+                    pc.getPrimedInvariants().put(BPredicate.of(fields[1]), BPredicate.of(fields[2]));
+                    break;
+                case "PRIMED_PRECONDITION":
+                    pc.getPrimedPreconditions().computeIfAbsent(fields[1], op -> new ArrayList<>())
+                            .add(BPredicate.of(fields[2]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown entry " + fields[0]);
+            }
+        }
+
+        // Each operation has an entry, even if nothing could be calculated
+        for (String op : pc.getOperationNames()) {
+            if (pc.isMaterialised(Facet.WEAKEST_PRECONDITIONS)) {
+                pc.getWeakestPreConditions().putIfAbsent(op, new HashMap<>());
+            }
+            if (pc.isMaterialised(Facet.PRIMED_PRECONDITIONS)) {
+                pc.getPrimedPreconditions().putIfAbsent(op, new ArrayList<>());
+            }
+        }
+        return pc;
+    }
+
+    private static String line(String kind, Object... fields) {
+        StringBuilder line = new StringBuilder(kind);
+        for (Object field : fields) {
+            String value = field instanceof BPredicate
+                    ? ((BPredicate) field).getPredicate()
+                    : field.toString();
+            line.append('\t').append(StringEscapeUtils.escapeJava(value));
+        }
+        return line.toString();
+    }
+}
@@ -3,6 +3,7 @@ package de.hhu.stups.neurob.training.migration;
 import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccessPool;
 import de.hhu.stups.neurob.core.exceptions.FeatureCreationException;
 import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
 import de.hhu.stups.neurob.core.features.Features;
@@ -215,7 +216,7 @@ public class PredicateDbMigration
         // Access machine
         MachineAccess access = null;
         try {
-            access = origMachine != null ? origMachine.spawnMachineAccess() : null;
+            access = origMachine != null ? MachineAccessPool.getInstance().borrow(origMachine) : null;
         } catch (MachineAccessException e) {
             log.warn("Unable to access machine {} for migration context", origMachine, e);
         }
@@ -234,10 +235,7 @@ public class PredicateDbMigration
                             return null;
                         }
                     }).filter(Objects::nonNull)
-                    .onClose(() -> {
-                        if (finalAccess != null)
-                           finalAccess.close();
-                    });
+                    .onClose(() -> MachineAccessPool.getInstance().release(finalAccess));
 
             TrainingData data = new TrainingData<E,M>(
                     stripCommonSourceDir(sourceFile, commonSourceDirectory),
@@ -1,6 +1,7 @@
 package de.hhu.stups.neurob.core.api.backends;
 
 import de.hhu.stups.neurob.core.api.MachineType;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
 import de.hhu.stups.neurob.core.exceptions.FormulaException;
@@ -13,11 +14,19 @@ import de.prob.animator.domainobjects.IBEvalElement;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class BackendTest {
@@ -145,7 +154,7 @@ class BackendTest {
         Backend backend = mock(Backend.class);
 
         BPredicate predicate = BPredicate.of("predicate");
-        when(backend.solvePredicateUntimed(predicate, bMachine))
+        when(backend.solvePredicateUntimed(eq(predicate), eq(bMachine), any()))
                 .then(invocation -> {
                     Thread.sleep(100L); // pause for 100 ms
                     return Answer.VALID;
@@ -174,6 +183,7 @@ class BackendTest {
         Backend backend = mock(Backend.class);
         when(backend.decidePredicate(predicate, bMachine)).thenCallRealMethod();
         when(backend.solvePredicateUntimed(predicate, bMachine)).thenCallRealMethod();
+        when(backend.solvePredicateUntimed(eq(predicate), eq(bMachine), any())).thenCallRealMethod();
         when(backend.createCbcSolveCommand(predicate, bMachine))
                 .thenReturn(cmd);
 
@@ -194,6 +204,7 @@ class BackendTest {
         Backend backend = mock(Backend.class);
         when(backend.decidePredicate(predicate, bMachine)).thenCallRealMethod();
         when(backend.solvePredicateUntimed(predicate, bMachine)).thenCallRealMethod();
+        when(backend.solvePredicateUntimed(eq(predicate), eq(bMachine), any())).thenCallRealMethod();
         when(backend.createCbcSolveCommand(predicate, bMachine))
                 .thenReturn(cmd);
 
@@ -215,6 +226,7 @@ class BackendTest {
         Backend backend = mock(Backend.class);
         when(backend.decidePredicate(predicate, bMachine)).thenCallRealMethod();
         when(backend.solvePredicateUntimed(predicate, bMachine)).thenCallRealMethod();
+        when(backend.solvePredicateUntimed(eq(predicate), eq(bMachine), any())).thenCallRealMethod();
         when(backend.createCbcSolveCommand(predicate, bMachine))
                 .thenReturn(cmd);
 
@@ -249,4 +261,155 @@ class BackendTest {
         assertFalse(isDecidable,
                 "Timeout did nothing");
     }
+
+    @Test
+    public void shouldReturnTimeoutWhenAsyncSolvingTakesTooLong() throws Exception {
+        Backend backend = mock(Backend.class);
+
+        BPredicate predicate = BPredicate.of("predicate");
+        when(backend.solvePredicateUntimed(eq(predicate), eq(bMachine), any()))
+                .then(invocation -> {
+                    Thread.sleep(100L); // pause for 100 ms
+                    return new AnnotatedAnswer(Answer.VALID, "");
+                });
+        when(backend.solvePredicateAsync(predicate, bMachine, 0L, TimeUnit.MILLISECONDS))
+                .thenCallRealMethod();
+
+        Answer expected = Answer.TIMEOUT;
+        Answer actual = backend.solvePredicateAsync(predicate, bMachine, 0L, TimeUnit.MILLISECONDS)
+                .get().getAnswer();
+
+        assertEquals(expected, actual, "Did not timeout.");
+    }
+
+    @Test
+    public void shouldCompleteAsyncSolvingWithAnswer() throws Exception {
+        Backend backend = mock(Backend.class);
+
+        BPredicate predicate = BPredicate.of("predicate");
+        when(backend.solvePredicateUntimed(eq(predicate), eq(bMachine), any()))
+                .thenReturn(new AnnotatedAnswer(Answer.INVALID, "no solution"));
+        when(backend.solvePredicateAsync(predicate, bMachine, 2L, TimeUnit.SECONDS))
+                .thenCallRealMethod();
+
+        TimedAnswer actual = backend.solvePredicateAsync(predicate, bMachine, 2L, TimeUnit.SECONDS)
+                .get();
+
+        assertEquals(Answer.INVALID, actual.getAnswer());
+        assertEquals("no solution", actual.getMessage());
+    }
+
+    @Test
+    public void shouldSolveBatchOfPredicatesInSingleRoundTrip() throws Exception {
+        BPredicate pred1 = BPredicate.of("pred1");
+        BPredicate pred2 = BPredicate.of("pred2");
+
+        CbcSolveCommand cmd1 = mock(CbcSolveCommand.class);
+        when(cmd1.getValue()).thenReturn(EvalResult.TRUE);
+        CbcSolveCommand cmd2 = mock(CbcSolveCommand.class);
+        when(cmd2.getValue()).thenReturn(EvalResult.FALSE);
+
+        Backend backend = mock(Backend.class);
+        when(backend.createCbcSolveCommand(pred1, bMachine)).thenReturn(cmd1);
+        when(backend.createCbcSolveCommand(pred2, bMachine)).thenReturn(cmd2);
+        when(backend.solvePredicates(any(), any())).thenCallRealMethod();
+        when(backend.solvePredicates(any(), any(), anyInt())).thenCallRealMethod();
+        when(backend.solvePredicatesAsync(any(), any(), anyInt())).thenCallRealMethod();
+        when(backend.getTimeOutValue()).thenReturn(2L);
+        when(backend.getTimeOutUnit()).thenReturn(TimeUnit.SECONDS);
+
+        List<AnnotatedAnswer> answers = backend.solvePredicates(Arrays.asList(pred1, pred2), bMachine);
+
+        verify(bMachine, times(1)).execute(cmd1, cmd2);
+        assertAll(
+                () -> assertEquals(2, answers.size()),
+                () -> assertEquals(Answer.VALID, answers.get(0).getAnswer()),
+                () -> assertEquals(Answer.INVALID, answers.get(1).getAnswer())
+        );
+    }
+
+    @Test
+    public void shouldSolvePredicatesOneByOneWhenBatchFails() throws Exception {
+        BPredicate pred1 = BPredicate.of("pred1");
+        BPredicate pred2 = BPredicate.of("pred2");
+
+        CbcSolveCommand cmd1 = mock(CbcSolveCommand.class);
+        CbcSolveCommand cmd2 = mock(CbcSolveCommand.class);
+        doThrow(new IllegalStateException("batch failed")).when(bMachine).execute(cmd1, cmd2);
+
+        Backend backend = mock(Backend.class);
+        when(backend.createCbcSolveCommand(pred1, bMachine)).thenReturn(cmd1);
+        when(backend.createCbcSolveCommand(pred2, bMachine)).thenReturn(cmd2);
+        when(backend.solvePredicateUntimed(eq(pred1), eq(bMachine), any()))
+                .thenReturn(new AnnotatedAnswer(Answer.VALID, "solution"));
+        when(backend.solvePredicateUntimed(eq(pred2), eq(bMachine), any()))
+                .thenReturn(new AnnotatedAnswer(Answer.ERROR, "error"));
+        when(backend.solvePredicates(any(), any(), anyInt())).thenCallRealMethod();
+        when(backend.solvePredicatesAsync(any(), any(), anyInt())).thenCallRealMethod();
+        when(backend.solvePredicateAsync(any(), any())).thenCallRealMethod();
+        when(backend.solvePredicateAsync(any(), any(), any(), any())).thenCallRealMethod();
+        when(backend.getTimeOutValue()).thenReturn(2L);
+        when(backend.getTimeOutUnit()).thenReturn(TimeUnit.SECONDS);
+
+        List<AnnotatedAnswer> answers = backend.solvePredicates(Arrays.asList(pred1, pred2), bMachine, 2);
+
+        assertAll(
+                () -> assertEquals(2, answers.size()),
+                () -> assertEquals(Answer.VALID, answers.get(0).getAnswer()),
+                () -> assertEquals(Answer.ERROR, answers.get(1).getAnswer())
+        );
+    }
+
+    @Test
+    public void shouldOnlyResolveUnansweredPredicatesWhenBatchFails() throws Exception {
+        BPredicate pred1 = BPredicate.of("pred1");
+        BPredicate pred2 = BPredicate.of("pred2");
+
+        CbcSolveCommand cmd1 = mock(CbcSolveCommand.class);
+        when(cmd1.getValue()).thenReturn(EvalResult.TRUE);
+        CbcSolveCommand cmd2 = mock(CbcSolveCommand.class);
+        doThrow(new IllegalStateException("batch failed")).when(bMachine).execute(cmd1, cmd2);
+
+        Backend backend = mock(Backend.class);
+        when(backend.createCbcSolveCommand(pred1, bMachine)).thenReturn(cmd1);
+        when(backend.createCbcSolveCommand(pred2, bMachine)).thenReturn(cmd2);
+        when(backend.solvePredicateUntimed(eq(pred2), eq(bMachine), any()))
+                .thenReturn(new AnnotatedAnswer(Answer.INVALID, "no solution"));
+        when(backend.solvePredicates(any(), any(), anyInt())).thenCallRealMethod();
+        when(backend.solvePredicatesAsync(any(), any(), anyInt())).thenCallRealMethod();
+        when(backend.solvePredicateAsync(any(), any())).thenCallRealMethod();
+        when(backend.solvePredicateAsync(any(), any(), any(), any())).thenCallRealMethod();
+        when(backend.getTimeOutValue()).thenReturn(2L);
+        when(backend.getTimeOutUnit()).thenReturn(TimeUnit.SECONDS);
+
+        List<AnnotatedAnswer> answers = backend.solvePredicates(Arrays.asList(pred1, pred2), bMachine, 2);
+
+        verify(backend, never()).solvePredicateUntimed(eq(pred1), eq(bMachine), any());
+        assertAll(
+                () -> assertEquals(2, answers.size()),
+                () -> assertEquals(Answer.VALID, answers.get(0).getAnswer()),
+                () -> assertEquals(Answer.INVALID, answers.get(1).getAnswer())
+        );
+    }
+
+    @Test
+    public void shouldReplaceTimeOutInSolvingPreferences() {
+        Backend backend = new ProBBackend(20L, TimeUnit.SECONDS);
+
+        BPreferences preferences = backend.getSolvingPreferences(500L, TimeUnit.MILLISECONDS);
+
+        assertAll(
+                () -> assertEquals("500", preferences.get("TIME_OUT").getValue()),
+                () -> assertEquals(backend.getSolvingPreferences().without("TIME_OUT"),
+                        preferences.without("TIME_OUT"))
+        );
+    }
+
+    @Test
+    public void shouldKeepSolvingPreferencesForConfiguredTimeOut() {
+        Backend backend = new ProBBackend(20L, TimeUnit.SECONDS);
+
+        assertEquals(backend.getSolvingPreferences(),
+                backend.getSolvingPreferences(20L, TimeUnit.SECONDS));
+    }
 }
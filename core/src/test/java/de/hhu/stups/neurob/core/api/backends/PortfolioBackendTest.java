@@ -0,0 +1,154 @@
+package de.hhu.stups.neurob.core.api.backends;
+
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MultiMachineAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PortfolioBackendTest {
+
+    private Backend prob;
+    private Backend z3;
+    private MachineAccess probAccess;
+    private MachineAccess z3Access;
+    private MultiMachineAccess access;
+
+    private final BPredicate pred = BPredicate.of("x > 2");
+
+    @BeforeEach
+    public void setUpBackends() {
+        prob = spy(new ProBBackend(1L, TimeUnit.SECONDS));
+        z3 = spy(new Z3Backend(2L, TimeUnit.SECONDS));
+
+        probAccess = mock(MachineAccess.class);
+        z3Access = mock(MachineAccess.class);
+        access = mock(MultiMachineAccess.class);
+        when(access.getAccess(prob)).thenReturn(probAccess);
+        when(access.getAccess(z3)).thenReturn(z3Access);
+    }
+
+    @Test
+    public void shouldUseMaximumTimeoutOfBackends() {
+        PortfolioBackend portfolio = new PortfolioBackend(prob, z3);
+
+        assertEquals(2000L, portfolio.getTimeOutValue());
+        assertEquals(TimeUnit.MILLISECONDS, portfolio.getTimeOutUnit());
+    }
+
+    @Test
+    public void shouldCapTimeoutOfEachRacerAtItsOwn() throws Exception {
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.TIMEOUT, 100L)))
+                .when(prob).solvePredicateAsync(eq(pred), eq(probAccess), any(), any());
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.TIMEOUT, 100L)))
+                .when(z3).solvePredicateAsync(eq(pred), eq(z3Access), any(), any());
+
+        PortfolioBackend portfolio = new PortfolioBackend(prob, z3);
+        portfolio.solvePredicate(pred, access);
+
+        verify(prob).solvePredicateAsync(pred, probAccess,
+                TimeUnit.SECONDS.toNanos(1L), TimeUnit.NANOSECONDS);
+        verify(z3).solvePredicateAsync(pred, z3Access,
+                TimeUnit.SECONDS.toNanos(2L), TimeUnit.NANOSECONDS);
+    }
+
+    @Test
+    public void shouldReturnFirstDecidingBackend() throws Exception {
+        CompletableFuture<TimedAnswer> probRace = new CompletableFuture<>();
+        doReturn(probRace).when(prob)
+                .solvePredicateAsync(eq(pred), eq(probAccess), any(), any());
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.VALID, 100L)))
+                .when(z3).solvePredicateAsync(eq(pred), eq(z3Access), any(), any());
+
+        PortfolioBackend portfolio = new PortfolioBackend(prob, z3);
+        PortfolioAnswer answer = (PortfolioAnswer) portfolio.solvePredicate(pred, access);
+
+        assertEquals(Answer.VALID, answer.getAnswer());
+        assertEquals(z3, answer.getBackend());
+        verify(probAccess).sendInterrupt();
+        verify(z3Access, never()).sendInterrupt();
+    }
+
+    @Test
+    public void shouldPreferUnknownOverTimeoutIfUndecided() throws Exception {
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.TIMEOUT, 100L)))
+                .when(prob).solvePredicateAsync(eq(pred), eq(probAccess), any(), any());
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.UNKNOWN, 200L)))
+                .when(z3).solvePredicateAsync(eq(pred), eq(z3Access), any(), any());
+
+        PortfolioBackend portfolio = new PortfolioBackend(prob, z3);
+        PortfolioAnswer answer = (PortfolioAnswer) portfolio.solvePredicate(pred, access);
+
+        assertEquals(Answer.UNKNOWN, answer.getAnswer());
+        assertEquals(z3, answer.getBackend());
+    }
+
+    @Test
+    public void shouldOnlyRaceSelectedBackends() throws Exception {
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.INVALID, 100L)))
+                .when(z3).solvePredicateAsync(eq(pred), eq(z3Access), any(), any());
+
+        PortfolioBackend portfolio = new PortfolioBackend(
+                (predicate, mch, candidates) -> Collections.singletonList(z3),
+                prob, z3);
+        PortfolioAnswer answer = (PortfolioAnswer) portfolio.solvePredicate(pred, access);
+
+        assertEquals(Answer.INVALID, answer.getAnswer());
+        verify(prob, never()).solvePredicateAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    public void shouldAnswerErrorWithoutAccess() throws Exception {
+        PortfolioBackend portfolio = new PortfolioBackend(prob, z3);
+
+        TimedAnswer answer = portfolio.solvePredicate(pred, null);
+
+        assertEquals(Answer.ERROR, answer.getAnswer());
+    }
+
+    @Test
+    public void shouldMeasureRuntimeOfWinner() throws Exception {
+        doReturn(new CompletableFuture<>())
+                .when(prob).solvePredicateAsync(eq(pred), eq(probAccess), any(), any());
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.VALID, 100L)))
+                .when(z3).solvePredicateAsync(eq(pred), eq(z3Access), any(), any());
+
+        PortfolioBackend portfolio = new PortfolioBackend(prob, z3);
+
+        assertEquals(Long.valueOf(100L), portfolio.measureEvalTime(pred, access));
+    }
+
+    @Test
+    public void shouldMeasureNegativeRuntimeIfUndecided() throws Exception {
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.TIMEOUT, 100L)))
+                .when(prob).solvePredicateAsync(eq(pred), eq(probAccess), any(), any());
+        doReturn(CompletableFuture.completedFuture(new TimedAnswer(Answer.UNKNOWN, 200L)))
+                .when(z3).solvePredicateAsync(eq(pred), eq(z3Access), any(), any());
+
+        PortfolioBackend portfolio = new PortfolioBackend(prob, z3);
+
+        assertEquals(Long.valueOf(-1L), portfolio.measureEvalTime(pred, access));
+    }
+
+    @Test
+    public void shouldUseSolverOfFirstBackend() {
+        PortfolioBackend portfolio = new PortfolioBackend(prob, z3);
+
+        assertEquals(prob.toCbcEnum(), portfolio.toCbcEnum());
+    }
+
+}
@@ -0,0 +1,103 @@
+package de.hhu.stups.neurob.core.api.backends;
+
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class SolveSchedulerTest {
+
+    @Test
+    void shouldReturnResultOfTask() throws Exception {
+        SolveScheduler scheduler = new SolveScheduler(1);
+        MachineAccess access = mock(MachineAccess.class);
+
+        String actual = scheduler.solve(() -> "result", access, 1L, TimeUnit.SECONDS);
+
+        assertEquals("result", actual);
+        verify(access, never()).sendInterrupt();
+    }
+
+    @Test
+    void shouldInterruptAccessWhenDeadlineIsReached() {
+        SolveScheduler scheduler = new SolveScheduler(1);
+        MachineAccess access = mock(MachineAccess.class);
+
+        assertThrows(TimeoutException.class,
+                () -> scheduler.solve(() -> {
+                    Thread.sleep(200L);
+                    return "too late";
+                }, access, 10L, TimeUnit.MILLISECONDS));
+
+        verify(access, timeout(1000L)).sendInterrupt();
+        assertEquals(1L, scheduler.getInterruptedCount());
+    }
+
+    @Test
+    void shouldForwardExceptionsOfTask() {
+        SolveScheduler scheduler = new SolveScheduler(1);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> scheduler.solve(() -> {
+                    throw new IllegalArgumentException("failure");
+                }, null, 1L, TimeUnit.SECONDS));
+
+        assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+        assertEquals(0L, scheduler.getInterruptedCount());
+    }
+
+    @Test
+    void shouldTrackSolvesInFlight() throws Exception {
+        SolveScheduler scheduler = new SolveScheduler(2);
+        CompletableFuture<Void> blocker = new CompletableFuture<>();
+
+        CompletableFuture<Void> result = scheduler.submit(
+                () -> blocker.get(), null, 1L, TimeUnit.SECONDS);
+
+        assertEquals(1, scheduler.getInFlightCount());
+
+        blocker.complete(null);
+        result.get();
+
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+
+    @Test
+    void shouldNotStartDeadlineBeforeTaskIsRunning() throws Exception {
+        SolveScheduler scheduler = new SolveScheduler(1);
+        MachineAccess access = mock(MachineAccess.class);
+
+        // Occupy the only worker
+        CompletableFuture<String> first = scheduler.submit(() -> {
+            Thread.sleep(100L);
+            return "first";
+        }, access, 1L, TimeUnit.SECONDS);
+        String second = scheduler.solve(() -> "second", access, 50L, TimeUnit.MILLISECONDS);
+
+        assertEquals("first", first.get());
+        assertEquals("second", second);
+        verify(access, never()).sendInterrupt();
+    }
+
+    @Test
+    void shouldRunNestedSolvesOnSubmittingWorker() throws Exception {
+        SolveScheduler scheduler = new SolveScheduler(1);
+
+        // With only one worker, a queued nested solve would never be picked up
+        String actual = scheduler.solve(
+                () -> scheduler.solve(() -> "nested", null, 1L, TimeUnit.SECONDS),
+                null, 1L, TimeUnit.SECONDS);
+
+        assertEquals("nested", actual);
+    }
+
+}
@@ -0,0 +1,157 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import de.hhu.stups.neurob.core.api.MachineType;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreference;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
+import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmptyMachinePoolTest {
+
+    private MachineAccess createAccess() throws MachineAccessException {
+        // Accesses are not loaded, hence the health check needs to be stubbed
+        return new MachineAccess(Paths.get("non/existent.mch"), MachineType.CLASSICALB, false);
+    }
+
+    @Test
+    void shouldReuseCheckedInAccess() throws MachineAccessException {
+        EmptyMachinePool pool = new EmptyMachinePool(2, this::createAccess, a -> true);
+
+        MachineAccess first = pool.checkOut();
+        pool.checkIn(first);
+        MachineAccess second = pool.checkOut();
+
+        assertSame(first, second);
+        assertEquals(1L, pool.getCreatedCount());
+        assertEquals(1L, pool.getReusedCount());
+    }
+
+    @Test
+    void shouldNotShareAccessesBetweenPreferences() throws MachineAccessException {
+        EmptyMachinePool pool = new EmptyMachinePool(2, this::createAccess, a -> true);
+        BPreferences prefs = new BPreferences(BPreference.set("PREF", "val"));
+
+        MachineAccess plain = pool.checkOut();
+        pool.checkIn(plain);
+        MachineAccess withPrefs = pool.checkOut(prefs);
+
+        assertNotSame(plain, withPrefs);
+        assertEquals(prefs, withPrefs.getPreferences());
+    }
+
+    @Test
+    void shouldNotLeakPreferencesSetWhileCheckedOut() throws MachineAccessException {
+        EmptyMachinePool pool = new EmptyMachinePool(2, this::createAccess, a -> true);
+        BPreferences prefs = new BPreferences(BPreference.set("PREF", "val"));
+
+        MachineAccess first = pool.checkOut(prefs);
+        // e.g. backend A solving over the access
+        first.setPreferences(BPreference.set("SMT", "FALSE"));
+        pool.checkIn(first);
+        // backend B asking for the same partition
+        MachineAccess second = pool.checkOut(prefs);
+
+        assertNotSame(first, second);
+        assertEquals(prefs, second.getPreferences());
+    }
+
+    @Test
+    void shouldReuseAccessForPreferencesSetWhileCheckedOut() throws MachineAccessException {
+        EmptyMachinePool pool = new EmptyMachinePool(2, this::createAccess, a -> true);
+        BPreferences prefs = new BPreferences(BPreference.set("PREF", "val"));
+
+        MachineAccess first = pool.checkOut(prefs);
+        first.setPreferences(BPreference.set("SMT", "FALSE"));
+        pool.checkIn(first);
+
+        assertSame(first, pool.checkOut(first.getPreferences()));
+    }
+
+    @Test
+    void shouldHandOutDistinctAccessesWhileCheckedOut() throws MachineAccessException {
+        EmptyMachinePool pool = new EmptyMachinePool(2, this::createAccess, a -> true);
+
+        MachineAccess first = pool.checkOut();
+        MachineAccess second = pool.checkOut();
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void shouldDiscardUnhealthyAccesses() throws MachineAccessException {
+        EmptyMachinePool pool = new EmptyMachinePool(2, this::createAccess, a -> false);
+
+        MachineAccess first = pool.checkOut();
+        pool.checkIn(first);
+        MachineAccess second = pool.checkOut();
+
+        assertNotSame(first, second);
+        assertEquals(1L, pool.getDiscardedCount());
+    }
+
+    @Test
+    void shouldNotKeepMoreThanMaximumIdleAccesses() throws MachineAccessException {
+        EmptyMachinePool pool = new EmptyMachinePool(1, this::createAccess, a -> true);
+
+        MachineAccess first = pool.checkOut();
+        MachineAccess second = pool.checkOut();
+        pool.checkIn(first);
+        pool.checkIn(second);
+
+        assertEquals(1, pool.getIdleCount(new BPreferences()));
+        assertEquals(1L, pool.getDiscardedCount());
+    }
+
+    @Test
+    void shouldNotKeepMoreThanMaximumIdleAccessesOnConcurrentCheckIns() throws Exception {
+        EmptyMachinePool pool = new EmptyMachinePool(2, this::createAccess, a -> true);
+        List<MachineAccess> accesses = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            accesses.add(pool.checkOut());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (MachineAccess access : accesses) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pool.checkIn(access);
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(2, pool.getIdleCount(new BPreferences()));
+        assertEquals(14L, pool.getDiscardedCount());
+    }
+
+    @Test
+    void shouldNotDeemUnloadedAccessResponsive() throws MachineAccessException {
+        assertFalse(EmptyMachinePool.isResponsive(createAccess()));
+    }
+
+    @Test
+    void shouldWarmUpPartition() throws MachineAccessException {
+        EmptyMachinePool pool = new EmptyMachinePool(4, this::createAccess, a -> true);
+
+        pool.warmUp(3, new BPreferences());
+
+        assertEquals(3, pool.getIdleCount(new BPreferences()));
+    }
+
+}
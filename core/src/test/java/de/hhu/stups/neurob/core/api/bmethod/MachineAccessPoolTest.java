@@ -0,0 +1,230 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import de.hhu.stups.neurob.core.api.MachineType;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreference;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
+import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MachineAccessPoolTest {
+
+    private Path machineFile;
+    private BMachine bMachine;
+
+    @BeforeEach
+    void setUpMachine() throws Exception {
+        machineFile = Files.createTempFile("neurob-pool", ".mch");
+        Files.write(machineFile, "MACHINE pool\nEND".getBytes());
+
+        bMachine = mock(BMachine.class);
+        when(bMachine.getLocation()).thenReturn(machineFile);
+        when(bMachine.spawnMachineAccess()).thenAnswer(invocation -> loadedAccess());
+    }
+
+    private MachineAccess loadedAccess() {
+        MachineAccess access = mock(MachineAccess.class);
+        when(access.isLoaded()).thenReturn(true);
+        when(access.getPreferences()).thenReturn(new BPreferences());
+        return access;
+    }
+
+    @Test
+    void shouldReuseReleasedAccess() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+
+        MachineAccess first = pool.borrow(bMachine);
+        pool.release(first);
+        MachineAccess second = pool.borrow(bMachine);
+
+        assertSame(first, second);
+        assertEquals(1L, pool.getCreatedCount());
+        assertEquals(1L, pool.getReusedCount());
+    }
+
+    @Test
+    void shouldNotifyAccessOnRelease() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+
+        MachineAccess access = pool.borrow(bMachine);
+        pool.release(access);
+
+        verify(access).notifyReleased();
+        verify(access, never()).close();
+    }
+
+    @Test
+    void shouldReuseAccessWithPreferencesSetOnRelease() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+        when(bMachine.spawnMachineAccess()).thenAnswer(invocation -> unloadedSpy());
+        BPreferences basePrefs = new BPreferences(BPreference.set("TIME_OUT", "2500"));
+        BPreferences solvingPrefs = new BPreferences(BPreference.set("TIME_OUT", "2500"),
+                BPreference.set("SMT", "FALSE"), BPreference.set("CLPFD", "FALSE"));
+
+        MachineAccess first = pool.borrow(bMachine, basePrefs);
+        // Solving sets the full preferences of the backend
+        first.setPreferences(solvingPrefs);
+        pool.release(first);
+        MachineAccess second = pool.borrow(bMachine, solvingPrefs);
+
+        assertSame(first, second);
+        assertEquals(1L, pool.getReusedCount());
+    }
+
+    @Test
+    void shouldNotReuseAccessWhosePreferencesWereChangedByBorrower() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+        when(bMachine.spawnMachineAccess()).thenAnswer(invocation -> unloadedSpy());
+        BPreferences basePrefs = new BPreferences(BPreference.set("TIME_OUT", "2500"));
+
+        MachineAccess first = pool.borrow(bMachine, basePrefs);
+        first.setPreferences(BPreference.set("SMT", "TRUE"));
+        pool.release(first);
+        MachineAccess second = pool.borrow(bMachine, basePrefs);
+
+        assertNotSame(first, second);
+        assertEquals(0L, pool.getReusedCount());
+    }
+
+    private MachineAccess unloadedSpy() throws Exception {
+        MachineAccess access = spy(new MachineAccess(machineFile, MachineType.CLASSICALB, false));
+        doReturn(true).when(access).isLoaded();
+        return access;
+    }
+
+    @Test
+    void shouldNotHandOutBorrowedAccess() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+
+        MachineAccess first = pool.borrow(bMachine);
+        MachineAccess second = pool.borrow(bMachine);
+
+        assertNotSame(first, second);
+        assertEquals(2, pool.getLiveCount());
+    }
+
+    @Test
+    void shouldNotReuseAccessWithOtherPreferences() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+
+        MachineAccess first = pool.borrow(bMachine);
+        pool.release(first);
+        MachineAccess second = pool.borrow(bMachine,
+                new BPreferences(BPreference.set("PREF", "val")));
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void shouldNotReuseAccessAfterMachineChanged() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+
+        MachineAccess first = pool.borrow(bMachine);
+        pool.release(first);
+        changeMachine();
+        MachineAccess second = pool.borrow(bMachine);
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedAccess() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+        BMachine other = mock(BMachine.class);
+        Path otherFile = Files.createTempFile("neurob-pool-other", ".mch");
+        when(other.getLocation()).thenReturn(otherFile);
+        when(other.spawnMachineAccess()).thenAnswer(invocation -> loadedAccess());
+
+        MachineAccess first = pool.borrow(bMachine);
+        MachineAccess second = pool.borrow(other);
+        pool.release(first);
+        pool.release(second);
+        MachineAccess third = pool.borrow(bMachine, new BPreferences(BPreference.set("PREF", "val")));
+
+        verify(first).close();
+        verify(second, never()).close();
+        assertEquals(2, pool.getLiveCount());
+        assertEquals(1L, pool.getEvictedCount());
+        assertNotNull(third);
+    }
+
+    @Test
+    void shouldFailToBorrowIfAllAccessesStayBorrowed() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(1, 50, TimeUnit.MILLISECONDS);
+
+        MachineAccess first = pool.borrow(bMachine);
+
+        assertThrows(MachineAccessException.class, () -> pool.borrow(bMachine));
+        assertEquals(1, pool.getLiveCount());
+        assertEquals(1L, pool.getCreatedCount());
+        assertNotNull(first);
+    }
+
+    @Test
+    void shouldWaitForReleasedAccessIfAllAccessesAreBorrowed() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(1, 10, TimeUnit.SECONDS);
+        MachineAccess first = pool.borrow(bMachine);
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool.release(first);
+        });
+        releaser.start();
+        MachineAccess second = pool.borrow(bMachine);
+        releaser.join();
+
+        assertSame(first, second);
+        assertEquals(1L, pool.getCreatedCount());
+        assertEquals(1, pool.getLiveCount());
+    }
+
+    @Test
+    void shouldNotReuseAccessAfterDependencyChanged() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+        Path seen = machineFile.resolveSibling("PoolSeen" + System.nanoTime() + ".mch");
+        String seenName = seen.getFileName().toString().replace(".mch", "");
+        Files.write(seen, ("MACHINE " + seenName + "\nEND").getBytes());
+        Files.write(machineFile, ("MACHINE pool\nSEES " + seenName + "\nEND").getBytes());
+
+        MachineAccess first = pool.borrow(bMachine);
+        pool.release(first);
+        Files.write(seen, ("MACHINE " + seenName + "\nCONSTANTS c\nEND").getBytes());
+        MachineAccess second = pool.borrow(bMachine);
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void shouldCloseUnloadedAccessOnRelease() throws Exception {
+        MachineAccessPool pool = new MachineAccessPool(2);
+
+        MachineAccess access = pool.borrow(bMachine);
+        when(access.isLoaded()).thenReturn(false);
+        pool.release(access);
+
+        verify(access).close();
+        assertEquals(0, pool.getLiveCount());
+    }
+
+    private void changeMachine() throws IOException {
+        Files.write(machineFile, "MACHINE changed_pool\nEND".getBytes());
+    }
+
+}
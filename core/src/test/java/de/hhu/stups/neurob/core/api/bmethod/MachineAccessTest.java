@@ -4,6 +4,9 @@ import de.hhu.stups.neurob.core.api.MachineType;
 import de.hhu.stups.neurob.core.api.backends.preferences.BPreference;
 import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
 import de.prob.animator.command.SetPreferenceCommand;
+import de.prob.animator.domainobjects.FormulaExpand;
+import de.prob.animator.domainobjects.IEvalElement;
+import de.prob.model.representation.AbstractModel;
 import de.prob.statespace.StateSpace;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -112,6 +115,59 @@ class MachineAccessTest {
                 .execute(any(SetPreferenceCommand.class));
     }
 
+    @Test
+    void shouldParseFormulaOnlyOnce() throws MachineAccessException {
+        Path source = Paths.get("non/existent.mch");
+        MachineAccess ma = spy(new MachineAccess(source,
+                MachineType.CLASSICALB, false));
+        doReturn(stateSpace).when(ma).loadStateSpace(source);
+        AbstractModel model = mock(AbstractModel.class);
+        doReturn(model).when(stateSpace).getModel();
+        doReturn(mock(IEvalElement.class)).when(model).parseFormula("x > 2", FormulaExpand.EXPAND);
+
+        ma.load();
+        ma.parseFormula(BPredicate.of("x > 2"));
+        ma.parseFormula(BPredicate.of("x > 2"));
+
+        verify(model, times(1)).parseFormula("x > 2", FormulaExpand.EXPAND);
+    }
+
+    @Test
+    void shouldParseMutableFormulaAnewForEachCaller() throws MachineAccessException {
+        Path source = Paths.get("non/existent.mch");
+        MachineAccess ma = spy(new MachineAccess(source,
+                MachineType.CLASSICALB, false));
+        doReturn(stateSpace).when(ma).loadStateSpace(source);
+        AbstractModel model = mock(AbstractModel.class);
+        doReturn(model).when(stateSpace).getModel();
+        doReturn(mock(IEvalElement.class)).when(model).parseFormula("x > 2", FormulaExpand.EXPAND);
+
+        ma.load();
+        ma.parseFormula(BPredicate.of("x > 2"));
+        ma.parseMutableFormula(BPredicate.of("x > 2"));
+
+        verify(model, times(2)).parseFormula("x > 2", FormulaExpand.EXPAND);
+        assertEquals(1L, ma.getParseCache().getHitCount() + ma.getParseCache().getMissCount());
+    }
+
+    @Test
+    void shouldParseFormulaAgainAfterReload() throws MachineAccessException {
+        Path source = Paths.get("non/existent.mch");
+        MachineAccess ma = spy(new MachineAccess(source,
+                MachineType.CLASSICALB, false));
+        doReturn(stateSpace).when(ma).loadStateSpace(source);
+        AbstractModel model = mock(AbstractModel.class);
+        doReturn(model).when(stateSpace).getModel();
+        doReturn(mock(IEvalElement.class)).when(model).parseFormula("x > 2", FormulaExpand.EXPAND);
+
+        ma.load();
+        ma.parseFormula(BPredicate.of("x > 2"));
+        ma.load();
+        ma.parseFormula(BPredicate.of("x > 2"));
+
+        verify(model, times(2)).parseFormula("x > 2", FormulaExpand.EXPAND);
+    }
+
     @Test
     void shouldBeEqualWhenSameSource() throws MachineAccessException {
         MachineAccess m1 = new MachineAccess(Paths.get("non/existent.mch"), MachineType.CLASSICALB, false);
@@ -0,0 +1,84 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MachineDependenciesTest {
+
+    private Path dir;
+
+    @BeforeEach
+    public void setUpDirectory() throws IOException {
+        dir = Files.createTempDirectory("neurob-dependencies").toRealPath();
+    }
+
+    private Path write(String fileName, String content) throws IOException {
+        return Files.write(dir.resolve(fileName), content.getBytes());
+    }
+
+    @Test
+    public void shouldHaveNoDependenciesForSingleMachine() throws IOException {
+        Path machine = write("M.mch", "MACHINE M\nVARIABLES x\nINVARIANT x : NAT\nEND");
+
+        assertEquals(Collections.emptyList(), MachineDependencies.resolve(machine));
+    }
+
+    @Test
+    public void shouldResolveSeenAndIncludedMachines() throws IOException {
+        Path seen = write("S.mch", "MACHINE S\nCONSTANTS c\nPROPERTIES c = 1\nEND");
+        Path included = write("I.mch", "MACHINE I(p)\nEND");
+        Path machine = write("M.mch",
+                "MACHINE M\nSEES S\nINCLUDES r.I(3) /* INCLUDES X */\nVARIABLES x\nEND");
+
+        assertEquals(Arrays.asList(seen, included), MachineDependencies.resolve(machine));
+    }
+
+    @Test
+    public void shouldResolveRefinedMachinesTransitively() throws IOException {
+        Path abstractMachine = write("A.mch", "MACHINE A\nEND");
+        Path refinement = write("R.ref", "REFINEMENT R\nREFINES A\nEND");
+        Path implementation = write("Impl.imp", "IMPLEMENTATION Impl\nREFINES R\nEND");
+
+        List<Path> actual = MachineDependencies.resolve(implementation);
+
+        assertEquals(Arrays.asList(refinement, abstractMachine), actual);
+    }
+
+    @Test
+    public void shouldResolveDefinitionFiles() throws IOException {
+        Path definitions = write("defs.def", "DEFINITIONS SET_PREF_MAXINT == 10");
+        Path machine = write("M.mch",
+                "MACHINE M\nDEFINITIONS \"defs.def\"; \"LibraryStrings.def\"\nEND");
+
+        assertEquals(Collections.singletonList(definitions), MachineDependencies.resolve(machine));
+    }
+
+    @Test
+    public void shouldSkipMachinesNotFound() throws IOException {
+        Path machine = write("M.mch", "MACHINE M\nSEES LibraryIO\nEND");
+
+        assertEquals(Collections.emptyList(), MachineDependencies.resolve(machine));
+    }
+
+    @Test
+    public void shouldResolveEventBDependencies() throws IOException {
+        Path context = write("C0.buc", "<org.eventb.core.contextFile/>");
+        Path abstractMachine = write("M0.bum", "<org.eventb.core.machineFile/>");
+        Path machine = write("M1.bum", "<org.eventb.core.machineFile>"
+                + "<org.eventb.core.refinesMachine name=\"r\" org.eventb.core.target=\"M0\"/>"
+                + "<org.eventb.core.seesContext name=\"s\" org.eventb.core.target=\"C0\"/>"
+                + "</org.eventb.core.machineFile>");
+
+        assertEquals(Arrays.asList(abstractMachine, context), MachineDependencies.resolve(machine));
+    }
+
+}
@@ -0,0 +1,88 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MachineHashTest {
+
+    private Path dir;
+
+    @BeforeEach
+    public void setUpDirectory() throws IOException {
+        dir = Files.createTempDirectory("neurob-hash").toRealPath();
+    }
+
+    private Path write(String fileName, String content) throws IOException {
+        return Files.write(dir.resolve(fileName), content.getBytes());
+    }
+
+    @Test
+    public void shouldMatchFileHashWithoutDependencies() throws IOException {
+        Path machine = write("M.mch", "MACHINE M\nVARIABLES x\nINVARIANT x : NAT\nEND");
+
+        assertEquals(DigestUtils.sha512Hex(Files.readAllBytes(machine)), MachineHash.hash(machine));
+    }
+
+    @Test
+    public void shouldChangeWhenDependencyChanges() throws IOException {
+        write("S.mch", "MACHINE S\nCONSTANTS c\nPROPERTIES c = 1\nEND");
+        Path machine = write("M.mch", "MACHINE M\nSEES S\nEND");
+        String before = MachineHash.hash(machine);
+
+        write("S.mch", "MACHINE S\nCONSTANTS c\nPROPERTIES c = 22\nEND");
+
+        assertNotEquals(before, MachineHash.hash(machine));
+    }
+
+    @Test
+    public void shouldStampMachineAndDependencies() throws IOException {
+        Path seen = write("S.mch", "MACHINE S\nEND");
+        Path machine = write("M.mch", "MACHINE M\nSEES S\nEND");
+
+        MachineHash hash = MachineHash.of(machine);
+
+        assertAll(
+                () -> assertEquals(Arrays.asList(machine, seen),
+                        new ArrayList<>(hash.getStamps().keySet())),
+                () -> assertEquals(MachineHash.stamp(seen), hash.getStamps().get(seen)),
+                () -> assertTrue(hash.isCurrent()));
+    }
+
+    @Test
+    public void shouldReuseHashWhileStampsAreUnchanged() throws IOException {
+        Path machine = write("M.mch", "MACHINE M\nEND");
+
+        assertSame(MachineHash.of(machine), MachineHash.of(machine));
+    }
+
+    @Test
+    public void shouldNotBeCurrentOnceModified() throws IOException {
+        Path machine = write("M.mch", "MACHINE M\nEND");
+        MachineHash hash = MachineHash.of(machine);
+
+        Files.setLastModifiedTime(machine, FileTime.fromMillis(
+                Files.getLastModifiedTime(machine).toMillis() - 60_000L));
+
+        assertFalse(hash.isCurrent());
+    }
+
+    @Test
+    public void shouldNotBeCurrentOnceDeleted() throws IOException {
+        Path machine = write("M.mch", "MACHINE M\nEND");
+        MachineHash hash = MachineHash.of(machine);
+
+        Files.delete(machine);
+
+        assertFalse(hash.isCurrent());
+    }
+}
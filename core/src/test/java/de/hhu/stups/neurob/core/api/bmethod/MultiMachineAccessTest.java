@@ -8,13 +8,19 @@ import de.hhu.stups.neurob.core.exceptions.MachineAccessException;
 import de.prob.animator.command.AbstractCommand;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 class MultiMachineAccessTest {
@@ -180,5 +186,188 @@ class MultiMachineAccessTest {
         verify(closeHandler).accept(access);
     }
 
+    @Test
+    void shouldNotCreateAccessesBeforeFirstRequest() throws MachineAccessException {
+        AtomicInteger created = new AtomicInteger(0);
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{new ProBBackend(), new Z3Backend()}, true,
+                (b, load) -> {
+                    created.incrementAndGet();
+                    return mock(MachineAccess.class);
+                });
+
+        access.load();
+
+        assertEquals(0, created.get());
+        assertEquals(0, access.getCreatedAccessCount());
+    }
+
+    @Test
+    void shouldCreateAccessOnlyOnce() throws MachineAccessException {
+        Backend b1 = new ProBBackend();
+        Backend b2 = new Z3Backend();
+        AtomicInteger created = new AtomicInteger(0);
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{b1, b2}, true,
+                (b, load) -> {
+                    created.incrementAndGet();
+                    return mock(MachineAccess.class);
+                });
+
+        MachineAccess first = access.getAccess(b1);
+        MachineAccess second = access.getAccess(b1);
+
+        assertSame(first, second);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void shouldNotCreateAccessForForeignBackend() throws MachineAccessException {
+        AtomicInteger created = new AtomicInteger(0);
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{new ProBBackend()}, true,
+                (b, load) -> {
+                    created.incrementAndGet();
+                    return mock(MachineAccess.class);
+                });
+
+        assertNull(access.getAccess(new Z3Backend()));
+        assertEquals(0, created.get());
+    }
+
+    @Test
+    void shouldLoadLazyAccessOnlyIfMultiAccessIsLoaded() throws MachineAccessException {
+        Backend b1 = new ProBBackend();
+        Map<Backend, Boolean> loaded = new HashMap<>();
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{b1}, false,
+                (b, load) -> {
+                    loaded.put(b, load);
+                    return mock(MachineAccess.class);
+                });
+
+        access.load();
+        access.getAccess(b1);
+
+        assertEquals(true, loaded.get(b1));
+    }
+
+    @Test
+    void shouldOnlyCloseCreatedAccesses() throws MachineAccessException {
+        Backend b1 = new ProBBackend();
+        Backend b2 = new Z3Backend();
+        MachineAccess a1 = mock(MachineAccess.class);
+        MachineAccess a2 = mock(MachineAccess.class);
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{b1, b2}, true,
+                (b, load) -> b.equals(b1) ? a1 : a2);
+
+        access.getAccess(b1);
+        access.close();
+
+        verify(a1).close();
+        verify(a2, never()).close();
+    }
+
+    @Test
+    void shouldSetPreferencesInLaterCreatedAccesses() throws MachineAccessException {
+        Backend b1 = new ProBBackend();
+        MachineAccess a1 = mock(MachineAccess.class);
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{b1}, true, (b, load) -> a1);
+
+        BPreferences preferences = BPreferences.set("PREF1", "val1").assemble();
+        access.setPreferences(preferences);
+        access.getAccess(b1);
+
+        verify(a1).setPreferences(preferences);
+    }
+
+    @Test
+    void shouldCreateRequestedAccessesConcurrently() throws MachineAccessException {
+        Backend b1 = new ProBBackend();
+        Backend b2 = new Z3Backend();
+        CountDownLatch bothCreating = new CountDownLatch(2);
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{b1, b2}, true,
+                (b, load) -> {
+                    bothCreating.countDown();
+                    try {
+                        // Sequential creation would wait here in vain
+                        if (!bothCreating.await(5, TimeUnit.SECONDS)) {
+                            throw new MachineAccessException("Accesses were created sequentially");
+                        }
+                    } catch (InterruptedException e) {
+                        throw new MachineAccessException("Interrupted", e);
+                    }
+                    return mock(MachineAccess.class);
+                });
+
+        Map<Backend, MachineAccess> accesses = access.getAccesses(Arrays.asList(b1, b2));
+
+        assertEquals(2, accesses.size());
+        assertNotNull(accesses.get(b1));
+        assertNotNull(accesses.get(b2));
+    }
+
+    @Test
+    void shouldExecuteCommandsConcurrently() throws MachineAccessException {
+        Backend b1 = new ProBBackend();
+        Backend b2 = new Z3Backend();
+        CountDownLatch bothExecuting = new CountDownLatch(2);
+        AtomicInteger finished = new AtomicInteger(0);
+
+        Map<Backend, MachineAccess> accessMap = new HashMap<>();
+        for (Backend b : new Backend[]{b1, b2}) {
+            MachineAccess a = mock(MachineAccess.class);
+            doAnswer(invocation -> {
+                bothExecuting.countDown();
+                if (bothExecuting.await(5, TimeUnit.SECONDS)) {
+                    finished.incrementAndGet();
+                }
+                return null;
+            }).when(a).execute(any());
+            accessMap.put(b, a);
+        }
+
+        MultiMachineAccess access = new MultiMachineAccess(null, null, accessMap, false);
+        access.execute(mock(AbstractCommand.class));
+
+        assertEquals(2, finished.get());
+    }
+
+    @Test
+    void shouldOnlyExecuteCommandsOverCreatedAccesses() throws MachineAccessException {
+        Backend b1 = new ProBBackend();
+        Backend b2 = new Z3Backend();
+        MachineAccess a1 = mock(MachineAccess.class);
+        MachineAccess a2 = mock(MachineAccess.class);
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{b1, b2}, true,
+                (b, load) -> b.equals(b1) ? a1 : a2);
+
+        access.getAccess(b1);
+        AbstractCommand command = mock(AbstractCommand.class);
+        access.execute(command);
+
+        verify(a1).execute(command);
+        verify(a2, never()).execute(any());
+        assertEquals(1, access.getCreatedAccessCount());
+    }
+
+    @Test
+    void shouldCreateSingleAccessToExecuteCommandsIfNoneExists() throws MachineAccessException {
+        AtomicInteger created = new AtomicInteger(0);
+        MultiMachineAccess access = new MultiMachineAccess(null, null,
+                new Backend[]{new ProBBackend(), new Z3Backend()}, true,
+                (b, load) -> {
+                    created.incrementAndGet();
+                    return mock(MachineAccess.class);
+                });
+
+        access.execute(mock(AbstractCommand.class));
+
+        assertEquals(1, created.get());
+    }
 
 }
@@ -0,0 +1,87 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import de.hhu.stups.neurob.core.api.MachineType;
+import de.prob.animator.domainobjects.IEvalElement;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ParseCacheTest {
+
+    private final AtomicInteger parseCount = new AtomicInteger(0);
+    private final Function<BPredicate, IEvalElement> parser = p -> {
+        parseCount.incrementAndGet();
+        return mock(IEvalElement.class);
+    };
+
+    @Test
+    void shouldParseOnlyOnce() {
+        ParseCache cache = new ParseCache(4);
+        BPredicate pred = BPredicate.of("x > 2");
+
+        IEvalElement first = cache.get(pred, MachineType.CLASSICALB, parser);
+        IEvalElement second = cache.get(pred, MachineType.CLASSICALB, parser);
+
+        assertSame(first, second);
+        assertEquals(1, parseCount.get());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void shouldDistinguishFormalisms() {
+        ParseCache cache = new ParseCache(4);
+        BPredicate pred = BPredicate.of("x > 2");
+
+        cache.get(pred, MachineType.CLASSICALB, parser);
+        cache.get(pred, MachineType.EVENTB, parser);
+
+        assertEquals(2, parseCount.get());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsed() {
+        ParseCache cache = new ParseCache(2);
+        BPredicate a = BPredicate.of("a");
+        BPredicate b = BPredicate.of("b");
+        BPredicate c = BPredicate.of("c");
+
+        cache.get(a, MachineType.CLASSICALB, parser);
+        cache.get(b, MachineType.CLASSICALB, parser);
+        cache.get(a, MachineType.CLASSICALB, parser); // a is now more recent than b
+        cache.get(c, MachineType.CLASSICALB, parser); // evicts b
+        cache.get(a, MachineType.CLASSICALB, parser);
+        cache.get(b, MachineType.CLASSICALB, parser);
+
+        assertEquals(2, cache.size());
+        assertEquals(4, parseCount.get());
+    }
+
+    @Test
+    void shouldParseAgainAfterInvalidation() {
+        ParseCache cache = new ParseCache(4);
+        BPredicate pred = BPredicate.of("x > 2");
+
+        cache.get(pred, MachineType.CLASSICALB, parser);
+        cache.invalidate();
+        cache.get(pred, MachineType.CLASSICALB, parser);
+
+        assertEquals(2, parseCount.get());
+    }
+
+    @Test
+    void shouldNotCacheIfCapacityIsZero() {
+        ParseCache cache = new ParseCache(0);
+        BPredicate pred = BPredicate.of("x > 2");
+
+        cache.get(pred, MachineType.CLASSICALB, parser);
+        cache.get(pred, MachineType.CLASSICALB, parser);
+
+        assertEquals(0, cache.size());
+        assertEquals(2, parseCount.get());
+    }
+
+}
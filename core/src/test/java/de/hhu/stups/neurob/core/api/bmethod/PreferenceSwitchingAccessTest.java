@@ -0,0 +1,149 @@
+package de.hhu.stups.neurob.core.api.bmethod;
+
+import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.backends.ProBBackend;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreference;
+import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
+import de.prob.animator.command.AbstractCommand;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PreferenceSwitchingAccessTest {
+
+    private MachineAccess shared;
+    private PreferenceSwitchingAccess access;
+
+    @BeforeEach
+    void setUpAccess() {
+        shared = mock(MachineAccess.class);
+        when(shared.getPreferences()).thenReturn(new BPreferences());
+        when(shared.isLoaded()).thenReturn(true);
+
+        access = spy(new PreferenceSwitchingAccess(shared));
+        doReturn("orig").when(access).readPreference(anyString());
+        doNothing().when(access).writePreference(anyString(), anyString());
+    }
+
+    @Test
+    void shouldSetPreferencesOfViewBeforeExecution() {
+        BPreferences prefs = new BPreferences(BPreference.set("PREF", "val"));
+        AbstractCommand command = mock(AbstractCommand.class);
+
+        access.execute(prefs, command);
+
+        verify(access).writePreference("PREF", "val");
+        verify(shared).execute(command);
+    }
+
+    @Test
+    void shouldNotResendActivePreferences() {
+        BPreferences prefs = new BPreferences(BPreference.set("PREF", "val"));
+
+        access.execute(prefs, mock(AbstractCommand.class));
+        access.execute(prefs, mock(AbstractCommand.class));
+
+        verify(access, times(1)).writePreference("PREF", "val");
+        assertEquals(1L, access.getSwitchCount());
+    }
+
+    @Test
+    void shouldOnlySendDelta() {
+        BPreferences first = new BPreferences(
+                BPreference.set("A", "1"),
+                BPreference.set("B", "1"));
+        BPreferences second = new BPreferences(
+                BPreference.set("A", "1"),
+                BPreference.set("B", "2"));
+
+        access.execute(first, mock(AbstractCommand.class));
+        access.execute(second, mock(AbstractCommand.class));
+
+        verify(access, times(1)).writePreference("A", "1");
+        verify(access).writePreference("B", "2");
+        assertEquals(3L, access.getPreferenceCommandCount());
+    }
+
+    @Test
+    void shouldResetPreferencesNoLongerRequested() {
+        access.execute(new BPreferences(BPreference.set("PREF", "val")),
+                mock(AbstractCommand.class));
+        access.execute(new BPreferences(), mock(AbstractCommand.class));
+
+        verify(access).writePreference("PREF", "orig");
+        assertTrue(access.getActivePreferences().isEmpty());
+    }
+
+    @Test
+    void shouldNotSendPreferenceAlreadyHavingRequestedValue() {
+        access.execute(new BPreferences(BPreference.set("PREF", "orig")),
+                mock(AbstractCommand.class));
+
+        verify(access, never()).writePreference(anyString(), anyString());
+        assertEquals(0L, access.getSwitchCount());
+    }
+
+    @Test
+    void shouldRestoreOwnPreferences() {
+        access.execute(new BPreferences(BPreference.set("PREF", "val")),
+                mock(AbstractCommand.class));
+        access.restore();
+
+        verify(access).writePreference("PREF", "orig");
+    }
+
+    @Test
+    void shouldExecuteOverViewWithBackendPreferences() {
+        Backend backend = new ProBBackend(BPreference.set("PREF", "val"));
+        AbstractCommand command = mock(AbstractCommand.class);
+
+        MachineAccess view = access.getAccess(backend);
+        view.execute(command);
+
+        verify(access).writePreference("PREF", "val");
+        verify(shared).execute(command);
+        // Backends always carry a TIME_OUT preference as well
+        assertEquals("val", access.getActivePreferences().get("PREF"));
+    }
+
+    @Test
+    void shouldSwitchRightAwayWhenSettingPreferencesOfView() {
+        MachineAccess view = access.getAccess(new ProBBackend());
+
+        view.setPreferences(new BPreferences(BPreference.set("PREF", "val")));
+
+        verify(access).writePreference("PREF", "val");
+        assertEquals("val", access.getActivePreferences().get("PREF"));
+    }
+
+    @Test
+    void shouldNotSendPreferencesOnExecutionAfterSettingThem() {
+        MachineAccess view = access.getAccess(new ProBBackend());
+        view.setPreferences(new BPreferences(BPreference.set("PREF", "val")));
+        long commands = access.getPreferenceCommandCount();
+
+        view.execute(mock(AbstractCommand.class));
+
+        assertEquals(commands, access.getPreferenceCommandCount());
+    }
+
+    @Test
+    void shouldNotCloseSharedAccessWhenClosingView() {
+        MachineAccess view = access.getAccess(new ProBBackend());
+
+        view.close();
+
+        verify(shared, never()).close();
+    }
+
+}
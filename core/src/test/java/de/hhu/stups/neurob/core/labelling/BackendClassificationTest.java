@@ -269,4 +269,36 @@ class BackendClassificationTest {
         when(b.solvePredicate(any(), any(), any(), any())).thenReturn(answer);
     }
 
+    @Test
+    void shouldNotClassifySkippedAsFastest() throws FormulaException {
+        TimedAnswer skipped = new TimedAnswer(Answer.SKIPPED, 0L);
+        TimedAnswer timeout = new TimedAnswer(Answer.TIMEOUT, 400L);
+
+        Map<Backend, TimedAnswer> answerMap = new HashMap<>();
+        answerMap.put(backends[0], skipped);
+        answerMap.put(backends[1], timeout);
+        answerMap.put(backends[2], skipped);
+        answerMap.put(backends[3], skipped);
+
+        Backend expected = backends[1];
+        Backend actual = BackendClassification.classifyFastestBackend(backends, answerMap);
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void shouldIgnoreSkippedEntriesWhenTranslating() {
+        TimedAnswer skipped = new TimedAnswer(Answer.SKIPPED, 0L);
+        TimedAnswer timeout = new TimedAnswer(Answer.TIMEOUT, 400L);
+        TimedAnswer valid = new TimedAnswer(Answer.VALID, 800L);
+
+        PredDbEntry dbEntry = new PredDbEntry(null, null, backends, skipped, timeout, valid, skipped);
+
+        BackendClassification.Translator translator = new BackendClassification.Translator(backends);
+
+        Labelling expected = new Labelling(3.);
+        Labelling actual = translator.translate(dbEntry);
+
+        assertArrayEquals(expected.getLabellingArray(), actual.getLabellingArray());
+    }
 }
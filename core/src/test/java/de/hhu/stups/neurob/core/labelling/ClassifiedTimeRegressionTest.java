@@ -443,4 +443,22 @@ class ClassifiedTimeRegressionTest {
         assertArrayEquals(expected, actual);
     }
 
+    @Test
+    void shouldTranslateSkippedLikeError() {
+        Backend[] backends = {
+                new ProBBackend(10, TimeUnit.MILLISECONDS),
+                new KodkodBackend(10, TimeUnit.MILLISECONDS),
+                new Z3Backend(10, TimeUnit.MILLISECONDS)};
+        PredDbEntry dbEntry = new PredDbEntry(BPredicate.of("foo"),
+                null,
+                backends,
+                new TimedAnswer(Answer.VALID, 5_000L),
+                new TimedAnswer(Answer.SKIPPED, 0L),
+                new TimedAnswer(Answer.SKIPPED, 0L));
+
+        Double[] expected = {5_000., 10_000_000., 10_000_000.};
+        Double[] actual = new ClassifiedTimeRegression.Translator().translate(dbEntry).getLabellingArray();
+
+        assertArrayEquals(expected, actual);
+    }
 }
@@ -444,4 +444,22 @@ class HealyTimingsTest {
         assertArrayEquals(expected, actual);
     }
 
+    @Test
+    void shouldTranslateSkippedLikeError() {
+        Backend[] backends = {
+                new ProBBackend(10, TimeUnit.MILLISECONDS),
+                new KodkodBackend(10, TimeUnit.MILLISECONDS),
+                new Z3Backend(10, TimeUnit.MILLISECONDS)};
+        PredDbEntry dbEntry = new PredDbEntry(BPredicate.of("foo"),
+                null,
+                backends,
+                new TimedAnswer(Answer.VALID, 5_000L),
+                new TimedAnswer(Answer.SKIPPED, 0L),
+                new TimedAnswer(Answer.SKIPPED, 0L));
+
+        Double[] expected = {5_000., 20_000_000., 20_000_000.};
+        Double[] actual = new HealyTimings.Translator().translate(dbEntry).getLabellingArray();
+
+        assertArrayEquals(expected, actual);
+    }
 }
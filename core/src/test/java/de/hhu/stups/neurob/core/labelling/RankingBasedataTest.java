@@ -50,4 +50,19 @@ class RankingBasedataTest {
         assertArrayEquals(expected, actual);
     }
 
+    @Test
+    void shouldTranslateSkippedLikeError() {
+        Backend[] backends = {prob, z3};
+        RankingBasedata.Translator translator = new RankingBasedata.Translator(backends);
+
+        Map<Backend, TimedAnswer> results = new HashMap<>();
+        results.put(prob, new TimedAnswer(Answer.VALID, 300L));
+        results.put(z3, new TimedAnswer(Answer.SKIPPED, 0L));
+        PredDbEntry data = new PredDbEntry(null, null, results);
+
+        Double[] expected = {300., 1., 0., 5.};
+        Double[] actual = translator.translate(data).labellingArray;
+
+        assertArrayEquals(expected, actual);
+    }
 }
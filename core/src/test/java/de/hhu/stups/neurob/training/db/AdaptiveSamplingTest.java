@@ -0,0 +1,43 @@
+package de.hhu.stups.neurob.training.db;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveSamplingTest {
+
+    @Test
+    void shouldNotBePreciseBeforeMinimumSamples() {
+        AdaptiveSampling rule = new AdaptiveSampling(0.95, 0.05, 0L);
+
+        assertFalse(rule.isPrecise(new SamplingStatistic(false, 100., 100.)));
+    }
+
+    @Test
+    void shouldBePreciseForStableTimings() {
+        AdaptiveSampling rule = new AdaptiveSampling(0.95, 0.05, 0L);
+
+        assertTrue(rule.isPrecise(new SamplingStatistic(false, 100., 101., 99.)));
+    }
+
+    @Test
+    void shouldNotBePreciseForScatteredTimings() {
+        AdaptiveSampling rule = new AdaptiveSampling(0.95, 0.05, 0L);
+
+        assertFalse(rule.isPrecise(new SamplingStatistic(false, 100., 200., 50.)));
+    }
+
+    @Test
+    void shouldAcceptScatteredTimingsWithinAbsoluteError() {
+        AdaptiveSampling rule = new AdaptiveSampling(0.95, 0.05, 1000L);
+
+        assertTrue(rule.isPrecise(new SamplingStatistic(false, 100., 200., 50.)));
+    }
+
+    @Test
+    void shouldRejectInvalidConfidence() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveSampling(1.5, 0.05, 0L));
+    }
+
+}
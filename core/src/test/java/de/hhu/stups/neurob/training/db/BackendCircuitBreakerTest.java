@@ -0,0 +1,115 @@
+package de.hhu.stups.neurob.training.db;
+
+import de.hhu.stups.neurob.core.api.backends.Answer;
+import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.backends.KodkodBackend;
+import de.hhu.stups.neurob.core.api.backends.ProBBackend;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackendCircuitBreakerTest {
+
+    private final Path machine = Paths.get("non/existent.mch");
+    private final Backend backend = new KodkodBackend();
+
+    @Test
+    void shouldOpenAfterConsecutiveErrors() {
+        BackendCircuitBreaker breaker = new BackendCircuitBreaker(3, 10);
+
+        breaker.record(machine, backend, Answer.ERROR);
+        breaker.record(machine, backend, Answer.ERROR);
+        assertTrue(breaker.allows(machine, backend));
+        breaker.record(machine, backend, Answer.ERROR);
+
+        assertFalse(breaker.allows(machine, backend));
+        assertEquals(1L, breaker.getTripCount());
+        assertEquals(1L, breaker.getSkipCount());
+    }
+
+    @Test
+    void shouldResetErrorCountOnSuccess() {
+        BackendCircuitBreaker breaker = new BackendCircuitBreaker(3, 10);
+
+        breaker.record(machine, backend, Answer.ERROR);
+        breaker.record(machine, backend, Answer.ERROR);
+        breaker.record(machine, backend, Answer.VALID);
+        breaker.record(machine, backend, Answer.ERROR);
+
+        assertTrue(breaker.allows(machine, backend));
+    }
+
+    @Test
+    void shouldCountFailedSolvesAsErrors() {
+        BackendCircuitBreaker breaker = new BackendCircuitBreaker(1, 10);
+
+        breaker.record(machine, backend, null);
+
+        assertTrue(breaker.isOpen(machine, backend));
+    }
+
+    @Test
+    void shouldKeepCircuitsPerMachineAndBackend() {
+        BackendCircuitBreaker breaker = new BackendCircuitBreaker(1, 10);
+
+        breaker.record(machine, backend, Answer.ERROR);
+
+        assertAll(
+                () -> assertFalse(breaker.allows(machine, backend)),
+                () -> assertTrue(breaker.allows(machine, new ProBBackend())),
+                () -> assertTrue(breaker.allows(Paths.get("other.mch"), backend))
+        );
+    }
+
+    @Test
+    void shouldLetTrialThroughAfterRetryInterval() {
+        BackendCircuitBreaker breaker = new BackendCircuitBreaker(1, 2);
+        breaker.record(machine, backend, Answer.ERROR);
+
+        assertFalse(breaker.allows(machine, backend));
+        assertFalse(breaker.allows(machine, backend));
+        assertTrue(breaker.allows(machine, backend));
+        // Only a single trial at a time
+        assertFalse(breaker.allows(machine, backend));
+        assertEquals(1L, breaker.getTrialCount());
+    }
+
+    @Test
+    void shouldCloseIfTrialSucceeds() {
+        BackendCircuitBreaker breaker = new BackendCircuitBreaker(1, 1);
+        breaker.record(machine, backend, Answer.ERROR);
+        breaker.allows(machine, backend);
+        assertTrue(breaker.allows(machine, backend));
+
+        breaker.record(machine, backend, Answer.INVALID);
+
+        assertFalse(breaker.isOpen(machine, backend));
+        assertEquals(1L, breaker.getRecoveryCount());
+    }
+
+    @Test
+    void shouldStayOpenIfTrialFails() {
+        BackendCircuitBreaker breaker = new BackendCircuitBreaker(1, 1);
+        breaker.record(machine, backend, Answer.ERROR);
+        breaker.allows(machine, backend);
+        assertTrue(breaker.allows(machine, backend));
+
+        breaker.record(machine, backend, Answer.ERROR);
+
+        assertTrue(breaker.isOpen(machine, backend));
+        assertEquals(1L, breaker.getTripCount());
+    }
+
+    @Test
+    void shouldAnswerSkippedPredicatesExplicitly() {
+        BackendCircuitBreaker breaker = new BackendCircuitBreaker();
+
+        SampledTimedAnswer skipped = breaker.skippedAnswer(backend);
+
+        assertEquals(Answer.SKIPPED, skipped.getAnswer());
+    }
+
+}
@@ -0,0 +1,136 @@
+package de.hhu.stups.neurob.training.db;
+
+import de.hhu.stups.neurob.core.api.backends.Answer;
+import de.hhu.stups.neurob.core.api.backends.KodkodBackend;
+import de.hhu.stups.neurob.core.api.backends.ProBBackend;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationJournalTest {
+
+    private Path journalFile;
+    private Path machine;
+
+    private final BPredicate pred = BPredicate.of("x > 2 & x < 5");
+    private final SampledTimedAnswer answer = new SampledTimedAnswer(Answer.VALID, 200L,
+            new SamplingStatistic(3, 200., 10., 5.), "message");
+
+    @BeforeEach
+    public void setUpFiles() throws IOException {
+        journalFile = Files.createTempDirectory("neurob-journal").resolve("run.journal");
+        machine = Files.createTempFile("neurob-machine", ".mch");
+        Files.write(machine, "MACHINE example\nEND".getBytes());
+    }
+
+    @Test
+    public void shouldReturnNullIfNotJournaled() throws IOException {
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            assertNull(journal.lookup(machine, pred, new ProBBackend()));
+        }
+    }
+
+    @Test
+    public void shouldReturnRecordedResult() throws IOException {
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            journal.record(machine, pred, new ProBBackend(), answer);
+
+            assertEquals(answer, journal.lookup(machine, pred, new ProBBackend()));
+            assertEquals(1L, journal.getHitCount());
+        }
+    }
+
+    @Test
+    public void shouldReplayResultsOfPreviousRun() throws IOException {
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            journal.record(machine, pred, new ProBBackend(), answer);
+        }
+
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            SampledTimedAnswer actual = journal.lookup(machine, pred, new ProBBackend());
+
+            assertAll(
+                    () -> assertEquals(1L, journal.getReplayedCount()),
+                    () -> assertEquals(answer.getAnswer(), actual.getAnswer()),
+                    () -> assertEquals(answer.getNanoSeconds(), actual.getNanoSeconds()),
+                    () -> assertEquals(answer.getStats(), actual.getStats()),
+                    () -> assertEquals(answer.getMessage(), actual.getMessage())
+            );
+        }
+    }
+
+    @Test
+    public void shouldReplayConfidenceIntervalOfPreviousRun() throws IOException {
+        SampledTimedAnswer answer = new SampledTimedAnswer(Answer.VALID, 300L,
+                new SamplingStatistic(3, 300., 10., 5., 0.95, 21.5), null, TimeoutPhase.FULL);
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            journal.record(machine, pred, new ProBBackend(), answer);
+        }
+
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            SampledTimedAnswer actual = journal.lookup(machine, pred, new ProBBackend());
+
+            assertAll(
+                    () -> assertEquals(answer.getStats(), actual.getStats()),
+                    () -> assertEquals(TimeoutPhase.FULL, actual.getPhase())
+            );
+        }
+    }
+
+    @Test
+    public void shouldNotReturnResultOfOtherBackend() throws IOException {
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            journal.record(machine, pred, new ProBBackend(), answer);
+
+            assertNull(journal.lookup(machine, pred, new KodkodBackend()));
+        }
+    }
+
+    @Test
+    public void shouldOnlySyncInBatches() throws IOException {
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            journal.setSyncBatchSize(10);
+            for (int i = 0; i < 25; i++) {
+                journal.record(machine, BPredicate.of("x = " + i), new ProBBackend(), answer);
+            }
+
+            assertEquals(2L, journal.getSyncCount());
+            assertEquals(20, Files.readAllLines(journalFile).size());
+
+            journal.sync();
+            assertEquals(25, Files.readAllLines(journalFile).size());
+        }
+    }
+
+    @Test
+    public void shouldSkipPartiallyWrittenLineOfAbortedRun() throws IOException {
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            journal.record(machine, pred, new ProBBackend(), answer);
+        }
+        // Simulate an abort while writing the next line
+        Files.write(journalFile, "abc\tdef".getBytes(), StandardOpenOption.APPEND);
+
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            journal.record(machine, pred, new KodkodBackend(), answer);
+        }
+
+        try (GenerationJournal journal = new GenerationJournal(journalFile)) {
+            assertAll(
+                    () -> assertEquals(2L, journal.getReplayedCount()),
+                    () -> assertNotNull(journal.lookup(machine, pred, new ProBBackend())),
+                    () -> assertNotNull(journal.lookup(machine, pred, new KodkodBackend()))
+            );
+        }
+        List<String> lines = Files.readAllLines(journalFile);
+        assertEquals(3, lines.size());
+    }
+
+}
@@ -667,6 +667,76 @@ class JsonDbFormatTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void shouldWritePhaseOfTwoPhaseLabelling() {
+        Backend backend = new ProBBackend();
+        Map<Backend, TimedAnswer> results = new HashMap<>();
+        results.put(backend, new SampledTimedAnswer(Answer.VALID, 100L,
+                new SamplingStatistic(1, 100., 0., 0.), null, TimeoutPhase.PROBE));
+
+        String actual = new JsonDbFormat(BACKENDS_USED).translateAnswerToJson(backend, results);
+
+        assertTrue(actual.endsWith(",\"phase\":\"PROBE\"}"), actual);
+    }
+
+    @Test
+    public void shouldReadPhaseOfTwoPhaseLabelling() throws IOException {
+        JsonDbFormat.PredicateDbIterator iterator = new JsonDbFormat.PredicateDbIterator(
+                new JsonReader(new StringReader(getSampleJson(0))), BACKENDS_USED);
+        JsonReader answer = new JsonReader(new StringReader(
+                "{\"answer\":\"INVALID\",\"time-in-ns\":100,\"timeout-in-ns\":2500000000,"
+                + "\"phase\":\"FULL\"}"));
+
+        TimedAnswer actual = iterator.readTimedAnswer(answer);
+
+        assertEquals(new TimedAnswer(Answer.INVALID, 100L), actual);
+        assertEquals(TimeoutPhase.FULL, ((SampledTimedAnswer) actual).getPhase());
+    }
+
+    @Test
+    public void shouldReadWrittenPhaseOfTwoPhaseLabelling() throws IOException {
+        Backend backend = new ProBBackend();
+        Map<Backend, TimedAnswer> results = new HashMap<>();
+        results.put(backend, new SampledTimedAnswer(Answer.TIMEOUT, 250L,
+                new SamplingStatistic(1, 250., 0., 0.), null, TimeoutPhase.PROBE));
+        String written = new JsonDbFormat(BACKENDS_USED).translateAnswerToJson(backend, results);
+
+        JsonDbFormat.PredicateDbIterator iterator = new JsonDbFormat.PredicateDbIterator(
+                new JsonReader(new StringReader(getSampleJson(0))), BACKENDS_USED);
+        JsonReader answer = new JsonReader(new StringReader(
+                written.substring(written.indexOf(":{") + 1)));
+
+        TimedAnswer actual = iterator.readTimedAnswer(answer);
+
+        assertEquals(new TimedAnswer(Answer.TIMEOUT, 250L), actual);
+        assertEquals(TimeoutPhase.PROBE, ((SampledTimedAnswer) actual).getPhase());
+    }
+
+    @Test
+    public void shouldReadUnknownPhaseAsSinglePhaseLabelling() throws IOException {
+        JsonDbFormat.PredicateDbIterator iterator = new JsonDbFormat.PredicateDbIterator(
+                new JsonReader(new StringReader(getSampleJson(0))), BACKENDS_USED);
+        JsonReader answer = new JsonReader(new StringReader(
+                "{\"answer\":\"INVALID\",\"time-in-ns\":100,\"timeout-in-ns\":2500000000,"
+                + "\"phase\":\"THIRD\"}"));
+
+        TimedAnswer actual = iterator.readTimedAnswer(answer);
+
+        assertEquals(new TimedAnswer(Answer.INVALID, 100L), actual);
+        assertFalse(actual instanceof SampledTimedAnswer, "Unknown phase should not be recorded");
+    }
+
+    @Test
+    public void shouldNotWritePhaseOfSinglePhaseLabelling() {
+        Backend backend = new ProBBackend();
+        Map<Backend, TimedAnswer> results = new HashMap<>();
+        results.put(backend, new TimedAnswer(Answer.VALID, 100L));
+
+        String actual = new JsonDbFormat(BACKENDS_USED).translateAnswerToJson(backend, results);
+
+        assertFalse(actual.contains("phase"), actual);
+    }
+
     @Test
     public void shouldBeValidJson() {
         String json = getPredicateJson("pred", "hashihash");
@@ -10,16 +10,25 @@ import de.hhu.stups.neurob.core.api.backends.Z3Backend;
 import de.hhu.stups.neurob.core.api.backends.preferences.BPreferences;
 import de.hhu.stups.neurob.core.api.bmethod.BMachine;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
 import de.hhu.stups.neurob.core.exceptions.FormulaException;
 import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
+import de.prob.cli.CliVersionNumber;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class PredDbEntryTest {
@@ -176,6 +185,201 @@ class PredDbEntryTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void shouldStopAdaptiveSamplingOnceTimingsArePrecise() throws FormulaException, LabelCreationException {
+        Backend backend = mock(Backend.class);
+        when(backend.solvePredicate(any(), any(), any(), any()))
+                .thenReturn(new TimedAnswer(Answer.VALID, 100000000L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 100L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 101L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 99L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 5000L));
+
+        PredDbEntry.Generator generator =
+                new PredDbEntry.Generator(10, null, null, (Backend[]) null);
+        AdaptiveSampling adaptiveSampling = new AdaptiveSampling(0.95, 0.05, 0L);
+        generator.setAdaptiveSampling(adaptiveSampling);
+
+        SampledTimedAnswer actual = generator.samplePredicate(null, backend, null);
+
+        assertAll(
+                () -> assertEquals(new TimedAnswer(Answer.VALID, 100L), actual),
+                () -> assertEquals(3, actual.getStats().getSampleSize()),
+                () -> assertEquals(0.95, actual.getStats().getConfidence()),
+                () -> assertTrue(actual.getStats().getCiHalfWidth() <= 5.),
+                () -> assertEquals(1L, adaptiveSampling.getEarlyStopCount())
+        );
+        verify(backend, times(4)).solvePredicate(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldTakeFullSamplingSizeIfTimingsStayImprecise() throws FormulaException, LabelCreationException {
+        Backend backend = mock(Backend.class);
+        when(backend.solvePredicate(any(), any(), any(), any()))
+                .thenReturn(new TimedAnswer(Answer.VALID, 10L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 10L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 20L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 30L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 80L));
+
+        PredDbEntry.Generator generator =
+                new PredDbEntry.Generator(4, null, null, (Backend[]) null);
+        AdaptiveSampling adaptiveSampling = new AdaptiveSampling(0.95, 0.01, 0L);
+        generator.setAdaptiveSampling(adaptiveSampling);
+
+        SampledTimedAnswer actual = generator.samplePredicate(null, backend, null);
+
+        assertEquals(new TimedAnswer(Answer.VALID, 35L), actual);
+        assertEquals(4, actual.getStats().getSampleSize());
+        assertEquals(0L, adaptiveSampling.getEarlyStopCount());
+    }
+
+    @Test
+    void shouldNotEscalatePredicateDecidedWhileProbing() throws FormulaException, LabelCreationException {
+        Backend backend = mock(Backend.class);
+        when(backend.solvePredicate(any(), any(), eq(100L), eq(TimeUnit.MILLISECONDS)))
+                .thenReturn(new TimedAnswer(Answer.VALID, 100000000L));
+        when(backend.solvePredicate(any(), any(), eq(2500L), eq(TimeUnit.MILLISECONDS)))
+                .thenReturn(new TimedAnswer(Answer.VALID, 10L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 20L));
+        when(backend.getTimeOutValue()).thenReturn(2500L);
+        when(backend.getTimeOutUnit()).thenReturn(TimeUnit.MILLISECONDS);
+
+        PredDbEntry.Generator generator =
+                new PredDbEntry.Generator(2, null, null, (Backend[]) null);
+        generator.setProbeTimeout(100L, TimeUnit.MILLISECONDS);
+
+        SampledTimedAnswer actual = generator.samplePredicate(null, backend, null);
+
+        assertAll(
+                () -> assertEquals(new TimedAnswer(Answer.VALID, 15L), actual),
+                () -> assertEquals(TimeoutPhase.PROBE, actual.getPhase()),
+                () -> assertEquals(1L, generator.getProbedCount()),
+                () -> assertEquals(0L, generator.getEscalatedCount())
+        );
+        verify(backend, times(3)).solvePredicate(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldEscalateProbingTimeoutToFullTimeout() throws FormulaException, LabelCreationException {
+        Backend backend = mock(Backend.class);
+        when(backend.solvePredicate(any(), any(), eq(100L), eq(TimeUnit.MILLISECONDS)))
+                .thenReturn(new TimedAnswer(Answer.TIMEOUT, 100000000L));
+        when(backend.solvePredicate(any(), any(), eq(2500L), eq(TimeUnit.MILLISECONDS)))
+                .thenReturn(new TimedAnswer(Answer.INVALID, 10L))
+                .thenReturn(new TimedAnswer(Answer.INVALID, 20L));
+        when(backend.getTimeOutValue()).thenReturn(2500L);
+        when(backend.getTimeOutUnit()).thenReturn(TimeUnit.MILLISECONDS);
+
+        PredDbEntry.Generator generator =
+                new PredDbEntry.Generator(2, null, null, (Backend[]) null);
+        generator.setProbeTimeout(100L, TimeUnit.MILLISECONDS);
+
+        SampledTimedAnswer actual = generator.samplePredicate(null, backend, null);
+
+        assertAll(
+                () -> assertEquals(new TimedAnswer(Answer.INVALID, 15L), actual),
+                () -> assertEquals(TimeoutPhase.FULL, actual.getPhase()),
+                () -> assertEquals(1L, generator.getEscalatedCount()),
+                () -> assertEquals(1L, generator.getEscalationDecidedCount())
+        );
+    }
+
+    @Test
+    void shouldMarkTimeoutOfFullPhase() throws FormulaException, LabelCreationException {
+        Backend backend = mock(Backend.class);
+        when(backend.solvePredicate(any(), any(), any(), any()))
+                .thenReturn(new TimedAnswer(Answer.TIMEOUT, 100L));
+        when(backend.getTimeOutValue()).thenReturn(2500L);
+        when(backend.getTimeOutUnit()).thenReturn(TimeUnit.MILLISECONDS);
+
+        PredDbEntry.Generator generator =
+                new PredDbEntry.Generator(2, null, null, (Backend[]) null);
+        generator.setProbeTimeout(100L, TimeUnit.MILLISECONDS);
+
+        SampledTimedAnswer actual = generator.samplePredicate(null, backend, null);
+
+        assertEquals(Answer.TIMEOUT, actual.getAnswer());
+        assertEquals(TimeoutPhase.FULL, actual.getPhase());
+        verify(backend, times(2)).solvePredicate(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldNotSolveAgainIfResultIsCached() throws Exception {
+        Backend backend = new ProBBackend();
+        BPredicate pred = BPredicate.of("pred");
+        Path machine = Files.createTempFile("neurob-machine", ".mch");
+        MachineAccess access = mock(MachineAccess.class);
+        when(access.getSource()).thenReturn(machine);
+
+        SolverResultCache cache = new SolverResultCache(Files.createTempDirectory("neurob-result-cache"));
+        SampledTimedAnswer cached = new SampledTimedAnswer(Answer.VALID, 35L,
+                new SamplingStatistic(4, 35., 0., 0.));
+        cache.store(machine, pred, backend, null, cached);
+
+        Backend mockedBackend = mock(Backend.class);
+        when(mockedBackend.getDescriptionString()).thenReturn(backend.getDescriptionString());
+
+        PredDbEntry.Generator generator =
+                new PredDbEntry.Generator(4, null, null, null, new Backend[]{mockedBackend});
+        generator.setResultCache(cache);
+
+        TimedAnswer actual = generator.samplePredicate(pred, mockedBackend, access);
+
+        assertEquals(cached, actual);
+        verify(mockedBackend, never()).solvePredicate(any(), any(), any(), any());
+        assertTrue(generator.hasReusedLabels(machine));
+    }
+
+    @Test
+    void shouldSolveAgainIfCachedErrorIsFromProbingWhileNotProbing() throws Exception {
+        Backend backend = mock(Backend.class);
+        when(backend.getDescriptionString()).thenReturn("backend");
+        when(backend.solvePredicate(any(), any(), any(), any()))
+                .thenReturn(new TimedAnswer(Answer.VALID, 10L));
+        BPredicate pred = BPredicate.of("pred");
+        Path machine = Files.createTempFile("neurob-machine", ".mch");
+        MachineAccess access = mock(MachineAccess.class);
+        when(access.getSource()).thenReturn(machine);
+
+        SolverResultCache cache = new SolverResultCache(Files.createTempDirectory("neurob-result-cache"));
+        cache.store(machine, pred, backend, null, new SampledTimedAnswer(Answer.TIMEOUT, 100L,
+                new SamplingStatistic(1, 100., 0., 0.), null, TimeoutPhase.PROBE));
+
+        PredDbEntry.Generator generator =
+                new PredDbEntry.Generator(1, null, null, null, new Backend[]{backend});
+        generator.setResultCache(cache);
+
+        TimedAnswer actual = generator.samplePredicate(pred, backend, access);
+
+        assertEquals(Answer.VALID, actual.getAnswer());
+        // The first measurement is discarded
+        verify(backend, times(2)).solvePredicate(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldStoreSampledResultInCache() throws Exception {
+        Backend backend = mock(Backend.class);
+        when(backend.getDescriptionString()).thenReturn("backend");
+        when(backend.solvePredicate(any(), any(), any(), any()))
+                .thenReturn(new TimedAnswer(Answer.VALID, 10L))
+                .thenReturn(new TimedAnswer(Answer.VALID, 20L));
+        BPredicate pred = BPredicate.of("pred");
+        Path machine = Files.createTempFile("neurob-machine", ".mch");
+        MachineAccess access = mock(MachineAccess.class);
+        when(access.getSource()).thenReturn(machine);
+
+        SolverResultCache cache = new SolverResultCache(Files.createTempDirectory("neurob-result-cache"));
+        PredDbEntry.Generator generator =
+                new PredDbEntry.Generator(1, null, null, null, new Backend[]{backend});
+        generator.setResultCache(cache);
+
+        TimedAnswer sampled = generator.samplePredicate(pred, backend, access);
+
+        assertEquals(sampled, cache.lookup(machine, pred, backend, null));
+        assertFalse(generator.hasReusedLabels(machine));
+    }
+
     @Test
     void shouldGenerateSamplesForEachBackend() throws FormulaException, LabelCreationException {
         // Set up two backends to call
@@ -185,12 +389,14 @@ class PredDbEntryTest {
                 .thenReturn(new TimedAnswer(Answer.VALID, 10L))
                 .thenReturn(new TimedAnswer(Answer.VALID, 20L));
         when(back1.getPreferences()).thenReturn(new BPreferences());
+        when(back1.getSolvingPreferences()).thenReturn(new BPreferences());
         Backend back2 = mock(Backend.class);
         when(back2.solvePredicate(any(), any(), any(), any()))
                 .thenReturn(new TimedAnswer(Answer.VALID, 10_000L)) // Skipped in sampling.
                 .thenReturn(new TimedAnswer(Answer.INVALID, 30L))
                 .thenReturn(new TimedAnswer(Answer.INVALID, 40L));
         when(back2.getPreferences()).thenReturn(new BPreferences());
+        when(back2.getSolvingPreferences()).thenReturn(new BPreferences());
         Backend[] backends = {back1, back2};
 
         PredDbEntry.Generator generator =
@@ -214,10 +420,12 @@ class PredDbEntryTest {
                 .thenReturn(new TimedAnswer(Answer.VALID, 10L))
                 .thenReturn(new TimedAnswer(Answer.VALID, 20L));
         when(back1.getPreferences()).thenReturn(new BPreferences());
+        when(back1.getSolvingPreferences()).thenReturn(new BPreferences());
         Backend back2 = mock(Backend.class);
         when(back2.solvePredicate(any(), any(), any(), any()))
                 .thenThrow(new FormulaException("This exception is hard coded for a unit test"));
         when(back2.getPreferences()).thenReturn(new BPreferences());
+        when(back2.getSolvingPreferences()).thenReturn(new BPreferences());
         Backend[] backends = {back1, back2};
 
         PredDbEntry.Generator generator =
@@ -244,6 +452,7 @@ class PredDbEntryTest {
                 .thenReturn(new TimedAnswer(Answer.VALID, 65L))
                 .thenReturn(new TimedAnswer(Answer.VALID, 10_000L)); // Should not be sampled anymore.
         when(back1.getPreferences()).thenReturn(new BPreferences());
+        when(back1.getSolvingPreferences()).thenReturn(new BPreferences());
         Backend[] backends = {back1};
 
         PredDbEntry.Generator generator =
@@ -402,4 +611,26 @@ class PredDbEntryTest {
 
     }
 
+    @Test
+    void shouldDescribeConfigurationDifferentlyWhenLabellingChanges() {
+        PredDbEntry.Generator generator = new PredDbEntry.Generator(3, (CliVersionNumber) null,
+                new ProBBackend(), new Z3Backend());
+        String plain = generator.describeConfiguration();
+
+        generator.setProbeTimeout(100L, TimeUnit.MILLISECONDS);
+        String probing = generator.describeConfiguration();
+
+        generator.setCircuitBreaker(new BackendCircuitBreaker(5, 50));
+        String breaking = generator.describeConfiguration();
+
+        generator.setAdaptiveSampling(new AdaptiveSampling(0.95, 0.05, 1_000_000L));
+        String adaptive = generator.describeConfiguration();
+
+        assertAll(
+                () -> assertNotEquals(plain, probing),
+                () -> assertNotEquals(probing, breaking),
+                () -> assertNotEquals(breaking, adaptive)
+        );
+    }
+
 }
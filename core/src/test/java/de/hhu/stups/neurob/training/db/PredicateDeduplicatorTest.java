@@ -0,0 +1,250 @@
+package de.hhu.stups.neurob.training.db;
+
+import de.hhu.stups.neurob.core.api.backends.Answer;
+import de.hhu.stups.neurob.core.api.backends.Backend;
+import de.hhu.stups.neurob.core.api.backends.ProBBackend;
+import de.hhu.stups.neurob.core.api.backends.TimedAnswer;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.api.bmethod.MachineHash;
+import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PredicateDeduplicatorTest {
+
+    private static final String CONTEXT = DigestUtils.sha512Hex("SET S");
+
+    private final Backend backend = new ProBBackend();
+
+    private Map<Backend, TimedAnswer> results(Answer answer) {
+        Map<Backend, TimedAnswer> results = new HashMap<>();
+        results.put(backend, new TimedAnswer(answer, 100L));
+        return results;
+    }
+
+    @Test
+    void shouldSolveDuplicateOnlyOnce() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+        AtomicInteger solved = new AtomicInteger(0);
+
+        Map<Backend, TimedAnswer> first = dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> {
+            solved.incrementAndGet();
+            return results(Answer.VALID);
+        });
+        Map<Backend, TimedAnswer> second = dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> {
+            solved.incrementAndGet();
+            return results(Answer.INVALID);
+        });
+
+        assertEquals(1, solved.get());
+        assertEquals(first, second);
+        assertEquals(1L, dedup.getReuseCount());
+        assertEquals(1, dedup.getDistinctCount());
+    }
+
+    @Test
+    void shouldSolveDistinctPredicates() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+
+        dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> results(Answer.VALID));
+        Map<Backend, TimedAnswer> other =
+                dedup.solve(BPredicate.of("x > 2"), CONTEXT, () -> results(Answer.INVALID));
+
+        assertEquals(Answer.INVALID, other.get(backend).getAnswer());
+        assertEquals(0L, dedup.getReuseCount());
+        assertEquals(2, dedup.getDistinctCount());
+    }
+
+    @Test
+    void shouldNotShareIncompleteResults() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+        Map<Backend, TimedAnswer> incomplete = new HashMap<>();
+        incomplete.put(backend, null);
+
+        dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> incomplete);
+        Map<Backend, TimedAnswer> second =
+                dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> results(Answer.VALID));
+
+        assertEquals(Answer.VALID, second.get(backend).getAnswer());
+    }
+
+    @Test
+    void shouldNotShareSkippedResults() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+
+        dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> results(Answer.SKIPPED));
+        Map<Backend, TimedAnswer> second =
+                dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> results(Answer.VALID));
+
+        assertEquals(Answer.VALID, second.get(backend).getAnswer());
+    }
+
+    @Test
+    void shouldSolveAgainIfFirstOccurrenceFailed() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+
+        assertThrows(LabelCreationException.class,
+                () -> dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> {
+                    throw new LabelCreationException("machine not accessible");
+                }));
+        Map<Backend, TimedAnswer> second =
+                dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> results(Answer.VALID));
+
+        assertEquals(Answer.VALID, second.get(backend).getAnswer());
+    }
+
+    @Test
+    void shouldLetConcurrentDuplicatesWaitForFirstOccurrence() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+        AtomicInteger solved = new AtomicInteger(0);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        List<Future<Map<Backend, TimedAnswer>>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> {
+                        solved.incrementAndGet();
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return results(Answer.VALID);
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<Map<Backend, TimedAnswer>> future : futures) {
+                assertEquals(Answer.VALID, future.get().get(backend).getAnswer());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, solved.get());
+        assertEquals(7L, dedup.getReuseCount());
+    }
+
+    @Test
+    void shouldNotShareResultsAcrossContexts() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+        String otherContext = DigestUtils.sha512Hex("SET T");
+
+        dedup.solve(BPredicate.of("x : S"), CONTEXT, () -> results(Answer.VALID));
+        Map<Backend, TimedAnswer> other =
+                dedup.solve(BPredicate.of("x : S"), otherContext, () -> results(Answer.ERROR));
+
+        assertEquals(Answer.ERROR, other.get(backend).getAnswer());
+        assertEquals(0L, dedup.getReuseCount());
+        assertEquals(2, dedup.getDistinctCount());
+    }
+
+    @Test
+    void shouldUseHashOfMachineAndDependenciesAsContext() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+        Path dir = Files.createTempDirectory("neurob-dedup");
+        Files.write(dir.resolve("S.mch"), "MACHINE S\nSETS S\nEND".getBytes());
+        Path machine = Files.write(dir.resolve("M.mch"), "MACHINE M\nSEES S\nEND".getBytes());
+        MachineAccess access = mock(MachineAccess.class);
+        when(access.getSource()).thenReturn(machine);
+
+        assertEquals(MachineHash.hash(machine), dedup.getContextHash(access));
+    }
+
+    @Test
+    void shouldNotShareContextOfMachinesSeeingDifferentMachines() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+        Path first = Files.createTempDirectory("neurob-dedup");
+        Path second = Files.createTempDirectory("neurob-dedup");
+        Files.write(first.resolve("S.mch"), "MACHINE S\nSETS S = {a}\nEND".getBytes());
+        Files.write(second.resolve("S.mch"), "MACHINE S\nSETS S = {a, b}\nEND".getBytes());
+        MachineAccess firstAccess = mock(MachineAccess.class);
+        when(firstAccess.getSource()).thenReturn(
+                Files.write(first.resolve("M.mch"), "MACHINE M\nSEES S\nEND".getBytes()));
+        MachineAccess secondAccess = mock(MachineAccess.class);
+        when(secondAccess.getSource()).thenReturn(
+                Files.write(second.resolve("M.mch"), "MACHINE M\nSEES S\nEND".getBytes()));
+
+        assertNotEquals(dedup.getContextHash(firstAccess), dedup.getContextHash(secondAccess));
+    }
+
+    @Test
+    void shouldSolveItselfIfEarlierOccurrenceTakesTooLong() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator(50L, TimeUnit.MILLISECONDS);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            executor.submit(() -> dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return results(Answer.VALID);
+            }));
+            started.await();
+
+            Map<Backend, TimedAnswer> second =
+                    dedup.solve(BPredicate.of("x > 1"), CONTEXT, () -> results(Answer.INVALID));
+
+            assertEquals(Answer.INVALID, second.get(backend).getAnswer());
+            assertEquals(0L, dedup.getReuseCount());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldNotKnowContextOfUnreadableMachine() {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+        MachineAccess access = mock(MachineAccess.class);
+        when(access.getSource()).thenReturn(Paths.get("non/existent.mch"));
+
+        assertNull(dedup.getContextHash(access));
+    }
+
+    @Test
+    void shouldSolveWithoutSharingIfContextIsUnknown() throws Exception {
+        PredicateDeduplicator dedup = new PredicateDeduplicator();
+        MachineAccess access = mock(MachineAccess.class);
+        when(access.getSource()).thenReturn(Paths.get("non/existent.mch"));
+        AtomicInteger solved = new AtomicInteger(0);
+
+        for (int i = 0; i < 2; i++) {
+            dedup.solve(BPredicate.of("x > 1"), access, () -> {
+                solved.incrementAndGet();
+                return results(Answer.VALID);
+            });
+        }
+
+        assertEquals(2, solved.get());
+        assertEquals(0, dedup.getDistinctCount());
+    }
+
+}
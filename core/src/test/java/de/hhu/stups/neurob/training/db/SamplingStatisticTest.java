@@ -53,4 +53,61 @@ class SamplingStatisticTest {
 
         assertEquals(expected, actual);
     }
+
+    @Test
+    void shouldRecordConfidenceInterval() {
+        List<Double> samples = new ArrayList<>();
+        samples.add(1000.);
+        samples.add(1200.);
+        samples.add(820.);
+        samples.add(1300.);
+        samples.add(680.);
+
+        // t-quantile for 95 % confidence at 4 degrees of freedom
+        double expectedHalfWidth = 2.7764451 * Math.sqrt(66200.) / Math.sqrt(5);
+
+        SamplingStatistic actual = new SamplingStatistic(samples, false, 0.95);
+
+        assertAll(
+                () -> assertEquals(0.95, actual.getConfidence()),
+                () -> assertEquals(expectedHalfWidth, actual.getCiHalfWidth(), 1e-4)
+        );
+    }
+
+    @Test
+    void shouldEqualRestoredStatisticsWithConfidenceInterval() {
+        SamplingStatistic calculated = new SamplingStatistic(false, 1000., 1200., 800.);
+        SamplingStatistic withInterval = new SamplingStatistic(
+                calculated.getSampleSize(), calculated.getMean(), calculated.getStdev(), calculated.getSem(),
+                0.95, calculated.confidenceHalfWidth(0.95));
+
+        SamplingStatistic restored = new SamplingStatistic(
+                withInterval.getSampleSize(), withInterval.getMean(), withInterval.getStdev(),
+                withInterval.getSem(), withInterval.getConfidence(), withInterval.getCiHalfWidth());
+
+        assertAll(
+                () -> assertEquals(withInterval, restored),
+                () -> assertEquals(withInterval.hashCode(), restored.hashCode()),
+                () -> assertEquals(calculated, new SamplingStatistic(calculated.getSampleSize(),
+                        calculated.getMean(), calculated.getStdev(), calculated.getSem()))
+        );
+    }
+
+    @Test
+    void shouldNotEqualStatisticsWithOtherConfidenceInterval() {
+        SamplingStatistic expected = new SamplingStatistic(3, 1000., 200., 115., 0.95, 500.);
+
+        assertAll(
+                () -> assertNotEquals(expected, new SamplingStatistic(3, 1000., 200., 115.)),
+                () -> assertNotEquals(expected, new SamplingStatistic(3, 1000., 200., 115., 0.99, 500.)),
+                () -> assertNotEquals(expected, new SamplingStatistic(3, 1000., 200., 115., 0.95, 600.))
+        );
+    }
+
+    @Test
+    void shouldHaveInfiniteConfidenceIntervalForSingleMeasurement() {
+        SamplingStatistic stats = new SamplingStatistic(false, 1000.);
+
+        assertEquals(Double.POSITIVE_INFINITY, stats.confidenceHalfWidth(0.95));
+    }
 }
@@ -0,0 +1,159 @@
+package de.hhu.stups.neurob.training.db;
+
+import de.hhu.stups.neurob.core.api.backends.Answer;
+import de.hhu.stups.neurob.core.api.backends.KodkodBackend;
+import de.hhu.stups.neurob.core.api.backends.ProBBackend;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.prob.cli.CliVersionNumber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolverResultCacheTest {
+
+    private Path cacheDir;
+    private Path machine;
+
+    private final BPredicate pred = BPredicate.of("x > 2 & x < 5");
+    private final CliVersionNumber version =
+            new CliVersionNumber("0", "1", "2", "neurob", "revision-hash");
+
+    @BeforeEach
+    public void setUpDirectories() throws IOException {
+        cacheDir = Files.createTempDirectory("neurob-result-cache");
+        machine = Files.createTempFile("neurob-machine", ".mch");
+        Files.write(machine, "MACHINE example\nEND".getBytes());
+    }
+
+    @Test
+    public void shouldReturnNullIfNotCached() {
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+
+        assertNull(cache.lookup(machine, pred, new ProBBackend(), version));
+        assertEquals(1L, cache.getMissCount());
+    }
+
+    @Test
+    public void shouldReturnStoredResult() {
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+        SampledTimedAnswer answer = new SampledTimedAnswer(Answer.VALID, 200L,
+                new SamplingStatistic(3, 200., 10., 5.), "message");
+
+        cache.store(machine, pred, new ProBBackend(), version, answer);
+        SampledTimedAnswer actual = cache.lookup(machine, pred, new ProBBackend(), version);
+
+        assertEquals(answer, actual);
+        assertEquals(1L, cache.getHitCount());
+    }
+
+    @Test
+    public void shouldLoadPersistedResultsInFreshCache() {
+        SampledTimedAnswer answer = new SampledTimedAnswer(Answer.INVALID, 300L,
+                new SamplingStatistic(3, 300., 10., 5.), "escaped\tmessage\n");
+        new SolverResultCache(cacheDir).store(machine, pred, new ProBBackend(), version, answer);
+
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+        SampledTimedAnswer actual = cache.lookup(machine, pred, new ProBBackend(), version);
+
+        assertAll(
+                () -> assertEquals(answer.getAnswer(), actual.getAnswer()),
+                () -> assertEquals(answer.getNanoSeconds(), actual.getNanoSeconds()),
+                () -> assertEquals(answer.getStats(), actual.getStats()),
+                () -> assertEquals(answer.getMessage(), actual.getMessage())
+        );
+    }
+
+    @Test
+    public void shouldPersistPhaseAndConfidenceInterval() {
+        SampledTimedAnswer answer = new SampledTimedAnswer(Answer.VALID, 300L,
+                new SamplingStatistic(3, 300., 10., 5., 0.95, 21.5), null, TimeoutPhase.FULL);
+        new SolverResultCache(cacheDir).store(machine, pred, new ProBBackend(), version, answer);
+
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+        SampledTimedAnswer actual = cache.lookup(machine, pred, new ProBBackend(), version);
+
+        assertAll(
+                () -> assertEquals(TimeoutPhase.FULL, actual.getPhase()),
+                () -> assertEquals(answer.getStats(), actual.getStats()),
+                () -> assertEquals(0.95, actual.getStats().getConfidence()),
+                () -> assertEquals(21.5, actual.getStats().getCiHalfWidth()),
+                () -> assertNull(actual.getMessage())
+        );
+    }
+
+    @Test
+    public void shouldRejectLinesWithMissingFields() {
+        String[] fields = "pred\tversion\tbackend\tVALID\t200\t3\t200.0\t10.0\t5.0\tmessage".split("\t", -1);
+
+        assertFalse(SolverResultCache.isWellFormed(fields));
+    }
+
+    @Test
+    public void shouldNotReturnResultOfOtherBackend() {
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+        cache.store(machine, pred, new ProBBackend(), version,
+                new SampledTimedAnswer(Answer.VALID, 200L, new SamplingStatistic(1, 200., 0., 0.)));
+
+        assertNull(cache.lookup(machine, pred, new KodkodBackend(), version));
+    }
+
+    @Test
+    public void shouldNotReturnResultOfOtherCliVersion() {
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+        cache.store(machine, pred, new ProBBackend(), version,
+                new SampledTimedAnswer(Answer.VALID, 200L, new SamplingStatistic(1, 200., 0., 0.)));
+
+        CliVersionNumber otherVersion =
+                new CliVersionNumber("0", "1", "3", "neurob", "revision-hash");
+        assertNull(cache.lookup(machine, pred, new ProBBackend(), otherVersion));
+    }
+
+    @Test
+    public void shouldNotCacheErrors() {
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+        cache.store(machine, pred, new ProBBackend(), version,
+                new SampledTimedAnswer(Answer.ERROR, 0L, null, "cli crashed"));
+
+        assertNull(cache.lookup(machine, pred, new ProBBackend(), version));
+        assertNull(new SolverResultCache(cacheDir).lookup(machine, pred, new ProBBackend(), version));
+    }
+
+    @Test
+    public void shouldIgnorePersistedErrors() throws IOException {
+        SolverResultCache writing = new SolverResultCache(cacheDir);
+        String line = SolverResultCache.translateToLine(writing.key(pred, new ProBBackend(), version),
+                new SampledTimedAnswer(Answer.ERROR, 0L, null, "cli crashed"));
+        Files.write(cacheDir.resolve(writing.getMachineHash(machine) + ".results"),
+                (line + "\n").getBytes());
+
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+
+        assertNull(cache.lookup(machine, pred, new ProBBackend(), version));
+    }
+
+    @Test
+    public void shouldAppendToOpenCacheFileUntilClosed() {
+        SolverResultCache cache = new SolverResultCache(cacheDir);
+        BPredicate other = BPredicate.of("x > 3");
+        cache.store(machine, pred, new ProBBackend(), version,
+                new SampledTimedAnswer(Answer.VALID, 200L, new SamplingStatistic(1, 200., 0., 0.)));
+        cache.store(machine, other, new ProBBackend(), version,
+                new SampledTimedAnswer(Answer.INVALID, 100L, new SamplingStatistic(1, 100., 0., 0.)));
+        cache.close();
+
+        SolverResultCache fresh = new SolverResultCache(cacheDir);
+
+        assertAll(
+                () -> assertEquals(Answer.VALID,
+                        fresh.lookup(machine, pred, new ProBBackend(), version).getAnswer()),
+                () -> assertEquals(Answer.INVALID,
+                        fresh.lookup(machine, other, new ProBBackend(), version).getAnswer())
+        );
+    }
+
+}
@@ -0,0 +1,139 @@
+package de.hhu.stups.neurob.training.generation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusManifestTest {
+
+    private Path manifestFile;
+    private Path machine;
+    private Path target;
+
+    @BeforeEach
+    public void setUpFiles() throws IOException {
+        Path dir = Files.createTempDirectory("neurob-manifest");
+        manifestFile = dir.resolve("corpus.manifest");
+        machine = dir.resolve("example.mch");
+        Files.write(machine, "MACHINE example\nEND".getBytes());
+        target = dir.resolve("example.json");
+        Files.write(target, "{}".getBytes());
+    }
+
+    @Test
+    public void shouldNotBeUpToDateIfNotRecorded() {
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+
+        assertFalse(manifest.isUpToDate(machine, target));
+        assertEquals(1L, manifest.getOutdatedCount());
+    }
+
+    @Test
+    public void shouldBeUpToDateAfterRecording() {
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+        manifest.record(machine, target);
+
+        assertTrue(manifest.isUpToDate(machine, target));
+    }
+
+    @Test
+    public void shouldBeUpToDateInFreshManifest() throws IOException {
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+        manifest.record(machine, target);
+        manifest.save();
+
+        CorpusManifest loaded = new CorpusManifest(manifestFile, "config");
+
+        assertTrue(loaded.isUpToDate(machine, target));
+        assertEquals(0L, loaded.getHashCount());
+    }
+
+    @Test
+    public void shouldBeUpToDateIfOnlyModificationTimeChanged() throws IOException {
+        new CorpusManifest(manifestFile, "config").record(machine, target);
+        Files.setLastModifiedTime(machine,
+                FileTime.fromMillis(Files.getLastModifiedTime(machine).toMillis() + 60_000));
+
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+
+        assertTrue(manifest.isUpToDate(machine, target));
+        assertEquals(1L, manifest.getHashCount());
+    }
+
+    @Test
+    public void shouldNotBeUpToDateIfContentChanged() throws IOException {
+        new CorpusManifest(manifestFile, "config").record(machine, target);
+        Files.write(machine, "MACHINE changed\nEND".getBytes());
+
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+
+        assertFalse(manifest.isUpToDate(machine, target));
+    }
+
+    @Test
+    public void shouldNotBeUpToDateIfDependencyChanged() throws IOException {
+        Path seen = machine.resolveSibling("Seen.mch");
+        Files.write(seen, "MACHINE Seen\nEND".getBytes());
+        Files.write(machine, "MACHINE example\nSEES Seen\nEND".getBytes());
+        new CorpusManifest(manifestFile, "config").record(machine, target);
+        Files.write(seen, "MACHINE Seen\nCONSTANTS c\nEND".getBytes());
+
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+
+        assertFalse(manifest.isUpToDate(machine, target));
+    }
+
+    @Test
+    public void shouldNotHashUnchangedDependencies() throws IOException {
+        Path seen = machine.resolveSibling("Seen.mch");
+        Files.write(seen, "MACHINE Seen\nEND".getBytes());
+        Files.write(machine, "MACHINE example\nSEES Seen\nEND".getBytes());
+        new CorpusManifest(manifestFile, "config").record(machine, target);
+
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+
+        assertTrue(manifest.isUpToDate(machine, target));
+        assertEquals(0L, manifest.getHashCount());
+    }
+
+    @Test
+    public void shouldBeUpToDateIfOnlyModificationTimeOfDependencyChanged() throws IOException {
+        Path seen = machine.resolveSibling("Seen.mch");
+        Files.write(seen, "MACHINE Seen\nEND".getBytes());
+        Files.write(machine, "MACHINE example\nSEES Seen\nEND".getBytes());
+        new CorpusManifest(manifestFile, "config").record(machine, target);
+        Files.setLastModifiedTime(seen,
+                FileTime.fromMillis(Files.getLastModifiedTime(seen).toMillis() + 60_000));
+
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+
+        assertTrue(manifest.isUpToDate(machine, target));
+        assertTrue(manifest.isUpToDate(machine, target));
+        assertEquals(1L, manifest.getHashCount());
+    }
+
+    @Test
+    public void shouldNotBeUpToDateIfConfigurationChanged() {
+        new CorpusManifest(manifestFile, "config").record(machine, target);
+
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "other config");
+
+        assertFalse(manifest.isUpToDate(machine, target));
+    }
+
+    @Test
+    public void shouldNotBeUpToDateIfTargetIsMissing() throws IOException {
+        CorpusManifest manifest = new CorpusManifest(manifestFile, "config");
+        manifest.record(machine, target);
+        Files.delete(target);
+
+        assertFalse(manifest.isUpToDate(machine, target));
+    }
+
+}
@@ -0,0 +1,91 @@
+package de.hhu.stups.neurob.training.generation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MachineCostEstimatorTest {
+
+    private Path dir;
+    private Path historyFile;
+    private Path small;
+    private Path large;
+
+    @BeforeEach
+    public void setUpFiles() throws IOException {
+        dir = Files.createTempDirectory("neurob-costs");
+        historyFile = dir.resolve("costs.history");
+        small = dir.resolve("small.mch");
+        Files.write(small, new byte[100]);
+        large = dir.resolve("large.mch");
+        Files.write(large, new byte[1000]);
+    }
+
+    @Test
+    public void shouldOrderByFileSizeWithoutHistory() {
+        MachineCostEstimator estimator = new MachineCostEstimator(historyFile);
+
+        List<Path> ordered = estimator.order(Arrays.asList(small, large));
+
+        assertEquals(Arrays.asList(large, small), ordered);
+    }
+
+    @Test
+    public void shouldOrderByHistoricalCost() throws IOException {
+        MachineCostEstimator previous = new MachineCostEstimator(historyFile);
+        previous.recordActual(small, 5_000_000L);
+        previous.recordActual(large, 1_000L);
+        previous.save();
+
+        MachineCostEstimator estimator = new MachineCostEstimator(historyFile);
+        List<Path> ordered = estimator.order(Arrays.asList(large, small));
+
+        assertEquals(Arrays.asList(small, large), ordered);
+        assertEquals(5_000_000L, estimator.getEstimate(small).longValue());
+    }
+
+    @Test
+    public void shouldScaleHistoricalCostByChangedFileSize() throws IOException {
+        MachineCostEstimator previous = new MachineCostEstimator(historyFile);
+        previous.recordActual(small, 1_000L);
+        previous.save();
+        Files.write(small, new byte[200]);
+
+        MachineCostEstimator estimator = new MachineCostEstimator(historyFile);
+
+        assertEquals(2_000L, estimator.estimate(small));
+    }
+
+    @Test
+    public void shouldEstimateUnknownMachinesByAverageTimePerByte() throws IOException {
+        MachineCostEstimator previous = new MachineCostEstimator(historyFile);
+        previous.recordActual(small, 10_000L); // 100 ns per byte
+        previous.save();
+
+        MachineCostEstimator estimator = new MachineCostEstimator(historyFile);
+
+        assertEquals(100_000L, estimator.estimate(large));
+    }
+
+    @Test
+    public void shouldReportEstimatedAndActualCosts() {
+        MachineCostEstimator estimator = new MachineCostEstimator(historyFile);
+        estimator.order(Arrays.asList(small, large));
+        estimator.recordActual(small, 2_000_000_000L);
+        estimator.recordActual(large, 1_000_000_000L);
+
+        String report = estimator.getReport();
+
+        assertTrue(report.contains(String.format("%s: estimated %.3f s, actual %.3f s", large, 0., 1.)), report);
+        assertTrue(report.contains(String.format("%s: estimated %.3f s, actual %.3f s", small, 0., 2.)), report);
+        assertTrue(report.indexOf(large.toString()) < report.indexOf(small.toString()), report);
+    }
+
+}
@@ -0,0 +1,202 @@
+package de.hhu.stups.neurob.training.generation;
+
+import de.hhu.stups.neurob.core.api.bmethod.BMachine;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.core.exceptions.LabelCreationException;
+import de.hhu.stups.neurob.core.features.predicates.PredicateFeatureGenerating;
+import de.hhu.stups.neurob.core.features.predicates.PredicateFeatures;
+import de.hhu.stups.neurob.core.labelling.PredicateLabelGenerating;
+import de.hhu.stups.neurob.core.labelling.PredicateLabelling;
+import de.hhu.stups.neurob.training.data.TrainingData;
+import de.hhu.stups.neurob.training.data.TrainingSample;
+import de.hhu.stups.neurob.training.formats.TrainingDataFormat;
+import de.hhu.stups.neurob.training.generation.statistics.DataGenerationStats;
+import de.hhu.stups.neurob.training.generation.statistics.StageStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+class PredicateGenerationPipelineTest {
+
+    private static final int PREDICATES_PER_MACHINE = 50;
+
+    private Map<Path, List<String>> written;
+    private PredicateTrainingGenerator generator;
+
+    @BeforeEach
+    void setUpGenerator() throws Exception {
+        written = new ConcurrentHashMap<>();
+
+        PredicateFeatureGenerating<PredicateFeatures> featureGen =
+                (pred, ss) -> new PredicateFeatures(pred, 1.);
+        PredicateLabelGenerating<PredicateLabelling> labelGen = (pred, ss) -> {
+            // Let later predicates finish earlier
+            int index = Integer.parseInt(pred.toString().substring(pred.toString().indexOf('_') + 1));
+            sleep((PREDICATES_PER_MACHINE - index) % 7);
+            return new PredicateLabelling(pred, 1.);
+        };
+
+        TrainingDataFormat<PredicateFeatures, PredicateLabelling> format = mock(TrainingDataFormat.class);
+        doAnswer(invocation -> {
+            TrainingData<PredicateFeatures, PredicateLabelling> data = invocation.getArgument(0);
+            List<String> predicates = data.getSamples()
+                    .map(TrainingSample::getLabelling)
+                    .map(l -> l.getPredicate().toString())
+                    .collect(Collectors.toList());
+            written.put(data.getSourceFile(), predicates);
+            return new DataGenerationStats(1, 1, 0, predicates.size(), 0);
+        }).when(format).writeSamples(any(), any());
+
+        generator = spy(new PredicateTrainingGenerator(featureGen, labelGen, format));
+        doAnswer(invocation -> {
+            BMachine machine = invocation.getArgument(0);
+            return predicatesOf(machine.getLocation()).stream().map(BPredicate::of);
+        }).when(generator).streamPredicatesFromFile(any(BMachine.class));
+    }
+
+    private PredicateGenerationPipeline createPipeline() throws Exception {
+        PredicateGenerationPipeline pipeline = spy(new PredicateGenerationPipeline(generator));
+        doReturn(mock(MachineAccess.class)).when(pipeline).borrowAccess(any());
+        doNothing().when(pipeline).releaseAccess(any());
+        return pipeline;
+    }
+
+    private static List<String> predicatesOf(Path machine) {
+        String name = machine.getFileName().toString().replace(".mch", "");
+        return IntStream.range(0, PREDICATES_PER_MACHINE)
+                .mapToObj(i -> name + "_" + i)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void shouldWriteSamplesInPredicateOrder() throws Exception {
+        PredicateGenerationPipeline pipeline = createPipeline();
+        pipeline.setThreads(PredicateGenerationPipeline.Stage.LABELLING, 4);
+        pipeline.setQueueCapacity(8);
+        List<Path> files = Arrays.asList(Paths.get("a.mch"), Paths.get("b.mch"), Paths.get("c.mch"));
+
+        pipeline.run(files, Function.identity(), Paths.get("target"));
+
+        for (Path file : files) {
+            assertEquals(predicatesOf(file), written.get(file), "Wrong order for " + file);
+        }
+    }
+
+    @Test
+    void shouldMergeStatisticsOfAllMachines() throws Exception {
+        PredicateGenerationPipeline pipeline = createPipeline();
+        pipeline.setThreads(PredicateGenerationPipeline.Stage.WRITING, 2);
+        List<Path> files = Arrays.asList(Paths.get("a.mch"), Paths.get("b.mch"));
+
+        DataGenerationStats stats = pipeline.run(files, Function.identity(), Paths.get("target"));
+
+        assertEquals(4, stats.getFilesSeen()); // each file counted by the pipeline and by the format mock
+        assertEquals(2 * PREDICATES_PER_MACHINE, stats.getSamplesWritten());
+    }
+
+    @Test
+    void shouldRecordStageStatistics() throws Exception {
+        PredicateGenerationPipeline pipeline = createPipeline();
+        List<Path> files = Arrays.asList(Paths.get("a.mch"), Paths.get("b.mch"));
+
+        pipeline.run(files, Function.identity(), Paths.get("target"));
+
+        Map<PredicateGenerationPipeline.Stage, StageStats> stats = pipeline.getStageStats();
+        assertEquals(2L, stats.get(PredicateGenerationPipeline.Stage.COLLECTION).getProcessed());
+        assertEquals(2L * PREDICATES_PER_MACHINE,
+                stats.get(PredicateGenerationPipeline.Stage.LABELLING).getProcessed());
+        assertEquals(2L, stats.get(PredicateGenerationPipeline.Stage.WRITING).getProcessed());
+        assertTrue(stats.get(PredicateGenerationPipeline.Stage.FEATURES).getMaxQueueDepth()
+                   <= pipeline.getQueueCapacity());
+    }
+
+    @Test
+    void shouldNotWriteSamplesOfFailedPredicates() throws Exception {
+        PredicateLabelGenerating<PredicateLabelling> failingLabelGen = (pred, ss) -> {
+            if (pred.toString().endsWith("_3")) {
+                throw new LabelCreationException("failed");
+            }
+            return new PredicateLabelling(pred, 1.);
+        };
+        TrainingDataFormat format = generator.format;
+        generator = spy(new PredicateTrainingGenerator(
+                (pred, ss) -> new PredicateFeatures(pred, 1.), failingLabelGen, format));
+        doAnswer(invocation -> predicatesOf(Paths.get("a.mch")).stream().map(BPredicate::of))
+                .when(generator).streamPredicatesFromFile(any(BMachine.class));
+        PredicateGenerationPipeline pipeline = createPipeline();
+
+        pipeline.run(Arrays.asList(Paths.get("a.mch")), Function.identity(), Paths.get("target"));
+
+        List<String> expected = predicatesOf(Paths.get("a.mch"));
+        expected.remove("a_3");
+        assertEquals(expected, written.get(Paths.get("a.mch")));
+        assertEquals(1L, pipeline.getStageStats()
+                .get(PredicateGenerationPipeline.Stage.LABELLING).getFailed());
+    }
+
+    @Test
+    void shouldCleanupPredicatesInBatches() throws Exception {
+        AtomicInteger cleanupCalls = new AtomicInteger(0);
+        generator.setAstCleanup(true);
+        doAnswer(invocation -> {
+            if (cleanupCalls.incrementAndGet() == 1) {
+                // Let the remaining predicates queue up meanwhile
+                sleep(100);
+            }
+            List<BPredicate> batch = invocation.getArgument(0);
+            Map<BPredicate, BPredicate> cleaned = new HashMap<>();
+            for (BPredicate pred : batch) {
+                if (!pred.toString().endsWith("_3")) {
+                    cleaned.put(pred, BPredicate.of("clean" + pred));
+                }
+            }
+            return cleaned;
+        }).when(generator).cleanupAsts(anyList(), any());
+        PredicateGenerationPipeline pipeline = createPipeline();
+        pipeline.setQueueCapacity(PREDICATES_PER_MACHINE);
+
+        pipeline.run(Arrays.asList(Paths.get("a.mch")), Function.identity(), Paths.get("target"));
+
+        List<String> expected = predicatesOf(Paths.get("a.mch")).stream()
+                .filter(pred -> !pred.endsWith("_3"))
+                .map(pred -> "clean" + pred)
+                .collect(Collectors.toList());
+        assertEquals(expected, written.get(Paths.get("a.mch")));
+        assertTrue(cleanupCalls.get() < PREDICATES_PER_MACHINE / 2,
+                "Should clean up queued predicates together, but took " + cleanupCalls.get() + " batches");
+        assertEquals(1L, pipeline.getStageStats()
+                .get(PredicateGenerationPipeline.Stage.CLEANUP).getFailed());
+        assertEquals((long) PREDICATES_PER_MACHINE, pipeline.getStageStats()
+                .get(PredicateGenerationPipeline.Stage.CLEANUP).getProcessed());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package de.hhu.stups.neurob.training.generation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredicateTaskSchedulerTest {
+
+    @Test
+    void shouldKeepInputOrder() throws Exception {
+        PredicateTaskScheduler scheduler = new PredicateTaskScheduler(8);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        List<Integer> expected = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        List<Integer> actual;
+        try {
+            actual = pool.submit(() -> scheduler.mapOrdered(expected.stream(), i -> {
+                // Later elements finish earlier
+                sleep(100 - i);
+                return i;
+            }).collect(Collectors.toList())).get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(expected, actual);
+        assertEquals(100L, scheduler.getTaskCount());
+    }
+
+    @Test
+    void shouldNotForkMoreTasksThanWindowAhead() throws Exception {
+        PredicateTaskScheduler scheduler = new PredicateTaskScheduler(3);
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxRunning = new AtomicInteger(0);
+        ForkJoinPool pool = new ForkJoinPool(8);
+
+        try {
+            pool.submit(() -> scheduler.mapOrdered(IntStream.range(0, 30).boxed(), i -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+                return i;
+            }).collect(Collectors.toList())).get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(maxRunning.get() <= 3,
+                "Expected at most 3 concurrent tasks, but were " + maxRunning.get());
+    }
+
+    @Test
+    void shouldProcessSequentiallyWithWindowOfOne() {
+        PredicateTaskScheduler scheduler = new PredicateTaskScheduler(1);
+
+        List<Integer> actual = scheduler.mapOrdered(Stream.of(1, 2, 3), i -> 2 * i)
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(2, 4, 6), actual);
+        assertEquals(0L, scheduler.getTaskCount());
+    }
+
+    @Test
+    void shouldCloseInputStream() {
+        PredicateTaskScheduler scheduler = new PredicateTaskScheduler(4);
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Stream<Integer> input = Stream.of(1, 2, 3).onClose(() -> closed.set(true));
+
+        scheduler.mapOrdered(input, i -> i).close();
+
+        assertTrue(closed.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
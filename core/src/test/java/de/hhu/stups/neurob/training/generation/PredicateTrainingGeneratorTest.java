@@ -20,6 +20,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -114,6 +115,42 @@ class PredicateTrainingGeneratorTest {
 
     }
 
+    @Test
+    public void shouldNotRecordCostOfMachineWithReusedLabels() throws Exception {
+        PredicateLabelGenerating<PredicateLabelling> reusingLabelGen =
+                new PredicateLabelGenerating<PredicateLabelling>() {
+                    @Override
+                    public PredicateLabelling generate(BPredicate pred, MachineAccess access) {
+                        return new PredicateLabelling(pred, 1., 2., 3.);
+                    }
+
+                    @Override
+                    public boolean hasReusedLabels(Path sourceFile) {
+                        return true;
+                    }
+                };
+        generator = new PredicateTrainingGenerator(featureGen, reusingLabelGen, formatMock);
+        MachineCostEstimator estimator = new MachineCostEstimator(
+                Files.createTempDirectory("neurob-costs").resolve("history"));
+        generator.setCostEstimator(estimator);
+
+        generator.recordCost(Paths.get("machine.mch"), 100L);
+
+        assertNull(estimator.getActual(Paths.get("machine.mch")));
+    }
+
+    @Test
+    public void shouldRecordCostOfMachine() throws Exception {
+        generator = new PredicateTrainingGenerator(featureGen, labelGen, formatMock);
+        MachineCostEstimator estimator = new MachineCostEstimator(
+                Files.createTempDirectory("neurob-costs").resolve("history"));
+        generator.setCostEstimator(estimator);
+
+        generator.recordCost(Paths.get("machine.mch"), 100L);
+
+        assertEquals(100L, estimator.getActual(Paths.get("machine.mch")));
+    }
+
     @Test
     public void shouldGenerateFeaturesFromStreamedPredicates() throws Exception {
         // Prepare 5 predicates to stream
@@ -310,6 +347,41 @@ class PredicateTrainingGeneratorTest {
                 "Training sample contains no information about source file");
     }
 
+    @Test
+    public void shouldStreamPredicatesInRuleOrderWithoutDuplicatesWhenStreaming() {
+        PredicateCollection pc = mock(PredicateCollection.class);
+        generator = new PredicateTrainingGenerator(featureGen, labelGen, formatMock);
+        generator.setStreamingGeneration(true);
+        generator.setGenerationRules(
+                collection -> predList("z", "a"),
+                collection -> predList("a", "m"));
+
+        List<String> actual = generator.streamPredicatesFromCollection(pc)
+                .map(BPredicate::toString)
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("z", "a", "m"), actual);
+    }
+
+    @Test
+    public void shouldApplyLaterRulesOnlyWhenConsumedWhenStreaming() {
+        PredicateCollection pc = mock(PredicateCollection.class);
+        AtomicInteger laterRuleCalls = new AtomicInteger(0);
+        generator = new PredicateTrainingGenerator(featureGen, labelGen, formatMock);
+        generator.setStreamingGeneration(true);
+        generator.setGenerationRules(
+                collection -> predList("first"),
+                collection -> {
+                    laterRuleCalls.incrementAndGet();
+                    return predList("second");
+                });
+
+        BPredicate first = generator.streamPredicatesFromCollection(pc).iterator().next();
+
+        assertEquals("first", first.toString());
+        assertEquals(0, laterRuleCalls.get());
+    }
+
     /**
      * Helper to quickly generate a list containing corresponding predicates.
      *
@@ -0,0 +1,66 @@
+package de.hhu.stups.neurob.training.generation.util;
+
+import de.hhu.stups.neurob.core.api.MachineType;
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AstCleanupCacheTest {
+
+    @Test
+    void shouldReturnCleanedPredicate() {
+        AstCleanupCache cache = new AstCleanupCache(4);
+        MachineAccess access = mockAccess("a.mch");
+        BPredicate pred = BPredicate.of("x:INTEGER & x>2");
+
+        assertNull(cache.get(access, pred));
+        cache.put(access, pred, BPredicate.of("x > 2"));
+
+        assertEquals(BPredicate.of("x > 2"), cache.get(access, pred));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+    }
+
+    @Test
+    void shouldDistinguishMachines() {
+        AstCleanupCache cache = new AstCleanupCache(4);
+        BPredicate pred = BPredicate.of("x:INTEGER & x>2");
+        cache.put(mockAccess("a.mch"), pred, BPredicate.of("x > 2"));
+
+        assertNull(cache.get(mockAccess("b.mch"), pred));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsed() {
+        AstCleanupCache cache = new AstCleanupCache(2);
+        MachineAccess access = mockAccess("a.mch");
+        BPredicate a = BPredicate.of("a");
+        BPredicate b = BPredicate.of("b");
+        BPredicate c = BPredicate.of("c");
+
+        cache.put(access, a, a);
+        cache.put(access, b, b);
+        cache.get(access, a); // a is now more recent than b
+        cache.put(access, c, c); // evicts b
+
+        assertAll(
+                () -> assertEquals(2, cache.size()),
+                () -> assertNotNull(cache.get(access, a)),
+                () -> assertNull(cache.get(access, b)),
+                () -> assertNotNull(cache.get(access, c))
+        );
+    }
+
+    private MachineAccess mockAccess(String source) {
+        MachineAccess access = mock(MachineAccess.class);
+        when(access.getSource()).thenReturn(Paths.get(source));
+        when(access.getMachineType()).thenReturn(MachineType.CLASSICALB);
+        return access;
+    }
+}
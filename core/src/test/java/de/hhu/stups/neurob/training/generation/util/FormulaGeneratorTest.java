@@ -28,6 +28,7 @@ import org.junit.jupiter.api.TestInstance;
 
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -39,7 +40,10 @@ import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class FormulaGeneratorTest {
@@ -1348,6 +1352,51 @@ public class FormulaGeneratorTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void shouldTakeCleanedUpAstsFromCache() throws FormulaException {
+        MachineAccess mch = mock(MachineAccess.class);
+        when(mch.getSource()).thenReturn(Paths.get("cached-cleanup.mch"));
+        when(mch.getMachineType()).thenReturn(MachineType.CLASSICALB);
+        BPredicate first = BPredicate.of("x:INTEGER & x>2");
+        BPredicate second = BPredicate.of("#x.(y>2 & x=y)");
+        FormulaGenerator.getAstCleanupCache().put(mch, first, BPredicate.of("x > 2"));
+        FormulaGenerator.getAstCleanupCache().put(mch, second, BPredicate.of("y > 2"));
+
+        Map<BPredicate, BPredicate> expected = new HashMap<>();
+        expected.put(first, BPredicate.of("x > 2"));
+        expected.put(second, BPredicate.of("y > 2"));
+        Map<BPredicate, BPredicate> actual =
+                FormulaGenerator.cleanupAsts(mch, Arrays.asList(first, second, first));
+
+        assertEquals(expected, actual);
+        verify(mch, never()).execute(any());
+    }
+
+    @Test
+    void shouldLeaveOutSinglePredicateThatFailsToCleanup() throws FormulaException {
+        MachineAccess mch = mock(MachineAccess.class);
+        when(mch.getSource()).thenReturn(Paths.get("single-failing-cleanup.mch"));
+        when(mch.getMachineType()).thenReturn(MachineType.CLASSICALB);
+        doThrow(new IllegalStateException("not well-defined")).when(mch).execute(any());
+
+        Map<BPredicate, BPredicate> actual =
+                FormulaGenerator.cleanupAsts(mch, Collections.singletonList(BPredicate.of("1/0 > 1")));
+
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    void shouldThrowIfWholeBatchFailsToCleanup() {
+        MachineAccess mch = mock(MachineAccess.class);
+        when(mch.getSource()).thenReturn(Paths.get("broken-cleanup.mch"));
+        when(mch.getMachineType()).thenReturn(MachineType.CLASSICALB);
+        doThrow(new IllegalStateException("cli shut down")).when(mch).execute(any());
+
+        assertThrows(FormulaException.class,
+                () -> FormulaGenerator.cleanupAsts(mch,
+                        Arrays.asList(BPredicate.of("x > 1"), BPredicate.of("y > 1"))));
+    }
+
     @Test
     void shouldNotFailIfBeforeAfterPredicatesAreNotPresent() throws MachineAccessException {
         // This is a regression test to mark a bug.
@@ -0,0 +1,165 @@
+package de.hhu.stups.neurob.training.generation.util;
+
+import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
+import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollection.Facet;
+import de.prob.cli.CliVersionNumber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class PredicateCollectionCacheTest {
+
+    private Path cacheDir;
+    private Path machine;
+    private MachineAccess access;
+
+    private final CliVersionNumber version =
+            new CliVersionNumber("0", "1", "2", "neurob", "revision-hash");
+
+    @BeforeEach
+    public void setUpDirectories() throws IOException {
+        cacheDir = Files.createTempDirectory("neurob-collection-cache");
+        machine = Files.createTempFile("neurob-machine", ".mch");
+        Files.write(machine, "MACHINE example\nEND".getBytes());
+        access = mock(MachineAccess.class);
+    }
+
+    @Test
+    public void shouldReturnNullIfNotCached() {
+        PredicateCollectionCache cache = new PredicateCollectionCache(cacheDir, version);
+
+        assertNull(cache.lookup(machine, access, false));
+        assertEquals(1L, cache.getMissCount());
+    }
+
+    @Test
+    public void shouldLoadStoredCollectionInFreshCache() {
+        PredicateCollection pc = createCollection();
+        new PredicateCollectionCache(cacheDir, version).store(machine, pc);
+
+        PredicateCollectionCache cache = new PredicateCollectionCache(cacheDir, version);
+        PredicateCollection actual = cache.lookup(machine, access, false);
+
+        assertNotNull(actual);
+        assertAll(
+                () -> assertEquals(pc.getOperationNames(), actual.getOperationNames()),
+                () -> assertEquals(pc.getInvariants(), actual.getInvariants()),
+                () -> assertEquals(pc.getProperties(), actual.getProperties()),
+                () -> assertEquals(pc.getAssertions(), actual.getAssertions()),
+                () -> assertEquals(pc.getPreconditions(), actual.getPreconditions()),
+                () -> assertEquals(pc.getBeforeAfterPredicates(), actual.getBeforeAfterPredicates()),
+                () -> assertEquals(pc.getWeakestPreConditions(), actual.getWeakestPreConditions()),
+                () -> assertEquals(pc.getWeakestFullPreconditions(),
+                        actual.getWeakestFullPreconditions()),
+                () -> assertEquals(pc.getPrimedInvariants(), actual.getPrimedInvariants()),
+                () -> assertEquals(pc.getPrimedPreconditions(), actual.getPrimedPreconditions()),
+                () -> assertSame(access, actual.getBMachine()),
+                () -> assertEquals(EnumSet.allOf(Facet.class), actual.getMaterialisedFacets()),
+                () -> assertEquals(1L, cache.getHitCount())
+        );
+    }
+
+    @Test
+    public void shouldMissForOtherCliVersion() {
+        new PredicateCollectionCache(cacheDir, version).store(machine, createCollection());
+
+        CliVersionNumber otherVersion =
+                new CliVersionNumber("0", "1", "3", "neurob", "revision-hash");
+        PredicateCollectionCache cache = new PredicateCollectionCache(cacheDir, otherVersion);
+
+        assertNull(cache.lookup(machine, access, false));
+    }
+
+    @Test
+    public void shouldMissIfAstCleanupDiffers() {
+        PredicateCollectionCache cache = new PredicateCollectionCache(cacheDir, version);
+        cache.store(machine, createCollection());
+
+        assertNull(cache.lookup(machine, access, true));
+    }
+
+    @Test
+    public void shouldMissIfMachineChanged() throws IOException {
+        new PredicateCollectionCache(cacheDir, version).store(machine, createCollection());
+        Files.write(machine, "MACHINE changed\nEND".getBytes());
+
+        PredicateCollectionCache cache = new PredicateCollectionCache(cacheDir, version);
+
+        assertNull(cache.lookup(machine, access, false));
+    }
+
+    @Test
+    public void shouldMissIfSeenMachineChanged() throws IOException {
+        Path seen = machine.resolveSibling("Seen.mch");
+        Files.write(seen, "MACHINE Seen\nCONSTANTS c\nPROPERTIES c = 1\nEND".getBytes());
+        seen.toFile().deleteOnExit();
+        Files.write(machine, "MACHINE example\nSEES Seen\nEND".getBytes());
+        new PredicateCollectionCache(cacheDir, version).store(machine, createCollection());
+        Files.write(seen, "MACHINE Seen\nCONSTANTS c\nPROPERTIES c = 2\nEND".getBytes());
+
+        PredicateCollectionCache cache = new PredicateCollectionCache(cacheDir, version);
+
+        assertNull(cache.lookup(machine, access, false));
+    }
+
+    @Test
+    public void shouldOnlyLoadMaterialisedFacets() {
+        PredicateCollection pc = PredicateCollection.createEmpty(access, false);
+        pc.getOperationNames().add("inc");
+        pc.markMaterialised(Facet.BEFORE_AFTER_PREDICATES);
+        pc.getBeforeAfterPredicates().put("inc", BPredicate.of("x' = x + 1"));
+        new PredicateCollectionCache(cacheDir, version).store(machine, pc);
+
+        PredicateCollection actual =
+                new PredicateCollectionCache(cacheDir, version).lookup(machine, access, false);
+
+        assertNotNull(actual);
+        assertAll(
+                () -> assertEquals(EnumSet.of(Facet.BEFORE_AFTER_PREDICATES),
+                        actual.getMaterialisedFacets()),
+                () -> assertEquals(pc.getBeforeAfterPredicates(), actual.getBeforeAfterPredicates())
+        );
+    }
+
+    private PredicateCollection createCollection() {
+        PredicateCollection pc = PredicateCollection.createEmpty(access, false);
+        for (Facet facet : Facet.values()) {
+            pc.markMaterialised(facet);
+        }
+
+        pc.getOperationNames().addAll(Arrays.asList("inc", "dec"));
+        pc.getInvariants().addAll(Arrays.asList(BPredicate.of("x : NAT"), BPredicate.of("x < 10")));
+        pc.getProperties().add(BPredicate.of("c = 5"));
+        pc.getAssertions().add(BPredicate.of("x /= 11"));
+        pc.getPreconditions().put("inc", new ArrayList<>(Arrays.asList(BPredicate.of("x < 9"))));
+        pc.getBeforeAfterPredicates().put("inc", BPredicate.of("x' = x + 1"));
+        pc.getBeforeAfterPredicates().put("dec", BPredicate.of("x' = x - 1"));
+
+        Map<BPredicate, BPredicate> incWpcs = new HashMap<>();
+        incWpcs.put(BPredicate.of("x : NAT"), BPredicate.of("x + 1 : NAT"));
+        incWpcs.put(BPredicate.of("x < 10"), BPredicate.of("x + 1 < 10"));
+        pc.getWeakestPreConditions().put("inc", incWpcs);
+        pc.getWeakestPreConditions().put("dec", new HashMap<>());
+        pc.getWeakestFullPreconditions().put("inc", BPredicate.of("x + 1 : NAT & x + 1 < 10"));
+
+        pc.getPrimedInvariants().put(BPredicate.of("x : NAT"), BPredicate.of("x' : NAT"));
+        pc.getPrimedInvariants().put(BPredicate.of("x < 10"), BPredicate.of("x' < 10"));
+        pc.getPrimedPreconditions().put("inc", new ArrayList<>(Arrays.asList(BPredicate.of("x' < 9"))));
+        pc.getPrimedPreconditions().put("dec", new ArrayList<>());
+
+        return pc;
+    }
+
+}
@@ -3,6 +3,8 @@ package de.hhu.stups.neurob.training.generation.util;
 import de.hhu.stups.neurob.core.api.MachineType;
 import de.hhu.stups.neurob.core.api.bmethod.BPredicate;
 import de.hhu.stups.neurob.core.api.bmethod.MachineAccess;
+import de.hhu.stups.neurob.training.generation.util.PredicateCollection.Facet;
+import de.prob.animator.command.AbstractCommand;
 import de.prob.animator.command.BeforeAfterPredicateCommand;
 import de.prob.animator.command.NQPrimePredicateCommand;
 import de.prob.animator.command.PrimePredicateCommand;
@@ -29,6 +31,8 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,8 +40,12 @@ import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class PredicateCollectionTest {
@@ -289,12 +297,7 @@ class PredicateCollectionTest {
         // Weakest Preconditions
         when(bindings.get("WeakestPrecondition"))
                 .thenReturn(new CompoundPrologTerm("weakest-precondition"));
-        doAnswer(invocation -> {
-            WeakestPreconditionCommand cmd =
-                    invocation.getArgument(0);
-            cmd.processResult(bindings);
-            return null;
-        }).when(bMachine).execute(any(WeakestPreconditionCommand.class));
+        stubCommands(WeakestPreconditionCommand.class, bindings);
 
         PredicateCollection pc = new PredicateCollection(bMachine);
 
@@ -332,12 +335,7 @@ class PredicateCollectionTest {
         // Weakest Preconditions
         when(bindings.get("WeakestPrecondition"))
                 .thenReturn(new CompoundPrologTerm("weakest-full-precondition"));
-        doAnswer(invocation -> {
-            WeakestPreconditionCommand cmd =
-                    invocation.getArgument(0);
-            cmd.processResult(bindings);
-            return null;
-        }).when(bMachine).execute(any(WeakestPreconditionCommand.class));
+        stubCommands(WeakestPreconditionCommand.class, bindings);
         IBEvalElement evalMock = mock(IBEvalElement.class);
         when(bMachine.parseFormula(any())).thenReturn(evalMock);
 
@@ -400,12 +398,7 @@ class PredicateCollectionTest {
         // Weakest Preconditions
         when(bindings.get("BAPredicate"))
                 .thenReturn(new CompoundPrologTerm("before-after"));
-        doAnswer(invocation -> {
-            BeforeAfterPredicateCommand cmd =
-                    invocation.getArgument(0);
-            cmd.processResult(bindings);
-            return null;
-        }).when(bMachine).execute(any(BeforeAfterPredicateCommand.class));
+        stubCommands(BeforeAfterPredicateCommand.class, bindings);
 
         PredicateCollection pc = new PredicateCollection(bMachine);
 
@@ -435,12 +428,7 @@ class PredicateCollectionTest {
         // Weakest Preconditions
         when(bindings.get("PrimedPredOut"))
                 .thenReturn(new CompoundPrologTerm("primed-invariant"));
-        doAnswer(invocation -> {
-            NQPrimePredicateCommand cmd =
-                    invocation.getArgument(0);
-            cmd.processResult(bindings);
-            return null;
-        }).when(bMachine).execute(any(NQPrimePredicateCommand.class));
+        stubCommands(NQPrimePredicateCommand.class, bindings);
 
         PredicateCollection pc = new PredicateCollection(bMachine);
 
@@ -484,4 +472,194 @@ class PredicateCollectionTest {
         assertEquals(expected, actual,
                 "Properties not loaded correctly");
     }
+
+    @Test
+    public void shouldExecuteCommandsInSingleRoundTripWhenFewCommands() {
+        ModelElementList<Invariant> invariants =
+                generatePredicates(Invariant.class, 2);
+        when(ss.getMainComponent().getChildrenOfType(Invariant.class))
+                .thenReturn(invariants);
+        ModelElementList<BEvent> operations =
+                generateOperations(2, 1);
+        when(ss.getMainComponent().getChildrenOfType(BEvent.class))
+                .thenReturn(operations);
+
+        new PredicateCollection(bMachine).materialise(Facet.values());
+
+        verify(bMachine, times(1)).execute(any());
+    }
+
+    @Test
+    public void shouldSplitCommandsIntoBatches() {
+        // 10 operations x (10 weakest preconditions + 1 full + 1 before/after)
+        // + 10 primed invariants = 130 commands
+        ModelElementList<Invariant> invariants =
+                generatePredicates(Invariant.class, 10);
+        when(ss.getMainComponent().getChildrenOfType(Invariant.class))
+                .thenReturn(invariants);
+        ModelElementList<BEvent> operations =
+                generateOperations(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        when(ss.getMainComponent().getChildrenOfType(BEvent.class))
+                .thenReturn(operations);
+
+        new PredicateCollection(bMachine).materialise(Facet.values());
+
+        verify(bMachine, times(3)).execute(any());
+    }
+
+    @Test
+    public void shouldLoadWeakestPreConditionsWhenOtherCommandOfBatchFails() {
+        ModelElementList<Invariant> invariants =
+                generatePredicates(Invariant.class, 2);
+        when(ss.getMainComponent().getChildrenOfType(Invariant.class))
+                .thenReturn(invariants);
+        ModelElementList<BEvent> operations =
+                generateOperations(2, 1);
+        when(ss.getMainComponent().getChildrenOfType(BEvent.class))
+                .thenReturn(operations);
+
+        // Before/after predicates fail and take their whole batch with them
+        ISimplifiedROMap bindings = mock(ISimplifiedROMap.class);
+        when(bindings.get("WeakestPrecondition"))
+                .thenReturn(new CompoundPrologTerm("weakest-precondition"));
+        doAnswer(invocation -> {
+            for (Object arg : invocation.getArguments()) {
+                if (arg instanceof BeforeAfterPredicateCommand) {
+                    throw new IllegalStateException("Mocked failure");
+                }
+            }
+            for (Object arg : invocation.getArguments()) {
+                if (arg instanceof WeakestPreconditionCommand) {
+                    ((WeakestPreconditionCommand) arg).processResult(bindings);
+                }
+            }
+            return null;
+        }).when(bMachine).execute(any());
+
+        PredicateCollection pc = new PredicateCollection(bMachine);
+
+        Map<BPredicate, BPredicate> opWeak = new HashMap<>();
+        opWeak.put(BPredicate.of("Invariant-1"), BPredicate.of("weakest-precondition"));
+        opWeak.put(BPredicate.of("Invariant-2"), BPredicate.of("weakest-precondition"));
+        Map<String, Map<BPredicate, BPredicate>> weakestPres = new HashMap<>();
+        weakestPres.put("Operation-1", opWeak);
+        weakestPres.put("Operation-2", opWeak);
+
+        assertAll(
+                () -> assertEquals(weakestPres, pc.getWeakestPreConditions(),
+                        "Weakest Preconditions do not match"),
+                () -> assertTrue(pc.getBeforeAfterPredicates().isEmpty(),
+                        "Failed before/after predicates should be missing")
+        );
+    }
+
+    @Test
+    public void shouldShareCommandsWithHelperAccesses() {
+        ModelElementList<Invariant> invariants =
+                generatePredicates(Invariant.class, 2);
+        when(ss.getMainComponent().getChildrenOfType(Invariant.class))
+                .thenReturn(invariants);
+        ModelElementList<BEvent> operations =
+                generateOperations(2, 1, 0);
+        when(ss.getMainComponent().getChildrenOfType(BEvent.class))
+                .thenReturn(operations);
+
+        ISimplifiedROMap bindings = mock(ISimplifiedROMap.class);
+        when(bindings.get("WeakestPrecondition"))
+                .thenReturn(new CompoundPrologTerm("weakest-precondition"));
+        stubCommands(WeakestPreconditionCommand.class, bindings);
+        MachineAccess helper = mock(MachineAccess.class);
+        doAnswer(invocation -> {
+            for (Object arg : invocation.getArguments()) {
+                if (arg instanceof WeakestPreconditionCommand) {
+                    ((WeakestPreconditionCommand) arg).processResult(bindings);
+                }
+            }
+            return null;
+        }).when(helper).execute(any());
+
+        PredicateCollection shared =
+                new PredicateCollection(bMachine, false, Collections.singletonList(helper));
+        PredicateCollection single = new PredicateCollection(bMachine);
+
+        assertAll(
+                () -> assertEquals(single.getWeakestPreConditions(), shared.getWeakestPreConditions(),
+                        "Weakest preconditions differ from collection over single access"),
+                () -> assertEquals(single.getWeakestFullPreconditions(),
+                        shared.getWeakestFullPreconditions(),
+                        "Weakest full preconditions differ from collection over single access"),
+                () -> assertEquals(3, shared.getWeakestPreConditions().size(),
+                        "Not all operations collected"),
+                () -> verify(helper, atLeastOnce()).execute(any())
+        );
+    }
+
+    @Test
+    public void shouldMeasureCollectionTime() {
+        PredicateCollection pc = new PredicateCollection(bMachine);
+
+        assertTrue(pc.getCollectionNanos() > 0,
+                "Collection time not measured");
+    }
+
+    @Test
+    public void shouldNotExecuteCommandsBeforeFacetIsAccessed() {
+        ModelElementList<Invariant> invariants =
+                generatePredicates(Invariant.class, 2);
+        when(ss.getMainComponent().getChildrenOfType(Invariant.class))
+                .thenReturn(invariants);
+        ModelElementList<BEvent> operations =
+                generateOperations(2, 1);
+        when(ss.getMainComponent().getChildrenOfType(BEvent.class))
+                .thenReturn(operations);
+
+        PredicateCollection pc = new PredicateCollection(bMachine);
+        pc.getInvariants();
+        pc.getPreconditions();
+        pc.getAssertions();
+
+        verify(bMachine, never()).execute(any());
+        assertTrue(pc.getMaterialisedFacets().isEmpty(),
+                "No facet should be materialised");
+    }
+
+    @Test
+    public void shouldMaterialiseFacetOnlyOnce() {
+        ModelElementList<Invariant> invariants =
+                generatePredicates(Invariant.class, 2);
+        when(ss.getMainComponent().getChildrenOfType(Invariant.class))
+                .thenReturn(invariants);
+        ModelElementList<BEvent> operations =
+                generateOperations(2, 1);
+        when(ss.getMainComponent().getChildrenOfType(BEvent.class))
+                .thenReturn(operations);
+
+        PredicateCollection pc = new PredicateCollection(bMachine);
+        pc.getWeakestPreConditions();
+        pc.getWeakestPreConditions();
+
+        verify(bMachine, times(1)).execute(any());
+        assertEquals(EnumSet.of(Facet.WEAKEST_PRECONDITIONS), pc.getMaterialisedFacets(),
+                "Only accessed facet should be materialised");
+    }
+
+    /**
+     * Stubs the execution of commands of the given type, whether executed
+     * alone or in a batch with other commands, to process the given bindings.
+     *
+     * @param type Type of commands to stub
+     * @param bindings Bindings to process
+     * @param <C>
+     */
+    private <C extends AbstractCommand> void stubCommands(Class<C> type,
+            ISimplifiedROMap bindings) {
+        doAnswer(invocation -> {
+            for (Object arg : invocation.getArguments()) {
+                if (type.isInstance(arg)) {
+                    type.cast(arg).processResult(bindings);
+                }
+            }
+            return null;
+        }).when(bMachine).execute(any());
+    }
 }